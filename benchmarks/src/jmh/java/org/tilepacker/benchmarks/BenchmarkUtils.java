@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.tilepacker.core.ConfigSerializer;
+import org.tilepacker.core.PackingContext;
+import org.tilepacker.core.TileConfig;
+import org.tilepacker.core.TileImage;
+import org.tilepacker.core.TilePackerConfig;
+import org.tilepacker.core.TilePlacement;
+
+/**
+ * Generates synthetic tile images and directories for benchmarks
+ * 
+ * @author Thomas Cashman
+ */
+public class BenchmarkUtils {
+	public static final String OUTPUT_PATH = "../output";
+
+	/**
+	 * Creates unplaced in-memory {@link TileImage}s of between 1x1 and
+	 * maxTilesPerSide x maxTilesPerSide tiles
+	 */
+	public static List<TileImage> createTileImages(PackingContext context, int count, int maxTilesPerSide, long seed) {
+		final Random random = new Random(seed);
+		final TileConfig tileConfig = new TileConfig();
+		tileConfig.setPath("benchmark.png");
+
+		final List<TileImage> result = new ArrayList<TileImage>(count);
+		for (int i = 0; i < count; i++) {
+			TilePlacement placement = new TilePlacement();
+			placement.setSubImageWidth(1 + random.nextInt(maxTilesPerSide));
+			placement.setSubImageHeight(1 + random.nextInt(maxTilesPerSide));
+			result.add(new TileImage(context, tileConfig, null, placement));
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a directory of random tile images with a config.xml that
+	 * writes tilesets to a sibling directory so that they are not picked up
+	 * as tiles on the next run. Delete the parent of the returned directory
+	 * to clean up.
+	 */
+	public static File createTileDirectory(TilePackerConfig config, int imageCount, int maxTilesPerSide, long seed)
+			throws Exception {
+		final Random random = new Random(seed);
+		final File directory = new File(Files.createTempDirectory("tilepacker-benchmark").toFile(), "tiles");
+		final File subdirectory = new File(directory, "subdirectory");
+		subdirectory.mkdirs();
+
+		for (int i = 0; i < imageCount; i++) {
+			int width = (1 + random.nextInt(maxTilesPerSide)) * config.getTileWidth();
+			int height = (1 + random.nextInt(maxTilesPerSide)) * config.getTileHeight();
+			writeTileImage(new File(i % 2 == 0 ? directory : subdirectory, i + ".png"), width, height, random);
+		}
+
+		config.setOutputPath(OUTPUT_PATH);
+		config.setTiles(new ArrayList<TileConfig>());
+		new ConfigSerializer().write(config, new File(directory, "config.xml"));
+		return directory;
+	}
+
+	/**
+	 * Writes a PNG of random pixels, roughly a quarter of which are transparent
+	 */
+	public static void writeTileImage(File file, int width, int height, Random random) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int alpha = random.nextInt(4) == 0 ? 0 : 255;
+				image.setRGB(x, y, (alpha << 24) | random.nextInt(0xFFFFFF));
+			}
+		}
+		ImageIO.write(image, "png", file);
+	}
+
+	public static void delete(File file) {
+		if (file == null || !file.exists()) {
+			return;
+		}
+		if (file.isDirectory()) {
+			for (File child : file.listFiles()) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.simpleframework.xml.core.Persister;
+import org.tilepacker.core.ConfigSerializer;
+import org.tilepacker.core.TileConfig;
+import org.tilepacker.core.TilePackerConfig;
+import org.tilepacker.core.TilePlacement;
+
+/**
+ * Compares reading and writing a config.xml of 50,000 tiles with
+ * {@link Persister} against {@link ConfigSerializer}. Both serializers read
+ * XML that they wrote themselves.
+ * 
+ * @author Thomas Cashman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ConfigSerializerBenchmark {
+	private static final int TILE_COUNT = 50000;
+
+	@Param({ "persister", "stax" })
+	public String serializer;
+
+	private final Persister persister = new Persister();
+	private final ConfigSerializer configSerializer = new ConfigSerializer();
+
+	private TilePackerConfig config;
+	private byte[] xml;
+
+	@Setup
+	public void setup() throws Exception {
+		final Random random = new Random(TILE_COUNT);
+		config = new TilePackerConfig();
+		config.setTiles(new ArrayList<TileConfig>(TILE_COUNT));
+		for (int i = 0; i < TILE_COUNT; i++) {
+			TileConfig tileConfig = new TileConfig();
+			tileConfig.setPath("directory" + (i % 100) + "/tile" + i + ".png");
+			tileConfig.setHash(random.nextLong());
+			tileConfig.setLastModified(1400000000000L + random.nextInt());
+
+			TilePlacement placement = new TilePlacement();
+			placement.setTileset(i / 1000);
+			placement.setTilesetX(random.nextInt(128));
+			placement.setTilesetY(random.nextInt(128));
+			placement.setSubImageWidth(1 + random.nextInt(4));
+			placement.setSubImageHeight(1 + random.nextInt(4));
+			tileConfig.getPlacement().add(placement);
+			config.getTiles().add(tileConfig);
+		}
+		xml = write().toByteArray();
+	}
+
+	@Benchmark
+	public TilePackerConfig read() throws Exception {
+		if (serializer.equals("persister")) {
+			return persister.read(TilePackerConfig.class, new ByteArrayInputStream(xml));
+		}
+		return configSerializer.read(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream write() throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(16 * 1024 * 1024);
+		if (serializer.equals("persister")) {
+			persister.write(config, outputStream);
+		} else {
+			configSerializer.write(config, outputStream);
+		}
+		return outputStream;
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tilepacker.core.PackingAlgorithm;
+import org.tilepacker.core.PackingContext;
+import org.tilepacker.core.TileImage;
+import org.tilepacker.core.TilePackerConfig;
+import org.tilepacker.core.Tileset;
+
+/**
+ * Compares the time taken and the amount of tilesets produced by each
+ * {@link PackingAlgorithm}. Images are assigned to the first tileset that
+ * accepts them, the same as TilePacker.
+ * 
+ * @author Thomas Cashman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class PackingStrategyBenchmark {
+	private static final int TILE_SIZE = 8;
+	private static final int TILESET_SIZE = 512;
+	private static final int MAX_TILES_PER_SIDE = 4;
+
+	@Param({ "DEFAULT", "MAXRECTS", "SKYLINE", "GUILLOTINE" })
+	public String packingAlgorithm;
+
+	@Param({ "1000", "10000" })
+	public int imageCount;
+
+	/**
+	 * Reports the amount of tilesets produced by the last invocation
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Tilesets {
+		public int tilesets;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			tilesets = 0;
+		}
+	}
+
+	private PackingContext context;
+
+	@Setup
+	public void setup() {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setTileWidth(TILE_SIZE);
+		config.setTileHeight(TILE_SIZE);
+		config.setTilePadding(0);
+		config.setTilesetWidth(TILESET_SIZE);
+		config.setTilesetHeight(TILESET_SIZE);
+		config.setPackingAlgorithm(packingAlgorithm);
+		context = new PackingContext(config, null);
+	}
+
+	@Benchmark
+	public List<Tileset> pack(Tilesets counters) {
+		final List<TileImage> images = BenchmarkUtils.createTileImages(context, imageCount, MAX_TILES_PER_SIDE, imageCount);
+		final List<Tileset> tilesets = new ArrayList<Tileset>();
+		for (int i = 0; i < images.size(); i++) {
+			add(tilesets, images.get(i));
+		}
+		counters.tilesets = tilesets.size();
+		return tilesets;
+	}
+
+	private void add(List<Tileset> tilesets, TileImage image) {
+		for (int i = 0; i < tilesets.size(); i++) {
+			Tileset tileset = tilesets.get(i);
+			if (tileset.isFull()) {
+				continue;
+			}
+			if (tileset.add(image)) {
+				return;
+			}
+		}
+		Tileset tileset = new Tileset(context);
+		tileset.add(image);
+		tilesets.add(tileset);
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tilepacker.core.PngFilter;
+import org.tilepacker.core.PngWriter;
+
+/**
+ * Measures encoding a 4096x4096 image with {@link PngWriter} at different
+ * compression levels, filters and amounts of deflate threads. The encoded
+ * bytes are discarded so that disk speed is not measured.
+ * 
+ * @author Thomas Cashman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PngWriterBenchmark {
+	private static final int SIZE = 4096;
+	private static final int BAND_HEIGHT = 256;
+
+	@Param({ "1", "6", "9" })
+	public int compressionLevel;
+	@Param({ "ADAPTIVE", "NONE" })
+	public String filter;
+	@Param({ "1", "4" })
+	public int deflateThreads;
+
+	private final int[] pixels = new int[SIZE * SIZE];
+	private ExecutorService executorService;
+
+	@Setup
+	public void setup() {
+		// Repeated runs of pixels so that the image compresses like tile art
+		Random random = new Random(SIZE);
+		for (int i = 0; i < pixels.length; i++) {
+			if (random.nextInt(8) == 0) {
+				pixels[i] = random.nextInt();
+			} else {
+				pixels[i] = i >= SIZE ? pixels[i - SIZE] : 0;
+			}
+		}
+		executorService = deflateThreads > 1 ? Executors.newFixedThreadPool(deflateThreads) : null;
+	}
+
+	@Benchmark
+	public long encode() throws IOException {
+		CountingOutputStream outputStream = new CountingOutputStream();
+		PngWriter pngWriter = new PngWriter(outputStream, SIZE, SIZE, compressionLevel, PngFilter.fromName(filter),
+				executorService);
+		for (int y = 0; y < SIZE; y += BAND_HEIGHT) {
+			pngWriter.writeRows(pixels, y * SIZE, SIZE, BAND_HEIGHT);
+		}
+		pngWriter.finish();
+		return outputStream.count;
+	}
+
+	@TearDown
+	public void teardown() {
+		if (executorService != null) {
+			executorService.shutdownNow();
+		}
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+		private long count = 0;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
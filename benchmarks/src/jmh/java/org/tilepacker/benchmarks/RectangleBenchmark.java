@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tilepacker.core.Rectangle;
+
+/**
+ * Measures {@link Rectangle#subtract(List, Rectangle, Rectangle)} and
+ * {@link Rectangle#and(Rectangle, Rectangle)}
+ * 
+ * @author Thomas Cashman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RectangleBenchmark {
+	private final Rectangle outer = new Rectangle(0, 0, 64, 64);
+	private final Rectangle inner = new Rectangle(16, 16, 8, 8);
+	private final Rectangle corner = new Rectangle(0, 0, 8, 8);
+	private final Rectangle overlapping = new Rectangle(48, 48, 32, 32);
+	private final Rectangle disjoint = new Rectangle(128, 128, 8, 8);
+	private final List<Rectangle> result = new ArrayList<Rectangle>(4);
+
+	@Benchmark
+	public List<Rectangle> subtractInner() {
+		result.clear();
+		return Rectangle.subtract(result, outer, inner);
+	}
+
+	@Benchmark
+	public List<Rectangle> subtractCorner() {
+		result.clear();
+		return Rectangle.subtract(result, outer, corner);
+	}
+
+	@Benchmark
+	public Rectangle andOverlapping() {
+		return Rectangle.and(outer, overlapping);
+	}
+
+	@Benchmark
+	public Rectangle andDisjoint() {
+		return Rectangle.and(outer, disjoint);
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tilepacker.core.ConfigSerializer;
+import org.tilepacker.core.TileConfig;
+import org.tilepacker.core.TilePacker;
+import org.tilepacker.core.TilePackerConfig;
+
+/**
+ * Measures constructing a {@link TilePacker} over 100,000 tile files, half
+ * of which are already in config.xml. The files are empty since only
+ * their names are read on startup.
+ * 
+ * @author Thomas Cashman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class TilePackerStartupBenchmark {
+	private static final int FILE_COUNT = 100000;
+	private static final int FILES_PER_DIRECTORY = 1000;
+
+	@Param({ "1", "0" })
+	public int workerThreads;
+
+	private File directory;
+
+	@Setup
+	public void setup() throws Exception {
+		directory = new File(Files.createTempDirectory("tilepacker-benchmark").toFile(), "tiles");
+		TilePackerConfig config = new TilePackerConfig();
+		config.setWorkerThreads(workerThreads);
+		config.setOutputPath(BenchmarkUtils.OUTPUT_PATH);
+		config.setTiles(new ArrayList<TileConfig>(FILE_COUNT / 2));
+		for (int i = 0; i < FILE_COUNT; i++) {
+			String path = "directory" + (i / FILES_PER_DIRECTORY) + "/" + i + ".png";
+			File file = new File(directory, path);
+			file.getParentFile().mkdirs();
+			file.createNewFile();
+			if (i % 2 == 0) {
+				TileConfig tileConfig = new TileConfig();
+				tileConfig.setPath(path);
+				config.getTiles().add(tileConfig);
+			}
+		}
+		new ConfigSerializer().write(config, new File(directory, "config.xml"));
+	}
+
+	@Benchmark
+	public TilePacker startup() {
+		return new TilePacker(directory, false);
+	}
+
+	@TearDown
+	public void teardown() {
+		BenchmarkUtils.delete(directory.getParentFile());
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tilepacker.core.PackingContext;
+import org.tilepacker.core.TileImage;
+import org.tilepacker.core.TilePackerConfig;
+import org.tilepacker.core.Tileset;
+
+/**
+ * Measures free rectangle bookkeeping when adding images to a {@link Tileset}
+ * 
+ * @author Thomas Cashman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class TilesetAddBenchmark {
+	private static final int TILE_SIZE = 8;
+	private static final int MAX_TILES_PER_SIDE = 3;
+
+	@Param({ "100", "1000", "10000", "100000" })
+	public int tileCount;
+
+	private PackingContext context;
+
+	@Setup
+	public void setup() {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setTileWidth(TILE_SIZE);
+		config.setTileHeight(TILE_SIZE);
+		config.setTilePadding(0);
+
+		// Average image is 2x2 tiles, leave some slack so most images fit
+		int tilesPerSide = (int) Math.ceil(Math.sqrt(tileCount * 4 * 1.25));
+		config.setTilesetWidth(tilesPerSide * TILE_SIZE);
+		config.setTilesetHeight(tilesPerSide * TILE_SIZE);
+		context = new PackingContext(config, null);
+	}
+
+	@Benchmark
+	public Tileset add() {
+		final List<TileImage> images = BenchmarkUtils.createTileImages(context, tileCount, MAX_TILES_PER_SIDE, tileCount);
+		final Tileset tileset = new Tileset(context);
+		for (int i = 0; i < images.size(); i++) {
+			tileset.add(images.get(i));
+		}
+		return tileset;
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tilepacker.core.PackingContext;
+import org.tilepacker.core.TileConfig;
+import org.tilepacker.core.TileImage;
+import org.tilepacker.core.TilePackerConfig;
+import org.tilepacker.core.Tileset;
+
+/**
+ * Measures composing and encoding a full {@link Tileset}. Source images are
+ * decoded once during setup so that only {@link Tileset#save(String, String)}
+ * is measured.
+ * 
+ * @author Thomas Cashman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TilesetSaveBenchmark {
+	private static final int SOURCE_SIZE = 256;
+
+	@Param({ "8", "32" })
+	public int tileSize;
+	@Param({ "1024", "4096" })
+	public int tilesetSize;
+	@Param({ "false", "true" })
+	public boolean preventTearing;
+	@Param({ "", "0,0,0" })
+	public String backgroundColor;
+
+	private File directory;
+	private File outputFile;
+	private final List<TileImage> images = new ArrayList<TileImage>();
+	private PackingContext context;
+	private Tileset tileset;
+
+	@Setup
+	public void setup() throws Exception {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setTileWidth(tileSize);
+		config.setTileHeight(tileSize);
+		config.setTilePadding(preventTearing ? 1 : 0);
+		config.setTilesetWidth(tilesetSize);
+		config.setTilesetHeight(tilesetSize);
+		config.setBackgroundColor(backgroundColor);
+		config.setPremultiplyAlpha(false);
+		config.setPreventTearing(preventTearing);
+
+		directory = Files.createTempDirectory("tilepacker-benchmark").toFile();
+		File sourceFile = new File(directory, "source.png");
+		BenchmarkUtils.writeTileImage(sourceFile, SOURCE_SIZE, SOURCE_SIZE, new Random(tileSize));
+		outputFile = new File(directory, "tileset.png");
+		context = new PackingContext(config, directory);
+
+		TileConfig tileConfig = new TileConfig();
+		tileConfig.setPath(sourceFile.getName());
+
+		Tileset tileset = new Tileset(context);
+		while (!tileset.isFull()) {
+			TileImage image = new TileImage(context, tileConfig, sourceFile);
+			if (!tileset.add(image)) {
+				break;
+			}
+			image.loadImage();
+			images.add(image);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void fillTileset() {
+		tileset = new Tileset(context);
+		for (int i = 0; i < images.size(); i++) {
+			tileset.add(images.get(i));
+		}
+	}
+
+	@Benchmark
+	public Tileset save() throws Exception {
+		tileset.save(outputFile.getAbsolutePath(), "png");
+		return tileset;
+	}
+
+	@TearDown
+	public void teardown() {
+		BenchmarkUtils.delete(directory);
+	}
+}
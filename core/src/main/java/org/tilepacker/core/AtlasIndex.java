@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a binary index written by {@link AtlasIndexWriter}. Values are read
+ * directly from the buffer so lookups do not allocate, which makes the index
+ * suitable for memory mapping at runtime without any XML dependencies.
+ * 
+ * Paths are identified by an id from {@link #findPath(CharSequence)} and
+ * placements by their index in the placement records. Placements of a path
+ * are stored consecutively starting at {@link #getFirstPlacement(int)}.
+ * 
+ * @author Thomas Cashman
+ */
+public class AtlasIndex {
+	private static final int PATH_STRING_OFFSET = 0;
+	private static final int PATH_STRING_LENGTH = 4;
+	private static final int PATH_FIRST_PLACEMENT = 8;
+	private static final int PATH_PLACEMENT_COUNT = 12;
+
+	private static final int PLACEMENT_PATH = 0;
+	private static final int PLACEMENT_SUB_IMAGE_X = 4;
+	private static final int PLACEMENT_SUB_IMAGE_Y = 8;
+	private static final int PLACEMENT_SUB_IMAGE_WIDTH = 12;
+	private static final int PLACEMENT_SUB_IMAGE_HEIGHT = 16;
+	private static final int PLACEMENT_TILESET = 20;
+	private static final int PLACEMENT_TILESET_X = 24;
+	private static final int PLACEMENT_TILESET_Y = 28;
+	private static final int PLACEMENT_FLAGS = 32;
+
+	private final ByteBuffer buffer;
+	private final int tileWidth, tileHeight, tilePadding, cellWidth, cellHeight;
+	private final int totalPaths, totalTilesets, totalPlacements;
+	private final int pathsOffset, tilesetsOffset, placementsOffset;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param buffer
+	 *            The contents of an index file. The byte order of the buffer
+	 *            is set to little-endian.
+	 */
+	public AtlasIndex(ByteBuffer buffer) {
+		this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.getInt(0) != AtlasIndexWriter.MAGIC) {
+			throw new TilePackerException("ERROR: Not an atlas index");
+		}
+		if (buffer.getInt(4) != AtlasIndexWriter.VERSION) {
+			throw new TilePackerException("ERROR: Unsupported atlas index version " + buffer.getInt(4));
+		}
+		tileWidth = buffer.getInt(8);
+		tileHeight = buffer.getInt(12);
+		tilePadding = buffer.getInt(16);
+		cellWidth = buffer.getInt(20);
+		cellHeight = buffer.getInt(24);
+		totalPaths = buffer.getInt(28);
+		totalTilesets = buffer.getInt(32);
+		totalPlacements = buffer.getInt(36);
+
+		pathsOffset = AtlasIndexWriter.HEADER_LENGTH;
+		tilesetsOffset = pathsOffset + (totalPaths * AtlasIndexWriter.PATH_LENGTH);
+		placementsOffset = tilesetsOffset + (totalTilesets * AtlasIndexWriter.TILESET_LENGTH);
+	}
+
+	/**
+	 * Memory maps an index file
+	 * 
+	 * @param file
+	 *            The index file
+	 * @return
+	 * @throws IOException
+	 */
+	public static AtlasIndex open(File file) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			final FileChannel channel = randomAccessFile.getChannel();
+			return new AtlasIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Looks up the id of a path by binary search
+	 * 
+	 * @param path
+	 *            The path of a tile image relative to the configuration file
+	 * @return -1 if the path is not in the index
+	 */
+	public int findPath(CharSequence path) {
+		int low = 0;
+		int high = totalPaths - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int comparison = comparePath(middle, path);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Looks up the placement containing a tile of an image
+	 * 
+	 * @param pathId
+	 *            The id of the image's path
+	 * @param tileX
+	 *            The x coordinate of the tile within the image, in tiles
+	 * @param tileY
+	 *            The y coordinate of the tile within the image, in tiles
+	 * @return -1 if the tile has not been placed
+	 */
+	public int findPlacement(int pathId, int tileX, int tileY) {
+		final int firstPlacement = getFirstPlacement(pathId);
+		final int lastPlacement = firstPlacement + getPlacementCount(pathId);
+		for (int placement = firstPlacement; placement < lastPlacement; placement++) {
+			final int subImageX = getSubImageX(placement);
+			final int subImageY = getSubImageY(placement);
+			if (tileX >= subImageX && tileX < subImageX + getSubImageWidth(placement) && tileY >= subImageY
+					&& tileY < subImageY + getSubImageHeight(placement)) {
+				return placement;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the path of a tile image. Allocates a new string.
+	 */
+	public String getPath(int pathId) {
+		final int entry = pathsOffset + (pathId * AtlasIndexWriter.PATH_LENGTH);
+		return readString(buffer.getInt(entry + PATH_STRING_OFFSET), buffer.getInt(entry + PATH_STRING_LENGTH));
+	}
+
+	/**
+	 * Returns the file name of a tileset relative to the output directory.
+	 * Allocates a new string.
+	 */
+	public String getTilesetFile(int tileset) {
+		final int entry = tilesetsOffset + (tileset * AtlasIndexWriter.TILESET_LENGTH);
+		return readString(buffer.getInt(entry), buffer.getInt(entry + 4));
+	}
+
+	public int getFirstPlacement(int pathId) {
+		return buffer.getInt(pathsOffset + (pathId * AtlasIndexWriter.PATH_LENGTH) + PATH_FIRST_PLACEMENT);
+	}
+
+	public int getPlacementCount(int pathId) {
+		return buffer.getInt(pathsOffset + (pathId * AtlasIndexWriter.PATH_LENGTH) + PATH_PLACEMENT_COUNT);
+	}
+
+	public int getPathId(int placement) {
+		return getPlacementValue(placement, PLACEMENT_PATH);
+	}
+
+	public int getSubImageX(int placement) {
+		return getPlacementValue(placement, PLACEMENT_SUB_IMAGE_X);
+	}
+
+	public int getSubImageY(int placement) {
+		return getPlacementValue(placement, PLACEMENT_SUB_IMAGE_Y);
+	}
+
+	public int getSubImageWidth(int placement) {
+		return getPlacementValue(placement, PLACEMENT_SUB_IMAGE_WIDTH);
+	}
+
+	public int getSubImageHeight(int placement) {
+		return getPlacementValue(placement, PLACEMENT_SUB_IMAGE_HEIGHT);
+	}
+
+	public int getTileset(int placement) {
+		return getPlacementValue(placement, PLACEMENT_TILESET);
+	}
+
+	public int getTilesetX(int placement) {
+		return getPlacementValue(placement, PLACEMENT_TILESET_X);
+	}
+
+	public int getTilesetY(int placement) {
+		return getPlacementValue(placement, PLACEMENT_TILESET_Y);
+	}
+
+	/**
+	 * Returns if the placement is shared with an identical tile of another
+	 * image, see {@link TilePlacement#isAlias()}
+	 */
+	public boolean isAlias(int placement) {
+		return (getPlacementValue(placement, PLACEMENT_FLAGS) & AtlasIndexWriter.FLAG_ALIAS) != 0;
+	}
+
+	/**
+	 * Returns if the tiles of the placement are fully transparent and have
+	 * no tileset, see {@link TilePlacement#isEmpty()}
+	 */
+	public boolean isEmpty(int placement) {
+		return (getPlacementValue(placement, PLACEMENT_FLAGS) & AtlasIndexWriter.FLAG_EMPTY) != 0;
+	}
+
+	/**
+	 * Returns the x coordinate in pixels of the first tile of a placement
+	 * within its tileset, excluding padding
+	 */
+	public int getTilesetPixelX(int placement) {
+		return (getTilesetX(placement) * cellWidth) + tilePadding;
+	}
+
+	/**
+	 * Returns the y coordinate in pixels of the first tile of a placement
+	 * within its tileset, excluding padding
+	 */
+	public int getTilesetPixelY(int placement) {
+		return (getTilesetY(placement) * cellHeight) + tilePadding;
+	}
+
+	public int getTileWidth() {
+		return tileWidth;
+	}
+
+	public int getTileHeight() {
+		return tileHeight;
+	}
+
+	public int getTilePadding() {
+		return tilePadding;
+	}
+
+	/**
+	 * Returns the width in pixels each tile occupies in a tileset, see
+	 * {@link PackingContext#getCellWidth()}
+	 */
+	public int getCellWidth() {
+		return cellWidth;
+	}
+
+	/**
+	 * Returns the height in pixels each tile occupies in a tileset, see
+	 * {@link PackingContext#getCellHeight()}
+	 */
+	public int getCellHeight() {
+		return cellHeight;
+	}
+
+	public int getTotalPaths() {
+		return totalPaths;
+	}
+
+	public int getTotalTilesets() {
+		return totalTilesets;
+	}
+
+	public int getTotalPlacements() {
+		return totalPlacements;
+	}
+
+	private int getPlacementValue(int placement, int field) {
+		return buffer.getInt(placementsOffset + (placement * AtlasIndexWriter.PLACEMENT_LENGTH) + field);
+	}
+
+	/**
+	 * Compares a stored path with a path in the same order as
+	 * {@link String#compareTo(String)}, decoding UTF-8 one character at a
+	 * time
+	 */
+	private int comparePath(int pathId, CharSequence path) {
+		final int entry = pathsOffset + (pathId * AtlasIndexWriter.PATH_LENGTH);
+		int offset = buffer.getInt(entry + PATH_STRING_OFFSET);
+		final int end = offset + buffer.getInt(entry + PATH_STRING_LENGTH);
+		int index = 0;
+		while (offset < end) {
+			final int first = buffer.get(offset) & 0xFF;
+			final int codePoint;
+			if (first < 0x80) {
+				codePoint = first;
+				offset += 1;
+			} else if (first < 0xE0) {
+				codePoint = ((first & 0x1F) << 6) | (buffer.get(offset + 1) & 0x3F);
+				offset += 2;
+			} else if (first < 0xF0) {
+				codePoint = ((first & 0x0F) << 12) | ((buffer.get(offset + 1) & 0x3F) << 6)
+						| (buffer.get(offset + 2) & 0x3F);
+				offset += 3;
+			} else {
+				codePoint = ((first & 0x07) << 18) | ((buffer.get(offset + 1) & 0x3F) << 12)
+						| ((buffer.get(offset + 2) & 0x3F) << 6) | (buffer.get(offset + 3) & 0x3F);
+				offset += 4;
+			}
+
+			if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+				final int comparison = compareChar(Character.highSurrogate(codePoint), path, index++);
+				if (comparison != 0) {
+					return comparison;
+				}
+				final int lowComparison = compareChar(Character.lowSurrogate(codePoint), path, index++);
+				if (lowComparison != 0) {
+					return lowComparison;
+				}
+			} else {
+				final int comparison = compareChar((char) codePoint, path, index++);
+				if (comparison != 0) {
+					return comparison;
+				}
+			}
+		}
+		return index - path.length();
+	}
+
+	private static int compareChar(char c, CharSequence path, int index) {
+		if (index >= path.length()) {
+			return 1;
+		}
+		return c - path.charAt(index);
+	}
+
+	private String readString(int offset, int length) {
+		final byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(offset + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
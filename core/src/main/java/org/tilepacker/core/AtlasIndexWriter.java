@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes the placements of a packing run as a binary index that can be
+ * read by {@link AtlasIndex} without parsing XML.
+ * 
+ * All values are little-endian 32-bit integers. The file consists of a
+ * header followed by the path table, the tileset table, the placement
+ * records and finally the UTF-8 strings referenced by the tables:
+ * 
+ * <pre>
+ * header      magic "TPAI", version, tile width, tile height, tile padding,
+ *             cell width, cell height, path count, tileset count,
+ *             placement count
+ * path        string offset, string length, first placement, placement count
+ * tileset     string offset, string length
+ * placement   path id, sub image x, sub image y, sub image width,
+ *             sub image height, tileset, tileset x, tileset y, flags
+ * </pre>
+ * 
+ * Paths are sorted by {@link String#compareTo(String)} so they can be
+ * binary searched, and a path's id is its position in the path table. The
+ * placements of each path are stored together in the order they appear in
+ * the configuration. Sub image and tileset positions are in tiles, a
+ * tile's pixel position is its tileset position multiplied by the cell size
+ * plus the padding. Flags are 0x1 for alias placements and 0x2 for empty
+ * placements, which have a tileset position of -1.
+ * 
+ * @author Thomas Cashman
+ */
+public class AtlasIndexWriter {
+	public static final String FILENAME = "atlas.idx";
+
+	static final int MAGIC = 0x49415054;
+	static final int VERSION = 2;
+	static final int HEADER_LENGTH = 10 * 4;
+	static final int PATH_LENGTH = 4 * 4;
+	static final int TILESET_LENGTH = 2 * 4;
+	static final int PLACEMENT_LENGTH = 9 * 4;
+	static final int FLAG_ALIAS = 0x1;
+	static final int FLAG_EMPTY = 0x2;
+
+	/**
+	 * Writes the index of a packing run
+	 * 
+	 * @param config
+	 *            The configuration containing the placements of every tile
+	 * @param context
+	 *            The settings the tiles were packed with
+	 * @param file
+	 *            The file to write to
+	 * @throws IOException
+	 */
+	public static void write(TilePackerConfig config, PackingContext context, File file) throws IOException {
+		Files.write(file.toPath(), toBytes(config, context));
+	}
+
+	static byte[] toBytes(TilePackerConfig config, PackingContext context) {
+		final List<TileConfig> tiles = new ArrayList<TileConfig>(config.getTiles());
+		Collections.sort(tiles, new Comparator<TileConfig>() {
+			@Override
+			public int compare(TileConfig o1, TileConfig o2) {
+				return o1.getPath().compareTo(o2.getPath());
+			}
+		});
+
+		int totalPlacements = 0;
+		int totalTilesets = 0;
+		for (TileConfig tileConfig : tiles) {
+			for (TilePlacement placement : tileConfig.getPlacement()) {
+				totalPlacements++;
+				if (!placement.isEmpty()) {
+					totalTilesets = Math.max(totalTilesets, placement.getTileset() + 1);
+				}
+			}
+		}
+		final byte[][] paths = new byte[tiles.size()][];
+		int stringsLength = 0;
+		for (int i = 0; i < tiles.size(); i++) {
+			paths[i] = tiles.get(i).getPath().getBytes(StandardCharsets.UTF_8);
+			stringsLength += paths[i].length;
+		}
+		final byte[][] tilesetFiles = new byte[totalTilesets][];
+		for (int i = 0; i < totalTilesets; i++) {
+			tilesetFiles[i] = getTilesetFile(config, context, i).getBytes(StandardCharsets.UTF_8);
+			stringsLength += tilesetFiles[i].length;
+		}
+
+		final int stringsOffset = HEADER_LENGTH + (tiles.size() * PATH_LENGTH) + (totalTilesets * TILESET_LENGTH)
+				+ (totalPlacements * PLACEMENT_LENGTH);
+		final ByteBuffer buffer = ByteBuffer.allocate(stringsOffset + stringsLength).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(context.getTileWidth());
+		buffer.putInt(context.getTileHeight());
+		buffer.putInt(context.getTilePadding());
+		buffer.putInt(context.getCellWidth());
+		buffer.putInt(context.getCellHeight());
+		buffer.putInt(tiles.size());
+		buffer.putInt(totalTilesets);
+		buffer.putInt(totalPlacements);
+
+		int stringOffset = stringsOffset;
+		int firstPlacement = 0;
+		for (int i = 0; i < tiles.size(); i++) {
+			final int placements = tiles.get(i).getPlacement().size();
+			buffer.putInt(stringOffset);
+			buffer.putInt(paths[i].length);
+			buffer.putInt(firstPlacement);
+			buffer.putInt(placements);
+			stringOffset += paths[i].length;
+			firstPlacement += placements;
+		}
+		for (int i = 0; i < totalTilesets; i++) {
+			buffer.putInt(stringOffset);
+			buffer.putInt(tilesetFiles[i].length);
+			stringOffset += tilesetFiles[i].length;
+		}
+		for (int i = 0; i < tiles.size(); i++) {
+			for (TilePlacement placement : tiles.get(i).getPlacement()) {
+				buffer.putInt(i);
+				buffer.putInt(placement.getSubImageX());
+				buffer.putInt(placement.getSubImageY());
+				buffer.putInt(placement.getSubImageWidth());
+				buffer.putInt(placement.getSubImageHeight());
+				buffer.putInt(placement.getTileset());
+				buffer.putInt(placement.getTilesetX());
+				buffer.putInt(placement.getTilesetY());
+				buffer.putInt((placement.isAlias() ? FLAG_ALIAS : 0) | (placement.isEmpty() ? FLAG_EMPTY : 0));
+			}
+		}
+		for (int i = 0; i < paths.length; i++) {
+			buffer.put(paths[i]);
+		}
+		for (int i = 0; i < tilesetFiles.length; i++) {
+			buffer.put(tilesetFiles[i]);
+		}
+		return buffer.array();
+	}
+
+	private static String getTilesetFile(TilePackerConfig config, PackingContext context, int tilesetIndex) {
+		for (TilesetConfig tilesetConfig : config.getTilesets()) {
+			if (tilesetConfig.getIndex() == tilesetIndex && tilesetConfig.getFile() != null) {
+				return tilesetConfig.getFile();
+			}
+		}
+		return tilesetIndex + "." + context.getOutputFormat().toLowerCase();
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Base class of {@link ImageEncoder}s for GPU texture formats that compress
+ * each 4x4 block of pixels independently.
+ * 
+ * Rows are collected into block rows of 4 pixel rows. When an
+ * {@link ExecutorService} is provided the blocks of each band are compressed
+ * concurrently. Each block is compressed independently so the output does
+ * not depend on the amount of threads.
+ * 
+ * Blocks beyond the right or bottom edge of an image whose size is not a
+ * multiple of 4 repeat the edge pixels.
+ * 
+ * @author Thomas Cashman
+ */
+public abstract class BlockCompressedWriter implements ImageEncoder {
+	public static final int BLOCK_SIZE = 4;
+
+	protected static final int PIXELS_PER_BLOCK = BLOCK_SIZE * BLOCK_SIZE;
+	private static final int BUFFERED_BLOCK_ROWS = 64;
+	private static final int MIN_BLOCKS_PER_TASK = 1024;
+
+	protected final OutputStream outputStream;
+	private final int width, height;
+	private final int bytesPerBlock;
+	private final int widthInBlocks, heightInBlocks;
+	private final ExecutorService executorService;
+
+	private final int[] bufferedPixels;
+	private final byte[] compressedBlocks;
+	private int bufferedRows = 0;
+	private int rowsWritten = 0;
+
+	/**
+	 * Constructor. Subclasses write their header after calling this.
+	 * 
+	 * @param outputStream
+	 *            The stream to write to, this is not closed by the writer
+	 * @param width
+	 *            The image width in pixels
+	 * @param height
+	 *            The image height in pixels
+	 * @param bytesPerBlock
+	 *            The size of each compressed block
+	 * @param executorService
+	 *            The threads to compress blocks on, null to compress on the
+	 *            calling thread
+	 */
+	protected BlockCompressedWriter(OutputStream outputStream, int width, int height, int bytesPerBlock,
+			ExecutorService executorService) {
+		this.outputStream = outputStream;
+		this.width = width;
+		this.height = height;
+		this.bytesPerBlock = bytesPerBlock;
+		this.executorService = executorService;
+
+		widthInBlocks = (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		heightInBlocks = (height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		final int bufferedBlockRows = Math.min(BUFFERED_BLOCK_ROWS, heightInBlocks);
+		bufferedPixels = new int[width * bufferedBlockRows * BLOCK_SIZE];
+		compressedBlocks = new byte[widthInBlocks * bufferedBlockRows * bytesPerBlock];
+	}
+
+	/**
+	 * Compresses a block of pixels
+	 * 
+	 * @param block
+	 *            16 pixels in {@link java.awt.image.BufferedImage#TYPE_INT_ARGB}
+	 *            format, row by row
+	 * @param result
+	 *            The array to write the compressed block to
+	 * @param offset
+	 *            The index to write the compressed block at
+	 */
+	protected abstract void compressBlock(int[] block, byte[] result, int offset);
+
+	@Override
+	public void writeRows(int[] pixels, int offset, int scanlineStride, int rows) throws IOException {
+		if (rowsWritten + rows > height) {
+			throw new IllegalArgumentException("Cannot write more than " + height + " rows");
+		}
+		final int bufferHeight = bufferedPixels.length / width;
+		for (int row = 0; row < rows; row++) {
+			System.arraycopy(pixels, offset + (row * scanlineStride), bufferedPixels, bufferedRows * width, width);
+			bufferedRows++;
+			rowsWritten++;
+			if (bufferedRows == bufferHeight) {
+				writeBufferedBlocks();
+			}
+		}
+	}
+
+	@Override
+	public void finish() throws IOException {
+		if (rowsWritten != height) {
+			throw new IllegalStateException("Only " + rowsWritten + " of " + height + " rows were written");
+		}
+		if (bufferedRows > 0) {
+			writeBufferedBlocks();
+		}
+		outputStream.flush();
+	}
+
+	/**
+	 * Returns the size of the compressed image without any header
+	 * @return
+	 */
+	protected int getCompressedLength() {
+		return widthInBlocks * heightInBlocks * bytesPerBlock;
+	}
+
+	private void writeBufferedBlocks() throws IOException {
+		// Repeat the last row to complete the last block row
+		while (bufferedRows % BLOCK_SIZE != 0) {
+			System.arraycopy(bufferedPixels, (bufferedRows - 1) * width, bufferedPixels, bufferedRows * width, width);
+			bufferedRows++;
+		}
+		final int totalBlocks = (bufferedRows / BLOCK_SIZE) * widthInBlocks;
+
+		if (executorService == null) {
+			compressBlocks(0, totalBlocks);
+		} else {
+			final int blocksPerTask = Math.max(MIN_BLOCKS_PER_TASK, widthInBlocks);
+			final List<Future<Void>> tasks = new ArrayList<Future<Void>>();
+			for (int block = 0; block < totalBlocks; block += blocksPerTask) {
+				tasks.add(executorService.submit(new BlockCompressor(block, Math.min(totalBlocks, block + blocksPerTask))));
+			}
+			for (Future<Void> task : tasks) {
+				try {
+					task.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while compressing blocks", e);
+				} catch (ExecutionException e) {
+					throw new IOException("Error compressing blocks", e.getCause());
+				}
+			}
+		}
+		outputStream.write(compressedBlocks, 0, totalBlocks * bytesPerBlock);
+		bufferedRows = 0;
+	}
+
+	private void compressBlocks(int fromBlock, int toBlock) {
+		final int[] block = new int[PIXELS_PER_BLOCK];
+		for (int i = fromBlock; i < toBlock; i++) {
+			final int blockX = (i % widthInBlocks) * BLOCK_SIZE;
+			final int blockY = (i / widthInBlocks) * BLOCK_SIZE;
+			for (int y = 0; y < BLOCK_SIZE; y++) {
+				final int rowOffset = (blockY + y) * width;
+				for (int x = 0; x < BLOCK_SIZE; x++) {
+					block[(y * BLOCK_SIZE) + x] = bufferedPixels[rowOffset + Math.min(width - 1, blockX + x)];
+				}
+			}
+			compressBlock(block, compressedBlocks, i * bytesPerBlock);
+		}
+	}
+
+	/**
+	 * Compresses a range of the buffered blocks
+	 */
+	private class BlockCompressor implements Callable<Void> {
+		private final int fromBlock, toBlock;
+
+		public BlockCompressor(int fromBlock, int toBlock) {
+			this.fromBlock = fromBlock;
+			this.toBlock = toBlock;
+		}
+
+		@Override
+		public Void call() throws Exception {
+			compressBlocks(fromBlock, toBlock);
+			return null;
+		}
+	}
+}
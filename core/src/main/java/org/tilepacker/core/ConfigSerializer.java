@@ -0,0 +1,515 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Reads and writes {@link TilePackerConfig} as XML in the same schema as
+ * the Simple XML annotations, using StAX instead of reflection. Files
+ * written by either can be read by the other.
+ * 
+ * To keep large configurations small, placement and tileset values that
+ * are equal to their defaults are not written.
+ * 
+ * @author Thomas Cashman
+ */
+public class ConfigSerializer {
+	private static final String[] INDENTS = { "\n", "\n   ", "\n      ", "\n         ", "\n            ",
+			"\n               " };
+
+	private final XMLInputFactory inputFactory;
+	private final XMLOutputFactory outputFactory;
+
+	/**
+	 * Constructor
+	 */
+	public ConfigSerializer() {
+		inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		outputFactory = XMLOutputFactory.newInstance();
+	}
+
+	public TilePackerConfig read(File file) throws IOException {
+		try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+			return read(inputStream);
+		}
+	}
+
+	public TilePackerConfig read(InputStream inputStream) throws IOException {
+		try {
+			final XMLStreamReader reader = inputFactory.createXMLStreamReader(inputStream);
+			try {
+				reader.nextTag();
+				expectElement(reader, "tilePackerConfig");
+				return readConfig(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Error parsing configuration", e);
+		}
+	}
+
+	public void write(TilePackerConfig config, File file) throws IOException {
+		try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file))) {
+			write(config, outputStream);
+		}
+	}
+
+	public void write(TilePackerConfig config, OutputStream outputStream) throws IOException {
+		try {
+			final XMLStreamWriter writer = outputFactory.createXMLStreamWriter(
+					new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+			writer.writeStartElement("tilePackerConfig");
+			writeElement(writer, 1, "tileWidth", config.getTileWidth());
+			writeElement(writer, 1, "tileHeight", config.getTileHeight());
+			writeElement(writer, 1, "tilesetWidth", config.getTilesetWidth());
+			writeElement(writer, 1, "tilesetHeight", config.getTilesetHeight());
+			writeElement(writer, 1, "tilePadding", config.getTilePadding());
+			writeElement(writer, 1, "groupTilesByDirectory", config.isGroupTilesByDirectory());
+			writeElement(writer, 1, "outputFormat", config.getOutputFormat());
+			writeElement(writer, 1, "outputPath", config.getOutputPath());
+			writeElement(writer, 1, "preventTearing", config.isPreventTearing());
+			writeElement(writer, 1, "premultiplyAlpha", config.isPremultiplyAlpha());
+			writeElement(writer, 1, "backgroundColor", config.getBackgroundColor());
+			writeElement(writer, 1, "workerThreads", config.getWorkerThreads());
+			writeElement(writer, 1, "packingAlgorithm", config.getPackingAlgorithm());
+			writeElement(writer, 1, "packingOrder", config.getPackingOrder());
+			writeElement(writer, 1, "packingSearchRounds", config.getPackingSearchRounds());
+			writeElement(writer, 1, "packingSearchChains", config.getPackingSearchChains());
+			writeElement(writer, 1, "packingTimeBudgetMillis", String.valueOf(config.getPackingTimeBudgetMillis()));
+			writeElement(writer, 1, "packingSeed", String.valueOf(config.getPackingSeed()));
+			writeElement(writer, 1, "imageSplitting", config.getImageSplitting());
+			writeElement(writer, 1, "deduplicateTiles", config.isDeduplicateTiles());
+			writeElement(writer, 1, "trimTransparentTiles", config.isTrimTransparentTiles());
+			writeElement(writer, 1, "incremental", config.isIncremental());
+			writeElement(writer, 1, "imageCacheMegabytes", config.getImageCacheMegabytes());
+			writeElement(writer, 1, "contentHashNames", config.isContentHashNames());
+			writeElement(writer, 1, "pngCompressionLevel", config.getPngCompressionLevel());
+			writeElement(writer, 1, "pngFilter", config.getPngFilter());
+			writeElement(writer, 1, "encoderThreads", config.getEncoderThreads());
+			writeElement(writer, 1, "jpegQuality", config.getJpegQuality());
+			writeElement(writer, 1, "jpegChromaSubsampling", config.getJpegChromaSubsampling());
+			writeElement(writer, 1, "ddsCompression", config.getDdsCompression());
+			writeElement(writer, 1, "ktxCompression", config.getKtxCompression());
+			writeElement(writer, 1, "atlasIndex", config.isAtlasIndex());
+			writeElement(writer, 1, "metricsFile", config.getMetricsFile());
+
+			writeStartElement(writer, 1, "tiles");
+			for (TileConfig tileConfig : config.getTiles()) {
+				writeTileConfig(writer, tileConfig);
+			}
+			writeEndElement(writer, 1, !config.getTiles().isEmpty());
+
+			if (!config.getTilesets().isEmpty()) {
+				writeStartElement(writer, 1, "tilesets");
+				for (TilesetConfig tilesetConfig : config.getTilesets()) {
+					writeTilesetConfig(writer, tilesetConfig);
+				}
+				writeEndElement(writer, 1, true);
+			}
+			writeEndElement(writer, 0, true);
+			writer.writeEndDocument();
+			writer.flush();
+			writer.close();
+		} catch (XMLStreamException e) {
+			throw new IOException("Error writing configuration", e);
+		}
+		outputStream.flush();
+	}
+
+	private TilePackerConfig readConfig(XMLStreamReader reader) throws XMLStreamException {
+		final TilePackerConfig config = new TilePackerConfig();
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			final String name = reader.getLocalName();
+			switch (name) {
+			case "tiles":
+				final List<TileConfig> tiles = new ArrayList<TileConfig>();
+				while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					expectElement(reader, "tileConfig");
+					tiles.add(readTileConfig(reader));
+				}
+				config.setTiles(tiles);
+				continue;
+			case "tilesets":
+				final List<TilesetConfig> tilesets = new ArrayList<TilesetConfig>();
+				while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					expectElement(reader, "tilesetConfig");
+					tilesets.add(readTilesetConfig(reader));
+				}
+				config.setTilesets(tilesets);
+				continue;
+			}
+
+			final String value = reader.getElementText();
+			switch (name) {
+			case "tileWidth":
+				config.setTileWidth(parseInt(value));
+				break;
+			case "tileHeight":
+				config.setTileHeight(parseInt(value));
+				break;
+			case "tilesetWidth":
+				config.setTilesetWidth(parseInt(value));
+				break;
+			case "tilesetHeight":
+				config.setTilesetHeight(parseInt(value));
+				break;
+			case "tilePadding":
+				config.setTilePadding(parseInt(value));
+				break;
+			case "groupTilesByDirectory":
+				config.setGroupTilesByDirectory(parseBoolean(value));
+				break;
+			case "outputFormat":
+				config.setOutputFormat(value);
+				break;
+			case "outputPath":
+				config.setOutputPath(value);
+				break;
+			case "preventTearing":
+				config.setPreventTearing(parseBoolean(value));
+				break;
+			case "premultiplyAlpha":
+				config.setPremultiplyAlpha(parseBoolean(value));
+				break;
+			case "backgroundColor":
+				config.setBackgroundColor(value);
+				break;
+			case "workerThreads":
+				config.setWorkerThreads(parseInt(value));
+				break;
+			case "packingAlgorithm":
+				config.setPackingAlgorithm(value);
+				break;
+			case "packingOrder":
+				config.setPackingOrder(value);
+				break;
+			case "packingSearchRounds":
+				config.setPackingSearchRounds(parseInt(value));
+				break;
+			case "packingSearchChains":
+				config.setPackingSearchChains(parseInt(value));
+				break;
+			case "packingTimeBudgetMillis":
+				config.setPackingTimeBudgetMillis(parseLong(value));
+				break;
+			case "packingSeed":
+				config.setPackingSeed(parseLong(value));
+				break;
+			case "imageSplitting":
+				config.setImageSplitting(value);
+				break;
+			case "deduplicateTiles":
+				config.setDeduplicateTiles(parseBoolean(value));
+				break;
+			case "trimTransparentTiles":
+				config.setTrimTransparentTiles(parseBoolean(value));
+				break;
+			case "incremental":
+				config.setIncremental(parseBoolean(value));
+				break;
+			case "imageCacheMegabytes":
+				config.setImageCacheMegabytes(parseInt(value));
+				break;
+			case "contentHashNames":
+				config.setContentHashNames(parseBoolean(value));
+				break;
+			case "pngCompressionLevel":
+				config.setPngCompressionLevel(parseInt(value));
+				break;
+			case "pngFilter":
+				config.setPngFilter(value);
+				break;
+			case "encoderThreads":
+				config.setEncoderThreads(parseInt(value));
+				break;
+			case "jpegQuality":
+				config.setJpegQuality(parseInt(value));
+				break;
+			case "jpegChromaSubsampling":
+				config.setJpegChromaSubsampling(value);
+				break;
+			case "ddsCompression":
+				config.setDdsCompression(value);
+				break;
+			case "ktxCompression":
+				config.setKtxCompression(value);
+				break;
+			case "atlasIndex":
+				config.setAtlasIndex(parseBoolean(value));
+				break;
+			case "metricsFile":
+				config.setMetricsFile(value);
+				break;
+			default:
+				throw unknownElement(reader, name);
+			}
+		}
+		return config;
+	}
+
+	private TileConfig readTileConfig(XMLStreamReader reader) throws XMLStreamException {
+		final TileConfig tileConfig = new TileConfig();
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			final String name = reader.getLocalName();
+			switch (name) {
+			case "path":
+				tileConfig.setPath(reader.getElementText());
+				break;
+			case "placement":
+				final List<TilePlacement> placements = new ArrayList<TilePlacement>();
+				while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					expectElement(reader, "tilePlacement");
+					placements.add(readTilePlacement(reader));
+				}
+				tileConfig.setPlacement(placements);
+				break;
+			case "hash":
+				tileConfig.setHash(parseLong(reader.getElementText()));
+				break;
+			case "lastModified":
+				tileConfig.setLastModified(parseLong(reader.getElementText()));
+				break;
+			default:
+				throw unknownElement(reader, name);
+			}
+		}
+		if (tileConfig.getPath() == null) {
+			throw new XMLStreamException("Missing path element", reader.getLocation());
+		}
+		return tileConfig;
+	}
+
+	private TilePlacement readTilePlacement(XMLStreamReader reader) throws XMLStreamException {
+		final TilePlacement placement = new TilePlacement();
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			final String name = reader.getLocalName();
+			final String value = reader.getElementText();
+			switch (name) {
+			case "tileset":
+				placement.setTileset(parseInt(value));
+				break;
+			case "tilesetX":
+				placement.setTilesetX(parseInt(value));
+				break;
+			case "tilesetY":
+				placement.setTilesetY(parseInt(value));
+				break;
+			case "subImageX":
+				placement.setSubImageX(parseInt(value));
+				break;
+			case "subImageY":
+				placement.setSubImageY(parseInt(value));
+				break;
+			case "subImageWidth":
+				placement.setSubImageWidth(parseInt(value));
+				break;
+			case "subImageHeight":
+				placement.setSubImageHeight(parseInt(value));
+				break;
+			case "alias":
+				placement.setAlias(parseBoolean(value));
+				break;
+			case "empty":
+				placement.setEmpty(parseBoolean(value));
+				break;
+			case "canonicalPath":
+				placement.setCanonicalPath(value);
+				break;
+			case "canonicalHash":
+				placement.setCanonicalHash(parseLong(value));
+				break;
+			default:
+				throw unknownElement(reader, name);
+			}
+		}
+		return placement;
+	}
+
+	private TilesetConfig readTilesetConfig(XMLStreamReader reader) throws XMLStreamException {
+		final TilesetConfig tilesetConfig = new TilesetConfig();
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			final String name = reader.getLocalName();
+			final String value = reader.getElementText();
+			switch (name) {
+			case "index":
+				tilesetConfig.setIndex(parseInt(value));
+				break;
+			case "signature":
+				tilesetConfig.setSignature(parseLong(value));
+				break;
+			case "lastModified":
+				tilesetConfig.setLastModified(parseLong(value));
+				break;
+			case "file":
+				tilesetConfig.setFile(value);
+				break;
+			default:
+				throw unknownElement(reader, name);
+			}
+		}
+		return tilesetConfig;
+	}
+
+	private void writeTileConfig(XMLStreamWriter writer, TileConfig tileConfig) throws XMLStreamException {
+		writeStartElement(writer, 2, "tileConfig");
+		writeElement(writer, 3, "path", tileConfig.getPath());
+		if (!tileConfig.getPlacement().isEmpty()) {
+			writeStartElement(writer, 3, "placement");
+			for (TilePlacement placement : tileConfig.getPlacement()) {
+				writeStartElement(writer, 4, "tilePlacement");
+				if (placement.getTileset() != 0) {
+					writeElement(writer, 5, "tileset", placement.getTileset());
+				}
+				writeElement(writer, 5, "tilesetX", placement.getTilesetX());
+				writeElement(writer, 5, "tilesetY", placement.getTilesetY());
+				if (placement.getSubImageX() != 0) {
+					writeElement(writer, 5, "subImageX", placement.getSubImageX());
+				}
+				if (placement.getSubImageY() != 0) {
+					writeElement(writer, 5, "subImageY", placement.getSubImageY());
+				}
+				writeElement(writer, 5, "subImageWidth", placement.getSubImageWidth());
+				writeElement(writer, 5, "subImageHeight", placement.getSubImageHeight());
+				if (placement.isAlias()) {
+					writeElement(writer, 5, "alias", true);
+				}
+				if (placement.getCanonicalPath() != null) {
+					writeElement(writer, 5, "canonicalPath", placement.getCanonicalPath());
+					writeElement(writer, 5, "canonicalHash", String.valueOf(placement.getCanonicalHash()));
+				}
+				if (placement.isEmpty()) {
+					writeElement(writer, 5, "empty", true);
+				}
+				writeEndElement(writer, 4, true);
+			}
+			writeEndElement(writer, 3, true);
+		}
+		if (tileConfig.getHash() != 0) {
+			writeElement(writer, 3, "hash", String.valueOf(tileConfig.getHash()));
+		}
+		if (tileConfig.getLastModified() != 0) {
+			writeElement(writer, 3, "lastModified", String.valueOf(tileConfig.getLastModified()));
+		}
+		writeEndElement(writer, 2, true);
+	}
+
+	private void writeTilesetConfig(XMLStreamWriter writer, TilesetConfig tilesetConfig) throws XMLStreamException {
+		writeStartElement(writer, 2, "tilesetConfig");
+		writeElement(writer, 3, "index", tilesetConfig.getIndex());
+		writeElement(writer, 3, "signature", String.valueOf(tilesetConfig.getSignature()));
+		if (tilesetConfig.getLastModified() != 0) {
+			writeElement(writer, 3, "lastModified", String.valueOf(tilesetConfig.getLastModified()));
+		}
+		writeElement(writer, 3, "file", tilesetConfig.getFile());
+		writeEndElement(writer, 2, true);
+	}
+
+	private static void writeStartElement(XMLStreamWriter writer, int depth, String name) throws XMLStreamException {
+		writeIndent(writer, depth);
+		writer.writeStartElement(name);
+	}
+
+	private static void writeEndElement(XMLStreamWriter writer, int depth, boolean hasChildren)
+			throws XMLStreamException {
+		if (hasChildren) {
+			writeIndent(writer, depth);
+		}
+		writer.writeEndElement();
+	}
+
+	private static void writeElement(XMLStreamWriter writer, int depth, String name, int value)
+			throws XMLStreamException {
+		writeElement(writer, depth, name, String.valueOf(value));
+	}
+
+	private static void writeElement(XMLStreamWriter writer, int depth, String name, boolean value)
+			throws XMLStreamException {
+		writeElement(writer, depth, name, String.valueOf(value));
+	}
+
+	/**
+	 * Writes an element containing text, null values are not written
+	 */
+	private static void writeElement(XMLStreamWriter writer, int depth, String name, String value)
+			throws XMLStreamException {
+		if (value == null) {
+			return;
+		}
+		writeStartElement(writer, depth, name);
+		writer.writeCharacters(value);
+		writer.writeEndElement();
+	}
+
+	private static void writeIndent(XMLStreamWriter writer, int depth) throws XMLStreamException {
+		writer.writeCharacters(INDENTS[depth]);
+	}
+
+	private static void expectElement(XMLStreamReader reader, String name) throws XMLStreamException {
+		if (!reader.getLocalName().equals(name)) {
+			throw unknownElement(reader, reader.getLocalName());
+		}
+	}
+
+	private static XMLStreamException unknownElement(XMLStreamReader reader, String name) {
+		return new XMLStreamException("Unknown element " + name, reader.getLocation());
+	}
+
+	private static int parseInt(String value) {
+		return Integer.parseInt(value.trim());
+	}
+
+	private static long parseLong(String value) {
+		return Long.parseLong(value.trim());
+	}
+
+	private static boolean parseBoolean(String value) {
+		return Boolean.parseBoolean(value.trim());
+	}
+}
@@ -0,0 +1,370 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Writes DDS textures compressed with BC1 (DXT1) or BC3 (DXT5) so that
+ * tilesets can be uploaded to desktop GPUs without being decoded first. Most
+ * mobile GPUs cannot sample these formats, see {@link KtxWriter} for ETC2.
+ * 
+ * @author Thomas Cashman
+ */
+public class DdsWriter extends BlockCompressedWriter {
+	public static final String DEFAULT_COMPRESSION = "bc3";
+
+	private static final int POWER_ITERATIONS = 8;
+
+	private static final int DDSD_CAPS = 0x1;
+	private static final int DDSD_HEIGHT = 0x2;
+	private static final int DDSD_WIDTH = 0x4;
+	private static final int DDSD_PIXELFORMAT = 0x1000;
+	private static final int DDSD_LINEARSIZE = 0x80000;
+	private static final int DDPF_FOURCC = 0x4;
+	private static final int DDSCAPS_TEXTURE = 0x1000;
+
+	private final boolean alphaBlock;
+
+	/**
+	 * Constructor. Writes the DDS header immediately.
+	 * 
+	 * @param outputStream
+	 *            The stream to write to, this is not closed by the writer
+	 * @param width
+	 *            The image width in pixels
+	 * @param height
+	 *            The image height in pixels
+	 * @param compression
+	 *            bc1 for opaque or 1-bit alpha images, bc3 for images with
+	 *            smooth alpha
+	 * @param executorService
+	 *            The threads to compress blocks on, null to compress on the
+	 *            calling thread
+	 * @throws IOException
+	 */
+	public DdsWriter(OutputStream outputStream, int width, int height, String compression,
+			ExecutorService executorService) throws IOException {
+		super(outputStream, width, height, getBytesPerBlock(compression), executorService);
+		alphaBlock = "bc3".equalsIgnoreCase(compression);
+
+		final byte[] header = new byte[128];
+		writeInt(header, 0, 0x20534444);
+		writeInt(header, 4, 124);
+		writeInt(header, 8, DDSD_CAPS | DDSD_HEIGHT | DDSD_WIDTH | DDSD_PIXELFORMAT | DDSD_LINEARSIZE);
+		writeInt(header, 12, height);
+		writeInt(header, 16, width);
+		writeInt(header, 20, getCompressedLength());
+		// Pixel format
+		writeInt(header, 76, 32);
+		writeInt(header, 80, DDPF_FOURCC);
+		writeInt(header, 84, alphaBlock ? 0x35545844 : 0x31545844);
+		writeInt(header, 108, DDSCAPS_TEXTURE);
+		outputStream.write(header);
+	}
+
+	private static int getBytesPerBlock(String compression) {
+		switch (compression.toLowerCase()) {
+		case "bc1":
+			return 8;
+		case "bc3":
+			return 16;
+		default:
+			throw new IllegalArgumentException("Unsupported DDS compression " + compression);
+		}
+	}
+
+	@Override
+	protected void compressBlock(int[] block, byte[] result, int offset) {
+		if (alphaBlock) {
+			compressAlphaBlock(block, result, offset);
+			compressColorBlock(block, false, result, offset + 8);
+		} else {
+			compressColorBlock(block, true, result, offset);
+		}
+	}
+
+	/**
+	 * Compresses the colors of a block into 8 bytes. The endpoints are fitted
+	 * along the principal axis of the block's colors.
+	 * 
+	 * @param block
+	 *            16 pixels in {@link java.awt.image.BufferedImage#TYPE_INT_ARGB}
+	 *            format
+	 * @param oneBitAlpha
+	 *            True to use BC1 3 color mode for blocks containing pixels
+	 *            with alpha below 128
+	 */
+	static void compressColorBlock(int[] block, boolean oneBitAlpha, byte[] result, int offset) {
+		boolean transparentPixels = false;
+		boolean visiblePixels = false;
+		for (int i = 0; i < PIXELS_PER_BLOCK; i++) {
+			if (isTransparent(block[i], oneBitAlpha)) {
+				transparentPixels = true;
+			} else {
+				visiblePixels = true;
+			}
+		}
+		if (!visiblePixels) {
+			if (oneBitAlpha) {
+				// 3 color mode with every pixel transparent
+				writeColorBlock(result, offset, 0, 0, 0xFFFFFFFF);
+			} else {
+				writeColorBlock(result, offset, 0, 0, 0);
+			}
+			return;
+		}
+		final boolean threeColorMode = oneBitAlpha && transparentPixels;
+
+		// Fit a line through the colors of the visible pixels
+		double meanRed = 0, meanGreen = 0, meanBlue = 0;
+		int count = 0;
+		for (int i = 0; i < PIXELS_PER_BLOCK; i++) {
+			if (isTransparent(block[i], oneBitAlpha)) {
+				continue;
+			}
+			meanRed += (block[i] >> 16) & 0xFF;
+			meanGreen += (block[i] >> 8) & 0xFF;
+			meanBlue += block[i] & 0xFF;
+			count++;
+		}
+		meanRed /= count;
+		meanGreen /= count;
+		meanBlue /= count;
+
+		double rr = 0, rg = 0, rb = 0, gg = 0, gb = 0, bb = 0;
+		for (int i = 0; i < PIXELS_PER_BLOCK; i++) {
+			if (isTransparent(block[i], oneBitAlpha)) {
+				continue;
+			}
+			final double red = ((block[i] >> 16) & 0xFF) - meanRed;
+			final double green = ((block[i] >> 8) & 0xFF) - meanGreen;
+			final double blue = (block[i] & 0xFF) - meanBlue;
+			rr += red * red;
+			rg += red * green;
+			rb += red * blue;
+			gg += green * green;
+			gb += green * blue;
+			bb += blue * blue;
+		}
+		// Start from the covariance column of the channel with the largest
+		// variance so the start is never orthogonal to the principal axis
+		double axisRed, axisGreen, axisBlue;
+		if (rr >= gg && rr >= bb) {
+			axisRed = rr;
+			axisGreen = rg;
+			axisBlue = rb;
+		} else if (gg >= bb) {
+			axisRed = rg;
+			axisGreen = gg;
+			axisBlue = gb;
+		} else {
+			axisRed = rb;
+			axisGreen = gb;
+			axisBlue = bb;
+		}
+		if (axisRed == 0 && axisGreen == 0 && axisBlue == 0) {
+			axisRed = 1;
+		}
+		for (int i = 0; i < POWER_ITERATIONS; i++) {
+			final double red = (rr * axisRed) + (rg * axisGreen) + (rb * axisBlue);
+			final double green = (rg * axisRed) + (gg * axisGreen) + (gb * axisBlue);
+			final double blue = (rb * axisRed) + (gb * axisGreen) + (bb * axisBlue);
+			final double length = Math.max(Math.abs(red), Math.max(Math.abs(green), Math.abs(blue)));
+			if (length == 0) {
+				break;
+			}
+			axisRed = red / length;
+			axisGreen = green / length;
+			axisBlue = blue / length;
+		}
+		final double axisLengthSquared = (axisRed * axisRed) + (axisGreen * axisGreen) + (axisBlue * axisBlue);
+
+		double minimum = Double.MAX_VALUE, maximum = -Double.MAX_VALUE;
+		for (int i = 0; i < PIXELS_PER_BLOCK; i++) {
+			if (isTransparent(block[i], oneBitAlpha)) {
+				continue;
+			}
+			final double projection = ((((block[i] >> 16) & 0xFF) - meanRed) * axisRed)
+					+ ((((block[i] >> 8) & 0xFF) - meanGreen) * axisGreen) + (((block[i] & 0xFF) - meanBlue) * axisBlue);
+			minimum = Math.min(minimum, projection / axisLengthSquared);
+			maximum = Math.max(maximum, projection / axisLengthSquared);
+		}
+
+		int color0 = toRgb565(meanRed + (axisRed * maximum), meanGreen + (axisGreen * maximum),
+				meanBlue + (axisBlue * maximum));
+		int color1 = toRgb565(meanRed + (axisRed * minimum), meanGreen + (axisGreen * minimum),
+				meanBlue + (axisBlue * minimum));
+		// The order of the endpoints selects the mode when decoding
+		if ((threeColorMode && color0 > color1) || (!threeColorMode && color0 < color1)) {
+			final int swap = color0;
+			color0 = color1;
+			color1 = swap;
+		}
+
+		final int[] palette = new int[4];
+		palette[0] = fromRgb565(color0);
+		palette[1] = fromRgb565(color1);
+		final int paletteSize;
+		if (threeColorMode) {
+			palette[2] = interpolate(palette[0], palette[1], 1, 1);
+			paletteSize = 3;
+		} else {
+			palette[2] = interpolate(palette[0], palette[1], 2, 1);
+			palette[3] = interpolate(palette[0], palette[1], 1, 2);
+			paletteSize = color0 == color1 ? 1 : 4;
+		}
+
+		int indices = 0;
+		for (int i = 0; i < PIXELS_PER_BLOCK; i++) {
+			final int index;
+			if (threeColorMode && isTransparent(block[i], true)) {
+				index = 3;
+			} else {
+				index = findClosestColor(block[i], palette, paletteSize);
+			}
+			indices |= index << (i * 2);
+		}
+		writeColorBlock(result, offset, color0, color1, indices);
+	}
+
+	/**
+	 * Compresses the alpha of a block into 8 bytes using the 8 value mode
+	 * between the minimum and maximum alpha
+	 * 
+	 * @param block
+	 *            16 pixels in {@link java.awt.image.BufferedImage#TYPE_INT_ARGB}
+	 *            format
+	 */
+	static void compressAlphaBlock(int[] block, byte[] result, int offset) {
+		int minimum = 255, maximum = 0;
+		for (int i = 0; i < PIXELS_PER_BLOCK; i++) {
+			final int alpha = block[i] >>> 24;
+			minimum = Math.min(minimum, alpha);
+			maximum = Math.max(maximum, alpha);
+		}
+		result[offset] = (byte) maximum;
+		result[offset + 1] = (byte) minimum;
+
+		long indices = 0;
+		if (maximum != minimum) {
+			final int[] palette = new int[8];
+			palette[0] = maximum;
+			palette[1] = minimum;
+			for (int i = 1; i < 7; i++) {
+				palette[i + 1] = (((7 - i) * maximum) + (i * minimum)) / 7;
+			}
+			for (int i = 0; i < PIXELS_PER_BLOCK; i++) {
+				final int alpha = block[i] >>> 24;
+				int closest = 0;
+				int closestDistance = Integer.MAX_VALUE;
+				for (int j = 0; j < palette.length; j++) {
+					final int distance = Math.abs(palette[j] - alpha);
+					if (distance < closestDistance) {
+						closest = j;
+						closestDistance = distance;
+					}
+				}
+				indices |= ((long) closest) << (i * 3);
+			}
+		}
+		for (int i = 0; i < 6; i++) {
+			result[offset + 2 + i] = (byte) (indices >>> (i * 8));
+		}
+	}
+
+	private static boolean isTransparent(int argb, boolean oneBitAlpha) {
+		final int alpha = argb >>> 24;
+		return oneBitAlpha ? alpha < 128 : alpha == 0;
+	}
+
+	private static int findClosestColor(int argb, int[] palette, int paletteSize) {
+		final int red = (argb >> 16) & 0xFF;
+		final int green = (argb >> 8) & 0xFF;
+		final int blue = argb & 0xFF;
+		int closest = 0;
+		int closestDistance = Integer.MAX_VALUE;
+		for (int i = 0; i < paletteSize; i++) {
+			final int redDistance = red - ((palette[i] >> 16) & 0xFF);
+			final int greenDistance = green - ((palette[i] >> 8) & 0xFF);
+			final int blueDistance = blue - (palette[i] & 0xFF);
+			final int distance = (redDistance * redDistance) + (greenDistance * greenDistance)
+					+ (blueDistance * blueDistance);
+			if (distance < closestDistance) {
+				closest = i;
+				closestDistance = distance;
+			}
+		}
+		return closest;
+	}
+
+	private static int interpolate(int color0, int color1, int weight0, int weight1) {
+		final int total = weight0 + weight1;
+		final int red = ((((color0 >> 16) & 0xFF) * weight0) + (((color1 >> 16) & 0xFF) * weight1)) / total;
+		final int green = ((((color0 >> 8) & 0xFF) * weight0) + (((color1 >> 8) & 0xFF) * weight1)) / total;
+		final int blue = (((color0 & 0xFF) * weight0) + ((color1 & 0xFF) * weight1)) / total;
+		return (red << 16) | (green << 8) | blue;
+	}
+
+	private static int toRgb565(double red, double green, double blue) {
+		final int r = (int) Math.round(clamp(red) * 31 / 255.0);
+		final int g = (int) Math.round(clamp(green) * 63 / 255.0);
+		final int b = (int) Math.round(clamp(blue) * 31 / 255.0);
+		return (r << 11) | (g << 5) | b;
+	}
+
+	/**
+	 * Expands a 5:6:5 color to 8 bits per channel the way GPUs do
+	 */
+	static int fromRgb565(int color) {
+		final int r = (color >> 11) & 0x1F;
+		final int g = (color >> 5) & 0x3F;
+		final int b = color & 0x1F;
+		return (((r << 3) | (r >> 2)) << 16) | (((g << 2) | (g >> 4)) << 8) | ((b << 3) | (b >> 2));
+	}
+
+	private static double clamp(double value) {
+		return Math.max(0, Math.min(255, value));
+	}
+
+	private static void writeColorBlock(byte[] result, int offset, int color0, int color1, int indices) {
+		result[offset] = (byte) color0;
+		result[offset + 1] = (byte) (color0 >> 8);
+		result[offset + 2] = (byte) color1;
+		result[offset + 3] = (byte) (color1 >> 8);
+		writeInt(result, offset + 4, indices);
+	}
+
+	private static void writeInt(byte[] result, int offset, int value) {
+		result[offset] = (byte) value;
+		result[offset + 1] = (byte) (value >> 8);
+		result[offset + 2] = (byte) (value >> 16);
+		result[offset + 3] = (byte) (value >> 24);
+	}
+}
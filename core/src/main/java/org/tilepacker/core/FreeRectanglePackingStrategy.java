@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The default {@link PackingStrategy}. Images are placed at the smallest free
+ * rectangle that can contain them, after which every free rectangle they
+ * intersect is split into the remaining space around them.
+ * 
+ * @author Thomas Cashman
+ */
+public class FreeRectanglePackingStrategy implements PackingStrategy {
+	private final List<Rectangle> tmpIntersecting = new ArrayList<Rectangle>(1);
+	private final List<Rectangle> tmpRemaining = new ArrayList<Rectangle>(1);
+	private final List<Rectangle> tmpNewRectangles = new ArrayList<Rectangle>(1);
+	private final Map<Rectangle, List<Rectangle>> tmpPieces = new IdentityHashMap<Rectangle, List<Rectangle>>();
+
+	private final FreeRectangleStore availableRectangles;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param widthInTiles
+	 *            The width of the area being packed
+	 * @param heightInTiles
+	 *            The height of the area being packed
+	 */
+	public FreeRectanglePackingStrategy(int widthInTiles, int heightInTiles) {
+		availableRectangles = new IndexedFreeRectangleStore(widthInTiles, heightInTiles);
+		availableRectangles.add(new Rectangle(0, 0, widthInTiles, heightInTiles));
+	}
+
+	@Override
+	public Rectangle insert(int width, int height) {
+		final Rectangle freeRectangle = availableRectangles.removeBestFit(width, height);
+		if (freeRectangle == null) {
+			return null;
+		}
+		final Rectangle result = new Rectangle(freeRectangle.getX(), freeRectangle.getY(), width, height);
+		split(result, freeRectangle);
+		return result;
+	}
+
+	@Override
+	public void occupy(Rectangle rectangle) {
+		split(rectangle, null);
+	}
+
+	private void split(Rectangle usedRectangle, Rectangle freeRectangle) {
+		availableRectangles.removeIntersecting(usedRectangle, tmpIntersecting);
+		if (freeRectangle != null) {
+			// The rectangle the image was placed into is always split last
+			tmpIntersecting.add(freeRectangle);
+		}
+		for (int j = 0; j < tmpIntersecting.size(); j++) {
+			Rectangle otherRect = tmpIntersecting.get(j);
+			// Copies of the same free rectangle are split into the same pieces
+			List<Rectangle> pieces = tmpPieces.get(otherRect);
+			if (pieces == null) {
+				pieces = new ArrayList<Rectangle>(4);
+				Rectangle.subtract(pieces, otherRect, Rectangle.and(usedRectangle, otherRect));
+				tmpPieces.put(otherRect, pieces);
+			}
+			tmpRemaining.addAll(pieces);
+		}
+		for (int j = 0; j < tmpRemaining.size(); j++) {
+			Rectangle remainingRect = tmpRemaining.get(j);
+			if (availableRectangles.contains(remainingRect)) {
+				continue;
+			}
+			tmpNewRectangles.add(remainingRect);
+		}
+		for (int j = 0; j < tmpNewRectangles.size(); j++) {
+			availableRectangles.add(tmpNewRectangles.get(j));
+		}
+		tmpIntersecting.clear();
+		tmpRemaining.clear();
+		tmpNewRectangles.clear();
+		tmpPieces.clear();
+	}
+
+	@Override
+	public boolean isFull() {
+		return availableRectangles.isEmpty();
+	}
+
+	@Override
+	public int getFreeAreaCount() {
+		return availableRectangles.size();
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.util.List;
+
+/**
+ * Stores the free {@link Rectangle}s of a {@link Tileset}. Rectangles are
+ * ordered smallest to largest (see {@link SmallToLargeRectangleComparator})
+ * with rectangles of equal area and position ordered by when they were added.
+ * The same rectangle may be stored more than once.
+ * 
+ * @author Thomas Cashman
+ */
+public interface FreeRectangleStore {
+
+	/**
+	 * Adds a free rectangle
+	 * 
+	 * @param rectangle
+	 *            The {@link Rectangle} to add
+	 */
+	public void add(Rectangle rectangle);
+
+	/**
+	 * Removes the first free rectangle that can contain the given size
+	 * 
+	 * @param width
+	 *            The width in tiles
+	 * @param height
+	 *            The height in tiles
+	 * @return Null if no free rectangle can contain the size
+	 */
+	public Rectangle removeBestFit(int width, int height);
+
+	/**
+	 * Removes all free rectangles that intersect a rectangle
+	 * 
+	 * @param rectangle
+	 *            The {@link Rectangle} to check against
+	 * @param result
+	 *            The list to add the removed rectangles to, in store order
+	 */
+	public void removeIntersecting(Rectangle rectangle, List<Rectangle> result);
+
+	/**
+	 * Returns if a free rectangle with the same position and size is stored
+	 * 
+	 * @param rectangle
+	 *            The {@link Rectangle} to look up
+	 * @return True if the store contains an equal rectangle
+	 */
+	public boolean contains(Rectangle rectangle);
+
+	/**
+	 * Returns the amount of free rectangles stored
+	 * 
+	 * @return
+	 */
+	public int size();
+
+	/**
+	 * Returns if no free rectangles are stored
+	 * 
+	 * @return
+	 */
+	public boolean isEmpty();
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A guillotine {@link PackingStrategy}. Areas are placed in the smallest free
+ * rectangle that fits them, which is then cut in two along the axis with the
+ * shorter leftover side. Free rectangles never overlap.
+ * 
+ * @author Thomas Cashman
+ */
+public class GuillotinePackingStrategy implements PackingStrategy {
+	private final List<Rectangle> freeRectangles = new ArrayList<Rectangle>();
+	private final List<Rectangle> tmpNewRectangles = new ArrayList<Rectangle>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param widthInTiles
+	 *            The width of the area being packed
+	 * @param heightInTiles
+	 *            The height of the area being packed
+	 */
+	public GuillotinePackingStrategy(int widthInTiles, int heightInTiles) {
+		freeRectangles.add(new Rectangle(0, 0, widthInTiles, heightInTiles));
+	}
+
+	@Override
+	public Rectangle insert(int width, int height) {
+		int bestIndex = -1;
+		int bestArea = Integer.MAX_VALUE;
+		for (int i = 0; i < freeRectangles.size(); i++) {
+			Rectangle freeRectangle = freeRectangles.get(i);
+			if (freeRectangle.canContain(width, height) && freeRectangle.getArea() < bestArea) {
+				bestIndex = i;
+				bestArea = freeRectangle.getArea();
+			}
+		}
+		if (bestIndex < 0) {
+			return null;
+		}
+		final Rectangle freeRectangle = removeAt(bestIndex);
+		final int x = freeRectangle.getX();
+		final int y = freeRectangle.getY();
+		final int leftoverWidth = freeRectangle.getWidth() - width;
+		final int leftoverHeight = freeRectangle.getHeight() - height;
+
+		if (leftoverWidth < leftoverHeight) {
+			addFreeRectangle(x + width, y, leftoverWidth, height);
+			addFreeRectangle(x, y + height, freeRectangle.getWidth(), leftoverHeight);
+		} else {
+			addFreeRectangle(x + width, y, leftoverWidth, freeRectangle.getHeight());
+			addFreeRectangle(x, y + height, width, leftoverHeight);
+		}
+		return new Rectangle(x, y, width, height);
+	}
+
+	@Override
+	public void occupy(Rectangle rectangle) {
+		for (int i = freeRectangles.size() - 1; i >= 0; i--) {
+			if (freeRectangles.get(i).intersects(rectangle)) {
+				tmpNewRectangles.add(removeAt(i));
+			}
+		}
+		for (int i = tmpNewRectangles.size() - 1; i >= 0; i--) {
+			Rectangle freeRectangle = tmpNewRectangles.get(i);
+			Rectangle usedRectangle = Rectangle.and(freeRectangle, rectangle);
+
+			addFreeRectangle(freeRectangle.getX(), freeRectangle.getY(), usedRectangle.getX() - freeRectangle.getX(),
+					freeRectangle.getHeight());
+			addFreeRectangle(usedRectangle.getMaxX() + 1, freeRectangle.getY(),
+					freeRectangle.getMaxX() - usedRectangle.getMaxX(), freeRectangle.getHeight());
+			addFreeRectangle(usedRectangle.getX(), freeRectangle.getY(), usedRectangle.getWidth(),
+					usedRectangle.getY() - freeRectangle.getY());
+			addFreeRectangle(usedRectangle.getX(), usedRectangle.getMaxY() + 1, usedRectangle.getWidth(),
+					freeRectangle.getMaxY() - usedRectangle.getMaxY());
+		}
+		tmpNewRectangles.clear();
+	}
+
+	private Rectangle removeAt(int index) {
+		// Order doesn't matter so swap with the last element
+		final Rectangle result = freeRectangles.get(index);
+		final Rectangle last = freeRectangles.remove(freeRectangles.size() - 1);
+		if (index < freeRectangles.size()) {
+			freeRectangles.set(index, last);
+		}
+		return result;
+	}
+
+	private void addFreeRectangle(int x, int y, int width, int height) {
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+		freeRectangles.add(new Rectangle(x, y, width, height));
+	}
+
+	@Override
+	public boolean isFull() {
+		return freeRectangles.isEmpty();
+	}
+
+	@Override
+	public int getFreeAreaCount() {
+		return freeRectangles.size();
+	}
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Shares decoded source images between {@link TileImage}s, keeping the most
+ * recently used images in memory up to a byte budget. Safe to use from
+ * multiple threads, a file is only decoded once while it is cached.
+ * 
+ * @author Thomas Cashman
+ */
+public class ImageCache {
+	public static final int DEFAULT_MEGABYTES = 256;
+
+	private final long maximumBytes;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+	private long totalBytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param maximumBytes
+	 *            The total size of decoded images to keep in memory
+	 */
+	public ImageCache(long maximumBytes) {
+		this.maximumBytes = Math.max(0, maximumBytes);
+	}
+
+	/**
+	 * Returns the decoded image for a file, decoding it if it is not cached
+	 * or has been modified since it was cached
+	 * 
+	 * @param file
+	 *            The image file
+	 * @return A {@link BufferedImage#TYPE_INT_ARGB} image. This is shared and
+	 *         must not be modified.
+	 * @throws IOException
+	 */
+	public BufferedImage get(File file) throws IOException {
+		final Key key = new Key(file.getAbsolutePath(), file.lastModified());
+		final Entry entry;
+		synchronized (this) {
+			Entry existingEntry = entries.get(key);
+			if (existingEntry != null) {
+				hits++;
+				entry = existingEntry;
+			} else {
+				misses++;
+				entry = new Entry();
+				entries.put(key, entry);
+			}
+		}
+
+		final BufferedImage image;
+		final boolean decoded;
+		synchronized (entry) {
+			if (entry.image == null) {
+				try {
+					entry.image = read(file);
+				} catch (IOException | RuntimeException e) {
+					synchronized (this) {
+						if (entries.get(key) == entry) {
+							entries.remove(key);
+						}
+					}
+					throw e;
+				}
+				decoded = true;
+			} else {
+				decoded = false;
+			}
+			image = entry.image;
+		}
+
+		if (decoded) {
+			synchronized (this) {
+				if (entries.get(key) == entry) {
+					entry.bytes = image.getWidth() * (long) image.getHeight() * 4L;
+					totalBytes += entry.bytes;
+					evict();
+				}
+			}
+		}
+		return image;
+	}
+
+	private void evict() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (totalBytes > maximumBytes && iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry.bytes == 0) {
+				// Still being decoded
+				continue;
+			}
+			iterator.remove();
+			totalBytes -= entry.bytes;
+			evictions++;
+		}
+	}
+
+	/**
+	 * Removes all images from the cache
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		totalBytes = 0;
+	}
+
+	private static BufferedImage read(File file) throws IOException {
+		BufferedImage image = ImageIO.read(file);
+		if (image == null) {
+			throw new IOException("Unsupported image format: " + file);
+		}
+		if (image.getType() != BufferedImage.TYPE_4BYTE_ABGR) {
+			BufferedImage newImage = new BufferedImage(image.getWidth(), image.getHeight(),
+					BufferedImage.TYPE_4BYTE_ABGR);
+			newImage.getGraphics().drawImage(image, 0, 0, null);
+			image = newImage;
+		}
+		return toIntArgb(image);
+	}
+
+	/**
+	 * Copies an image into a {@link BufferedImage#TYPE_INT_ARGB} image so
+	 * that tilesets can copy its pixels directly from the backing array
+	 */
+	private static BufferedImage toIntArgb(BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+		image.getRGB(0, 0, width, height, pixels, 0, width);
+		return result;
+	}
+
+	/**
+	 * Counts a lookup that was answered by an image the caller already
+	 * holds, e.g. a source image kept for every band of a tileset
+	 */
+	public synchronized void addHit() {
+		hits++;
+	}
+
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	private static class Key {
+		private final String path;
+		private final long lastModified;
+
+		public Key(String path, long lastModified) {
+			this.path = path;
+			this.lastModified = lastModified;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * path.hashCode()) + (int) (lastModified ^ (lastModified >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return lastModified == other.lastModified && path.equals(other.path);
+		}
+	}
+
+	private static class Entry {
+		private BufferedImage image;
+		private long bytes;
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Reads the width and height of an image from its header without decoding
+ * the pixel data
+ * 
+ * @author Thomas Cashman
+ */
+public class ImageDimensions {
+	private static final long PNG_SIGNATURE = 0x89504E470D0A1A0AL;
+	private static final int PNG_IHDR = 0x49484452;
+
+	private final int width, height;
+
+	public ImageDimensions(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Reads the dimensions of an image file. PNG files are read directly
+	 * from their IHDR chunk, other formats are read by their
+	 * {@link ImageReader} which stops after the header.
+	 * 
+	 * @param file
+	 *            The image file
+	 * @return The dimensions of the image
+	 * @throws IOException
+	 *             Thrown if the file could not be read
+	 */
+	public static ImageDimensions read(File file) throws IOException {
+		ImageDimensions result = readPng(file);
+		if (result != null) {
+			return result;
+		}
+		ImageInputStream inputStream = ImageIO.createImageInputStream(file);
+		if (inputStream == null) {
+			throw new IOException("Error reading image: " + file);
+		}
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(inputStream);
+			if (!readers.hasNext()) {
+				throw new IOException("Error reading image: " + file + " is not a supported format");
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(inputStream, true, true);
+				return new ImageDimensions(reader.getWidth(0), reader.getHeight(0));
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	private static ImageDimensions readPng(File file) throws IOException {
+		DataInputStream inputStream = new DataInputStream(new FileInputStream(file));
+		try {
+			if (file.length() < 24 || inputStream.readLong() != PNG_SIGNATURE) {
+				return null;
+			}
+			// IHDR is always the first chunk
+			inputStream.readInt();
+			if (inputStream.readInt() != PNG_IHDR) {
+				return null;
+			}
+			return new ImageDimensions(inputStream.readInt(), inputStream.readInt());
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.IOException;
+
+/**
+ * Encodes an image a band of rows at a time, from top to bottom. The caller
+ * owns the output stream and closes it after {@link #finish()}.
+ * 
+ * @author Thomas Cashman
+ */
+public interface ImageEncoder {
+	/**
+	 * Appends rows of pixels to the image
+	 * 
+	 * @param pixels
+	 *            The pixels in {@link java.awt.image.BufferedImage#TYPE_INT_ARGB}
+	 *            format
+	 * @param offset
+	 *            The index of the first pixel of the first row
+	 * @param scanlineStride
+	 *            The distance between the start of each row
+	 * @param rows
+	 *            The amount of rows to write
+	 * @throws IOException
+	 */
+	public void writeRows(int[] pixels, int offset, int scanlineStride, int rows) throws IOException;
+
+	/**
+	 * Writes the end of the image. All rows must have been written.
+	 * 
+	 * @throws IOException
+	 */
+	public void finish() throws IOException;
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+/**
+ * How images larger than a tileset are cut into pieces that fit
+ * 
+ * @author Thomas Cashman
+ */
+public enum ImageSplitting {
+	/**
+	 * Cuts images in half until each half fits in a tileset. The only
+	 * splitting prior to 5.1.0.
+	 */
+	HALVE,
+	/**
+	 * Cuts images into pieces the size of a whole tileset from the top-left,
+	 * with narrower and shorter pieces for the remainder at the right and
+	 * bottom edges. Each whole piece fills a tileset by itself, so a large
+	 * image spans as few tilesets as possible.
+	 */
+	SHEET;
+
+	/**
+	 * Looks up a splitting by name, ignoring case
+	 * 
+	 * @param name
+	 *            The name of the splitting, null for {@link #HALVE}
+	 * @return
+	 */
+	public static ImageSplitting fromName(String name) {
+		if (name == null) {
+			return HALVE;
+		}
+		for (ImageSplitting splitting : values()) {
+			if (splitting.name().equalsIgnoreCase(name.trim())) {
+				return splitting;
+			}
+		}
+		throw new TilePackerException("ERROR: Unknown image splitting " + name);
+	}
+}
@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A {@link FreeRectangleStore} that keeps rectangles sorted by area for
+ * best-fit lookups and in a uniform grid for intersection queries, so that
+ * neither operation has to visit every free rectangle. Copies of the same
+ * rectangle share a single entry which records when each copy was added.
+ * 
+ * @author Thomas Cashman
+ */
+public class IndexedFreeRectangleStore implements FreeRectangleStore {
+	private static final int MAX_CELLS_PER_AXIS = 32;
+
+	private final EntryComparator entryComparator = new EntryComparator();
+	private final TreeSet<Entry> entries = new TreeSet<Entry>(entryComparator);
+	private final Map<Rectangle, Entry> entriesByRectangle = new HashMap<Rectangle, Entry>();
+	private final int cellWidth, cellHeight;
+	private final int horizontalCells, verticalCells;
+	private final List<List<Entry>> cells;
+	private final List<Entry> tmpEntries = new ArrayList<Entry>();
+
+	private long nextSequence = 0;
+	private int size = 0;
+	private int removedInCells = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param widthInTiles
+	 *            The width of the area being packed
+	 * @param heightInTiles
+	 *            The height of the area being packed
+	 */
+	public IndexedFreeRectangleStore(int widthInTiles, int heightInTiles) {
+		cellWidth = Math.max(1, (widthInTiles + MAX_CELLS_PER_AXIS - 1) / MAX_CELLS_PER_AXIS);
+		cellHeight = Math.max(1, (heightInTiles + MAX_CELLS_PER_AXIS - 1) / MAX_CELLS_PER_AXIS);
+		horizontalCells = Math.max(1, (widthInTiles + cellWidth - 1) / cellWidth);
+		verticalCells = Math.max(1, (heightInTiles + cellHeight - 1) / cellHeight);
+
+		cells = new ArrayList<List<Entry>>(horizontalCells * verticalCells);
+		for (int i = 0; i < horizontalCells * verticalCells; i++) {
+			cells.add(new ArrayList<Entry>(1));
+		}
+	}
+
+	@Override
+	public void add(Rectangle rectangle) {
+		size++;
+
+		Entry entry = entriesByRectangle.get(rectangle);
+		if (entry != null) {
+			// Sequences only increase so the entry's position is unchanged
+			entry.addCopy(nextSequence++);
+			return;
+		}
+		entry = new Entry(rectangle);
+		entry.addCopy(nextSequence++);
+		entries.add(entry);
+		entriesByRectangle.put(rectangle, entry);
+
+		final int maxCellX = getCellX(rectangle.getMaxX());
+		final int maxCellY = getCellY(rectangle.getMaxY());
+		for (int cellY = getCellY(rectangle.getY()); cellY <= maxCellY; cellY++) {
+			for (int cellX = getCellX(rectangle.getX()); cellX <= maxCellX; cellX++) {
+				cells.get((cellY * horizontalCells) + cellX).add(entry);
+			}
+		}
+	}
+
+	@Override
+	public Rectangle removeBestFit(int width, int height) {
+		final Entry smallest = new Entry(new Rectangle(Integer.MIN_VALUE, Integer.MIN_VALUE, 0, 0));
+		smallest.area = width * height;
+		smallest.addCopy(Long.MIN_VALUE);
+
+		for (Entry entry : entries.tailSet(smallest)) {
+			if (!entry.rectangle.canContain(width, height)) {
+				continue;
+			}
+			size--;
+			if (entry.getCopies() == 1) {
+				remove(entry);
+			} else {
+				entries.remove(entry);
+				entry.removeFirstCopy();
+				entries.add(entry);
+			}
+			return entry.rectangle;
+		}
+		return null;
+	}
+
+	@Override
+	public void removeIntersecting(Rectangle rectangle, List<Rectangle> result) {
+		final int minCellX = getCellX(rectangle.getX());
+		final int minCellY = getCellY(rectangle.getY());
+		final int maxCellX = getCellX(rectangle.getMaxX());
+		final int maxCellY = getCellY(rectangle.getMaxY());
+
+		for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+			for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+				final List<Entry> cell = cells.get((cellY * horizontalCells) + cellX);
+				int write = 0;
+				for (int i = 0; i < cell.size(); i++) {
+					final Entry entry = cell.get(i);
+					if (entry.removed) {
+						removedInCells--;
+						continue;
+					}
+					cell.set(write++, entry);
+
+					if (!entry.rectangle.intersects(rectangle)) {
+						continue;
+					}
+					// Only collect each rectangle from the first cell it shares with the query
+					if (cellX != Math.max(minCellX, getCellX(entry.rectangle.getX()))) {
+						continue;
+					}
+					if (cellY != Math.max(minCellY, getCellY(entry.rectangle.getY()))) {
+						continue;
+					}
+					tmpEntries.add(entry);
+				}
+				truncate(cell, write);
+			}
+		}
+
+		Collections.sort(tmpEntries, entryComparator);
+		int groupStart = 0;
+		while (groupStart < tmpEntries.size()) {
+			int groupEnd = groupStart + 1;
+			while (groupEnd < tmpEntries.size()
+					&& entryComparator.comparePosition(tmpEntries.get(groupStart), tmpEntries.get(groupEnd)) == 0) {
+				groupEnd++;
+			}
+			addCopiesInOrder(groupStart, groupEnd, result);
+			groupStart = groupEnd;
+		}
+		for (int i = 0; i < tmpEntries.size(); i++) {
+			Entry entry = tmpEntries.get(i);
+			size -= entry.getCopies();
+			remove(entry);
+		}
+		tmpEntries.clear();
+	}
+
+	/**
+	 * Adds the copies of entries with the same area and position to a list,
+	 * ordered by when each copy was added
+	 */
+	private void addCopiesInOrder(int groupStart, int groupEnd, List<Rectangle> result) {
+		if (groupEnd - groupStart == 1) {
+			Entry entry = tmpEntries.get(groupStart);
+			for (int i = 0; i < entry.getCopies(); i++) {
+				result.add(entry.rectangle);
+			}
+			return;
+		}
+		final int[] indices = new int[groupEnd - groupStart];
+		while (true) {
+			int next = -1;
+			long nextSequence = Long.MAX_VALUE;
+			for (int i = 0; i < indices.length; i++) {
+				Entry entry = tmpEntries.get(groupStart + i);
+				if (indices[i] >= entry.getCopies()) {
+					continue;
+				}
+				long sequence = entry.getSequence(indices[i]);
+				if (sequence < nextSequence) {
+					nextSequence = sequence;
+					next = i;
+				}
+			}
+			if (next < 0) {
+				return;
+			}
+			indices[next]++;
+			result.add(tmpEntries.get(groupStart + next).rectangle);
+		}
+	}
+
+	@Override
+	public boolean contains(Rectangle rectangle) {
+		return entriesByRectangle.containsKey(rectangle);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	private void remove(Entry entry) {
+		entries.remove(entry);
+		entriesByRectangle.remove(entry.rectangle);
+		entry.removed = true;
+
+		final int cellCount = ((getCellX(entry.rectangle.getMaxX()) - getCellX(entry.rectangle.getX())) + 1)
+				* ((getCellY(entry.rectangle.getMaxY()) - getCellY(entry.rectangle.getY())) + 1);
+		removedInCells += cellCount;
+		if (removedInCells > Math.max(1024, entries.size() * 4)) {
+			compactCells();
+		}
+	}
+
+	/**
+	 * Drops removed entries from every grid cell
+	 */
+	private void compactCells() {
+		for (int i = 0; i < cells.size(); i++) {
+			final List<Entry> cell = cells.get(i);
+			int write = 0;
+			for (int j = 0; j < cell.size(); j++) {
+				Entry entry = cell.get(j);
+				if (!entry.removed) {
+					cell.set(write++, entry);
+				}
+			}
+			truncate(cell, write);
+		}
+		removedInCells = 0;
+	}
+
+	private static void truncate(List<Entry> list, int size) {
+		if (size < list.size()) {
+			list.subList(size, list.size()).clear();
+		}
+	}
+
+	private int getCellX(int x) {
+		return Math.min(horizontalCells - 1, Math.max(0, x / cellWidth));
+	}
+
+	private int getCellY(int y) {
+		return Math.min(verticalCells - 1, Math.max(0, y / cellHeight));
+	}
+
+	private static class Entry {
+		private final Rectangle rectangle;
+		private int area;
+		private long[] sequences = new long[1];
+		private int firstCopy = 0, endCopy = 0;
+		private boolean removed = false;
+
+		public Entry(Rectangle rectangle) {
+			this.rectangle = rectangle;
+			this.area = rectangle.getArea();
+		}
+
+		public void addCopy(long sequence) {
+			if (endCopy == sequences.length) {
+				sequences = Arrays.copyOf(sequences, sequences.length * 2);
+			}
+			sequences[endCopy++] = sequence;
+		}
+
+		public void removeFirstCopy() {
+			firstCopy++;
+		}
+
+		public int getCopies() {
+			return endCopy - firstCopy;
+		}
+
+		public long getSequence(int copy) {
+			return sequences[firstCopy + copy];
+		}
+	}
+
+	private static class EntryComparator implements Comparator<Entry> {
+		@Override
+		public int compare(Entry o1, Entry o2) {
+			int positionComparison = comparePosition(o1, o2);
+			if (positionComparison != 0) {
+				return positionComparison;
+			}
+			return Long.compare(o1.getSequence(0), o2.getSequence(0));
+		}
+
+		public int comparePosition(Entry o1, Entry o2) {
+			int sizeComparison = Integer.compare(o1.area, o2.area);
+			if (sizeComparison != 0) {
+				return sizeComparison;
+			}
+			int xComparison = Integer.compare(o1.rectangle.getX(), o2.rectangle.getX());
+			if (xComparison != 0) {
+				return xComparison;
+			}
+			return Integer.compare(o1.rectangle.getY(), o2.rectangle.getY());
+		}
+	}
+}
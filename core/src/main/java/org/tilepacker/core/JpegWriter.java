@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Writes baseline JPEG images with a configurable quality and chroma
+ * subsampling. JPEG has no alpha channel so the alpha of each pixel is
+ * discarded; set a background color or premultiply alpha for tilesets with
+ * transparent pixels.
+ * 
+ * The image I/O JPEG encoder needs the whole image at once, so rows are
+ * collected into a single RGB image and encoded by {@link #finish()}.
+ * 
+ * @author Thomas Cashman
+ */
+public class JpegWriter implements ImageEncoder {
+	public static final int DEFAULT_QUALITY = 90;
+	public static final String DEFAULT_CHROMA_SUBSAMPLING = "4:2:0";
+
+	private static final String METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+	private final OutputStream outputStream;
+	private final int width, height;
+	private final int quality;
+	private final int horizontalSampling, verticalSampling;
+	private final BufferedImage image;
+	private final int[] imagePixels;
+	private int rowsWritten = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param outputStream
+	 *            The stream to write to, this is not closed by the writer
+	 * @param width
+	 *            The image width in pixels
+	 * @param height
+	 *            The image height in pixels
+	 * @param quality
+	 *            The quality from 1 (smallest) to 100 (best)
+	 * @param chromaSubsampling
+	 *            The chroma subsampling, 4:4:4, 4:2:2 or 4:2:0
+	 */
+	public JpegWriter(OutputStream outputStream, int width, int height, int quality, String chromaSubsampling) {
+		if (quality < 1 || quality > 100) {
+			throw new IllegalArgumentException("Quality must be between 1 and 100");
+		}
+		this.outputStream = outputStream;
+		this.width = width;
+		this.height = height;
+		this.quality = quality;
+
+		switch (chromaSubsampling) {
+		case "4:4:4":
+			horizontalSampling = 1;
+			verticalSampling = 1;
+			break;
+		case "4:2:2":
+			horizontalSampling = 2;
+			verticalSampling = 1;
+			break;
+		case "4:2:0":
+			horizontalSampling = 2;
+			verticalSampling = 2;
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported chroma subsampling " + chromaSubsampling);
+		}
+
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		imagePixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
+	@Override
+	public void writeRows(int[] pixels, int offset, int scanlineStride, int rows) throws IOException {
+		if (rowsWritten + rows > height) {
+			throw new IllegalArgumentException("Cannot write more than " + height + " rows");
+		}
+		for (int row = 0; row < rows; row++) {
+			// The alpha byte is ignored by the RGB color model
+			System.arraycopy(pixels, offset + (row * scanlineStride), imagePixels, rowsWritten * width, width);
+			rowsWritten++;
+		}
+	}
+
+	@Override
+	public void finish() throws IOException {
+		if (rowsWritten != height) {
+			throw new IllegalStateException("Only " + rowsWritten + " of " + height + " rows were written");
+		}
+		final Iterator<ImageWriter> imageWriters = ImageIO.getImageWritersByFormatName("jpeg");
+		if (!imageWriters.hasNext()) {
+			throw new IOException("No JPEG encoder is available");
+		}
+		final ImageWriter imageWriter = imageWriters.next();
+		try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+			final ImageWriteParam writeParam = imageWriter.getDefaultWriteParam();
+			writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			writeParam.setCompressionQuality(quality / 100f);
+
+			final IIOMetadata metadata = imageWriter
+					.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), writeParam);
+			setChromaSubsampling(metadata);
+
+			imageWriter.setOutput(imageOutputStream);
+			imageWriter.write(null, new IIOImage(image, null, metadata), writeParam);
+		} finally {
+			imageWriter.dispose();
+		}
+		outputStream.flush();
+	}
+
+	/**
+	 * Sets the sampling factors of the luma component. Chroma components
+	 * always have a sampling factor of 1 so a larger luma factor means chroma
+	 * is stored at a lower resolution.
+	 */
+	private void setChromaSubsampling(IIOMetadata metadata) throws IOException {
+		final Element tree = (Element) metadata.getAsTree(METADATA_FORMAT);
+		final NodeList components = tree.getElementsByTagName("componentSpec");
+		for (int i = 0; i < components.getLength(); i++) {
+			final Element component = (Element) components.item(i);
+			component.setAttribute("HsamplingFactor", String.valueOf(i == 0 ? horizontalSampling : 1));
+			component.setAttribute("VsamplingFactor", String.valueOf(i == 0 ? verticalSampling : 1));
+		}
+		metadata.setFromTree(METADATA_FORMAT, tree);
+	}
+}
@@ -0,0 +1,411 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Writes KTX textures compressed with ETC2 so that tilesets can be uploaded
+ * to mobile GPUs without being decoded first. ETC2 is required by OpenGL ES
+ * 3.0 and Vulkan on mobile, while desktop GPUs use {@link DdsWriter}.
+ * 
+ * Color is encoded with the individual and differential modes that ETC2
+ * shares with ETC1, fitting a base color to each half of a block. Alpha is
+ * encoded as an EAC block ahead of each color block.
+ * 
+ * The KTX 1.1 container stores rows from top to bottom, which is recorded
+ * in its KTXorientation key.
+ * 
+ * @author Thomas Cashman
+ */
+public class KtxWriter extends BlockCompressedWriter {
+	public static final String DEFAULT_COMPRESSION = "etc2_eac";
+
+	private static final byte[] IDENTIFIER = { (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n',
+			0x1A, '\n' };
+	private static final int GL_COMPRESSED_RGB8_ETC2 = 0x9274;
+	private static final int GL_COMPRESSED_RGBA8_ETC2_EAC = 0x9278;
+	private static final int GL_RGB = 0x1907;
+	private static final int GL_RGBA = 0x1908;
+	private static final String ORIENTATION_KEY = "KTXorientation";
+	private static final String ORIENTATION = "S=r,T=d";
+
+	/**
+	 * The intensity modifiers of each color table in pixel index order
+	 */
+	static final int[][] COLOR_MODIFIERS = { { 2, 8, -2, -8 }, { 5, 17, -5, -17 }, { 9, 29, -9, -29 },
+			{ 13, 42, -13, -42 }, { 18, 60, -18, -60 }, { 24, 80, -24, -80 }, { 33, 106, -33, -106 },
+			{ 47, 183, -47, -183 } };
+	/**
+	 * The modifiers of each alpha table in pixel index order
+	 */
+	static final int[][] ALPHA_MODIFIERS = { { -3, -6, -9, -15, 2, 5, 8, 14 }, { -3, -7, -10, -13, 2, 6, 9, 12 },
+			{ -2, -5, -8, -13, 1, 4, 7, 12 }, { -2, -4, -6, -13, 1, 3, 5, 12 }, { -3, -6, -8, -12, 2, 5, 7, 11 },
+			{ -3, -7, -9, -11, 2, 6, 8, 10 }, { -4, -7, -8, -11, 3, 6, 7, 10 }, { -3, -5, -8, -11, 2, 4, 7, 10 },
+			{ -2, -6, -8, -10, 1, 5, 7, 9 }, { -2, -5, -8, -10, 1, 4, 7, 9 }, { -2, -4, -8, -10, 1, 3, 7, 9 },
+			{ -2, -5, -7, -10, 1, 4, 6, 9 }, { -3, -4, -7, -10, 2, 3, 6, 9 }, { -1, -2, -3, -10, 0, 1, 2, 9 },
+			{ -4, -6, -8, -9, 3, 5, 7, 8 }, { -3, -5, -7, -9, 2, 4, 6, 8 } };
+	/**
+	 * The alpha table and index whose modifier is 0
+	 */
+	private static final int EXACT_ALPHA_TABLE = 13;
+	private static final int EXACT_ALPHA_INDEX = 4;
+
+	private final boolean alphaBlock;
+
+	/**
+	 * Constructor. Writes the KTX header immediately.
+	 * 
+	 * @param outputStream
+	 *            The stream to write to, this is not closed by the writer
+	 * @param width
+	 *            The image width in pixels
+	 * @param height
+	 *            The image height in pixels
+	 * @param compression
+	 *            etc2 for opaque images, etc2_eac for images with alpha
+	 * @param executorService
+	 *            The threads to compress blocks on, null to compress on the
+	 *            calling thread
+	 * @throws IOException
+	 */
+	public KtxWriter(OutputStream outputStream, int width, int height, String compression,
+			ExecutorService executorService) throws IOException {
+		super(outputStream, width, height, getBytesPerBlock(compression), executorService);
+		alphaBlock = "etc2_eac".equalsIgnoreCase(compression);
+
+		final byte[] key = ORIENTATION_KEY.getBytes(StandardCharsets.US_ASCII);
+		final byte[] value = ORIENTATION.getBytes(StandardCharsets.US_ASCII);
+		final int keyAndValueLength = key.length + value.length + 2;
+		final int keyValueDataLength = 4 + ((keyAndValueLength + 3) / 4) * 4;
+
+		final byte[] header = new byte[IDENTIFIER.length + (13 * 4) + keyValueDataLength + 4];
+		System.arraycopy(IDENTIFIER, 0, header, 0, IDENTIFIER.length);
+		int offset = IDENTIFIER.length;
+		// Endianness
+		offset = writeInt(header, offset, 0x04030201);
+		// glType, glTypeSize and glFormat are 0, 1 and 0 for compressed textures
+		offset = writeInt(header, offset, 0);
+		offset = writeInt(header, offset, 1);
+		offset = writeInt(header, offset, 0);
+		offset = writeInt(header, offset, alphaBlock ? GL_COMPRESSED_RGBA8_ETC2_EAC : GL_COMPRESSED_RGB8_ETC2);
+		offset = writeInt(header, offset, alphaBlock ? GL_RGBA : GL_RGB);
+		offset = writeInt(header, offset, width);
+		offset = writeInt(header, offset, height);
+		// Depth, array elements, faces and mipmap levels
+		offset = writeInt(header, offset, 0);
+		offset = writeInt(header, offset, 0);
+		offset = writeInt(header, offset, 1);
+		offset = writeInt(header, offset, 1);
+		offset = writeInt(header, offset, keyValueDataLength);
+
+		offset = writeInt(header, offset, keyAndValueLength);
+		System.arraycopy(key, 0, header, offset, key.length);
+		System.arraycopy(value, 0, header, offset + key.length + 1, value.length);
+		offset += keyValueDataLength - 4;
+
+		writeInt(header, offset, getCompressedLength());
+		outputStream.write(header);
+	}
+
+	private static int getBytesPerBlock(String compression) {
+		switch (compression.toLowerCase()) {
+		case "etc2":
+			return 8;
+		case "etc2_eac":
+			return 16;
+		default:
+			throw new IllegalArgumentException("Unsupported KTX compression " + compression);
+		}
+	}
+
+	@Override
+	protected void compressBlock(int[] block, byte[] result, int offset) {
+		if (alphaBlock) {
+			writeLong(result, offset, compressAlphaBlock(block));
+			writeLong(result, offset + 8, compressColorBlock(block, true));
+		} else {
+			writeLong(result, offset, compressColorBlock(block, false));
+		}
+	}
+
+	/**
+	 * Compresses the colors of a block into an ETC2 RGB block. Each flip
+	 * direction is tried with the differential mode, or the individual mode
+	 * when the two base colors are too far apart, and the one with the
+	 * smallest error is kept. Differential blocks never overflow their base
+	 * colors so they decode the same as ETC1.
+	 * 
+	 * @param block
+	 *            16 pixels in {@link java.awt.image.BufferedImage#TYPE_INT_ARGB}
+	 *            format, row by row
+	 * @param ignoreTransparent
+	 *            True if the color of fully transparent pixels does not matter
+	 * @return The 64 bits of the block in big endian order
+	 */
+	static long compressColorBlock(int[] block, boolean ignoreTransparent) {
+		long result = 0;
+		long resultError = Long.MAX_VALUE;
+		final int[] averages = new int[2];
+		final int[] baseColors = new int[2];
+		final int[] palette = new int[4];
+		for (int flip = 0; flip < 2; flip++) {
+			for (int subBlock = 0; subBlock < 2; subBlock++) {
+				averages[subBlock] = getAverageColor(block, flip == 1, subBlock, ignoreTransparent);
+			}
+
+			final int[] base0 = quantize(averages[0], 31);
+			final int[] base1 = quantize(averages[1], 31);
+			boolean differential = true;
+			for (int channel = 0; channel < 3; channel++) {
+				final int delta = base1[channel] - base0[channel];
+				if (delta < -4 || delta > 3) {
+					differential = false;
+				}
+			}
+
+			long bits;
+			if (differential) {
+				baseColors[0] = expand(base0, 31);
+				baseColors[1] = expand(base1, 31);
+				bits = ((long) base0[0] << 59) | ((long) ((base1[0] - base0[0]) & 0x7) << 56)
+						| ((long) base0[1] << 51) | ((long) ((base1[1] - base0[1]) & 0x7) << 48)
+						| ((long) base0[2] << 43) | ((long) ((base1[2] - base0[2]) & 0x7) << 40) | (1L << 33);
+			} else {
+				final int[] individual0 = quantize(averages[0], 15);
+				final int[] individual1 = quantize(averages[1], 15);
+				baseColors[0] = expand(individual0, 15);
+				baseColors[1] = expand(individual1, 15);
+				bits = ((long) individual0[0] << 60) | ((long) individual1[0] << 56) | ((long) individual0[1] << 52)
+						| ((long) individual1[1] << 48) | ((long) individual0[2] << 44) | ((long) individual1[2] << 40);
+			}
+			bits |= (long) flip << 32;
+
+			long error = 0;
+			for (int subBlock = 0; subBlock < 2; subBlock++) {
+				long subBlockError = Long.MAX_VALUE;
+				long subBlockBits = 0;
+				for (int table = 0; table < COLOR_MODIFIERS.length; table++) {
+					for (int index = 0; index < palette.length; index++) {
+						palette[index] = modify(baseColors[subBlock], COLOR_MODIFIERS[table][index]);
+					}
+					long tableError = 0;
+					long tableBits = (long) table << (subBlock == 0 ? 37 : 34);
+					for (int i = 0; i < PIXELS_PER_BLOCK; i++) {
+						final int x = i % BLOCK_SIZE;
+						final int y = i / BLOCK_SIZE;
+						if (getSubBlock(x, y, flip == 1) != subBlock) {
+							continue;
+						}
+						int closest = 0;
+						int closestDistance = Integer.MAX_VALUE;
+						for (int index = 0; index < palette.length; index++) {
+							final int distance = getDistance(block[i], palette[index]);
+							if (distance < closestDistance) {
+								closest = index;
+								closestDistance = distance;
+							}
+						}
+						if (!ignoreTransparent || (block[i] >>> 24) != 0) {
+							tableError += closestDistance;
+						}
+						// Pixels are numbered down each column
+						final int pixel = (x * BLOCK_SIZE) + y;
+						tableBits |= ((long) (closest >> 1) << (16 + pixel)) | ((long) (closest & 1) << pixel);
+					}
+					if (tableError < subBlockError) {
+						subBlockError = tableError;
+						subBlockBits = tableBits;
+					}
+				}
+				error += subBlockError;
+				bits |= subBlockBits;
+			}
+			if (error < resultError) {
+				result = bits;
+				resultError = error;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Compresses the alpha of a block into an EAC block. Each table is tried
+	 * with the multiplier that spans the alpha range of the block and the one
+	 * either side of it.
+	 * 
+	 * @param block
+	 *            16 pixels in {@link java.awt.image.BufferedImage#TYPE_INT_ARGB}
+	 *            format, row by row
+	 * @return The 64 bits of the block in big endian order
+	 */
+	static long compressAlphaBlock(int[] block) {
+		int minimum = 255, maximum = 0;
+		for (int i = 0; i < PIXELS_PER_BLOCK; i++) {
+			final int alpha = block[i] >>> 24;
+			minimum = Math.min(minimum, alpha);
+			maximum = Math.max(maximum, alpha);
+		}
+		if (minimum == maximum) {
+			long result = ((long) minimum << 56) | (1L << 52) | ((long) EXACT_ALPHA_TABLE << 48);
+			for (int pixel = 0; pixel < PIXELS_PER_BLOCK; pixel++) {
+				result |= (long) EXACT_ALPHA_INDEX << (45 - (pixel * 3));
+			}
+			return result;
+		}
+
+		long result = 0;
+		long resultError = Long.MAX_VALUE;
+		for (int table = 0; table < ALPHA_MODIFIERS.length; table++) {
+			final int[] modifiers = ALPHA_MODIFIERS[table];
+			final int modifierRange = modifiers[7] - modifiers[3];
+			final int fittedMultiplier = (int) Math.round((maximum - minimum) / (double) modifierRange);
+			for (int multiplier = fittedMultiplier - 1; multiplier <= fittedMultiplier + 1; multiplier++) {
+				if (multiplier < 1 || multiplier > 15) {
+					continue;
+				}
+				final int base = clamp((int) Math.round(((minimum + maximum) / 2.0)
+						- (multiplier * (modifiers[7] + modifiers[3]) / 2.0)));
+				long bits = ((long) base << 56) | ((long) multiplier << 52) | ((long) table << 48);
+				long error = 0;
+				for (int i = 0; i < PIXELS_PER_BLOCK; i++) {
+					final int alpha = block[i] >>> 24;
+					int closest = 0;
+					int closestDistance = Integer.MAX_VALUE;
+					for (int index = 0; index < modifiers.length; index++) {
+						final int distance = Math.abs(clamp(base + (modifiers[index] * multiplier)) - alpha);
+						if (distance < closestDistance) {
+							closest = index;
+							closestDistance = distance;
+						}
+					}
+					error += closestDistance * closestDistance;
+					final int pixel = ((i % BLOCK_SIZE) * BLOCK_SIZE) + (i / BLOCK_SIZE);
+					bits |= (long) closest << (45 - (pixel * 3));
+				}
+				if (error < resultError) {
+					result = bits;
+					resultError = error;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns which half of a block a pixel is in
+	 * 
+	 * @param flip
+	 *            False if the block is split into left and right halves,
+	 *            true for top and bottom halves
+	 */
+	static int getSubBlock(int x, int y, boolean flip) {
+		return (flip ? y : x) < 2 ? 0 : 1;
+	}
+
+	private static int getAverageColor(int[] block, boolean flip, int subBlock, boolean ignoreTransparent) {
+		int red = 0, green = 0, blue = 0, count = 0;
+		for (int i = 0; i < PIXELS_PER_BLOCK; i++) {
+			if (getSubBlock(i % BLOCK_SIZE, i / BLOCK_SIZE, flip) != subBlock) {
+				continue;
+			}
+			if (ignoreTransparent && (block[i] >>> 24) == 0) {
+				continue;
+			}
+			red += (block[i] >> 16) & 0xFF;
+			green += (block[i] >> 8) & 0xFF;
+			blue += block[i] & 0xFF;
+			count++;
+		}
+		if (count == 0) {
+			return 0;
+		}
+		return ((red / count) << 16) | ((green / count) << 8) | (blue / count);
+	}
+
+	private static int[] quantize(int rgb, int maximum) {
+		final int[] result = new int[3];
+		for (int channel = 0; channel < 3; channel++) {
+			final int value = (rgb >> (16 - (channel * 8))) & 0xFF;
+			result[channel] = (int) Math.round(value * maximum / 255.0);
+		}
+		return result;
+	}
+
+	/**
+	 * Expands a 4 or 5 bit per channel base color to 8 bits per channel the
+	 * way GPUs do
+	 */
+	private static int expand(int[] color, int maximum) {
+		int result = 0;
+		for (int channel = 0; channel < 3; channel++) {
+			final int value;
+			if (maximum == 15) {
+				value = (color[channel] << 4) | color[channel];
+			} else {
+				value = (color[channel] << 3) | (color[channel] >> 2);
+			}
+			result |= value << (16 - (channel * 8));
+		}
+		return result;
+	}
+
+	private static int modify(int rgb, int modifier) {
+		final int red = clamp(((rgb >> 16) & 0xFF) + modifier);
+		final int green = clamp(((rgb >> 8) & 0xFF) + modifier);
+		final int blue = clamp((rgb & 0xFF) + modifier);
+		return (red << 16) | (green << 8) | blue;
+	}
+
+	private static int getDistance(int argb, int rgb) {
+		final int redDistance = ((argb >> 16) & 0xFF) - ((rgb >> 16) & 0xFF);
+		final int greenDistance = ((argb >> 8) & 0xFF) - ((rgb >> 8) & 0xFF);
+		final int blueDistance = (argb & 0xFF) - (rgb & 0xFF);
+		return (redDistance * redDistance) + (greenDistance * greenDistance) + (blueDistance * blueDistance);
+	}
+
+	private static int clamp(int value) {
+		return Math.max(0, Math.min(255, value));
+	}
+
+	private static void writeLong(byte[] result, int offset, long value) {
+		for (int i = 0; i < 8; i++) {
+			result[offset + i] = (byte) (value >>> (56 - (i * 8)));
+		}
+	}
+
+	private static int writeInt(byte[] result, int offset, int value) {
+		result[offset] = (byte) value;
+		result[offset + 1] = (byte) (value >> 8);
+		result[offset + 2] = (byte) (value >> 16);
+		result[offset + 3] = (byte) (value >> 24);
+		return offset + 4;
+	}
+}
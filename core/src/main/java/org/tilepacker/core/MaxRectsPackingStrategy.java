@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A MaxRects {@link PackingStrategy} using the best short side fit heuristic.
+ * Free rectangles that are contained by other free rectangles are discarded
+ * so that only maximal free rectangles are kept.
+ * 
+ * @author Thomas Cashman
+ */
+public class MaxRectsPackingStrategy implements PackingStrategy {
+	private final List<Rectangle> freeRectangles = new ArrayList<Rectangle>();
+	private final List<Rectangle> tmpNewRectangles = new ArrayList<Rectangle>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param widthInTiles
+	 *            The width of the area being packed
+	 * @param heightInTiles
+	 *            The height of the area being packed
+	 */
+	public MaxRectsPackingStrategy(int widthInTiles, int heightInTiles) {
+		freeRectangles.add(new Rectangle(0, 0, widthInTiles, heightInTiles));
+	}
+
+	@Override
+	public Rectangle insert(int width, int height) {
+		Rectangle bestRectangle = null;
+		int bestShortSide = Integer.MAX_VALUE;
+		int bestLongSide = Integer.MAX_VALUE;
+
+		for (int i = 0; i < freeRectangles.size(); i++) {
+			Rectangle freeRectangle = freeRectangles.get(i);
+			if (!freeRectangle.canContain(width, height)) {
+				continue;
+			}
+			int leftoverWidth = freeRectangle.getWidth() - width;
+			int leftoverHeight = freeRectangle.getHeight() - height;
+			int shortSide = Math.min(leftoverWidth, leftoverHeight);
+			int longSide = Math.max(leftoverWidth, leftoverHeight);
+
+			if (shortSide < bestShortSide || (shortSide == bestShortSide && longSide < bestLongSide)) {
+				bestRectangle = freeRectangle;
+				bestShortSide = shortSide;
+				bestLongSide = longSide;
+			}
+		}
+		if (bestRectangle == null) {
+			return null;
+		}
+		final Rectangle result = new Rectangle(bestRectangle.getX(), bestRectangle.getY(), width, height);
+		occupy(result);
+		return result;
+	}
+
+	@Override
+	public void occupy(Rectangle rectangle) {
+		int write = 0;
+		for (int i = 0; i < freeRectangles.size(); i++) {
+			Rectangle freeRectangle = freeRectangles.get(i);
+			if (freeRectangle.intersects(rectangle)) {
+				Rectangle.subtract(tmpNewRectangles, freeRectangle, Rectangle.and(freeRectangle, rectangle));
+			} else {
+				freeRectangles.set(write++, freeRectangle);
+			}
+		}
+		truncate(write);
+
+		// New rectangles are inside a removed rectangle so they can never
+		// contain a remaining rectangle, only be contained by one
+		final int remaining = write;
+		for (int i = 0; i < tmpNewRectangles.size(); i++) {
+			Rectangle newRectangle = tmpNewRectangles.get(i);
+			if (!isContained(newRectangle, i, remaining)) {
+				freeRectangles.add(newRectangle);
+			}
+		}
+		tmpNewRectangles.clear();
+	}
+
+	private boolean isContained(Rectangle newRectangle, int newIndex, int remaining) {
+		for (int i = 0; i < remaining; i++) {
+			if (freeRectangles.get(i).contains(newRectangle)) {
+				return true;
+			}
+		}
+		for (int i = 0; i < tmpNewRectangles.size(); i++) {
+			if (i == newIndex) {
+				continue;
+			}
+			Rectangle otherRectangle = tmpNewRectangles.get(i);
+			if (!otherRectangle.contains(newRectangle)) {
+				continue;
+			}
+			// Keep the first of two equal rectangles
+			if (!otherRectangle.equals(newRectangle) || i < newIndex) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void truncate(int size) {
+		if (size < freeRectangles.size()) {
+			freeRectangles.subList(size, freeRectangles.size()).clear();
+		}
+	}
+
+	@Override
+	public boolean isFull() {
+		return freeRectangles.isEmpty();
+	}
+
+	@Override
+	public int getFreeAreaCount() {
+		return freeRectangles.size();
+	}
+}
@@ -0,0 +1,547 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Packs all images of a run at once instead of in the order they are read.
+ * Unplaced images are sorted by a {@link PackingOrder} and each is placed
+ * into the fullest tileset it fits in. Images placed on a previous run keep
+ * their placement.
+ * 
+ * Packings are computed with {@link PackingStrategy} instances only, so
+ * several can be computed concurrently without modifying the
+ * {@link TileImage}s. The chosen {@link Packing} is then applied to the
+ * images, which are added to tilesets as already placed images.
+ * 
+ * With an amount of search rounds,
+ * {@link #search(Packing, int, int, long, long, ExecutorService)} improves a
+ * packing by simulated annealing over the order images are placed in.
+ * 
+ * @author Thomas Cashman
+ */
+public class OfflinePacker {
+	private static final PackingOrder[] BEST_ORDERS = { PackingOrder.AREA, PackingOrder.MAX_SIDE,
+			PackingOrder.HEIGHT };
+	private static final int ITERATIONS_PER_ROUND = 64;
+	private static final double INITIAL_TEMPERATURE = 0.05;
+	private static final double COOLING_RATE = 0.95;
+
+	private final PackingContext context;
+	private final List<TileImage> images;
+	private final int[] widths;
+	private final int[] heights;
+	private final int[] groups;
+	private final int groupCount;
+	private final boolean grouped;
+	private final int[] unplacedImages;
+	private final int tilesetArea;
+	private final int minimumTilesetCount;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param context
+	 *            The {@link PackingContext} of the run
+	 * @param images
+	 *            The images to pack
+	 * @param groups
+	 *            The group of each image, images are only packed into
+	 *            tilesets of their own group. Null to pack images into any
+	 *            tileset.
+	 */
+	public OfflinePacker(PackingContext context, List<TileImage> images, List<String> groups) {
+		this.context = context;
+		this.images = images;
+		widths = new int[images.size()];
+		heights = new int[images.size()];
+		this.groups = new int[images.size()];
+		grouped = groups != null;
+
+		final Map<String, Integer> groupIds = new HashMap<String, Integer>();
+		int unplacedCount = 0;
+		int placedTilesetCount = 0;
+		long totalArea = 0;
+		for (int i = 0; i < images.size(); i++) {
+			final TileImage image = images.get(i);
+			widths[i] = image.getHorizontalTileCount();
+			heights[i] = image.getVerticalTileCount();
+			if (grouped) {
+				Integer groupId = groupIds.get(groups.get(i));
+				if (groupId == null) {
+					groupId = groupIds.size();
+					groupIds.put(groups.get(i), groupId);
+				}
+				this.groups[i] = groupId;
+			}
+			if (!image.isPlaced()) {
+				unplacedCount++;
+			} else {
+				placedTilesetCount = Math.max(placedTilesetCount, image.getTileset() + 1);
+			}
+			totalArea += widths[i] * heights[i];
+		}
+		groupCount = Math.max(1, groupIds.size());
+		tilesetArea = context.getTilesetWidthInTiles() * context.getTilesetHeightInTiles();
+		minimumTilesetCount = Math.max(placedTilesetCount, (int) ((totalArea + tilesetArea - 1) / tilesetArea));
+
+		unplacedImages = new int[unplacedCount];
+		for (int i = 0, j = 0; i < images.size(); i++) {
+			if (!images.get(i).isPlaced()) {
+				unplacedImages[j++] = i;
+			}
+		}
+	}
+
+	/**
+	 * Packs the images in an order, trying each order concurrently for
+	 * {@link PackingOrder#BEST}
+	 * 
+	 * @param order
+	 *            The {@link PackingOrder}
+	 * @param executorService
+	 *            The worker pool, null to pack on the calling thread
+	 * @return The {@link Packing} with the fewest tilesets, the first order
+	 *         wins ties
+	 */
+	public Packing pack(PackingOrder order, ExecutorService executorService) throws IOException {
+		if (order != PackingOrder.BEST) {
+			return pack(sort(order));
+		}
+		final List<Future<Packing>> packings = new ArrayList<Future<Packing>>(BEST_ORDERS.length);
+		for (final PackingOrder bestOrder : BEST_ORDERS) {
+			packings.add(TilePacker.submit(executorService, new Callable<Packing>() {
+				@Override
+				public Packing call() throws Exception {
+					return pack(sort(bestOrder));
+				}
+			}));
+		}
+		Packing result = null;
+		for (int i = 0; i < packings.size(); i++) {
+			final Packing packing = TilePacker.await(packings.get(i));
+			if (result == null || packing.getTilesetCount() < result.getTilesetCount()) {
+				result = packing;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the amount of search rounds expected to fit in a time budget
+	 * when each chain runs on its own worker thread. Rounds are estimated
+	 * from the amount of images and
+	 * {@link PackingAlgorithm#getEstimatedPlacementNanos()} rather than
+	 * measured, so the same budget always gives the same amount of rounds
+	 * for the same images.
+	 * 
+	 * @param budgetMillis
+	 *            The time budget of the search
+	 * @return 0 if there is no budget or nothing to search
+	 */
+	public int getSearchRounds(long budgetMillis) {
+		if (budgetMillis <= 0 || unplacedImages.length < 2) {
+			return 0;
+		}
+		final long roundNanos = ITERATIONS_PER_ROUND * (long) images.size()
+				* context.getPackingAlgorithm().getEstimatedPlacementNanos();
+		return (int) Math.max(1L, Math.min(Integer.MAX_VALUE, (budgetMillis * 1000000L) / roundNanos));
+	}
+
+	/**
+	 * Searches for a packing with fewer tilesets than an initial packing.
+	 * Each round, every chain anneals from the best packing found so far
+	 * with its own random sequence. Rounds run until the amount of rounds is
+	 * reached or no packing can use fewer tilesets.
+	 * 
+	 * Chains are seeded from the seed and the best packing is only chosen
+	 * between rounds, so the same seed, amount of chains and amount of
+	 * rounds produce the same packing regardless of the amount of worker
+	 * threads. The time budget is only a safety limit, a search stopped by it
+	 * depends on the speed of the machine and is reported by
+	 * {@link Packing#isTimeBudgetReached()}.
+	 * 
+	 * @param initial
+	 *            The {@link Packing} to improve
+	 * @param rounds
+	 *            The maximum amount of rounds to search for
+	 * @param chains
+	 *            The amount of annealing chains run each round
+	 * @param budgetMillis
+	 *            The time after which to stop searching, 0 for no limit. At
+	 *            least one round is run and the budget may be exceeded by up
+	 *            to one round.
+	 * @param seed
+	 *            The seed of the random sequences
+	 * @param executorService
+	 *            The worker pool, null to search on the calling thread
+	 * @return The best {@link Packing} found, the initial packing if none was
+	 *         better
+	 */
+	public Packing search(Packing initial, int rounds, int chains, long budgetMillis, long seed,
+			ExecutorService executorService) throws IOException {
+		if (chains < 1) {
+			throw new IllegalArgumentException("At least one search chain is required");
+		}
+		if (unplacedImages.length < 2) {
+			return initial;
+		}
+		final Random[] randoms = new Random[chains];
+		for (int i = 0; i < randoms.length; i++) {
+			randoms[i] = new Random(seed + i);
+		}
+
+		final long startTime = System.nanoTime();
+		final List<Future<Packing>> packings = new ArrayList<Future<Packing>>(randoms.length);
+		Packing result = initial;
+		int round = 0;
+		boolean timeBudgetReached = false;
+		while (result.getTilesetCount() > minimumTilesetCount && round < rounds) {
+			if (round > 0 && budgetMillis > 0 && System.nanoTime() - startTime >= budgetMillis * 1000000L) {
+				timeBudgetReached = true;
+				break;
+			}
+			final Packing start = result;
+			packings.clear();
+			for (final Random random : randoms) {
+				packings.add(TilePacker.submit(executorService, new Callable<Packing>() {
+					@Override
+					public Packing call() throws Exception {
+						return anneal(start, random);
+					}
+				}));
+			}
+			for (int i = 0; i < packings.size(); i++) {
+				final Packing packing = TilePacker.await(packings.get(i));
+				if (packing.isBetterThan(result)) {
+					result = packing;
+				}
+			}
+			round++;
+		}
+		result.searchRounds = round;
+		result.timeBudgetReached = timeBudgetReached;
+		return result;
+	}
+
+	private Packing anneal(Packing start, Random random) {
+		Packing current = start;
+		Packing result = start;
+		double temperature = INITIAL_TEMPERATURE;
+		for (int i = 0; i < ITERATIONS_PER_ROUND; i++) {
+			final int[] order = current.order.clone();
+			final int from = random.nextInt(order.length);
+			final int to = random.nextInt(order.length);
+			if (random.nextBoolean()) {
+				final int image = order[from];
+				order[from] = order[to];
+				order[to] = image;
+			} else {
+				final int image = order[from];
+				if (from < to) {
+					System.arraycopy(order, from + 1, order, from, to - from);
+				} else {
+					System.arraycopy(order, to, order, to + 1, from - to);
+				}
+				order[to] = image;
+			}
+
+			final Packing packing = pack(order);
+			final double delta = packing.getCost() - current.getCost();
+			if (delta <= 0 || random.nextDouble() < Math.exp(-delta / temperature)) {
+				current = packing;
+				if (packing.isBetterThan(result)) {
+					result = packing;
+				}
+			}
+			temperature *= COOLING_RATE;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the indices of the unplaced images sorted by an order. Images
+	 * that compare equal stay in the order they were read.
+	 */
+	public int[] sort(PackingOrder order) {
+		final Integer[] sorted = new Integer[unplacedImages.length];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = unplacedImages[i];
+		}
+		switch (order) {
+		case NONE:
+			break;
+		case AREA:
+			Arrays.sort(sorted, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					int result = Integer.compare(widths[o2] * heights[o2], widths[o1] * heights[o1]);
+					if (result == 0) {
+						result = Integer.compare(getMaxSide(o2), getMaxSide(o1));
+					}
+					return result;
+				}
+			});
+			break;
+		case MAX_SIDE:
+			Arrays.sort(sorted, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					int result = Integer.compare(getMaxSide(o2), getMaxSide(o1));
+					if (result == 0) {
+						result = Integer.compare(widths[o2] * heights[o2], widths[o1] * heights[o1]);
+					}
+					return result;
+				}
+			});
+			break;
+		case HEIGHT:
+			Arrays.sort(sorted, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					int result = Integer.compare(heights[o2], heights[o1]);
+					if (result == 0) {
+						result = Integer.compare(widths[o2], widths[o1]);
+					}
+					return result;
+				}
+			});
+			break;
+		default:
+			throw new TilePackerException("ERROR: Cannot sort images by " + order);
+		}
+		final int[] result = new int[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			result[i] = sorted[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Packs the unplaced images in an order, placing each into the fullest
+	 * tileset of its group that it fits in
+	 * 
+	 * @param order
+	 *            The indices of the unplaced images in the order to pack
+	 *            them
+	 * @return The resulting {@link Packing}
+	 */
+	public Packing pack(int[] order) {
+		final Packing result = new Packing(images.size(), order);
+		final List<Bin> bins = new ArrayList<Bin>();
+		final List<List<Bin>> binsByGroup = new ArrayList<List<Bin>>(groupCount);
+		for (int i = 0; i < groupCount; i++) {
+			binsByGroup.add(new ArrayList<Bin>());
+		}
+
+		for (int i = 0; i < images.size(); i++) {
+			final TileImage image = images.get(i);
+			if (!image.isPlaced()) {
+				continue;
+			}
+			while (image.getTileset() >= bins.size()) {
+				bins.add(new Bin(bins.size()));
+			}
+			final Bin bin = bins.get(image.getTileset());
+			bin.strategy.occupy(new Rectangle(image.getTilesetX(), image.getTilesetY(), widths[i], heights[i]));
+			bin.usedArea += widths[i] * heights[i];
+			if (!binsByGroup.get(groups[i]).contains(bin)) {
+				binsByGroup.get(groups[i]).add(bin);
+			}
+			result.place(i, bin.index, image.getTilesetX(), image.getTilesetY());
+		}
+
+		final List<Bin> candidates = new ArrayList<Bin>();
+		for (int i = 0; i < order.length; i++) {
+			final int image = order[i];
+			candidates.clear();
+			candidates.addAll(grouped ? binsByGroup.get(groups[image]) : bins);
+			Collections.sort(candidates);
+
+			Rectangle rectangle = null;
+			Bin bin = null;
+			for (int j = 0; j < candidates.size() && rectangle == null; j++) {
+				bin = candidates.get(j);
+				if (!bin.strategy.isFull()) {
+					rectangle = bin.strategy.insert(widths[image], heights[image]);
+				}
+			}
+			if (rectangle == null) {
+				bin = new Bin(bins.size());
+				rectangle = bin.strategy.insert(widths[image], heights[image]);
+				if (rectangle == null) {
+					throw new TilePackerException("ERROR: Tile image too large");
+				}
+				bins.add(bin);
+				binsByGroup.get(groups[image]).add(bin);
+			}
+			bin.usedArea += widths[image] * heights[image];
+			result.place(image, bin.index, rectangle.getX(), rectangle.getY());
+		}
+		result.tilesetCount = bins.size();
+		result.leastUsedArea = tilesetArea;
+		for (int i = 0; i < bins.size(); i++) {
+			result.leastUsedArea = Math.min(result.leastUsedArea, bins.get(i).usedArea);
+		}
+		return result;
+	}
+
+	private int getMaxSide(int image) {
+		return Math.max(widths[image], heights[image]);
+	}
+
+	/**
+	 * A tileset being packed. Bins sort fullest first so that images are
+	 * placed by best fit.
+	 */
+	private class Bin implements Comparable<Bin> {
+		private final int index;
+		private final PackingStrategy strategy;
+		private int usedArea;
+
+		public Bin(int index) {
+			this.index = index;
+			strategy = context.getPackingAlgorithm().createStrategy(context.getTilesetWidthInTiles(),
+					context.getTilesetHeightInTiles());
+		}
+
+		@Override
+		public int compareTo(Bin o) {
+			final int result = Integer.compare(o.usedArea, usedArea);
+			if (result == 0) {
+				return Integer.compare(index, o.index);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * The tileset and position chosen for each image
+	 */
+	public class Packing {
+		private final int[] tilesets;
+		private final int[] tilesetX;
+		private final int[] tilesetY;
+		private final int[] order;
+		private int tilesetCount;
+		private int leastUsedArea;
+		private int searchRounds;
+		private boolean timeBudgetReached;
+
+		private Packing(int imageCount, int[] order) {
+			this.order = order;
+			tilesets = new int[imageCount];
+			tilesetX = new int[imageCount];
+			tilesetY = new int[imageCount];
+		}
+
+		private void place(int image, int tileset, int x, int y) {
+			tilesets[image] = tileset;
+			tilesetX[image] = x;
+			tilesetY[image] = y;
+		}
+
+		/**
+		 * Fewer tilesets are better. Between equal amounts, a packing with an
+		 * emptier tileset is closer to needing one tileset less.
+		 */
+		private boolean isBetterThan(Packing packing) {
+			if (tilesetCount != packing.tilesetCount) {
+				return tilesetCount < packing.tilesetCount;
+			}
+			return leastUsedArea < packing.leastUsedArea;
+		}
+
+		private double getCost() {
+			return tilesetCount + (leastUsedArea / (double) tilesetArea);
+		}
+
+		/**
+		 * Returns the amount of tilesets the images are packed into
+		 * 
+		 * @return
+		 */
+		public int getTilesetCount() {
+			return tilesetCount;
+		}
+
+		/**
+		 * Returns the amount of search rounds run to find this packing, 0 if
+		 * it was not searched for
+		 * 
+		 * @return
+		 */
+		public int getSearchRounds() {
+			return searchRounds;
+		}
+
+		/**
+		 * Returns if the search for this packing was stopped by its time
+		 * budget before running all of its rounds
+		 * 
+		 * @return
+		 */
+		public boolean isTimeBudgetReached() {
+			return timeBudgetReached;
+		}
+
+		/**
+		 * Sets the placement of every image and returns the images ordered
+		 * by tileset, so that each tileset is completed before the next
+		 * 
+		 * @return
+		 */
+		public List<TileImage> apply() {
+			final List<TileImage> result = new ArrayList<TileImage>(images);
+			for (int i = 0; i < images.size(); i++) {
+				final TileImage image = images.get(i);
+				image.setTileset(tilesets[i]);
+				image.setTilesetX(tilesetX[i]);
+				image.setTilesetY(tilesetY[i]);
+			}
+			Collections.sort(result, new Comparator<TileImage>() {
+				@Override
+				public int compare(TileImage o1, TileImage o2) {
+					return Integer.compare(o1.getTileset(), o2.getTileset());
+				}
+			});
+			return result;
+		}
+	}
+}
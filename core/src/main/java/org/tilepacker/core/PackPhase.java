@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+/**
+ * The phases of a run that are timed in a {@link PackResult}
+ * 
+ * @author Thomas Cashman
+ */
+public enum PackPhase {
+	/**
+	 * Finding tile files and matching them to config.xml
+	 */
+	SCAN("scan"),
+	/**
+	 * Reading image dimensions, hashing changed files and deduplicating
+	 * tiles
+	 */
+	READ("read"),
+	/**
+	 * Placing images into tilesets
+	 */
+	PACK("pack"),
+	/**
+	 * Decoding tile images while tilesets are saved
+	 */
+	DECODE("decode"),
+	/**
+	 * Drawing tiles into bands while tilesets are saved
+	 */
+	COMPOSE("compose"),
+	/**
+	 * Encoding bands into tileset files
+	 */
+	ENCODE("encode"),
+	/**
+	 * Writing config.xml and the atlas index
+	 */
+	CONFIG_WRITE("configWrite");
+
+	private final String key;
+
+	private PackPhase(String key) {
+		this.key = key;
+	}
+
+	/**
+	 * Returns the name of the phase in JSON reports
+	 * 
+	 * @return
+	 */
+	public String getKey() {
+		return key;
+	}
+}
@@ -0,0 +1,439 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Timings and packing efficiency of a {@link TilePacker} run. Phases that
+ * run on multiple threads ({@link PackPhase#DECODE},
+ * {@link PackPhase#COMPOSE} and {@link PackPhase#ENCODE}) are summed over
+ * all threads, so may add up to more than the total time.
+ * 
+ * @author Thomas Cashman
+ */
+public class PackResult {
+	private final long[] phaseNanos = new long[PackPhase.values().length];
+	private final List<TilesetResult> tilesets = new ArrayList<TilesetResult>();
+	private long totalNanos;
+	private int imagesPacked;
+	private int imageSplits;
+	private int duplicateTiles;
+	private int emptyTiles;
+	private int searchRounds;
+	private int searchChains;
+	private boolean searchTimeBudgetReached;
+	private long bytesWritten;
+	private long imageCacheHits;
+	private long imageCacheMisses;
+	private long imageCacheEvictions;
+
+	/**
+	 * Returns the time spent in a phase
+	 * 
+	 * @param phase
+	 *            The {@link PackPhase}
+	 * @return The time in nanoseconds
+	 */
+	public long getPhaseNanos(PackPhase phase) {
+		return phaseNanos[phase.ordinal()];
+	}
+
+	void addPhaseNanos(PackPhase phase, long nanos) {
+		phaseNanos[phase.ordinal()] += nanos;
+	}
+
+	/**
+	 * Returns the time from construction of the {@link TilePacker} to the
+	 * end of the run
+	 * 
+	 * @return The time in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	void setTotalNanos(long totalNanos) {
+		this.totalNanos = totalNanos;
+	}
+
+	/**
+	 * Returns the amount of images placed into tilesets, including the
+	 * pieces of split images
+	 * 
+	 * @return
+	 */
+	public int getImagesPacked() {
+		return imagesPacked;
+	}
+
+	void addImagePacked() {
+		imagesPacked++;
+	}
+
+	/**
+	 * Returns the amount of extra pieces images were split into because they
+	 * were larger than a tileset
+	 * 
+	 * @return
+	 */
+	public int getImageSplits() {
+		return imageSplits;
+	}
+
+	void addImageSplit() {
+		imageSplits++;
+	}
+
+	/**
+	 * Returns the amount of tiles that were not packed because they were
+	 * identical to another tile
+	 * 
+	 * @return
+	 */
+	public int getDuplicateTiles() {
+		return duplicateTiles;
+	}
+
+	void setDuplicateTiles(int duplicateTiles) {
+		this.duplicateTiles = duplicateTiles;
+	}
+
+	/**
+	 * Returns the amount of tiles that were not packed because they were
+	 * fully transparent
+	 * 
+	 * @return
+	 */
+	public int getEmptyTiles() {
+		return emptyTiles;
+	}
+
+	void setEmptyTiles(int emptyTiles) {
+		this.emptyTiles = emptyTiles;
+	}
+
+	/**
+	 * Returns the amount of rounds run by the packing search
+	 * 
+	 * @return 0 if the packing was not searched for
+	 */
+	public int getSearchRounds() {
+		return searchRounds;
+	}
+
+	/**
+	 * Returns the amount of annealing chains run each round by the packing
+	 * search. The same seed, chains and rounds give the same packing.
+	 * 
+	 * @return 0 if the packing was not searched for
+	 */
+	public int getSearchChains() {
+		return searchChains;
+	}
+
+	/**
+	 * Returns if the packing search was stopped by the time budget before
+	 * running all of its rounds, in which case the packing depends on the
+	 * speed of the machine
+	 * 
+	 * @return
+	 */
+	public boolean isSearchTimeBudgetReached() {
+		return searchTimeBudgetReached;
+	}
+
+	void setSearchRounds(int searchRounds, int searchChains, boolean searchTimeBudgetReached) {
+		this.searchRounds = searchRounds;
+		this.searchChains = searchChains;
+		this.searchTimeBudgetReached = searchTimeBudgetReached;
+	}
+
+	/**
+	 * Returns the size of the tilesets, config.xml and atlas index written
+	 * during the run
+	 * 
+	 * @return The size in bytes
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	void addBytesWritten(long bytes) {
+		bytesWritten += bytes;
+	}
+
+	public long getImageCacheHits() {
+		return imageCacheHits;
+	}
+
+	public long getImageCacheMisses() {
+		return imageCacheMisses;
+	}
+
+	public long getImageCacheEvictions() {
+		return imageCacheEvictions;
+	}
+
+	void setImageCacheStatistics(long hits, long misses, long evictions) {
+		this.imageCacheHits = hits;
+		this.imageCacheMisses = misses;
+		this.imageCacheEvictions = evictions;
+	}
+
+	/**
+	 * Returns the results of each tileset, ordered by index
+	 * 
+	 * @return
+	 */
+	public List<TilesetResult> getTilesets() {
+		return Collections.unmodifiableList(tilesets);
+	}
+
+	void addTileset(TilesetResult tileset) {
+		tilesets.add(tileset);
+	}
+
+	/**
+	 * Returns the fraction of tiles across all tilesets that are occupied by
+	 * images
+	 * 
+	 * @return 0 if there are no tilesets
+	 */
+	public double getOccupancy() {
+		long usedTiles = 0;
+		long totalTiles = 0;
+		for (int i = 0; i < tilesets.size(); i++) {
+			usedTiles += tilesets.get(i).getUsedTiles();
+			totalTiles += tilesets.get(i).getTotalTiles();
+		}
+		return totalTiles == 0 ? 0.0 : (double) usedTiles / totalTiles;
+	}
+
+	/**
+	 * Writes this result as a JSON object
+	 * 
+	 * @param file
+	 *            The file to write to
+	 * @throws IOException
+	 */
+	public void writeJson(File file) throws IOException {
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+		Files.write(file.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Returns this result as a JSON object. Times are in milliseconds.
+	 * 
+	 * @return
+	 */
+	public String toJson() {
+		final StringBuilder result = new StringBuilder(256 + (tilesets.size() * 256));
+		result.append("{\n");
+		result.append("  \"totalMillis\": ").append(toMillis(totalNanos)).append(",\n");
+		result.append("  \"phaseMillis\": {");
+		for (PackPhase phase : PackPhase.values()) {
+			result.append(phase.ordinal() == 0 ? "\n" : ",\n");
+			result.append("    \"").append(phase.getKey()).append("\": ").append(toMillis(getPhaseNanos(phase)));
+		}
+		result.append("\n  },\n");
+		result.append("  \"imagesPacked\": ").append(imagesPacked).append(",\n");
+		result.append("  \"imageSplits\": ").append(imageSplits).append(",\n");
+		result.append("  \"duplicateTiles\": ").append(duplicateTiles).append(",\n");
+		result.append("  \"emptyTiles\": ").append(emptyTiles).append(",\n");
+		result.append("  \"searchRounds\": ").append(searchRounds).append(",\n");
+		result.append("  \"searchChains\": ").append(searchChains).append(",\n");
+		result.append("  \"searchTimeBudgetReached\": ").append(searchTimeBudgetReached).append(",\n");
+		result.append("  \"bytesWritten\": ").append(bytesWritten).append(",\n");
+		result.append("  \"occupancy\": ").append(toFraction(getOccupancy())).append(",\n");
+		result.append("  \"imageCache\": { \"hits\": ").append(imageCacheHits).append(", \"misses\": ")
+				.append(imageCacheMisses).append(", \"evictions\": ").append(imageCacheEvictions).append(" },\n");
+		result.append("  \"tilesets\": [");
+		for (int i = 0; i < tilesets.size(); i++) {
+			final TilesetResult tileset = tilesets.get(i);
+			result.append(i == 0 ? "\n" : ",\n");
+			result.append("    { \"index\": ").append(tileset.getIndex());
+			result.append(", \"file\": ");
+			appendString(result, tileset.getFile());
+			result.append(", \"skipped\": ").append(tileset.isSkipped());
+			result.append(", \"usedTiles\": ").append(tileset.getUsedTiles());
+			result.append(", \"totalTiles\": ").append(tileset.getTotalTiles());
+			result.append(", \"wastedTiles\": ").append(tileset.getWastedTiles());
+			result.append(", \"occupancy\": ").append(toFraction(tileset.getOccupancy()));
+			result.append(", \"peakFreeAreas\": ").append(tileset.getPeakFreeAreaCount());
+			result.append(", \"bytesWritten\": ").append(tileset.getBytesWritten());
+			result.append(" }");
+		}
+		result.append(tilesets.isEmpty() ? "]\n" : "\n  ]\n");
+		result.append("}\n");
+		return result.toString();
+	}
+
+	private static String toMillis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+	}
+
+	private static String toFraction(double value) {
+		return String.format(Locale.ROOT, "%.4f", value);
+	}
+
+	private static void appendString(StringBuilder result, String value) {
+		if (value == null) {
+			result.append("null");
+			return;
+		}
+		result.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				result.append("\\\"");
+				break;
+			case '\\':
+				result.append("\\\\");
+				break;
+			default:
+				if (c < 0x20) {
+					result.append(String.format("\\u%04x", (int) c));
+				} else {
+					result.append(c);
+				}
+				break;
+			}
+		}
+		result.append('"');
+	}
+
+	/**
+	 * The packing efficiency and output of a single tileset
+	 */
+	public static class TilesetResult {
+		private final int index;
+		private final String file;
+		private final boolean skipped;
+		private final int usedTiles;
+		private final int totalTiles;
+		private final int peakFreeAreaCount;
+		private final long bytesWritten;
+
+		TilesetResult(int index, String file, boolean skipped, int usedTiles, int totalTiles, int peakFreeAreaCount,
+				long bytesWritten) {
+			this.index = index;
+			this.file = file;
+			this.skipped = skipped;
+			this.usedTiles = usedTiles;
+			this.totalTiles = totalTiles;
+			this.peakFreeAreaCount = peakFreeAreaCount;
+			this.bytesWritten = bytesWritten;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Returns the name of the tileset file in the output directory
+		 * 
+		 * @return
+		 */
+		public String getFile() {
+			return file;
+		}
+
+		/**
+		 * Returns if the tileset was unchanged and not written again
+		 * 
+		 * @return
+		 */
+		public boolean isSkipped() {
+			return skipped;
+		}
+
+		/**
+		 * Returns the amount of tiles occupied by images
+		 * 
+		 * @return
+		 */
+		public int getUsedTiles() {
+			return usedTiles;
+		}
+
+		/**
+		 * Returns the amount of tiles the tileset can hold
+		 * 
+		 * @return
+		 */
+		public int getTotalTiles() {
+			return totalTiles;
+		}
+
+		/**
+		 * Returns the amount of tiles left empty
+		 * 
+		 * @return
+		 */
+		public int getWastedTiles() {
+			return totalTiles - usedTiles;
+		}
+
+		/**
+		 * Returns the fraction of tiles occupied by images
+		 * 
+		 * @return
+		 */
+		public double getOccupancy() {
+			return totalTiles == 0 ? 0.0 : (double) usedTiles / totalTiles;
+		}
+
+		/**
+		 * Returns the most free areas tracked at once while packing
+		 * 
+		 * @return
+		 */
+		public int getPeakFreeAreaCount() {
+			return peakFreeAreaCount;
+		}
+
+		/**
+		 * Returns the size of the tileset file
+		 * 
+		 * @return 0 if the tileset was skipped
+		 */
+		public long getBytesWritten() {
+			return bytesWritten;
+		}
+	}
+}
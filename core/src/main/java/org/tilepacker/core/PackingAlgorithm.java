@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+/**
+ * The {@link PackingStrategy} implementations that can be selected in the
+ * configuration
+ * 
+ * @author Thomas Cashman
+ */
+public enum PackingAlgorithm {
+	/**
+	 * Places images in the smallest free rectangle that fits them. This was
+	 * the only algorithm prior to 5.1.0.
+	 */
+	DEFAULT,
+	/**
+	 * MaxRects with best short side fit. Usually produces the fewest
+	 * tilesets.
+	 */
+	MAXRECTS,
+	/**
+	 * Bottom-left skyline. The fastest algorithm but wastes space beneath
+	 * overhanging images.
+	 */
+	SKYLINE,
+	/**
+	 * Guillotine splitting of the best area fit
+	 */
+	GUILLOTINE;
+
+	/**
+	 * Creates a new {@link PackingStrategy} for an empty area
+	 * 
+	 * @param widthInTiles
+	 *            The width of the area in tiles
+	 * @param heightInTiles
+	 *            The height of the area in tiles
+	 * @return
+	 */
+	public PackingStrategy createStrategy(int widthInTiles, int heightInTiles) {
+		switch (this) {
+		case MAXRECTS:
+			return new MaxRectsPackingStrategy(widthInTiles, heightInTiles);
+		case SKYLINE:
+			return new SkylinePackingStrategy(widthInTiles, heightInTiles);
+		case GUILLOTINE:
+			return new GuillotinePackingStrategy(widthInTiles, heightInTiles);
+		case DEFAULT:
+		default:
+			return new FreeRectanglePackingStrategy(widthInTiles, heightInTiles);
+		}
+	}
+
+	/**
+	 * Returns a rough, deliberately high estimate of the time it takes to
+	 * place one image. The packing search uses this to turn a time budget
+	 * into an amount of rounds without measuring the machine.
+	 * 
+	 * @return The time in nanoseconds
+	 */
+	public long getEstimatedPlacementNanos() {
+		switch (this) {
+		case MAXRECTS:
+			return 5000L;
+		case SKYLINE:
+			return 2000L;
+		case GUILLOTINE:
+			return 1000L;
+		case DEFAULT:
+		default:
+			return 50000L;
+		}
+	}
+
+	/**
+	 * Looks up an algorithm by name, ignoring case
+	 * 
+	 * @param name
+	 *            The name of the algorithm, null for {@link #DEFAULT}
+	 * @return
+	 */
+	public static PackingAlgorithm fromName(String name) {
+		if (name == null) {
+			return DEFAULT;
+		}
+		for (PackingAlgorithm algorithm : values()) {
+			if (algorithm.name().equalsIgnoreCase(name.trim())) {
+				return algorithm;
+			}
+		}
+		throw new TilePackerException("ERROR: Unknown packing algorithm " + name);
+	}
+}
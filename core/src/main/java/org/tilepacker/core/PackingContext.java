@@ -0,0 +1,346 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.File;
+
+/**
+ * The settings of a single packing run. Instances are immutable and shared
+ * by the {@link Tileset}s and {@link TileImage}s of a run so that multiple
+ * {@link TilePacker}s can run concurrently with different settings.
+ * 
+ * @author Thomas Cashman
+ */
+public class PackingContext {
+	private final int tileWidth;
+	private final int tileHeight;
+	private final int tilePadding;
+	private final int cellWidth, cellHeight;
+	private final int tilesetWidth;
+	private final int tilesetHeight;
+	private final boolean preventTearing;
+	private final boolean premultiplyAlpha;
+	private final String backgroundColor;
+	private final PackingAlgorithm packingAlgorithm;
+	private final PackingOrder packingOrder;
+	private final int packingSearchRounds;
+	private final int packingSearchChains;
+	private final long packingTimeBudgetMillis;
+	private final long packingSeed;
+	private final ImageSplitting imageSplitting;
+	private final String outputFormat;
+	private final boolean contentHashNames;
+	private final int pngCompressionLevel;
+	private final PngFilter pngFilter;
+	private final int encoderThreads;
+	private final boolean chunkedPngEncoding;
+	private final int jpegQuality;
+	private final String jpegChromaSubsampling;
+	private final String ddsCompression;
+	private final String ktxCompression;
+	private final File targetDirectory;
+	private final ImageCache imageCache;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param config
+	 *            The {@link TilePackerConfig} to copy settings from
+	 * @param targetDirectory
+	 *            The directory tilesets are written to
+	 */
+	public PackingContext(TilePackerConfig config, File targetDirectory) {
+		this.tileWidth = config.getTileWidth();
+		this.tileHeight = config.getTileHeight();
+		this.tilePadding = config.getTilePadding();
+		this.tilesetWidth = config.getTilesetWidth();
+		this.tilesetHeight = config.getTilesetHeight();
+		this.preventTearing = config.isPreventTearing();
+		this.premultiplyAlpha = config.isPremultiplyAlpha();
+		this.backgroundColor = config.getBackgroundColor();
+		this.packingAlgorithm = PackingAlgorithm.fromName(config.getPackingAlgorithm());
+		this.packingOrder = PackingOrder.fromName(config.getPackingOrder());
+		this.packingSearchRounds = config.getPackingSearchRounds();
+		this.packingSearchChains = config.getPackingSearchChains();
+		this.packingTimeBudgetMillis = config.getPackingTimeBudgetMillis();
+		this.packingSeed = config.getPackingSeed();
+		this.imageSplitting = ImageSplitting.fromName(config.getImageSplitting());
+		this.outputFormat = config.getOutputFormat();
+		this.contentHashNames = config.isContentHashNames();
+		this.pngCompressionLevel = config.getPngCompressionLevel();
+		this.pngFilter = PngFilter.fromName(config.getPngFilter());
+		this.encoderThreads = config.getEncoderThreads() <= 0 ? Runtime.getRuntime().availableProcessors()
+				: config.getEncoderThreads();
+		// Decided from the configured value so that PNG bytes do not depend
+		// on how many processors the machine has
+		this.chunkedPngEncoding = config.getEncoderThreads() != 1;
+		this.jpegQuality = config.getJpegQuality();
+		this.jpegChromaSubsampling = config.getJpegChromaSubsampling();
+		this.ddsCompression = config.getDdsCompression();
+		this.ktxCompression = config.getKtxCompression();
+		if("dds".equalsIgnoreCase(outputFormat) || "ktx".equalsIgnoreCase(outputFormat)) {
+			// Block compression encodes 4x4 pixels together so each cell is
+			// padded out to whole blocks to keep tiles from bleeding together
+			this.cellWidth = alignToBlock(tileWidth + (tilePadding * 2));
+			this.cellHeight = alignToBlock(tileHeight + (tilePadding * 2));
+		} else {
+			this.cellWidth = tileWidth + (tilePadding * 2);
+			this.cellHeight = tileHeight + (tilePadding * 2);
+		}
+		this.targetDirectory = targetDirectory;
+		this.imageCache = new ImageCache(config.getImageCacheMegabytes() * 1024L * 1024L);
+
+		if(preventTearing && tilePadding < 1) {
+			throw new TilePackerException("ERROR: If tearing prevention is enabled, the tile padding must be greater than 0");
+		}
+		if(packingSearchRounds < 0) {
+			throw new TilePackerException("ERROR: Packing search rounds must not be negative");
+		}
+		if(packingSearchChains < 0) {
+			throw new TilePackerException("ERROR: Packing search chains must not be negative");
+		}
+		if(packingTimeBudgetMillis < 0) {
+			throw new TilePackerException("ERROR: Packing time budget must not be negative");
+		}
+		if(pngCompressionLevel < 0 || pngCompressionLevel > 9) {
+			throw new TilePackerException("ERROR: PNG compression level must be between 0 and 9");
+		}
+		if(jpegQuality < 1 || jpegQuality > 100) {
+			throw new TilePackerException("ERROR: JPEG quality must be between 1 and 100");
+		}
+		if(!"4:4:4".equals(jpegChromaSubsampling) && !"4:2:2".equals(jpegChromaSubsampling)
+				&& !"4:2:0".equals(jpegChromaSubsampling)) {
+			throw new TilePackerException("ERROR: JPEG chroma subsampling must be 4:4:4, 4:2:2 or 4:2:0");
+		}
+		if(!"bc1".equalsIgnoreCase(ddsCompression) && !"bc3".equalsIgnoreCase(ddsCompression)) {
+			throw new TilePackerException("ERROR: DDS compression must be bc1 or bc3");
+		}
+		if(!"etc2".equalsIgnoreCase(ktxCompression) && !"etc2_eac".equalsIgnoreCase(ktxCompression)) {
+			throw new TilePackerException("ERROR: KTX compression must be etc2 or etc2_eac");
+		}
+	}
+
+	/**
+	 * Returns the amount of tiles that fit horizontally in a tileset
+	 * @return
+	 */
+	public int getTilesetWidthInTiles() {
+		return tilesetWidth / cellWidth;
+	}
+
+	/**
+	 * Returns the amount of tiles that fit vertically in a tileset
+	 * @return
+	 */
+	public int getTilesetHeightInTiles() {
+		return tilesetHeight / cellHeight;
+	}
+
+	/**
+	 * Returns the width in pixels that each tile occupies in a tileset. This
+	 * is the tile width plus padding on both sides, rounded up to a whole
+	 * amount of 4x4 pixel blocks for DDS and KTX output. The tile is drawn at the
+	 * padding offset and any extra pixels are left as background.
+	 * @return
+	 */
+	public int getCellWidth() {
+		return cellWidth;
+	}
+
+	/**
+	 * Returns the height in pixels that each tile occupies in a tileset
+	 * @see #getCellWidth()
+	 * @return
+	 */
+	public int getCellHeight() {
+		return cellHeight;
+	}
+
+	/**
+	 * Returns if every tile and its padding starts and ends on a 4x4 pixel
+	 * block boundary, so that block compressed tiles do not bleed into each
+	 * other. This is always true for DDS and KTX output.
+	 * @return
+	 */
+	public boolean isBlockAligned() {
+		return cellWidth % BlockCompressedWriter.BLOCK_SIZE == 0 && cellHeight % BlockCompressedWriter.BLOCK_SIZE == 0;
+	}
+
+	private static int alignToBlock(int length) {
+		return ((length + BlockCompressedWriter.BLOCK_SIZE - 1) / BlockCompressedWriter.BLOCK_SIZE) * BlockCompressedWriter.BLOCK_SIZE;
+	}
+
+	/**
+	 * Returns the settings that affect how tilesets are rendered and named
+	 * @return A string that changes when any of the settings change
+	 */
+	public String getRenderSettings() {
+		return tileWidth + "," + tileHeight + "," + tilePadding + "," + tilesetWidth + "," + tilesetHeight + ","
+				+ outputFormat + "," + preventTearing + "," + premultiplyAlpha + "," + backgroundColor + ","
+				+ contentHashNames + "," + pngCompressionLevel + "," + pngFilter + "," + chunkedPngEncoding + ","
+				+ jpegQuality + "," + jpegChromaSubsampling + "," + ddsCompression + ","
+				+ ktxCompression;
+	}
+
+	public int getTileWidth() {
+		return tileWidth;
+	}
+
+	public int getTileHeight() {
+		return tileHeight;
+	}
+
+	public int getTilePadding() {
+		return tilePadding;
+	}
+
+	public int getTilesetWidth() {
+		return tilesetWidth;
+	}
+
+	public int getTilesetHeight() {
+		return tilesetHeight;
+	}
+
+	public boolean isPreventTearing() {
+		return preventTearing;
+	}
+
+	public boolean isPremultiplyAlpha() {
+		return premultiplyAlpha;
+	}
+
+	public String getBackgroundColor() {
+		return backgroundColor;
+	}
+
+	public PackingAlgorithm getPackingAlgorithm() {
+		return packingAlgorithm;
+	}
+
+	public PackingOrder getPackingOrder() {
+		return packingOrder;
+	}
+
+	/**
+	 * Returns the amount of rounds to search for a packing with fewer
+	 * tilesets, 0 to derive the amount from the time budget
+	 * @return
+	 */
+	public int getPackingSearchRounds() {
+		return packingSearchRounds;
+	}
+
+	/**
+	 * Returns the amount of annealing chains run each search round
+	 * @return 0 to run one chain per worker thread
+	 */
+	public int getPackingSearchChains() {
+		return packingSearchChains;
+	}
+
+	/**
+	 * Returns the time the packing search is given. Without an amount of
+	 * search rounds, the rounds are derived from this. The search also stops
+	 * once this time has passed even if it has not run all of its rounds.
+	 * @return 0 for no limit
+	 */
+	public long getPackingTimeBudgetMillis() {
+		return packingTimeBudgetMillis;
+	}
+
+	public long getPackingSeed() {
+		return packingSeed;
+	}
+
+	public ImageSplitting getImageSplitting() {
+		return imageSplitting;
+	}
+
+	public String getOutputFormat() {
+		return outputFormat;
+	}
+
+	/**
+	 * Returns if tilesets are named by a hash of their contents instead of
+	 * their index
+	 * @return
+	 */
+	public boolean isContentHashNames() {
+		return contentHashNames;
+	}
+
+	public int getPngCompressionLevel() {
+		return pngCompressionLevel;
+	}
+
+	public PngFilter getPngFilter() {
+		return pngFilter;
+	}
+
+	/**
+	 * Returns the amount of threads each tileset is encoded with
+	 * @return 1 if tilesets are encoded on the thread that saves them
+	 */
+	public int getEncoderThreads() {
+		return encoderThreads;
+	}
+
+	/**
+	 * Returns if PNG rows are deflated in independent chunks. This is true
+	 * whenever more or all available encoder threads are configured, even if
+	 * the machine only has a single processor.
+	 * @return
+	 */
+	public boolean isChunkedPngEncoding() {
+		return chunkedPngEncoding;
+	}
+
+	public int getJpegQuality() {
+		return jpegQuality;
+	}
+
+	public String getJpegChromaSubsampling() {
+		return jpegChromaSubsampling;
+	}
+
+	public String getDdsCompression() {
+		return ddsCompression;
+	}
+
+	public String getKtxCompression() {
+		return ktxCompression;
+	}
+
+	public File getTargetDirectory() {
+		return targetDirectory;
+	}
+
+	public ImageCache getImageCache() {
+		return imageCache;
+	}
+}
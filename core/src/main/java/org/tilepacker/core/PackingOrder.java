@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+/**
+ * The orders images can be packed in, see {@link OfflinePacker}
+ * 
+ * @author Thomas Cashman
+ */
+public enum PackingOrder {
+	/**
+	 * Packs images in the order they are read into the first tileset they
+	 * fit in. The only order prior to 5.1.0.
+	 */
+	NONE,
+	/**
+	 * Packs the images with the largest area first
+	 */
+	AREA,
+	/**
+	 * Packs the images with the longest side first
+	 */
+	MAX_SIDE,
+	/**
+	 * Packs the tallest images first
+	 */
+	HEIGHT,
+	/**
+	 * Packs with each of {@link #AREA}, {@link #MAX_SIDE} and
+	 * {@link #HEIGHT} concurrently on the worker threads and keeps the
+	 * packing with the fewest tilesets
+	 */
+	BEST;
+
+	/**
+	 * Looks up an order by name, ignoring case
+	 * 
+	 * @param name
+	 *            The name of the order, null for {@link #NONE}
+	 * @return
+	 */
+	public static PackingOrder fromName(String name) {
+		if (name == null) {
+			return NONE;
+		}
+		for (PackingOrder order : values()) {
+			if (order.name().equalsIgnoreCase(name.trim())) {
+				return order;
+			}
+		}
+		throw new TilePackerException("ERROR: Unknown packing order " + name);
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+/**
+ * Decides where images are positioned within a {@link Tileset}. Positions and
+ * sizes are measured in tiles.
+ * 
+ * @author Thomas Cashman
+ */
+public interface PackingStrategy {
+
+	/**
+	 * Finds space for an area and marks it as used
+	 * 
+	 * @param width
+	 *            The width in tiles
+	 * @param height
+	 *            The height in tiles
+	 * @return The {@link Rectangle} the area was placed at, null if there is
+	 *         no space for it
+	 */
+	public Rectangle insert(int width, int height);
+
+	/**
+	 * Marks an area at a fixed position as used, e.g. an image placed on a
+	 * previous run
+	 * 
+	 * @param rectangle
+	 *            The {@link Rectangle} to mark as used
+	 */
+	public void occupy(Rectangle rectangle);
+
+	/**
+	 * Returns if no more areas can be inserted
+	 * 
+	 * @return
+	 */
+	public boolean isFull();
+
+	/**
+	 * Returns the amount of free areas currently tracked, e.g. free
+	 * rectangles or skyline segments
+	 * 
+	 * @return
+	 */
+	public int getFreeAreaCount();
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+/**
+ * The PNG row filters that can be selected in the configuration
+ * 
+ * @author Thomas Cashman
+ */
+public enum PngFilter {
+	/**
+	 * Filters each row with whichever filter gives the smallest sum of
+	 * absolute differences. Usually gives the smallest files.
+	 */
+	ADAPTIVE(-1),
+	/**
+	 * Stores rows unfiltered. The fastest filter.
+	 */
+	NONE(0),
+	SUB(1),
+	UP(2),
+	AVERAGE(3),
+	PAETH(4);
+
+	private final int type;
+
+	private PngFilter(int type) {
+		this.type = type;
+	}
+
+	/**
+	 * Returns the filter type byte written before each row
+	 * 
+	 * @return -1 for {@link #ADAPTIVE}
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * Looks up a filter by name, ignoring case
+	 * 
+	 * @param name
+	 *            The name of the filter, null for {@link #ADAPTIVE}
+	 * @return
+	 */
+	public static PngFilter fromName(String name) {
+		if (name == null) {
+			return ADAPTIVE;
+		}
+		for (PngFilter filter : values()) {
+			if (filter.name().equalsIgnoreCase(name.trim())) {
+				return filter;
+			}
+		}
+		throw new TilePackerException("ERROR: Unknown PNG filter " + name);
+	}
+}
@@ -0,0 +1,555 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes 8-bit RGBA PNG images a few rows at a time so that the whole image
+ * never has to be held in memory. By default each row is filtered with
+ * whichever PNG filter gives the smallest sum of absolute differences.
+ * 
+ * When chunked encoding is enabled, filtered rows are split into chunks of
+ * about {@link #PARALLEL_CHUNK_LENGTH} bytes which are deflated concurrently
+ * on an {@link ExecutorService}, or one after another when there is none.
+ * Each chunk is primed with the last 32KB of the chunk before it and ends on
+ * a sync flush, so the chunks join into a single zlib stream.
+ * 
+ * Output is deterministic: only the IHDR, IDAT and IEND chunks are written
+ * (no timestamps or text) and zlib always uses the same strategy, so the same
+ * pixels and settings always encode to the same bytes. Chunk boundaries do
+ * not depend on the amount of threads, only on whether chunked encoding is
+ * enabled.
+ * 
+ * @author Thomas Cashman
+ */
+public class PngWriter implements ImageEncoder {
+	public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+	public static final int PARALLEL_CHUNK_LENGTH = 128 * 1024;
+
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+	private static final int BYTES_PER_PIXEL = 4;
+	private static final int MAX_CHUNK_LENGTH = 64 * 1024;
+	private static final int DICTIONARY_LENGTH = 32 * 1024;
+	private static final int MAX_PENDING_CHUNKS = 16;
+
+	private static final int FILTER_NONE = 0;
+	private static final int FILTER_SUB = 1;
+	private static final int FILTER_UP = 2;
+	private static final int FILTER_AVERAGE = 3;
+	private static final int FILTER_PAETH = 4;
+	private static final int TOTAL_FILTERS = 5;
+
+	private final OutputStream outputStream;
+	private final int width, height;
+	private final int compressionLevel;
+	private final PngFilter rowFilter;
+	private final ImageDataOutputStream imageDataChunks;
+	private final Deflater deflater;
+	private final DeflaterOutputStream imageData;
+
+	private final boolean chunked;
+	private final ExecutorService executorService;
+	private final Queue<Future<byte[]>> pendingChunks = new ArrayDeque<Future<byte[]>>();
+	private final Adler32 checksum = new Adler32();
+	private byte[] parallelChunk, previousParallelChunk;
+	private int parallelChunkLength, previousParallelChunkLength;
+
+	private byte[] previousRow, currentRow;
+	private final byte[][] filteredRows = new byte[TOTAL_FILTERS][];
+	private int rowsWritten = 0;
+
+	/**
+	 * Constructor. Writes the PNG header immediately and uses the default
+	 * compression level with adaptive filtering on the calling thread.
+	 * 
+	 * @param outputStream
+	 *            The stream to write to, this is not closed by the writer
+	 * @param width
+	 *            The image width in pixels
+	 * @param height
+	 *            The image height in pixels
+	 * @throws IOException
+	 */
+	public PngWriter(OutputStream outputStream, int width, int height) throws IOException {
+		this(outputStream, width, height, DEFAULT_COMPRESSION_LEVEL, PngFilter.ADAPTIVE, null);
+	}
+
+	/**
+	 * Constructor. Writes the PNG header immediately.
+	 * 
+	 * @param outputStream
+	 *            The stream to write to, this is not closed by the writer
+	 * @param width
+	 *            The image width in pixels
+	 * @param height
+	 *            The image height in pixels
+	 * @param compressionLevel
+	 *            The zlib compression level from 0 (store) to 9 (smallest)
+	 * @param filter
+	 *            The row filter to use
+	 * @param executorService
+	 *            The threads to deflate chunks on, null to deflate the whole
+	 *            image as a single stream on the calling thread
+	 * @throws IOException
+	 */
+	public PngWriter(OutputStream outputStream, int width, int height, int compressionLevel, PngFilter filter,
+			ExecutorService executorService) throws IOException {
+		this(outputStream, width, height, compressionLevel, filter, executorService != null, executorService);
+	}
+
+	/**
+	 * Constructor. Writes the PNG header immediately.
+	 * 
+	 * @param outputStream
+	 *            The stream to write to, this is not closed by the writer
+	 * @param width
+	 *            The image width in pixels
+	 * @param height
+	 *            The image height in pixels
+	 * @param compressionLevel
+	 *            The zlib compression level from 0 (store) to 9 (smallest)
+	 * @param filter
+	 *            The row filter to use
+	 * @param chunked
+	 *            True if rows should be deflated in independent chunks. The
+	 *            encoded bytes depend on this but not on the executor.
+	 * @param executorService
+	 *            The threads to deflate chunks on, null to deflate them on the
+	 *            calling thread
+	 * @throws IOException
+	 */
+	public PngWriter(OutputStream outputStream, int width, int height, int compressionLevel, PngFilter filter,
+			boolean chunked, ExecutorService executorService) throws IOException {
+		if (compressionLevel < 0 || compressionLevel > 9) {
+			throw new IllegalArgumentException("Compression level must be between 0 and 9");
+		}
+		this.outputStream = outputStream;
+		this.width = width;
+		this.height = height;
+		this.compressionLevel = compressionLevel;
+		this.rowFilter = filter;
+		this.chunked = chunked;
+		this.executorService = executorService;
+
+		final int rowLength = width * BYTES_PER_PIXEL;
+		// The row above the first row is treated as zeroes
+		previousRow = new byte[rowLength];
+		currentRow = new byte[rowLength];
+		for (int i = 0; i < TOTAL_FILTERS; i++) {
+			filteredRows[i] = new byte[rowLength + 1];
+			filteredRows[i][0] = (byte) i;
+		}
+
+		outputStream.write(SIGNATURE);
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+		DataOutputStream headerData = new DataOutputStream(header);
+		headerData.writeInt(width);
+		headerData.writeInt(height);
+		// 8 bits per channel, RGBA, deflate, adaptive filtering, no interlacing
+		headerData.writeByte(8);
+		headerData.writeByte(6);
+		headerData.writeByte(0);
+		headerData.writeByte(0);
+		headerData.writeByte(0);
+		writeChunk(outputStream, "IHDR", header.toByteArray(), 0, header.size());
+
+		imageDataChunks = new ImageDataOutputStream(outputStream);
+		if (!chunked) {
+			deflater = new Deflater(compressionLevel);
+			deflater.setStrategy(Deflater.DEFAULT_STRATEGY);
+			imageData = new DeflaterOutputStream(imageDataChunks, deflater, MAX_CHUNK_LENGTH);
+		} else {
+			deflater = null;
+			imageData = null;
+			// Whole rows are kept together in each chunk
+			final int rowsPerChunk = Math.max(1, PARALLEL_CHUNK_LENGTH / (rowLength + 1));
+			parallelChunk = new byte[rowsPerChunk * (rowLength + 1)];
+			imageDataChunks.write(0x78);
+			imageDataChunks.write(getZlibFlags(compressionLevel));
+		}
+	}
+
+	/**
+	 * Appends rows of pixels to the image
+	 * 
+	 * @param pixels
+	 *            The pixels in {@link java.awt.image.BufferedImage#TYPE_INT_ARGB}
+	 *            format
+	 * @param offset
+	 *            The index of the first pixel of the first row
+	 * @param scanlineStride
+	 *            The distance between the start of each row
+	 * @param rows
+	 *            The amount of rows to write
+	 * @throws IOException
+	 */
+	public void writeRows(int[] pixels, int offset, int scanlineStride, int rows) throws IOException {
+		if (rowsWritten + rows > height) {
+			throw new IllegalArgumentException("Cannot write more than " + height + " rows");
+		}
+		for (int row = 0; row < rows; row++) {
+			final int rowOffset = offset + (row * scanlineStride);
+			for (int x = 0; x < width; x++) {
+				final int argb = pixels[rowOffset + x];
+				final int index = x * BYTES_PER_PIXEL;
+				currentRow[index] = (byte) (argb >> 16);
+				currentRow[index + 1] = (byte) (argb >> 8);
+				currentRow[index + 2] = (byte) argb;
+				currentRow[index + 3] = (byte) (argb >>> 24);
+			}
+
+			final byte[] filteredRow = filterRow();
+			if (!chunked) {
+				imageData.write(filteredRow, 0, filteredRow.length);
+			} else {
+				writeParallel(filteredRow);
+			}
+
+			final byte[] swap = previousRow;
+			previousRow = currentRow;
+			currentRow = swap;
+			rowsWritten++;
+		}
+	}
+
+	/**
+	 * Writes the end of the image. All rows must have been written.
+	 * 
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if (rowsWritten != height) {
+			throw new IllegalStateException("Only " + rowsWritten + " of " + height + " rows were written");
+		}
+		if (!chunked) {
+			imageData.finish();
+			deflater.end();
+		} else {
+			pendingChunks.add(submitChunk(true));
+			while (!pendingChunks.isEmpty()) {
+				writeNextChunk();
+			}
+			final long adler = checksum.getValue();
+			imageDataChunks.write((int) (adler >>> 24));
+			imageDataChunks.write((int) (adler >>> 16));
+			imageDataChunks.write((int) (adler >>> 8));
+			imageDataChunks.write((int) adler);
+		}
+		imageDataChunks.writeChunk();
+		writeChunk(outputStream, "IEND", new byte[0], 0, 0);
+		outputStream.flush();
+	}
+
+	private byte[] filterRow() {
+		final byte[] current = currentRow;
+		final byte[] previous = previousRow;
+
+		if (rowFilter != PngFilter.ADAPTIVE) {
+			applyFilter(rowFilter.getType(), current, previous, filteredRows[rowFilter.getType()]);
+			return filteredRows[rowFilter.getType()];
+		}
+
+		long bestSum = Long.MAX_VALUE;
+		int bestFilter = FILTER_NONE;
+		for (int filter = 0; filter < TOTAL_FILTERS; filter++) {
+			final long sum = applyFilter(filter, current, previous, filteredRows[filter]);
+			if (sum < bestSum) {
+				bestSum = sum;
+				bestFilter = filter;
+			}
+		}
+		return filteredRows[bestFilter];
+	}
+
+	/**
+	 * Appends a filtered row to the current parallel chunk, handing the chunk
+	 * off to be deflated once it is full
+	 */
+	private void writeParallel(byte[] filteredRow) throws IOException {
+		checksum.update(filteredRow, 0, filteredRow.length);
+		System.arraycopy(filteredRow, 0, parallelChunk, parallelChunkLength, filteredRow.length);
+		parallelChunkLength += filteredRow.length;
+		if (parallelChunkLength + filteredRow.length <= parallelChunk.length) {
+			return;
+		}
+		if (pendingChunks.size() >= MAX_PENDING_CHUNKS) {
+			writeNextChunk();
+		}
+		pendingChunks.add(submitChunk(false));
+	}
+
+	private Future<byte[]> submitChunk(boolean lastChunk) {
+		byte[] dictionary = null;
+		if (previousParallelChunk != null) {
+			final int dictionaryLength = Math.min(DICTIONARY_LENGTH, previousParallelChunkLength);
+			dictionary = Arrays.copyOfRange(previousParallelChunk, previousParallelChunkLength - dictionaryLength,
+					previousParallelChunkLength);
+		}
+		final ChunkDeflater chunkDeflater = new ChunkDeflater(compressionLevel, parallelChunk, parallelChunkLength,
+				dictionary, lastChunk);
+		final Future<byte[]> result;
+		if (executorService == null) {
+			final FutureTask<byte[]> task = new FutureTask<byte[]>(chunkDeflater);
+			task.run();
+			result = task;
+		} else {
+			result = executorService.submit(chunkDeflater);
+		}
+
+		// The submitted chunk is never modified again so it can be kept for
+		// the next dictionary while rows are written to a new array
+		previousParallelChunk = parallelChunk;
+		previousParallelChunkLength = parallelChunkLength;
+		parallelChunk = lastChunk ? null : new byte[parallelChunk.length];
+		parallelChunkLength = 0;
+		return result;
+	}
+
+	private void writeNextChunk() throws IOException {
+		final byte[] compressed;
+		try {
+			compressed = pendingChunks.poll().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while deflating image data", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Error deflating image data", e.getCause());
+		}
+		imageDataChunks.write(compressed, 0, compressed.length);
+	}
+
+	/**
+	 * Returns the second byte of the zlib header, matching the header zlib
+	 * itself writes for a compression level
+	 */
+	private static int getZlibFlags(int compressionLevel) {
+		final int levelFlags;
+		if (compressionLevel < 2) {
+			levelFlags = 0;
+		} else if (compressionLevel < 6) {
+			levelFlags = 1;
+		} else if (compressionLevel == 6) {
+			levelFlags = 2;
+		} else {
+			levelFlags = 3;
+		}
+		final int flags = levelFlags << 6;
+		return flags + (31 - (((0x78 << 8) + flags) % 31));
+	}
+
+	/**
+	 * Filters a row and returns the sum of the absolute values of the
+	 * filtered bytes
+	 */
+	private static long applyFilter(int filter, byte[] current, byte[] previous, byte[] result) {
+		long sum = 0;
+		switch (filter) {
+		case FILTER_SUB:
+			for (int i = 0; i < current.length; i++) {
+				final int left = i >= BYTES_PER_PIXEL ? current[i - BYTES_PER_PIXEL] & 0xFF : 0;
+				final byte value = (byte) ((current[i] & 0xFF) - left);
+				result[i + 1] = value;
+				sum += Math.abs(value);
+			}
+			break;
+		case FILTER_UP:
+			for (int i = 0; i < current.length; i++) {
+				final byte value = (byte) ((current[i] & 0xFF) - (previous[i] & 0xFF));
+				result[i + 1] = value;
+				sum += Math.abs(value);
+			}
+			break;
+		case FILTER_AVERAGE:
+			for (int i = 0; i < current.length; i++) {
+				final int left = i >= BYTES_PER_PIXEL ? current[i - BYTES_PER_PIXEL] & 0xFF : 0;
+				final byte value = (byte) ((current[i] & 0xFF) - ((left + (previous[i] & 0xFF)) >> 1));
+				result[i + 1] = value;
+				sum += Math.abs(value);
+			}
+			break;
+		case FILTER_PAETH:
+			for (int i = 0; i < current.length; i++) {
+				final int left = i >= BYTES_PER_PIXEL ? current[i - BYTES_PER_PIXEL] & 0xFF : 0;
+				final int upLeft = i >= BYTES_PER_PIXEL ? previous[i - BYTES_PER_PIXEL] & 0xFF : 0;
+				final byte value = (byte) ((current[i] & 0xFF) - paeth(left, previous[i] & 0xFF, upLeft));
+				result[i + 1] = value;
+				sum += Math.abs(value);
+			}
+			break;
+		case FILTER_NONE:
+		default:
+			for (int i = 0; i < current.length; i++) {
+				final byte value = current[i];
+				result[i + 1] = value;
+				sum += Math.abs(value);
+			}
+			break;
+		}
+		return sum;
+	}
+
+	private static int paeth(int left, int up, int upLeft) {
+		final int estimate = left + up - upLeft;
+		final int leftDistance = Math.abs(estimate - left);
+		final int upDistance = Math.abs(estimate - up);
+		final int upLeftDistance = Math.abs(estimate - upLeft);
+		if (leftDistance <= upDistance && leftDistance <= upLeftDistance) {
+			return left;
+		}
+		if (upDistance <= upLeftDistance) {
+			return up;
+		}
+		return upLeft;
+	}
+
+	private static void writeChunk(OutputStream outputStream, String type, byte[] data, int offset, int length)
+			throws IOException {
+		final byte[] typeBytes = type.getBytes("US-ASCII");
+		final CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, offset, length);
+
+		final DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+		dataOutputStream.writeInt(length);
+		dataOutputStream.write(typeBytes);
+		dataOutputStream.write(data, offset, length);
+		dataOutputStream.writeInt((int) crc.getValue());
+	}
+
+	/**
+	 * Deflates one chunk of filtered rows as raw deflate data
+	 */
+	private static class ChunkDeflater implements Callable<byte[]> {
+		private final int compressionLevel;
+		private final byte[] input;
+		private final int inputLength;
+		private final byte[] dictionary;
+		private final boolean lastChunk;
+
+		public ChunkDeflater(int compressionLevel, byte[] input, int inputLength, byte[] dictionary,
+				boolean lastChunk) {
+			this.compressionLevel = compressionLevel;
+			this.input = input;
+			this.inputLength = inputLength;
+			this.dictionary = dictionary;
+			this.lastChunk = lastChunk;
+		}
+
+		@Override
+		public byte[] call() throws Exception {
+			final Deflater deflater = new Deflater(compressionLevel, true);
+			try {
+				deflater.setStrategy(Deflater.DEFAULT_STRATEGY);
+				if (dictionary != null) {
+					deflater.setDictionary(dictionary);
+				}
+				deflater.setInput(input, 0, inputLength);
+
+				final ByteArrayOutputStream result = new ByteArrayOutputStream((inputLength / 2) + 64);
+				final byte[] buffer = new byte[MAX_CHUNK_LENGTH];
+				if (lastChunk) {
+					deflater.finish();
+					while (!deflater.finished()) {
+						result.write(buffer, 0, deflater.deflate(buffer));
+					}
+				} else {
+					// A sync flush ends on a byte boundary without ending the
+					// stream so that the next chunk can be appended
+					int length;
+					do {
+						length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+						result.write(buffer, 0, length);
+					} while (length == buffer.length);
+				}
+				return result.toByteArray();
+			} finally {
+				deflater.end();
+			}
+		}
+	}
+
+	/**
+	 * Splits compressed image data into full size IDAT chunks so that the
+	 * chunk layout does not depend on how the deflater flushes its output
+	 */
+	private static class ImageDataOutputStream extends OutputStream {
+		private final OutputStream outputStream;
+		private final byte[] buffer = new byte[MAX_CHUNK_LENGTH];
+		private int bufferLength = 0;
+
+		public ImageDataOutputStream(OutputStream outputStream) {
+			this.outputStream = outputStream;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				final int length = Math.min(len, buffer.length - bufferLength);
+				System.arraycopy(b, off, buffer, bufferLength, length);
+				bufferLength += length;
+				off += length;
+				len -= length;
+				if (bufferLength == buffer.length) {
+					writeChunk();
+				}
+			}
+		}
+
+		/**
+		 * Writes any buffered data as an IDAT chunk
+		 */
+		public void writeChunk() throws IOException {
+			if (bufferLength == 0) {
+				return;
+			}
+			PngWriter.writeChunk(outputStream, "IDAT", buffer, 0, bufferLength);
+			bufferLength = 0;
+		}
+	}
+}
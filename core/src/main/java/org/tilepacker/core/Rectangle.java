@@ -35,7 +35,7 @@ import java.util.List;
  */
 public class Rectangle {
 	private int x, y, width, height;
-	private Tile[][] tiles;
+	private TileImage image;
 
 	public Rectangle(int x, int y, int width, int height) {
 		this.x = x;
@@ -44,28 +44,22 @@ public class Rectangle {
 		this.height = height;
 	}
 
-	public void addTiles(TileImage sheet) {
-		tiles = new Tile[sheet.getHorizontalTileCount()][sheet.getVerticalTileCount()];
-		for (int x = 0; x < sheet.getHorizontalTileCount(); x++) {
-			for (int y = 0; y < sheet.getVerticalTileCount(); y++) {
-				tiles[x][y] = new Tile(sheet.getSubImage(x, y));
-			}
-		}
-
-		width = sheet.getHorizontalTileCount();
-		height = sheet.getVerticalTileCount();
+	/**
+	 * Sets the image placed in this rectangle. The tile at (x, y) within the
+	 * rectangle is the tile at (subImageX + x, subImageY + y) of the image's
+	 * source, so no per tile objects are stored.
+	 * 
+	 * @param image
+	 *            The {@link TileImage} occupying this rectangle
+	 */
+	public void setImage(TileImage image) {
+		this.image = image;
+		width = image.getHorizontalTileCount();
+		height = image.getVerticalTileCount();
 	}
 	
 	public void dispose() {
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				Tile tile = tiles[x][y];
-				if(tile == null) {
-					continue;
-				}
-				tile.dispose();
-			}
-		}
+		image = null;
 	}
 
 	public static Rectangle and(Rectangle rect1, Rectangle rect2) {
@@ -122,15 +116,23 @@ public class Rectangle {
 	}
 
 	public boolean canContain(TileImage sheet) {
-		if (sheet.getHorizontalTileCount() > width) {
+		return canContain(sheet.getHorizontalTileCount(), sheet.getVerticalTileCount());
+	}
+
+	public boolean canContain(int width, int height) {
+		if (width > this.width) {
 			return false;
 		}
-		if (sheet.getVerticalTileCount() > height) {
+		if (height > this.height) {
 			return false;
 		}
 		return true;
 	}
 
+	public boolean contains(Rectangle rect) {
+		return rect.getX() >= x && rect.getY() >= y && rect.getMaxX() <= getMaxX() && rect.getMaxY() <= getMaxY();
+	}
+
 	public boolean intersects(Rectangle rect) {
 		if (rect.getX() > getMaxX()) {
 			return false;
@@ -150,8 +152,30 @@ public class Rectangle {
 				&& getHeight() == rectangle.getHeight();
 	}
 
-	public Tile[][] getTiles() {
-		return tiles;
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		return equals((Rectangle) obj);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + x;
+		result = prime * result + y;
+		result = prime * result + width;
+		result = prime * result + height;
+		return result;
+	}
+
+	public TileImage getImage() {
+		return image;
 	}
 
 	public int getX() {
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bottom-left skyline {@link PackingStrategy}. Only the lowest free row of
+ * each column is tracked, so space beneath an overhanging image is never
+ * reused.
+ * 
+ * @author Thomas Cashman
+ */
+public class SkylinePackingStrategy implements PackingStrategy {
+	private final int widthInTiles, heightInTiles;
+	private final List<Segment> skyline = new ArrayList<Segment>();
+	private final List<Segment> tmpSkyline = new ArrayList<Segment>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param widthInTiles
+	 *            The width of the area being packed
+	 * @param heightInTiles
+	 *            The height of the area being packed
+	 */
+	public SkylinePackingStrategy(int widthInTiles, int heightInTiles) {
+		this.widthInTiles = widthInTiles;
+		this.heightInTiles = heightInTiles;
+		skyline.add(new Segment(0, 0, widthInTiles));
+	}
+
+	@Override
+	public Rectangle insert(int width, int height) {
+		int bestX = -1, bestY = -1;
+		int bestBottom = Integer.MAX_VALUE;
+
+		for (int i = 0; i < skyline.size(); i++) {
+			final int x = skyline.get(i).x;
+			if (x + width > widthInTiles) {
+				break;
+			}
+			final int y = getLowestY(i, x + width);
+			final int bottom = y + height;
+			if (bottom > heightInTiles) {
+				continue;
+			}
+			if (bottom < bestBottom) {
+				bestX = x;
+				bestY = y;
+				bestBottom = bottom;
+			}
+		}
+		if (bestX < 0) {
+			return null;
+		}
+		final Rectangle result = new Rectangle(bestX, bestY, width, height);
+		raise(bestX, bestX + width, bestBottom);
+		return result;
+	}
+
+	@Override
+	public void occupy(Rectangle rectangle) {
+		raise(Math.max(0, rectangle.getX()), Math.min(widthInTiles, rectangle.getX() + rectangle.getWidth()),
+				rectangle.getY() + rectangle.getHeight());
+	}
+
+	/**
+	 * Returns the lowest y an area can be placed at between segment i and
+	 * the given x coordinate
+	 */
+	private int getLowestY(int i, int endX) {
+		int result = 0;
+		for (; i < skyline.size(); i++) {
+			Segment segment = skyline.get(i);
+			if (segment.x >= endX) {
+				break;
+			}
+			result = Math.max(result, segment.y);
+		}
+		return result;
+	}
+
+	/**
+	 * Raises the skyline between two x coordinates to at least the given y
+	 */
+	private void raise(int startX, int endX, int y) {
+		if (startX >= endX) {
+			return;
+		}
+		for (int i = 0; i < skyline.size(); i++) {
+			final Segment segment = skyline.get(i);
+			final int segmentEndX = segment.x + segment.width;
+			if (segmentEndX <= startX || segment.x >= endX || segment.y >= y) {
+				append(segment.x, segment.y, segment.width);
+				continue;
+			}
+			if (segment.x < startX) {
+				append(segment.x, segment.y, startX - segment.x);
+			}
+			final int raisedStartX = Math.max(segment.x, startX);
+			final int raisedEndX = Math.min(segmentEndX, endX);
+			append(raisedStartX, y, raisedEndX - raisedStartX);
+			if (segmentEndX > endX) {
+				append(endX, segment.y, segmentEndX - endX);
+			}
+		}
+		skyline.clear();
+		skyline.addAll(tmpSkyline);
+		tmpSkyline.clear();
+	}
+
+	/**
+	 * Appends a segment to the new skyline, merging it with the previous
+	 * segment if they are at the same height
+	 */
+	private void append(int x, int y, int width) {
+		if (!tmpSkyline.isEmpty()) {
+			final Segment previous = tmpSkyline.get(tmpSkyline.size() - 1);
+			if (previous.y == y) {
+				previous.width += width;
+				return;
+			}
+		}
+		tmpSkyline.add(new Segment(x, y, width));
+	}
+
+	@Override
+	public boolean isFull() {
+		for (int i = 0; i < skyline.size(); i++) {
+			if (skyline.get(i).y < heightInTiles) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int getFreeAreaCount() {
+		return skyline.size();
+	}
+
+	private static class Segment {
+		private final int x, y;
+		private int width;
+
+		public Segment(int x, int y, int width) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+		}
+	}
+}
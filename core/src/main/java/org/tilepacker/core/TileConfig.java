@@ -40,12 +40,19 @@ public class TileConfig implements Comparable<TileConfig> {
 	private String path;
 	@ElementList(name="placement", required=false)
 	private List<TilePlacement> placement;
+	@Element(required=false)
+	private long hash;
+	@Element(required=false)
+	private long lastModified;
 	
 	public boolean isPlaced() {
 		if(placement == null || placement.isEmpty()) {
 			return false;
 		}
 		for(TilePlacement config : placement) {
+			if(config.isEmpty()) {
+				continue;
+			}
 			if(!config.isPlaced()) {
 				return false;
 			}
@@ -72,6 +79,32 @@ public class TileConfig implements Comparable<TileConfig> {
 		this.placement = placement;
 	}
 
+	/**
+	 * Returns the hash of the image file's contents
+	 * 
+	 * @return
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	public void setHash(long hash) {
+		this.hash = hash;
+	}
+
+	/**
+	 * Returns the modification time of the image file when it was hashed
+	 * 
+	 * @return 0 if the file has not been hashed
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	public void setLastModified(long lastModified) {
+		this.lastModified = lastModified;
+	}
+
 	@Override
 	public int compareTo(TileConfig o) {
 		if(isPlaced() && !o.isPlaced()) {
@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds tiles with identical pixels across images so that only one copy of
+ * each is packed. Images containing duplicate tiles are split into their
+ * unique tiles and each duplicate is recorded as an alias
+ * {@link TilePlacement} of the tile it duplicates.
+ * 
+ * @author Thomas Cashman
+ */
+public class TileDeduplicator {
+	private static final long SEED = 0;
+
+	private final Map<String, Map<Long, CanonicalTile>> canonicalTilesByGroup = new HashMap<String, Map<Long, CanonicalTile>>();
+	private final List<Alias> aliases = new ArrayList<Alias>();
+	private final PackingContext context;
+	private final int[] tmpPixels;
+	private final int[] tmpCanonicalPixels;
+
+	/**
+	 * Constructor
+	 * @param context The {@link PackingContext} of the run
+	 */
+	public TileDeduplicator(PackingContext context) {
+		this.context = context;
+		tmpPixels = new int[context.getTileWidth() * context.getTileHeight()];
+		tmpCanonicalPixels = new int[context.getTileWidth() * context.getTileHeight()];
+	}
+
+	/**
+	 * Hashes the pixels of every tile in an image. Safe to call from
+	 * multiple threads.
+	 * 
+	 * @param image
+	 *            The {@link TileImage} to hash, this is loaded and then
+	 *            disposed
+	 * @return The hashes in row-major order
+	 */
+	public static long[] hashTiles(TileImage image) {
+		image.loadImage();
+
+		final int horizontalTileCount = image.getHorizontalTileCount();
+		final int verticalTileCount = image.getVerticalTileCount();
+		final PackingContext context = image.getContext();
+		final int[] pixels = new int[context.getTileWidth() * context.getTileHeight()];
+		final long[] result = new long[horizontalTileCount * verticalTileCount];
+		for (int y = 0; y < verticalTileCount; y++) {
+			for (int x = 0; x < horizontalTileCount; x++) {
+				readTile(context, image.getOriginalImage(), x, y, pixels);
+				result[(y * horizontalTileCount) + x] = XXHash64.hash(pixels, 0, pixels.length, SEED);
+			}
+		}
+		image.dispose();
+		return result;
+	}
+
+	/**
+	 * Removes the tiles of an image that duplicate previously deduplicated
+	 * tiles
+	 * 
+	 * @param image
+	 *            The {@link TileImage} to deduplicate
+	 * @param tileHashes
+	 *            The result of {@link #hashTiles(TileImage)} for the image
+	 * @param group
+	 *            Tiles are only deduplicated against tiles in the same group
+	 * @return The image itself if it has no duplicate tiles, otherwise its
+	 *         unique tiles as 1x1 sub-images
+	 */
+	public List<TileImage> deduplicate(TileImage image, long[] tileHashes, String group) {
+		return deduplicate(image, tileHashes, group, null);
+	}
+
+	/**
+	 * Removes the tiles of an image that duplicate previously deduplicated
+	 * tiles, ignoring excluded tiles
+	 * 
+	 * @param image
+	 *            The {@link TileImage} to deduplicate
+	 * @param tileHashes
+	 *            The result of {@link #hashTiles(TileImage)} for the image
+	 * @param group
+	 *            Tiles are only deduplicated against tiles in the same group
+	 * @param excludedTiles
+	 *            True for each tile that is not packed in row-major order,
+	 *            null to pack every tile
+	 * @return The sub-images of {@link TileTrimmer#getSubImages(TileImage, boolean[])}
+	 *         if the image has no duplicate tiles, otherwise its unique
+	 *         tiles as 1x1 sub-images
+	 */
+	public List<TileImage> deduplicate(TileImage image, long[] tileHashes, String group, boolean[] excludedTiles) {
+		Map<Long, CanonicalTile> canonicalTiles = canonicalTilesByGroup.get(group);
+		if (canonicalTiles == null) {
+			canonicalTiles = new HashMap<Long, CanonicalTile>();
+			canonicalTilesByGroup.put(group, canonicalTiles);
+		}
+
+		final int horizontalTileCount = image.getHorizontalTileCount();
+		final int verticalTileCount = image.getVerticalTileCount();
+		final boolean[] duplicates = new boolean[tileHashes.length];
+		int totalDuplicates = 0;
+		int totalExcluded = 0;
+
+		image.loadImage();
+		for (int y = 0; y < verticalTileCount; y++) {
+			for (int x = 0; x < horizontalTileCount; x++) {
+				final int index = (y * horizontalTileCount) + x;
+				if (excludedTiles != null && excludedTiles[index]) {
+					duplicates[index] = true;
+					totalExcluded++;
+					continue;
+				}
+				final Long hash = tileHashes[index];
+
+				final CanonicalTile canonicalTile = findCanonicalTile(canonicalTiles.get(hash), image, x, y);
+				if (canonicalTile == null) {
+					canonicalTiles.put(hash, new CanonicalTile(image, x, y, canonicalTiles.get(hash)));
+					continue;
+				}
+				aliases.add(new Alias(image.getTileConfig(), image.getSubImageX() + x, image.getSubImageY() + y,
+						canonicalTile));
+				duplicates[index] = true;
+				totalDuplicates++;
+			}
+		}
+		image.dispose();
+		if (totalDuplicates == 0) {
+			if (totalExcluded == 0) {
+				return Collections.singletonList(image);
+			}
+			return TileTrimmer.getSubImages(image, excludedTiles);
+		}
+
+		final List<TileImage> result = new ArrayList<TileImage>(tileHashes.length - totalDuplicates - totalExcluded);
+		for (int y = 0; y < verticalTileCount; y++) {
+			for (int x = 0; x < horizontalTileCount; x++) {
+				if (!duplicates[(y * horizontalTileCount) + x]) {
+					result.add(image.getSubImage(x, y));
+				}
+			}
+		}
+		return result;
+	}
+
+	private CanonicalTile findCanonicalTile(CanonicalTile candidate, TileImage image, int x, int y) {
+		if (candidate == null) {
+			return null;
+		}
+		readTile(context, image.getOriginalImage(), x, y, tmpPixels);
+		for (; candidate != null; candidate = candidate.next) {
+			if (candidate.image == image) {
+				readTile(context, image.getOriginalImage(), candidate.x, candidate.y, tmpCanonicalPixels);
+			} else {
+				candidate.image.loadImage();
+				readTile(context, candidate.image.getOriginalImage(), candidate.x, candidate.y, tmpCanonicalPixels);
+				candidate.image.dispose();
+			}
+			// Guard against hash collisions
+			if (Arrays.equals(tmpPixels, tmpCanonicalPixels)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the placements of duplicate tiles. Must be called after all
+	 * images have been placed in tilesets. Each alias records the path and
+	 * file hash of the image it refers to so that it can be invalidated
+	 * when either image changes.
+	 */
+	public void storeAliasPlacements() {
+		for (int i = 0; i < aliases.size(); i++) {
+			final Alias alias = aliases.get(i);
+			final CanonicalTile canonicalTile = alias.canonicalTile;
+			final int canonicalX = canonicalTile.image.getSubImageX() + canonicalTile.x;
+			final int canonicalY = canonicalTile.image.getSubImageY() + canonicalTile.y;
+
+			final TilePlacement canonicalPlacement = findPlacement(canonicalTile.image.getTileConfig(), canonicalX,
+					canonicalY);
+			if (canonicalPlacement == null) {
+				throw new TilePackerException("ERROR: No placement for tile " + canonicalX + "," + canonicalY + " of "
+						+ canonicalTile.image.getTileConfig().getPath());
+			}
+
+			final TilePlacement placement = new TilePlacement();
+			placement.setAlias(true);
+			placement.setSubImageX(alias.x);
+			placement.setSubImageY(alias.y);
+			placement.setSubImageWidth(1);
+			placement.setSubImageHeight(1);
+			placement.setTileset(canonicalPlacement.getTileset());
+			placement.setTilesetX(canonicalPlacement.getTilesetX() + (canonicalX - canonicalPlacement.getSubImageX()));
+			placement.setTilesetY(canonicalPlacement.getTilesetY() + (canonicalY - canonicalPlacement.getSubImageY()));
+			placement.setCanonicalPath(canonicalTile.image.getTileConfig().getPath());
+			placement.setCanonicalHash(canonicalTile.image.getTileConfig().getHash());
+			alias.tileConfig.getPlacement().add(placement);
+		}
+		aliases.clear();
+	}
+
+	/**
+	 * Returns the amount of duplicate tiles found
+	 * 
+	 * @return
+	 */
+	public int getTotalDuplicates() {
+		return aliases.size();
+	}
+
+	private static TilePlacement findPlacement(TileConfig tileConfig, int x, int y) {
+		for (TilePlacement placement : tileConfig.getPlacement()) {
+			if (placement.isAlias()) {
+				continue;
+			}
+			if (x < placement.getSubImageX() || x >= placement.getSubImageX() + placement.getSubImageWidth()) {
+				continue;
+			}
+			if (y < placement.getSubImageY() || y >= placement.getSubImageY() + placement.getSubImageHeight()) {
+				continue;
+			}
+			return placement;
+		}
+		return null;
+	}
+
+	/**
+	 * Copies the pixels of a tile, pixels outside of the image are treated as
+	 * transparent
+	 */
+	private static void readTile(PackingContext context, BufferedImage image, int tileX, int tileY, int[] result) {
+		Arrays.fill(result, 0);
+
+		final int tileWidth = context.getTileWidth();
+		final int tileHeight = context.getTileHeight();
+		final int x = tileX * tileWidth;
+		final int y = tileY * tileHeight;
+		final int width = Math.min(tileWidth, image.getWidth() - x);
+		final int height = Math.min(tileHeight, image.getHeight() - y);
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+
+		final WritableRaster raster = image.getRaster();
+		if (image.getType() != BufferedImage.TYPE_INT_ARGB || !(raster.getDataBuffer() instanceof DataBufferInt)
+				|| !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+			image.getRGB(x, y, width, height, result, 0, tileWidth);
+			return;
+		}
+		final int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+		final int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+		final int offset = raster.getDataBuffer().getOffset() + ((y - raster.getSampleModelTranslateY()) * stride)
+				+ (x - raster.getSampleModelTranslateX());
+		for (int row = 0; row < height; row++) {
+			System.arraycopy(pixels, offset + (row * stride), result, row * tileWidth, width);
+		}
+	}
+
+	private static class CanonicalTile {
+		private final TileImage image;
+		private final int x, y;
+		private final CanonicalTile next;
+
+		public CanonicalTile(TileImage image, int x, int y, CanonicalTile next) {
+			this.image = image;
+			this.x = x;
+			this.y = y;
+			this.next = next;
+		}
+	}
+
+	private static class Alias {
+		private final TileConfig tileConfig;
+		private final int x, y;
+		private final CanonicalTile canonicalTile;
+
+		public Alias(TileConfig tileConfig, int x, int y, CanonicalTile canonicalTile) {
+			this.tileConfig = tileConfig;
+			this.x = x;
+			this.y = y;
+			this.canonicalTile = canonicalTile;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds PNG and JPEG files beneath a directory. Each directory is listed
+ * with a {@link DirectoryStream}, and when an {@link ExecutorService} is
+ * provided, directories are listed concurrently. Relative paths are built
+ * from file names rather than by relativizing URIs, which would query the
+ * file system for every file.
+ * 
+ * @author Thomas Cashman
+ */
+public class TileFileWalker {
+	private final ExecutorService executorService;
+	private final Queue<String> paths = new ConcurrentLinkedQueue<String>();
+	private final AtomicInteger pendingDirectories = new AtomicInteger();
+	private final CountDownLatch completed = new CountDownLatch(1);
+	private volatile IOException error;
+
+	/**
+	 * Constructor
+	 * @param executorService The pool to list directories on, null to list them on the calling thread
+	 */
+	public TileFileWalker(ExecutorService executorService) {
+		this.executorService = executorService;
+	}
+
+	/**
+	 * Finds tile files beneath a directory. A walker can only be used once.
+	 * @param directory The directory to search
+	 * @param pathPrefix The prefix of every returned path, e.g. the path of the directory relative to the config directory
+	 * @return The '/' separated paths of the tile files, sorted
+	 */
+	public List<String> walk(File directory, String pathPrefix) throws IOException {
+		if(executorService == null) {
+			list(directory.toPath(), pathPrefix);
+		} else {
+			submit(directory.toPath(), pathPrefix);
+			try {
+				completed.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TilePackerException("Interrupted while finding tile files", e);
+			}
+			if(error != null) {
+				throw error;
+			}
+		}
+		final List<String> result = new ArrayList<String>(paths);
+		Collections.sort(result);
+		return result;
+	}
+
+	private void submit(final Path directory, final String relativeDirectory) {
+		pendingDirectories.incrementAndGet();
+		executorService.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if(error == null) {
+						list(directory, relativeDirectory);
+					}
+				} catch (IOException e) {
+					error = e;
+				} catch (RuntimeException e) {
+					error = new IOException("Error listing " + directory, e);
+				} finally {
+					if(pendingDirectories.decrementAndGet() == 0) {
+						completed.countDown();
+					}
+				}
+			}
+		});
+	}
+
+	private void list(Path directory, String relativeDirectory) throws IOException {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for(Path entry : stream) {
+				final String name = entry.getFileName().toString();
+				if(Files.isDirectory(entry)) {
+					if(executorService == null) {
+						list(entry, relativeDirectory + name + "/");
+					} else {
+						submit(entry, relativeDirectory + name + "/");
+					}
+				} else if(isTileFile(name)) {
+					paths.add(relativeDirectory + name);
+				}
+			}
+		}
+	}
+
+	public static boolean isTileFile(String name) {
+		final String lowerCaseName = name.toLowerCase();
+		return lowerCaseName.endsWith("png") || lowerCaseName.endsWith("jpg") || lowerCaseName.endsWith("jpeg");
+	}
+}
@@ -7,13 +7,12 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 
-import javax.imageio.ImageIO;
-
 /**
  *
  * @author Thomas Cashman
  */
 public class TileImage {
+	private final PackingContext context;
 	private final TileImage parent;
 	private final File file;
 	private final TileConfig tileConfig;
@@ -23,89 +22,109 @@ public class TileImage {
 
 	private BufferedImage originalImage, cutImage;
 
-	public TileImage(TileConfig tileConfig, File imageFile) {
+	public TileImage(PackingContext context, TileConfig tileConfig, File imageFile) {
+		this(context, tileConfig, imageFile, readDimensions(imageFile));
+	}
+
+	public TileImage(PackingContext context, TileConfig tileConfig, File imageFile, ImageDimensions dimensions) {
+		this.context = context;
 		this.parent = null;
 		this.file = imageFile;
 		this.tileConfig = tileConfig;
-
-		loadImage();
 		
-		this.widthInPixels = originalImage.getWidth();
-		this.heightInPixels = originalImage.getHeight();
+		this.widthInPixels = dimensions.getWidth();
+		this.heightInPixels = dimensions.getHeight();
 		
 		placement = new TilePlacement();
 		placement.setSubImageX(0);
 		placement.setSubImageY(0);
-		placement.setSubImageWidth((widthInPixels + Tile.WIDTH - 1) / Tile.WIDTH);
-		placement.setSubImageHeight((heightInPixels + Tile.HEIGHT - 1) / Tile.HEIGHT);
-
-		dispose();
+		placement.setSubImageWidth((widthInPixels + context.getTileWidth() - 1) / context.getTileWidth());
+		placement.setSubImageHeight((heightInPixels + context.getTileHeight() - 1) / context.getTileHeight());
 	}
 	
-	public TileImage(TileConfig tileConfig, File imageFile, TilePlacement placement) {
+	public TileImage(PackingContext context, TileConfig tileConfig, File imageFile, TilePlacement placement) {
+		this.context = context;
 		this.parent = null;
 		this.file = imageFile;
 		this.tileConfig = tileConfig;
 		this.placement = placement;
-		this.widthInPixels = placement.getSubImageWidth() * Tile.WIDTH;
-		this.heightInPixels = placement.getSubImageHeight() * Tile.HEIGHT;
+		this.widthInPixels = placement.getSubImageWidth() * context.getTileWidth();
+		this.heightInPixels = placement.getSubImageHeight() * context.getTileHeight();
 	}
 
-	public TileImage(TileImage parent, TilePlacement placement) {
+	public TileImage(PackingContext context, TileImage parent, TilePlacement placement) {
+		this.context = context;
 		this.parent = parent;
 		this.originalImage = null;
 		this.file = parent.getFile();
 		this.tileConfig = parent.getTileConfig();
 		this.placement = placement;
 		
-		this.widthInPixels = placement.getSubImageWidth() * Tile.WIDTH;
-		this.heightInPixels = placement.getSubImageHeight() * Tile.HEIGHT;
+		this.widthInPixels = placement.getSubImageWidth() * context.getTileWidth();
+		this.heightInPixels = placement.getSubImageHeight() * context.getTileHeight();
 	}
 	
 	public void storePlacementConfig() {
 		tileConfig.getPlacement().add(placement);
 	}
 
-	public void loadImage() {
+	public synchronized void loadImage() {
 		if (parent == null) {
-			try {
-				if (originalImage == null) {
-					BufferedImage image = ImageIO.read(file);
-					if(image.getType() != BufferedImage.TYPE_4BYTE_ABGR) {
-						BufferedImage newImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
-						newImage.getGraphics().drawImage(image, 0, 0, null);
-						image = newImage;
-					}
-					originalImage = image;
-				}
-				if (cutImage == null) {
-					cutImage = originalImage;
-				}
-			} catch (IOException ex) {
-				throw new RuntimeException("Error reading image: " + file, ex);
+			if (originalImage == null) {
+				originalImage = readImage();
+			}
+			if (cutImage == null) {
+				cutImage = originalImage;
 			}
 		} else {
-			parent.loadImage();
+			BufferedImage sourceImage = readImage();
 
-			int x = placement.getSubImageX() * Tile.WIDTH;
-			int y = placement.getSubImageY() * Tile.HEIGHT;
-			int width = placement.getSubImageWidth() * Tile.WIDTH;
-			int height = placement.getSubImageHeight() * Tile.HEIGHT;
+			int x = placement.getSubImageX() * context.getTileWidth();
+			int y = placement.getSubImageY() * context.getTileHeight();
+			int width = placement.getSubImageWidth() * context.getTileWidth();
+			int height = placement.getSubImageHeight() * context.getTileHeight();
 
-			if(x + width > parent.getOriginalImage().getWidth()) {
-				width = parent.getOriginalImage().getWidth() - x;
+			if(x + width > sourceImage.getWidth()) {
+				width = sourceImage.getWidth() - x;
 			}
-			if(y + height > parent.getOriginalImage().getHeight()) {
-				height = parent.getOriginalImage().getHeight() - y;
+			if(y + height > sourceImage.getHeight()) {
+				height = sourceImage.getHeight() - y;
 			}
 
-			cutImage = parent.getOriginalImage().getSubimage(x, y, width, height);
-			parent.dispose();
+			cutImage = sourceImage.getSubimage(x, y, width, height);
 		}
 	}
 
-	public void dispose() {
+	/**
+	 * Returns the decoded source image from the {@link ImageCache}. Sub
+	 * images return the source image of their parent.
+	 */
+	BufferedImage readImage() {
+		if (parent != null) {
+			return parent.readImage();
+		}
+		try {
+			return context.getImageCache().get(file);
+		} catch (IOException ex) {
+			throw new RuntimeException("Error reading image: " + file, ex);
+		}
+	}
+
+	private static ImageDimensions readDimensions(File file) {
+		try {
+			return ImageDimensions.read(file);
+		} catch (IOException ex) {
+			throw new RuntimeException("Error reading image: " + file, ex);
+		}
+	}
+
+	/**
+	 * Releases this image's reference to the decoded source image. The
+	 * {@link ImageCache} decides how long the source image stays in memory.
+	 */
+	public synchronized void dispose() {
 		cutImage = null;
+		originalImage = null;
 	}
 	
 	public boolean isPlaced() {
@@ -165,16 +184,16 @@ public class TileImage {
 	}
 	
 	public TileImage getSubImage(int x, int y, int width, int height) {
-		return getSubImage(this, x, y, width, height);
+		return getSubImage(context, this, x, y, width, height);
 	}
 	
-	public static TileImage getSubImage(TileImage parent, int x, int y, int width, int height) {
+	public static TileImage getSubImage(PackingContext context, TileImage parent, int x, int y, int width, int height) {
 		TilePlacement placement = new TilePlacement();
 		placement.setSubImageX(parent.getPlacement().getSubImageX() + x);
 		placement.setSubImageY(parent.getPlacement().getSubImageY() + y);
 		placement.setSubImageWidth(width);
 		placement.setSubImageHeight(height);
-		return new TileImage(parent, placement);
+		return new TileImage(context, parent, placement);
 	}
 
 	public BufferedImage getOriginalImage() {
@@ -188,6 +207,10 @@ public class TileImage {
 		return cutImage;
 	}
 	
+	public PackingContext getContext() {
+		return context;
+	}
+
 	public File getFile() {
 		return file;
 	}
@@ -28,10 +28,20 @@ package org.tilepacker.core;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.simpleframework.xml.Serializer;
-import org.simpleframework.xml.core.Persister;
 
 /**
  * Main entry class
@@ -39,17 +49,18 @@ import org.simpleframework.xml.core.Persister;
  * @author Thomas Cashman
  */
 public class TilePacker {
-	public static boolean FIX_TEARING = false;
-	public static String FORMAT = "PNG";
-	public static File TARGET_DIRECTORY;
-
-	private final Serializer serializer;
+	private final ConfigSerializer serializer;
 	private final File configFile;
 	private final File configFileDir;
 	private final TilePackerConfig config;
+	private final PackingContext context;
 	private final List<TileConfig> inputFiles;
 	private List<Tileset> tilesets;
 	private final Map<String, List<Integer>> tilesetsByDirectory = new HashMap<String, List<Integer>>();
+	private final Map<Integer, File> tilesetFiles = new ConcurrentHashMap<Integer, File>();
+	private final Set<Integer> skippedTilesets = new HashSet<Integer>();
+	private final PackResult packResult = new PackResult();
+	private final long startTime;
 	
 	/**
 	 * Constructor
@@ -63,16 +74,17 @@ public class TilePacker {
 	 */
 	public TilePacker(File configFileDir, boolean rewrite) {
 		super();
+		startTime = System.nanoTime();
 		
 		this.configFileDir = configFileDir;
 		this.configFile = new File(configFileDir, "config.xml");
 		tilesets = new ArrayList<Tileset>();
 
-		serializer = new Persister();
+		serializer = new ConfigSerializer();
 		
 		if(configFile.exists()) {
 			try {
-				config = serializer.read(TilePackerConfig.class, configFile);
+				config = serializer.read(configFile);
 				
 				if(rewrite) {
 					config.getTiles().clear();
@@ -85,106 +97,596 @@ public class TilePacker {
 			config.setTiles(new ArrayList<TileConfig>());
 		}
 
+		final long scanStartTime = System.nanoTime();
 		findTileFiles(config, this.configFileDir);
+		packResult.addPhaseNanos(PackPhase.SCAN, System.nanoTime() - scanStartTime);
 
-		Tile.WIDTH = config.getTileWidth();
-		Tile.HEIGHT = config.getTileHeight();
-		Tile.PADDING = config.getTilePadding();
-
-		Tileset.MAX_WIDTH = config.getTilesetWidth();
-		Tileset.MAX_HEIGHT = config.getTilesetHeight();
-		
-		Tileset.PREMULTIPLY_ALPHA = config.isPremultiplyAlpha();
-		Tileset.BACKGROUND_COLOR = config.getBackgroundColor();
-
-		TilePacker.FIX_TEARING = config.isPreventTearing();
-		if(TilePacker.FIX_TEARING && Tile.PADDING < 1) {
-			throw new TilePackerException("ERROR: If tearing prevention is enabled, the tile padding must be greater than 0");
-		}
-		TilePacker.FORMAT = config.getOutputFormat();
-		TilePacker.TARGET_DIRECTORY = new File(configFile.getParent(), config.getOutputPath());
+		context = new PackingContext(config, new File(configFile.getParent(), config.getOutputPath()));
 
-		if(!TilePacker.TARGET_DIRECTORY.exists()) {
-			TilePacker.TARGET_DIRECTORY.mkdirs();
+		if(!context.getTargetDirectory().exists()) {
+			context.getTargetDirectory().mkdirs();
 		}
 
 		inputFiles = config.getTiles();
 	}
 	
+	/**
+	 * Returns the directory that tilesets are written to
+	 * @param configFileDir The directory containing config.xml
+	 * @return The resolved output path of config.xml, or of the default configuration if it does not exist
+	 */
+	public static File getOutputDirectory(File configFileDir) {
+		final File configFile = new File(configFileDir, "config.xml");
+		if(!configFile.exists()) {
+			return new File(configFileDir, new TilePackerConfig().getOutputPath());
+		}
+		try {
+			return new File(configFileDir, new ConfigSerializer().read(configFile).getOutputPath());
+		} catch (Exception e) {
+			throw new TilePackerException("Error reading config file", e);
+		}
+	}
+	
+	/**
+	 * Adds a {@link TileConfig} for each PNG or JPEG beneath a directory
+	 * that is not already in the config. New tiles are added in path order.
+	 */
 	public void findTileFiles(TilePackerConfig config, File directory) {
-		for(File file : directory.listFiles()) {
-			if(file.isDirectory()) {
-				findTileFiles(config, file);
-			} else if(file.getAbsolutePath().toLowerCase().endsWith("png")
-					|| file.getAbsolutePath().toLowerCase().endsWith("jpg")) {
-				if(!config.containsTileConfig(configFileDir, file)) {
+		final ExecutorService executorService = createExecutorService(config.getWorkerThreads(), "tilepacker-walker-");
+		try {
+			final String pathPrefix = directory.getAbsoluteFile().equals(configFileDir.getAbsoluteFile()) ? ""
+					: getRelativePath(configFileDir.getAbsoluteFile(), directory.getAbsoluteFile());
+			for(String path : new TileFileWalker(executorService).walk(directory, pathPrefix)) {
+				if(!config.containsTileConfig(path)) {
 					TileConfig tileConfig = new TileConfig();
-					tileConfig.setPath(getRelativePath(configFileDir, file));
+					tileConfig.setPath(path);
 					config.getTiles().add(tileConfig);
 				}
 			}
+		} catch (IOException e) {
+			throw new TilePackerException("Error finding tile files in " + directory.getAbsolutePath(), e);
+		} finally {
+			if(executorService != null) {
+				executorService.shutdownNow();
+			}
 		}
 	}
 	
-	public void run(ClassLoader classLoader) throws IOException {
-		Queue<TileImage> imagesToPack = new LinkedList<TileImage>();
+	/**
+	 * Packs the tiles and writes the tilesets, config.xml and, if
+	 * configured, the atlas index and metrics report
+	 * @param classLoader Unused
+	 * @return The timings and packing efficiency of the run
+	 */
+	public PackResult run(ClassLoader classLoader) throws IOException {
+		final ExecutorService executorService = createExecutorService(config.getWorkerThreads(), "tilepacker-worker-");
+		// Encoding uses its own threads so that saves waiting on encoded
+		// chunks never hold up the worker threads doing the encoding
+		final ExecutorService encoderExecutorService = createExecutorService(context.getEncoderThreads(),
+				"tilepacker-encoder-");
+		final TileDeduplicator tileDeduplicator = config.isDeduplicateTiles() ? new TileDeduplicator(context) : null;
+		final TileTrimmer tileTrimmer = config.isTrimTransparentTiles() ? new TileTrimmer() : null;
+		try {
+			final long readStartTime = System.nanoTime();
+			Queue<TileImage> imagesToPack = readTileImages(executorService, tileDeduplicator, tileTrimmer);
+			packResult.addPhaseNanos(PackPhase.READ, System.nanoTime() - readStartTime);
+			packAndSave(executorService, encoderExecutorService, imagesToPack);
+		} finally {
+			if(executorService != null) {
+				executorService.shutdownNow();
+			}
+			if(encoderExecutorService != null) {
+				encoderExecutorService.shutdownNow();
+			}
+		}
 
+		if(tileDeduplicator != null) {
+			System.out.println("INFO: Removed " + tileDeduplicator.getTotalDuplicates() + " duplicate tiles");
+			packResult.setDuplicateTiles(tileDeduplicator.getTotalDuplicates());
+			tileDeduplicator.storeAliasPlacements();
+		}
+		if(tileTrimmer != null) {
+			System.out.println("INFO: Removed " + tileTrimmer.getTotalEmptyTiles() + " empty tiles");
+			packResult.setEmptyTiles(tileTrimmer.getTotalEmptyTiles());
+		}
+		final ImageCache imageCache = context.getImageCache();
+		System.out.println("INFO: Image cache hits: " + imageCache.getHits() + ", misses: "
+				+ imageCache.getMisses() + ", evictions: " + imageCache.getEvictions());
+		packResult.setImageCacheStatistics(imageCache.getHits(), imageCache.getMisses(), imageCache.getEvictions());
+		imageCache.clear();
+		
+		final long configWriteStartTime = System.nanoTime();
+		try {
+			serializer.write(config, configFile);
+		} catch (Exception e) {
+			throw new TilePackerException("Error storing placement config", e);
+		}
+		packResult.addBytesWritten(configFile.length());
+		if(config.isAtlasIndex()) {
+			final File atlasIndexFile = new File(context.getTargetDirectory(), AtlasIndexWriter.FILENAME);
+			AtlasIndexWriter.write(config, context, atlasIndexFile);
+			packResult.addBytesWritten(atlasIndexFile.length());
+		}
+		packResult.addPhaseNanos(PackPhase.CONFIG_WRITE, System.nanoTime() - configWriteStartTime);
+		packResult.setTotalNanos(System.nanoTime() - startTime);
+
+		System.out.println("INFO: Packed " + packResult.getImagesPacked() + " images into " + tilesets.size()
+				+ " tilesets, " + Math.round(packResult.getOccupancy() * 100) + "% occupancy");
+		if(config.getMetricsFile() != null && !config.getMetricsFile().isEmpty()) {
+			// Written with the tilesets so that build tools see it as an output
+			packResult.writeJson(new File(context.getTargetDirectory(), config.getMetricsFile()));
+		}
+		return packResult;
+	}
+
+	private Queue<TileImage> readTileImages(ExecutorService executorService, TileDeduplicator tileDeduplicator,
+			TileTrimmer tileTrimmer) throws IOException {
+		// Aliased and trimmed placements depend on the file hashes of their
+		// images so these are kept whenever either is used, not only for
+		// incremental runs
+		final boolean hashFiles = config.isIncremental() || tileDeduplicator != null || tileTrimmer != null
+				|| hasUnpackedPlacements();
+		final List<TileConfig> hashedFiles = new ArrayList<TileConfig>();
+		final List<Future<Boolean>> fileHashes = new ArrayList<Future<Boolean>>();
 		for (int i = 0; i < inputFiles.size(); i++) {
 			TileConfig tileConfig = inputFiles.get(i);
 			
-			String path = tileConfig.getPath();
-			if (!path.endsWith("." + FORMAT.toLowerCase())) {
-				throw new TilePackerException("ERROR: " + path + " does not match format " + FORMAT.toLowerCase());
-			}
-			System.out.println("INFO: Reading " + path);
-			File tileFile = new File(configFileDir, path);
+			// Tiles may be PNG or JPEG regardless of the output format
+			File tileFile = new File(configFileDir, tileConfig.getPath());
 			if(!tileFile.exists()) {
 				throw new TilePackerException("ERROR: " + tileFile.getAbsolutePath() + " does not exist");
 			}
+			if(hashFiles && tileConfig.getLastModified() != tileFile.lastModified()) {
+				hashedFiles.add(tileConfig);
+				fileHashes.add(submit(executorService, new TileFileHasher(tileConfig, tileFile)));
+			}
+		}
+		final Set<TileConfig> changedFiles = new HashSet<TileConfig>();
+		for (int i = 0; i < fileHashes.size(); i++) {
+			if(await(fileHashes.get(i))) {
+				changedFiles.add(hashedFiles.get(i));
+			}
+		}
+		for(TileConfig tileConfig : findImagesToRescan(changedFiles)) {
+			System.out.println("INFO: Rescanning " + tileConfig.getPath());
+			tileConfig.getPlacement().clear();
+		}
+
+		final List<Future<ImageDimensions>> imageDimensions = new ArrayList<Future<ImageDimensions>>(inputFiles.size());
+		for (int i = 0; i < inputFiles.size(); i++) {
+			TileConfig tileConfig = inputFiles.get(i);
+			if(tileConfig.isPlaced()) {
+				imageDimensions.add(null);
+			} else {
+				imageDimensions.add(submit(executorService,
+						new ImageDimensionsReader(new File(configFileDir, tileConfig.getPath()))));
+			}
+		}
+
+		Queue<TileImage> imagesToPack = new LinkedList<TileImage>();
+		List<TileImage> newImages = new ArrayList<TileImage>();
+		for (int i = 0; i < inputFiles.size(); i++) {
+			TileConfig tileConfig = inputFiles.get(i);
+			
+			String path = tileConfig.getPath();
+			System.out.println("INFO: Reading " + path);
+			File tileFile = new File(configFileDir, path);
+			List<TilePlacement> unpackedPlacements = null;
 			
 			if(tileConfig.isPlaced()) {
 				for(int j = 0; j < tileConfig.getPlacement().size(); j++) {
 					TilePlacement tilePlacement = tileConfig.getPlacement().get(j);
-					TileImage spriteSheet = new TileImage(tileConfig, tileFile, tilePlacement);
+					if(tilePlacement.isAlias() || tilePlacement.isEmpty()) {
+						if(unpackedPlacements == null) {
+							unpackedPlacements = new ArrayList<TilePlacement>();
+						}
+						unpackedPlacements.add(tilePlacement);
+						continue;
+					}
+					TileImage spriteSheet = new TileImage(context, tileConfig, tileFile, tilePlacement);
 					addToQueue(imagesToPack, spriteSheet);
 				}
 			} else {
-				TileImage spriteSheet = new TileImage(tileConfig, tileFile);
-				addToQueue(imagesToPack, spriteSheet);
+				// New and rescanned images are queued after every placed image
+				// so that they can only be packed around occupied areas
+				newImages.add(new TileImage(context, tileConfig, tileFile, await(imageDimensions.get(i))));
 			}
 			tileConfig.getPlacement().clear();
+			if(unpackedPlacements != null) {
+				tileConfig.getPlacement().addAll(unpackedPlacements);
+			}
+		}
+
+		if(tileDeduplicator == null && tileTrimmer == null) {
+			for (int i = 0; i < newImages.size(); i++) {
+				addToQueue(imagesToPack, newImages.get(i));
+			}
+		} else if(!newImages.isEmpty()) {
+			trimAndDeduplicate(executorService, tileDeduplicator, tileTrimmer, newImages, imagesToPack);
+		}
+		return imagesToPack;
+	}
+
+	private boolean hasUnpackedPlacements() {
+		for (int i = 0; i < inputFiles.size(); i++) {
+			for(TilePlacement tilePlacement : inputFiles.get(i).getPlacement()) {
+				if(tilePlacement.isAlias() || tilePlacement.isEmpty()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the placed images that must be trimmed and deduplicated again
+	 * because one of their aliased or empty placements is stale. An empty
+	 * placement is stale when its image has changed. An alias is stale when
+	 * its own image or the image it refers to has changed or when the image
+	 * it refers to is itself rescanned and so moves.
+	 */
+	private Set<TileConfig> findImagesToRescan(Set<TileConfig> changedFiles) {
+		final Set<TileConfig> result = new LinkedHashSet<TileConfig>();
+		boolean found = true;
+		while(found) {
+			found = false;
+			for (int i = 0; i < inputFiles.size(); i++) {
+				final TileConfig tileConfig = inputFiles.get(i);
+				if(!result.contains(tileConfig) && hasStalePlacements(tileConfig, changedFiles, result)) {
+					result.add(tileConfig);
+					found = true;
+				}
+			}
+		}
+		return result;
+	}
+
+	private boolean hasStalePlacements(TileConfig tileConfig, Set<TileConfig> changedFiles,
+			Set<TileConfig> rescannedFiles) {
+		for(TilePlacement tilePlacement : tileConfig.getPlacement()) {
+			if(!tilePlacement.isAlias() && !tilePlacement.isEmpty()) {
+				continue;
+			}
+			if(changedFiles.contains(tileConfig)) {
+				return true;
+			}
+			if(tilePlacement.isEmpty()) {
+				continue;
+			}
+			final TileConfig canonicalConfig = tilePlacement.getCanonicalPath() == null ? null
+					: config.getTileConfig(tilePlacement.getCanonicalPath());
+			if(canonicalConfig == null || rescannedFiles.contains(canonicalConfig)
+					|| canonicalConfig.getHash() != tilePlacement.getCanonicalHash()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Scans the tiles of new images on the worker pool and queues only the
+	 * tiles that are not transparent or have not been seen before
+	 */
+	private void trimAndDeduplicate(ExecutorService executorService, TileDeduplicator tileDeduplicator,
+			TileTrimmer tileTrimmer, List<TileImage> images, Queue<TileImage> imagesToPack) throws IOException {
+		final List<Future<TileScanner>> tileScans = new ArrayList<Future<TileScanner>>(images.size());
+		for (int i = 0; i < images.size(); i++) {
+			tileScans.add(submit(executorService,
+					new TileScanner(images.get(i), tileDeduplicator != null, tileTrimmer != null)));
+		}
+		for (int i = 0; i < images.size(); i++) {
+			final TileImage image = images.get(i);
+			final TileScanner tileScan = await(tileScans.get(i));
+			final boolean[] excludedTiles = tileScan.emptyTiles;
+			if(tileTrimmer != null) {
+				tileTrimmer.addEmptyTiles(image, excludedTiles);
+			}
+
+			final List<TileImage> packedImages;
+			if(tileDeduplicator == null) {
+				packedImages = TileTrimmer.getSubImages(image, excludedTiles);
+			} else {
+				final String group;
+				if(config.isGroupTilesByDirectory()) {
+					group = TilePacker.getRelativePath(configFileDir.getAbsoluteFile(), image.getFile().getParentFile());
+				} else {
+					group = "";
+				}
+				packedImages = tileDeduplicator.deduplicate(image, tileScan.tileHashes, group, excludedTiles);
+			}
+			for (int j = 0; j < packedImages.size(); j++) {
+				addToQueue(imagesToPack, packedImages.get(j));
+			}
+		}
+	}
+
+	private void packAndSave(ExecutorService executorService, ExecutorService encoderExecutorService,
+			Queue<TileImage> imagesToPack) throws IOException {
+		final List<Future<Void>> pendingSaves = new ArrayList<Future<Void>>();
+		final Set<String> replacedFiles = Collections.synchronizedSet(new HashSet<String>());
+		if(context.getPackingOrder() != PackingOrder.NONE || context.getPackingSearchRounds() > 0
+				|| context.getPackingTimeBudgetMillis() > 0) {
+			final long packStartTime = System.nanoTime();
+			packOffline(executorService, imagesToPack);
+			packResult.addPhaseNanos(PackPhase.PACK, System.nanoTime() - packStartTime);
 		}
-		
 		while(!imagesToPack.isEmpty()) {
 			final TileImage nextImage = imagesToPack.poll();
 
+			final long packStartTime = System.nanoTime();
 			final Tileset tileset = getTilesetForTileImage(nextImage);
-			if (tileset.isFull()) {
+			packResult.addPhaseNanos(PackPhase.PACK, System.nanoTime() - packStartTime);
+			packResult.addImagePacked();
+			if (tileset.isFull() && !tileset.isClosed()) {
 				System.out.println("INFO: Tileset " + nextImage.getTileset() + " is now full. Saving to disk.");
-				tileset.save(new File(TARGET_DIRECTORY, nextImage.getTileset() + "." + FORMAT.toLowerCase()).getAbsolutePath(), FORMAT);
+				saveTileset(executorService, encoderExecutorService, pendingSaves, replacedFiles, tileset, nextImage.getTileset());
 			}
 		}
-		
+
 		for (int i = 0; i < tilesets.size(); i++) {
 			Tileset tileset = tilesets.get(i);
-			if(tileset.isSaved()) {
+			if(tileset.isClosed()) {
 				continue;
 			}
 			System.out.println("INFO: Saving tileset - " + i);
-			tileset.save(new File(TARGET_DIRECTORY, i + "." + FORMAT.toLowerCase()).getAbsolutePath(), FORMAT);
+			saveTileset(executorService, encoderExecutorService, pendingSaves, replacedFiles, tileset, i);
 		}
-		
+
+		for(Future<Void> pendingSave : pendingSaves) {
+			await(pendingSave);
+		}
+		addTilesetResults();
+
+		if(!config.isIncremental() && !context.isContentHashNames()) {
+			config.getTilesets().clear();
+			return;
+		}
+		for(int i = config.getTilesets().size() - 1; i >= 0; i--) {
+			if(config.getTilesets().get(i).getIndex() >= tilesets.size()) {
+				TilesetConfig removedTileset = config.getTilesets().remove(i);
+				if(removedTileset.getFile() != null) {
+					replacedFiles.add(removedTileset.getFile());
+				}
+			}
+		}
+		if(context.isContentHashNames()) {
+			deleteReplacedFiles(replacedFiles);
+		}
+	}
+
+	/**
+	 * Places every unplaced image with an {@link OfflinePacker} and replaces
+	 * the queue with the images ordered by tileset
+	 */
+	private void packOffline(ExecutorService executorService, Queue<TileImage> imagesToPack) throws IOException {
+		final List<TileImage> images = new ArrayList<TileImage>(imagesToPack);
+		List<String> groups = null;
+		if(config.isGroupTilesByDirectory()) {
+			groups = new ArrayList<String>(images.size());
+			for(TileImage image : images) {
+				groups.add(TilePacker.getRelativePath(configFileDir.getAbsoluteFile(), image.getFile().getParentFile()));
+			}
+		}
+		final OfflinePacker offlinePacker = new OfflinePacker(context, images, groups);
+		OfflinePacker.Packing packing = offlinePacker.pack(context.getPackingOrder(), executorService);
+		System.out.println("INFO: Packed " + images.size() + " images into " + packing.getTilesetCount()
+				+ " tilesets by " + context.getPackingOrder());
+		// Without an amount of rounds, the rounds are estimated from the
+		// budget so that the same budget gives the same packing
+		final int searchRounds = context.getPackingSearchRounds() > 0 ? context.getPackingSearchRounds()
+				: offlinePacker.getSearchRounds(context.getPackingTimeBudgetMillis());
+		if(searchRounds > 0) {
+			final int searchChains = context.getPackingSearchChains() > 0 ? context.getPackingSearchChains()
+					: getWorkerThreadCount(config.getWorkerThreads());
+			packing = offlinePacker.search(packing, searchRounds, searchChains, context.getPackingTimeBudgetMillis(),
+					context.getPackingSeed(), executorService);
+			System.out.println("INFO: Searched " + packing.getSearchRounds() + " rounds of " + searchChains
+					+ " chains with seed " + context.getPackingSeed() + ", packed into " + packing.getTilesetCount()
+					+ " tilesets");
+			if(packing.isTimeBudgetReached()) {
+				System.out.println("WARN: Packing search stopped after " + packing.getSearchRounds() + " of "
+						+ searchRounds + " rounds by packingTimeBudgetMillis, the packing may differ between machines");
+			}
+			packResult.setSearchRounds(packing.getSearchRounds(), searchChains, packing.isTimeBudgetReached());
+		}
+		imagesToPack.clear();
+		imagesToPack.addAll(packing.apply());
+	}
+
+	private void saveTileset(ExecutorService executorService, final ExecutorService encoderExecutorService,
+			List<Future<Void>> pendingSaves, final Set<String> replacedFiles, final Tileset tileset,
+			final int tilesetIndex) {
+		final String format = context.getOutputFormat();
+		tileset.close();
+
+		final TilesetConfig tilesetConfig;
+		final long signature;
+		if(config.isIncremental() || context.isContentHashNames()) {
+			tilesetConfig = getTilesetConfig(tilesetIndex);
+			signature = tileset.getSignature(getSettingsHash());
+		} else {
+			tilesetConfig = null;
+			signature = 0;
+		}
+		if(config.isIncremental()) {
+			final File file = new File(context.getTargetDirectory(), getTilesetFileName(tilesetConfig));
+			if(tilesetConfig.getSignature() == signature && file.exists()
+					&& file.lastModified() == tilesetConfig.getLastModified()) {
+				System.out.println("INFO: Tileset " + tilesetIndex + " is unchanged, skipping");
+				tilesetFiles.put(tilesetIndex, file);
+				skippedTilesets.add(tilesetIndex);
+				return;
+			}
+		}
+		pendingSaves.add(submit(executorService, new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				final File file;
+				if(context.isContentHashNames()) {
+					file = saveWithContentHashName(encoderExecutorService, tileset, tilesetIndex, format);
+				} else {
+					file = new File(context.getTargetDirectory(), tilesetIndex + "." + format.toLowerCase());
+					tileset.save(file.getAbsolutePath(), format, encoderExecutorService);
+				}
+				tilesetFiles.put(tilesetIndex, file);
+				if(tilesetConfig != null) {
+					if(tilesetConfig.getFile() != null && !tilesetConfig.getFile().equals(file.getName())) {
+						replacedFiles.add(tilesetConfig.getFile());
+					}
+					tilesetConfig.setSignature(signature);
+					tilesetConfig.setLastModified(file.lastModified());
+					tilesetConfig.setFile(file.getName());
+				}
+				return null;
+			}
+		}));
+	}
+
+	/**
+	 * Adds the occupancy, output and save timings of each tileset to the
+	 * {@link PackResult}, once all saves have completed
+	 */
+	private void addTilesetResults() {
+		final int totalTiles = context.getTilesetWidthInTiles() * context.getTilesetHeightInTiles();
+		for(int i = 0; i < tilesets.size(); i++) {
+			final Tileset tileset = tilesets.get(i);
+			final File file = tilesetFiles.get(i);
+			final boolean skipped = skippedTilesets.contains(i);
+			packResult.addPhaseNanos(PackPhase.DECODE, tileset.getDecodeNanos());
+			packResult.addPhaseNanos(PackPhase.COMPOSE, tileset.getComposeNanos());
+			packResult.addPhaseNanos(PackPhase.ENCODE, tileset.getEncodeNanos());
+			final long bytesWritten = file == null || skipped ? 0 : file.length();
+			packResult.addBytesWritten(bytesWritten);
+			packResult.addTileset(new PackResult.TilesetResult(i, file == null ? null : file.getName(), skipped,
+					tileset.getUsedArea(), totalTiles, tileset.getPeakFreeAreaCount(), bytesWritten));
+		}
+	}
+
+	/**
+	 * Saves a tileset to a temporary file and then renames it to a hash of
+	 * its bytes, so that unchanged tilesets keep the same name
+	 */
+	private File saveWithContentHashName(ExecutorService encoderExecutorService, Tileset tileset, int tilesetIndex,
+			String format) throws IOException {
+		final String extension = "." + format.toLowerCase();
+		final File temporaryFile = new File(context.getTargetDirectory(), tilesetIndex + extension + ".tmp");
+		tileset.save(temporaryFile.getAbsolutePath(), format, encoderExecutorService);
+
+		final byte[] bytes = Files.readAllBytes(temporaryFile.toPath());
+		final String fileName = String.format("%016x", XXHash64.hash(bytes, 0, bytes.length, 0)) + extension;
+		final File result = new File(context.getTargetDirectory(), fileName);
+		Files.move(temporaryFile.toPath(), result.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return result;
+	}
+
+	/**
+	 * Deletes content hash named tilesets that are no longer used
+	 */
+	private void deleteReplacedFiles(Set<String> replacedFiles) {
+		for(TilesetConfig tilesetConfig : config.getTilesets()) {
+			replacedFiles.remove(tilesetConfig.getFile());
+		}
+		for(String replacedFile : replacedFiles) {
+			final File file = new File(context.getTargetDirectory(), replacedFile);
+			if(file.exists() && !file.delete()) {
+				System.out.println("WARN: Could not delete " + file.getAbsolutePath());
+			}
+		}
+	}
+
+	private String getTilesetFileName(TilesetConfig tilesetConfig) {
+		if(tilesetConfig.getFile() != null) {
+			return tilesetConfig.getFile();
+		}
+		return tilesetConfig.getIndex() + "." + context.getOutputFormat().toLowerCase();
+	}
+
+	private TilesetConfig getTilesetConfig(int tilesetIndex) {
+		for(TilesetConfig tilesetConfig : config.getTilesets()) {
+			if(tilesetConfig.getIndex() == tilesetIndex) {
+				return tilesetConfig;
+			}
+		}
+		TilesetConfig result = new TilesetConfig();
+		result.setIndex(tilesetIndex);
+		config.getTilesets().add(result);
+		return result;
+	}
+
+	/**
+	 * Returns a hash of the settings that affect the pixels of saved tilesets
+	 */
+	private long getSettingsHash() {
+		final byte[] bytes = context.getRenderSettings().getBytes(StandardCharsets.UTF_8);
+		return XXHash64.hash(bytes, 0, bytes.length, 0);
+	}
+
+	/**
+	 * Submits a task to the worker pool, or runs it immediately if there is no worker pool
+	 */
+	static <T> Future<T> submit(ExecutorService executorService, Callable<T> task) {
+		if(executorService == null) {
+			FutureTask<T> result = new FutureTask<T>(task);
+			result.run();
+			return result;
+		}
+		return executorService.submit(task);
+	}
+
+	/**
+	 * Waits for a task to complete, rethrowing any exception it raised
+	 */
+	static <T> T await(Future<T> future) throws IOException {
 		try {
-			serializer.write(config, configFile);
-		} catch (Exception e) {
-			throw new TilePackerException("Error storing placement config", e);
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TilePackerException("Interrupted while waiting for worker threads", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new TilePackerException("Error in worker thread", e);
+		}
+	}
+
+	/**
+	 * Creates a thread pool for concurrent work
+	 * @param workerThreads The configured amount of threads, 0 to use all available processors
+	 * @param threadNamePrefix The prefix of the name of each thread
+	 * @return Null if work should be done on the calling thread
+	 */
+	private static ExecutorService createExecutorService(int workerThreads, final String threadNamePrefix) {
+		workerThreads = getWorkerThreadCount(workerThreads);
+		if(workerThreads == 1) {
+			return null;
 		}
+		return Executors.newFixedThreadPool(workerThreads, new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, threadNamePrefix + threadCount.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private static int getWorkerThreadCount(int workerThreads) {
+		if(workerThreads <= 0) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return workerThreads;
 	}
 
 	private Tileset getTilesetForTileImage(TileImage nextImage) {
 		if(nextImage.isPlaced()) {
 			while(nextImage.getTileset() >= tilesets.size()) {
-				tilesets.add(new Tileset());
+				tilesets.add(new Tileset(context));
 			}
 			if(config.isGroupTilesByDirectory()) {
 				final String relativeDirectory = TilePacker.getRelativePath(configFileDir.getAbsoluteFile(), nextImage.getFile().getParentFile());
@@ -198,8 +700,12 @@ public class TilePacker {
 			}
 
 			final Tileset result = tilesets.get(nextImage.getTileset());
+			if(!result.add(nextImage)) {
+				throw new TilePackerException("ERROR: " + nextImage.getTileConfig().getPath() + " at "
+						+ nextImage.getTilesetX() + "," + nextImage.getTilesetY() + " in tileset "
+						+ nextImage.getTileset() + " overlaps another image or is outside the tileset");
+			}
 			nextImage.storePlacementConfig();
-			result.add(nextImage);
 			return result;
 		} else if(config.isGroupTilesByDirectory()) {
 			final String relativeDirectory = TilePacker.getRelativePath(configFileDir.getAbsoluteFile(), nextImage.getFile().getParentFile());
@@ -211,7 +717,7 @@ public class TilePacker {
 			for (int i = 0; i < tilesetIndicesForDirectory.size(); i++) {
 				final int tilesetIndex = tilesetIndicesForDirectory.get(i);
 				while(tilesetIndex >= tilesets.size()) {
-					tilesets.add(new Tileset());
+					tilesets.add(new Tileset(context));
 				}
 				final Tileset tileset = tilesets.get(tilesetIndex);
 				if (tileset.add(nextImage)) {
@@ -221,7 +727,7 @@ public class TilePacker {
 				}
 			}
 
-			Tileset tileset = new Tileset();
+			Tileset tileset = new Tileset(context);
 			if (!tileset.add(nextImage)) {
 				throw new TilePackerException("ERROR: Tile image too large");
 			}
@@ -241,7 +747,7 @@ public class TilePacker {
 				}
 			}
 
-			Tileset tileset = new Tileset();
+			Tileset tileset = new Tileset(context);
 			if (!tileset.add(nextImage)) {
 				throw new TilePackerException("ERROR: Tile image too large");
 			}
@@ -254,28 +760,127 @@ public class TilePacker {
 	}
 	
 	public void addToQueue(Queue<TileImage> queue, TileImage tileImage) {
+		if(context.getImageSplitting() == ImageSplitting.SHEET) {
+			addSheetsToQueue(queue, tileImage);
+			return;
+		}
 		int horizontalTileCount = tileImage.getHorizontalTileCount();
 		int verticalTileCount = tileImage.getVerticalTileCount();
 		
-		if(horizontalTileCount > Tileset.getMaximumWidthInTiles()) {
+		if(horizontalTileCount > context.getTilesetWidthInTiles()) {
+			packResult.addImageSplit();
 			int halfWidth = horizontalTileCount / 2;
-			addToQueue(queue, TileImage.getSubImage(tileImage, 0, 0, halfWidth, verticalTileCount));
-			addToQueue(queue, TileImage.getSubImage(tileImage, halfWidth, 0, horizontalTileCount - halfWidth, verticalTileCount));
-		} else if(verticalTileCount > Tileset.getMaxiumumHeightInTiles()) {
+			addToQueue(queue, TileImage.getSubImage(context, tileImage, 0, 0, halfWidth, verticalTileCount));
+			addToQueue(queue, TileImage.getSubImage(context, tileImage, halfWidth, 0, horizontalTileCount - halfWidth, verticalTileCount));
+		} else if(verticalTileCount > context.getTilesetHeightInTiles()) {
+			packResult.addImageSplit();
 			int halfHeight = verticalTileCount / 2;
-			addToQueue(queue, TileImage.getSubImage(tileImage, 0, 0, horizontalTileCount, halfHeight));
-			addToQueue(queue, TileImage.getSubImage(tileImage, 0, halfHeight, horizontalTileCount, verticalTileCount - halfHeight));
+			addToQueue(queue, TileImage.getSubImage(context, tileImage, 0, 0, horizontalTileCount, halfHeight));
+			addToQueue(queue, TileImage.getSubImage(context, tileImage, 0, halfHeight, horizontalTileCount, verticalTileCount - halfHeight));
 		} else {
 			queue.add(tileImage);
 		}
 	}
 
+	/**
+	 * Cuts an image into tileset sized pieces plus the remainder at the right
+	 * and bottom edges
+	 */
+	private void addSheetsToQueue(Queue<TileImage> queue, TileImage tileImage) {
+		final int horizontalTileCount = tileImage.getHorizontalTileCount();
+		final int verticalTileCount = tileImage.getVerticalTileCount();
+		final int tilesetWidth = context.getTilesetWidthInTiles();
+		final int tilesetHeight = context.getTilesetHeightInTiles();
+		if(horizontalTileCount <= tilesetWidth && verticalTileCount <= tilesetHeight) {
+			queue.add(tileImage);
+			return;
+		}
+		for(int y = 0; y < verticalTileCount; y += tilesetHeight) {
+			final int height = Math.min(tilesetHeight, verticalTileCount - y);
+			for(int x = 0; x < horizontalTileCount; x += tilesetWidth) {
+				final int width = Math.min(tilesetWidth, horizontalTileCount - x);
+				if(x > 0 || y > 0) {
+					packResult.addImageSplit();
+				}
+				queue.add(TileImage.getSubImage(context, tileImage, x, y, width, height));
+			}
+		}
+	}
+
+	private static class ImageDimensionsReader implements Callable<ImageDimensions> {
+		private final File file;
+
+		public ImageDimensionsReader(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public ImageDimensions call() throws Exception {
+			return ImageDimensions.read(file);
+		}
+	}
+
+	/**
+	 * Hashes the contents of an image file, returning true if the hash
+	 * differs from the one previously stored
+	 */
+	private static class TileFileHasher implements Callable<Boolean> {
+		private final TileConfig tileConfig;
+		private final File file;
+
+		public TileFileHasher(TileConfig tileConfig, File file) {
+			this.tileConfig = tileConfig;
+			this.file = file;
+		}
+
+		@Override
+		public Boolean call() throws Exception {
+			// Read the modification time first so a concurrent edit is picked up next run
+			final long lastModified = file.lastModified();
+			final byte[] contents = Files.readAllBytes(file.toPath());
+			final long hash = XXHash64.hash(contents, 0, contents.length, 0);
+			final boolean changed = tileConfig.getLastModified() == 0 || tileConfig.getHash() != hash;
+			tileConfig.setHash(hash);
+			tileConfig.setLastModified(lastModified);
+			return changed;
+		}
+	}
+
+	/**
+	 * Hashes and finds empty tiles of an image in one task so that the image
+	 * is not loaded and disposed by two threads at once
+	 */
+	private static class TileScanner implements Callable<TileScanner> {
+		private final TileImage image;
+		private final boolean hashTiles;
+		private final boolean findEmptyTiles;
+		private long[] tileHashes;
+		private boolean[] emptyTiles;
+
+		public TileScanner(TileImage image, boolean hashTiles, boolean findEmptyTiles) {
+			this.image = image;
+			this.hashTiles = hashTiles;
+			this.findEmptyTiles = findEmptyTiles;
+		}
+
+		@Override
+		public TileScanner call() throws Exception {
+			if(findEmptyTiles) {
+				emptyTiles = TileTrimmer.findEmptyTiles(image);
+			}
+			if(hashTiles) {
+				tileHashes = TileDeduplicator.hashTiles(image);
+			}
+			return this;
+		}
+	}
+
 	public static void main(String[] args) {
 		if(args.length == 0) {
 			TilePackerConfig config = new TilePackerConfig();
 			config.setTiles(new ArrayList<TileConfig>());
 			
-			Serializer serializer = new Persister();
+			ConfigSerializer serializer = new ConfigSerializer();
 			File file = new File("config.xml");
 			try {
 				serializer.write(config, file);
@@ -28,7 +28,9 @@ package org.tilepacker.core;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
@@ -61,17 +63,95 @@ public class TilePackerConfig {
 	private boolean premultiplyAlpha = false;
 	@Element(required=false)
 	private String backgroundColor = null;
+	@Element(required=false)
+	private int workerThreads = 1;
+	@Element(required=false)
+	private String packingAlgorithm = PackingAlgorithm.DEFAULT.name();
+	@Element(required=false)
+	private String packingOrder = PackingOrder.NONE.name();
+	@Element(required=false)
+	private int packingSearchRounds = 0;
+	@Element(required=false)
+	private int packingSearchChains = 0;
+	@Element(required=false)
+	private long packingTimeBudgetMillis = 0;
+	@Element(required=false)
+	private long packingSeed = 0;
+	@Element(required=false)
+	private String imageSplitting = ImageSplitting.HALVE.name();
+	@Element(required=false)
+	private boolean deduplicateTiles = false;
+	@Element(required=false)
+	private boolean trimTransparentTiles = false;
+	@Element(required=false)
+	private boolean incremental = false;
+	@Element(required=false)
+	private int imageCacheMegabytes = ImageCache.DEFAULT_MEGABYTES;
+	@Element(required=false)
+	private boolean contentHashNames = false;
+	@Element(required=false)
+	private int pngCompressionLevel = PngWriter.DEFAULT_COMPRESSION_LEVEL;
+	@Element(required=false)
+	private String pngFilter = PngFilter.ADAPTIVE.name();
+	@Element(required=false)
+	private int encoderThreads = 1;
+	@Element(required=false)
+	private int jpegQuality = JpegWriter.DEFAULT_QUALITY;
+	@Element(required=false)
+	private String jpegChromaSubsampling = JpegWriter.DEFAULT_CHROMA_SUBSAMPLING;
+	@Element(required=false)
+	private String ddsCompression = DdsWriter.DEFAULT_COMPRESSION;
+	@Element(required=false)
+	private String ktxCompression = KtxWriter.DEFAULT_COMPRESSION;
+	@Element(required=false)
+	private boolean atlasIndex = true;
+	@Element(required=false)
+	private String metricsFile = null;
 	@ElementList(name="tiles", required=false)
 	private List<TileConfig> tiles;
+	@ElementList(name="tilesets", required=false)
+	private List<TilesetConfig> tilesets;
+
+	private Map<String, TileConfig> tilesByPath;
+	private List<TileConfig> indexedTiles;
+	private int indexedTileCount;
 	
 	public boolean containsTileConfig(File tileDirectory, File file) {
-		String pathToLookup = TilePacker.getRelativePath(tileDirectory, file);
-		for(TileConfig config : getTiles()) {
-			if(config.getPath().equals(pathToLookup)) {
-				return true;
+		return containsTileConfig(TilePacker.getRelativePath(tileDirectory, file));
+	}
+
+	public boolean containsTileConfig(String path) {
+		return getTileIndex().containsKey(path);
+	}
+
+	/**
+	 * Returns the tile with the given path, relative to the config directory
+	 * @return Null if there is no tile with the path
+	 */
+	public TileConfig getTileConfig(String path) {
+		return getTileIndex().get(path);
+	}
+
+	/**
+	 * Returns the tiles indexed by path. Tiles appended to the tile list
+	 * since the last lookup are added to the index, it is rebuilt if the
+	 * list has been replaced or has shrunk.
+	 */
+	private Map<String, TileConfig> getTileIndex() {
+		final List<TileConfig> tiles = getTiles();
+		if(tilesByPath == null || indexedTiles != tiles || indexedTileCount > tiles.size()) {
+			tilesByPath = new HashMap<String, TileConfig>(Math.max(16, tiles.size() * 2));
+			indexedTiles = tiles;
+			indexedTileCount = 0;
+		}
+		for(; indexedTileCount < tiles.size(); indexedTileCount++) {
+			final TileConfig tileConfig = tiles.get(indexedTileCount);
+			// The first tile with a path wins, as with a linear search
+			if(!tilesByPath.containsKey(tileConfig.getPath())) {
+				tilesByPath.put(tileConfig.getPath(), tileConfig);
 			}
 		}
-		return false;
+		return tilesByPath;
 	}
 	
 	public int getTileWidth() {
@@ -162,6 +242,182 @@ public class TilePackerConfig {
 		this.backgroundColor = backgroundColor;
 	}
 
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+
+	public void setWorkerThreads(int workerThreads) {
+		this.workerThreads = workerThreads;
+	}
+
+	public String getPackingAlgorithm() {
+		return packingAlgorithm;
+	}
+
+	public void setPackingAlgorithm(String packingAlgorithm) {
+		this.packingAlgorithm = packingAlgorithm;
+	}
+
+	public String getPackingOrder() {
+		return packingOrder;
+	}
+
+	public void setPackingOrder(String packingOrder) {
+		this.packingOrder = packingOrder;
+	}
+
+	public int getPackingSearchRounds() {
+		return packingSearchRounds;
+	}
+
+	public void setPackingSearchRounds(int packingSearchRounds) {
+		this.packingSearchRounds = packingSearchRounds;
+	}
+
+	public int getPackingSearchChains() {
+		return packingSearchChains;
+	}
+
+	public void setPackingSearchChains(int packingSearchChains) {
+		this.packingSearchChains = packingSearchChains;
+	}
+
+	public long getPackingTimeBudgetMillis() {
+		return packingTimeBudgetMillis;
+	}
+
+	public void setPackingTimeBudgetMillis(long packingTimeBudgetMillis) {
+		this.packingTimeBudgetMillis = packingTimeBudgetMillis;
+	}
+
+	public long getPackingSeed() {
+		return packingSeed;
+	}
+
+	public void setPackingSeed(long packingSeed) {
+		this.packingSeed = packingSeed;
+	}
+
+	public String getImageSplitting() {
+		return imageSplitting;
+	}
+
+	public void setImageSplitting(String imageSplitting) {
+		this.imageSplitting = imageSplitting;
+	}
+
+	public boolean isDeduplicateTiles() {
+		return deduplicateTiles;
+	}
+
+	public void setDeduplicateTiles(boolean deduplicateTiles) {
+		this.deduplicateTiles = deduplicateTiles;
+	}
+
+	public boolean isTrimTransparentTiles() {
+		return trimTransparentTiles;
+	}
+
+	public void setTrimTransparentTiles(boolean trimTransparentTiles) {
+		this.trimTransparentTiles = trimTransparentTiles;
+	}
+
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	public int getImageCacheMegabytes() {
+		return imageCacheMegabytes;
+	}
+
+	public void setImageCacheMegabytes(int imageCacheMegabytes) {
+		this.imageCacheMegabytes = imageCacheMegabytes;
+	}
+
+	public boolean isContentHashNames() {
+		return contentHashNames;
+	}
+
+	public void setContentHashNames(boolean contentHashNames) {
+		this.contentHashNames = contentHashNames;
+	}
+
+	public int getPngCompressionLevel() {
+		return pngCompressionLevel;
+	}
+
+	public void setPngCompressionLevel(int pngCompressionLevel) {
+		this.pngCompressionLevel = pngCompressionLevel;
+	}
+
+	public String getPngFilter() {
+		return pngFilter;
+	}
+
+	public void setPngFilter(String pngFilter) {
+		this.pngFilter = pngFilter;
+	}
+
+	public int getEncoderThreads() {
+		return encoderThreads;
+	}
+
+	public void setEncoderThreads(int encoderThreads) {
+		this.encoderThreads = encoderThreads;
+	}
+
+	public int getJpegQuality() {
+		return jpegQuality;
+	}
+
+	public void setJpegQuality(int jpegQuality) {
+		this.jpegQuality = jpegQuality;
+	}
+
+	public String getJpegChromaSubsampling() {
+		return jpegChromaSubsampling;
+	}
+
+	public void setJpegChromaSubsampling(String jpegChromaSubsampling) {
+		this.jpegChromaSubsampling = jpegChromaSubsampling;
+	}
+
+	public String getDdsCompression() {
+		return ddsCompression;
+	}
+
+	public void setDdsCompression(String ddsCompression) {
+		this.ddsCompression = ddsCompression;
+	}
+
+	public String getKtxCompression() {
+		return ktxCompression;
+	}
+
+	public void setKtxCompression(String ktxCompression) {
+		this.ktxCompression = ktxCompression;
+	}
+
+	public boolean isAtlasIndex() {
+		return atlasIndex;
+	}
+
+	public void setAtlasIndex(boolean atlasIndex) {
+		this.atlasIndex = atlasIndex;
+	}
+
+	public String getMetricsFile() {
+		return metricsFile;
+	}
+
+	public void setMetricsFile(String metricsFile) {
+		this.metricsFile = metricsFile;
+	}
+
 	public List<TileConfig> getTiles() {
 		if(tiles == null) {
 			tiles = new ArrayList<TileConfig>(1);
@@ -172,4 +428,15 @@ public class TilePackerConfig {
 	public void setTiles(List<TileConfig> tiles) {
 		this.tiles = tiles;
 	}
+
+	public List<TilesetConfig> getTilesets() {
+		if(tilesets == null) {
+			tilesets = new ArrayList<TilesetConfig>(1);
+		}
+		return tilesets;
+	}
+
+	public void setTilesets(List<TilesetConfig> tilesets) {
+		this.tilesets = tilesets;
+	}
 }
@@ -46,6 +46,14 @@ public class TilePlacement implements Comparable<TilePlacement> {
 	private int subImageWidth;
 	@Element(required=false)
 	private int subImageHeight;
+	@Element(required=false)
+	private boolean alias = false;
+	@Element(required=false)
+	private boolean empty = false;
+	@Element(required=false)
+	private String canonicalPath;
+	@Element(required=false)
+	private long canonicalHash;
 	
 	public boolean isPlaced() {
 		if(tilesetX < 0) {
@@ -117,6 +125,61 @@ public class TilePlacement implements Comparable<TilePlacement> {
 		this.subImageHeight = imageHeight;
 	}
 
+	/**
+	 * Returns if this placement refers to an identical tile placed by
+	 * another image rather than pixels drawn for this image
+	 * 
+	 * @return
+	 */
+	public boolean isAlias() {
+		return alias;
+	}
+
+	public void setAlias(boolean alias) {
+		this.alias = alias;
+	}
+
+	/**
+	 * Returns the path of the image whose tile this alias refers to
+	 * 
+	 * @return null if this placement is not an alias
+	 */
+	public String getCanonicalPath() {
+		return canonicalPath;
+	}
+
+	public void setCanonicalPath(String canonicalPath) {
+		this.canonicalPath = canonicalPath;
+	}
+
+	/**
+	 * Returns the file hash of the image whose tile this alias refers to at
+	 * the time the alias was created
+	 * 
+	 * @return
+	 */
+	public long getCanonicalHash() {
+		return canonicalHash;
+	}
+
+	public void setCanonicalHash(long canonicalHash) {
+		this.canonicalHash = canonicalHash;
+	}
+
+	/**
+	 * Returns if the tiles of this placement are fully transparent and were
+	 * not packed. Empty placements have no tileset position.
+	 * 
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return empty;
+	}
+
+	public void setEmpty(boolean empty) {
+		this.empty = empty;
+	}
+
 	@Override
 	public int compareTo(TilePlacement o) {
 		if(isPlaced() && !o.isPlaced()) {
@@ -149,6 +212,10 @@ public class TilePlacement implements Comparable<TilePlacement> {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		result = prime * result + (alias ? 1231 : 1237);
+		result = prime * result + (int) (canonicalHash ^ (canonicalHash >>> 32));
+		result = prime * result + ((canonicalPath == null) ? 0 : canonicalPath.hashCode());
+		result = prime * result + (empty ? 1231 : 1237);
 		result = prime * result + subImageHeight;
 		result = prime * result + subImageWidth;
 		result = prime * result + subImageX;
@@ -168,6 +235,17 @@ public class TilePlacement implements Comparable<TilePlacement> {
 		if (getClass() != obj.getClass())
 			return false;
 		TilePlacement other = (TilePlacement) obj;
+		if (alias != other.alias)
+			return false;
+		if (canonicalHash != other.canonicalHash)
+			return false;
+		if (canonicalPath == null) {
+			if (other.canonicalPath != null)
+				return false;
+		} else if (!canonicalPath.equals(other.canonicalPath))
+			return false;
+		if (empty != other.empty)
+			return false;
 		if (subImageHeight != other.subImageHeight)
 			return false;
 		if (subImageWidth != other.subImageWidth)
@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds fully transparent tiles so that they are not packed. Each run of
+ * transparent tiles is recorded as an empty {@link TilePlacement} and the
+ * remaining tiles of the image are packed as rectangles covering only the
+ * visible tiles.
+ * 
+ * @author Thomas Cashman
+ */
+public class TileTrimmer {
+	private int totalEmptyTiles;
+
+	/**
+	 * Finds the tiles of an image whose pixels all have zero alpha. Pixels
+	 * outside of the image are treated as transparent. Safe to call from
+	 * multiple threads.
+	 * 
+	 * @param image
+	 *            The {@link TileImage} to scan, its source image is read
+	 *            through the {@link ImageCache}
+	 * @return True for each empty tile in row-major order
+	 */
+	public static boolean[] findEmptyTiles(TileImage image) {
+		final int horizontalTileCount = image.getHorizontalTileCount();
+		final int verticalTileCount = image.getVerticalTileCount();
+		final PackingContext context = image.getContext();
+		final BufferedImage originalImage = image.readImage();
+		final boolean[] result = new boolean[horizontalTileCount * verticalTileCount];
+		if (originalImage.getColorModel().hasAlpha()) {
+			for (int y = 0; y < verticalTileCount; y++) {
+				for (int x = 0; x < horizontalTileCount; x++) {
+					result[(y * horizontalTileCount) + x] = isTransparent(originalImage,
+							(image.getSubImageX() + x) * context.getTileWidth(),
+							(image.getSubImageY() + y) * context.getTileHeight(), context.getTileWidth(),
+							context.getTileHeight());
+				}
+			}
+		}
+		return result;
+	}
+
+	private static boolean isTransparent(BufferedImage image, int x, int y, int width, int height) {
+		width = Math.min(width, image.getWidth() - x);
+		height = Math.min(height, image.getHeight() - y);
+		if (width <= 0 || height <= 0) {
+			return true;
+		}
+
+		final WritableRaster raster = image.getRaster();
+		if (image.getType() != BufferedImage.TYPE_INT_ARGB || !(raster.getDataBuffer() instanceof DataBufferInt)
+				|| !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+			final int[] row = new int[width];
+			for (int i = 0; i < height; i++) {
+				image.getRGB(x, y + i, width, 1, row, 0, width);
+				if (!isTransparent(row, 0, width)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		final int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+		final int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+		final int offset = raster.getDataBuffer().getOffset() + ((y - raster.getSampleModelTranslateY()) * stride)
+				+ (x - raster.getSampleModelTranslateX());
+		for (int i = 0; i < height; i++) {
+			if (!isTransparent(pixels, offset + (i * stride), width)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * ORs a row of pixels together without branching so that the loop can be
+	 * vectorized, the row is transparent if no alpha bit is set
+	 */
+	private static boolean isTransparent(int[] pixels, int offset, int length) {
+		int bits = 0;
+		for (int i = offset; i < offset + length; i++) {
+			bits |= pixels[i];
+		}
+		return (bits >>> 24) == 0;
+	}
+
+	/**
+	 * Covers the tiles with a given value by rectangles. Runs of tiles in a
+	 * row are merged with an identical run in the row above.
+	 * 
+	 * @param tiles
+	 *            A value for each tile in row-major order
+	 * @param horizontalTileCount
+	 *            The width of the grid in tiles
+	 * @param value
+	 *            The value of the tiles to cover
+	 * @return The rectangles in the order they were started
+	 */
+	public static List<Rectangle> cover(boolean[] tiles, int horizontalTileCount, boolean value) {
+		final List<int[]> runs = new ArrayList<int[]>();
+		final int verticalTileCount = horizontalTileCount == 0 ? 0 : tiles.length / horizontalTileCount;
+		// The runs that extend to the previous row, by their start
+		int[][] open = new int[horizontalTileCount][];
+		int[][] next = new int[horizontalTileCount][];
+		for (int y = 0; y < verticalTileCount; y++) {
+			for (int x = 0; x < horizontalTileCount;) {
+				if (tiles[(y * horizontalTileCount) + x] != value) {
+					x++;
+					continue;
+				}
+				int end = x + 1;
+				while (end < horizontalTileCount && tiles[(y * horizontalTileCount) + end] == value) {
+					end++;
+				}
+				int[] run = open[x];
+				if (run != null && run[2] == end - x) {
+					run[3]++;
+				} else {
+					run = new int[] { x, y, end - x, 1 };
+					runs.add(run);
+				}
+				next[x] = run;
+				x = end;
+			}
+			final int[][] previous = open;
+			open = next;
+			next = previous;
+			Arrays.fill(next, null);
+		}
+
+		final List<Rectangle> result = new ArrayList<Rectangle>(runs.size());
+		for (int i = 0; i < runs.size(); i++) {
+			final int[] run = runs.get(i);
+			result.add(new Rectangle(run[0], run[1], run[2], run[3]));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the sub-images covering the tiles of an image that are not
+	 * excluded
+	 * 
+	 * @param image
+	 *            The {@link TileImage} to cut
+	 * @param excludedTiles
+	 *            True for each tile to leave out in row-major order
+	 * @return The image itself if no tiles are excluded
+	 */
+	public static List<TileImage> getSubImages(TileImage image, boolean[] excludedTiles) {
+		if (!contains(excludedTiles, true)) {
+			return Collections.singletonList(image);
+		}
+		final List<Rectangle> rectangles = cover(excludedTiles, image.getHorizontalTileCount(), false);
+		final List<TileImage> result = new ArrayList<TileImage>(rectangles.size());
+		for (int i = 0; i < rectangles.size(); i++) {
+			final Rectangle rectangle = rectangles.get(i);
+			result.add(image.getSubImage(rectangle.getX(), rectangle.getY(), rectangle.getWidth(),
+					rectangle.getHeight()));
+		}
+		return result;
+	}
+
+	/**
+	 * Stores an empty {@link TilePlacement} in the image's config for each
+	 * rectangle of empty tiles
+	 * 
+	 * @param image
+	 *            The {@link TileImage} the tiles belong to
+	 * @param emptyTiles
+	 *            The result of {@link #findEmptyTiles(TileImage)} for the
+	 *            image
+	 */
+	public void addEmptyTiles(TileImage image, boolean[] emptyTiles) {
+		final List<Rectangle> rectangles = cover(emptyTiles, image.getHorizontalTileCount(), true);
+		for (int i = 0; i < rectangles.size(); i++) {
+			final Rectangle rectangle = rectangles.get(i);
+			final TilePlacement placement = new TilePlacement();
+			placement.setEmpty(true);
+			placement.setSubImageX(image.getSubImageX() + rectangle.getX());
+			placement.setSubImageY(image.getSubImageY() + rectangle.getY());
+			placement.setSubImageWidth(rectangle.getWidth());
+			placement.setSubImageHeight(rectangle.getHeight());
+			image.getTileConfig().getPlacement().add(placement);
+			totalEmptyTiles += rectangle.getWidth() * rectangle.getHeight();
+		}
+	}
+
+	/**
+	 * Returns the amount of empty tiles found
+	 * 
+	 * @return
+	 */
+	public int getTotalEmptyTiles() {
+		return totalEmptyTiles;
+	}
+
+	private static boolean contains(boolean[] values, boolean value) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
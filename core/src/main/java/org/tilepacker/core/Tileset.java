@@ -28,13 +28,22 @@ package org.tilepacker.core;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-
-import javax.imageio.ImageIO;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Stores a tileset
@@ -42,26 +51,29 @@ import javax.imageio.ImageIO;
  * @author Thomas Cashman
  */
 public class Tileset {
-	public static int MAX_WIDTH;
-	public static int MAX_HEIGHT;
-	public static boolean PREMULTIPLY_ALPHA = false;
-	public static String BACKGROUND_COLOR = null;
-
-	private final SmallToLargeRectangleComparator rectangleComparator = new SmallToLargeRectangleComparator();
-	private final List<Rectangle> tmpRemaining = new ArrayList<Rectangle>(1);
+	private static final int BAND_HEIGHT = 256;
+	private static final byte[][] PREMULTIPLIED = createPremultipliedTable();
 
-	private List<Rectangle> availableRectangles;
+	private final PackingContext context;
+	private PackingStrategy packingStrategy;
 	private List<Rectangle> usedRectangles;
-	private boolean saved = false;
+	private final BitSet occupiedTiles = new BitSet();
+	private boolean closed = false;
+	private volatile boolean saved = false;
+	private int usedArea = 0;
+	private int peakFreeAreaCount = 0;
+	private long decodeNanos = 0;
+	private long composeNanos = 0;
+	private long encodeNanos = 0;
 
 	/**
 	 * Constructor
+	 * @param context The {@link PackingContext} of the run
 	 */
-	public Tileset() {
-		availableRectangles = new ArrayList<Rectangle>(1);
+	public Tileset(PackingContext context) {
+		this.context = context;
+		packingStrategy = context.getPackingAlgorithm().createStrategy(getMaximumWidthInTiles(), getMaxiumumHeightInTiles());
 		usedRectangles = new ArrayList<Rectangle>(1);
-
-		availableRectangles.add(new Rectangle(0, 0, getMaximumWidthInTiles(), getMaxiumumHeightInTiles()));
 	}
 
 	/**
@@ -69,62 +81,100 @@ public class Tileset {
 	 * 
 	 * @param image
 	 *            The {@link TileImage} to be added
-	 * @return True on success, false if the tileset is full
+	 * @return True on success, false if the tileset is full or a placed
+	 *         image is outside the tileset or overlaps another image
 	 */
 	public boolean add(TileImage image) {
-		if (saved) {
+		if (closed) {
 			return false;
 		}
 		Rectangle selectedRectangle = null;
 		if (image.isPlaced()) {
 			selectedRectangle = new Rectangle(image.getTilesetX(), image.getTilesetY(), image.getHorizontalTileCount(),
 					image.getVerticalTileCount());
-			selectedRectangle.addTiles(image);
-			usedRectangles.add(selectedRectangle);			
+			if (!isFree(selectedRectangle)) {
+				return false;
+			}
+			selectedRectangle.setImage(image);
+			packingStrategy.occupy(selectedRectangle);
 		} else {
-			for (int i = 0; i < availableRectangles.size(); i++) {
-				Rectangle rect = availableRectangles.get(i);
-				if (!rect.canContain(image)) {
-					continue;
-				}
-				Rectangle copyRect = new Rectangle(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight());
-
-				availableRectangles.remove(i);
-				rect.addTiles(image);
-				image.setTilesetX(rect.getX());
-				image.setTilesetY(rect.getY());
-				
-				selectedRectangle = rect;
-				usedRectangles.add(rect);
-				availableRectangles.add(copyRect);
-				break;
+			selectedRectangle = packingStrategy.insert(image.getHorizontalTileCount(), image.getVerticalTileCount());
+			if (selectedRectangle == null) {
+				return false;
 			}
+			selectedRectangle.setImage(image);
+			image.setTilesetX(selectedRectangle.getX());
+			image.setTilesetY(selectedRectangle.getY());
 		}
-		if(selectedRectangle != null) {
-			for (int j = 0; j < availableRectangles.size(); j++) {
-				Rectangle otherRect = availableRectangles.get(j);
-				if (!selectedRectangle.intersects(otherRect)) {
-					continue;
-				}
-				Rectangle andRect = Rectangle.and(selectedRectangle, otherRect);
-				Rectangle.subtract(tmpRemaining, otherRect, andRect);
-				availableRectangles.remove(j);
-				j--;
+		markOccupied(selectedRectangle);
+		usedRectangles.add(selectedRectangle);
+		usedArea += selectedRectangle.getArea();
+		peakFreeAreaCount = Math.max(peakFreeAreaCount, packingStrategy.getFreeAreaCount());
+		return true;
+	}
+
+	private boolean isFree(Rectangle rectangle) {
+		final int widthInTiles = getMaximumWidthInTiles();
+		if (rectangle.getX() < 0 || rectangle.getY() < 0 || rectangle.getMaxX() >= widthInTiles
+				|| rectangle.getMaxY() >= getMaxiumumHeightInTiles()) {
+			return false;
+		}
+		for (int y = rectangle.getY(); y <= rectangle.getMaxY(); y++) {
+			final int rowStart = (y * widthInTiles) + rectangle.getX();
+			final int occupiedTile = occupiedTiles.nextSetBit(rowStart);
+			if (occupiedTile >= 0 && occupiedTile < rowStart + rectangle.getWidth()) {
+				return false;
 			}
-			for (int j = tmpRemaining.size() - 1; j >= 0; j--) {
-				for (int k = 0; k < availableRectangles.size(); k++) {
-					if (availableRectangles.get(k).equals(tmpRemaining.get(j))) {
-						tmpRemaining.remove(j);
-						break;
-					}
+		}
+		return true;
+	}
+
+	private void markOccupied(Rectangle rectangle) {
+		final int widthInTiles = getMaximumWidthInTiles();
+		for (int y = rectangle.getY(); y <= rectangle.getMaxY(); y++) {
+			final int rowStart = (y * widthInTiles) + rectangle.getX();
+			occupiedTiles.set(rowStart, rowStart + rectangle.getWidth());
+		}
+	}
+
+	/**
+	 * Computes a hash of the images in this tileset, their file contents and
+	 * their positions. Two tilesets with the same signature render the same
+	 * pixels when saved with the same settings.
+	 * 
+	 * @param seed
+	 *            A hash of the settings the tileset is rendered with
+	 * @return
+	 */
+	public long getSignature(long seed) {
+		int totalValues = 0;
+		for (int i = 0; i < usedRectangles.size(); i++) {
+			totalValues += 4 + (usedRectangles.get(i).getArea() * 5);
+		}
+
+		final int[] values = new int[totalValues];
+		int index = 0;
+		for (int i = 0; i < usedRectangles.size(); i++) {
+			Rectangle rectangle = usedRectangles.get(i);
+			values[index++] = rectangle.getX();
+			values[index++] = rectangle.getY();
+			values[index++] = rectangle.getWidth();
+			values[index++] = rectangle.getHeight();
+
+			final TileImage image = rectangle.getImage();
+			final TileConfig tileConfig = image.getTileConfig();
+			final int pathHash = tileConfig.getPath() == null ? 0 : tileConfig.getPath().hashCode();
+			for (int x = 0; x < rectangle.getWidth(); x++) {
+				for (int y = 0; y < rectangle.getHeight(); y++) {
+					values[index++] = pathHash;
+					values[index++] = (int) tileConfig.getHash();
+					values[index++] = (int) (tileConfig.getHash() >>> 32);
+					values[index++] = image.getSubImageX() + x;
+					values[index++] = image.getSubImageY() + y;
 				}
 			}
-			availableRectangles.addAll(tmpRemaining);
-			Collections.sort(availableRectangles, rectangleComparator);
-			tmpRemaining.clear();
-			return true;
 		}
-		return false;
+		return XXHash64.hash(values, 0, values.length, seed);
 	}
 
 	/**
@@ -132,8 +182,8 @@ public class Tileset {
 	 * 
 	 * @return
 	 */
-	public static int getMaximumWidthInTiles() {
-		return MAX_WIDTH / (Tile.WIDTH + (Tile.PADDING * 2));
+	public int getMaximumWidthInTiles() {
+		return context.getTilesetWidthInTiles();
 	}
 
 	/**
@@ -141,8 +191,8 @@ public class Tileset {
 	 * 
 	 * @return
 	 */
-	public static int getMaxiumumHeightInTiles() {
-		return MAX_HEIGHT / (Tile.HEIGHT + (Tile.PADDING * 2));
+	public int getMaxiumumHeightInTiles() {
+		return context.getTilesetHeightInTiles();
 	}
 
 	/**
@@ -151,7 +201,24 @@ public class Tileset {
 	 * @return
 	 */
 	public boolean isFull() {
-		return availableRectangles.size() == 0;
+		return packingStrategy.isFull();
+	}
+
+	/**
+	 * Prevents any further images from being added to this tileset. Called
+	 * before the tileset is handed off to be saved.
+	 */
+	public void close() {
+		closed = true;
+	}
+
+	/**
+	 * Returns if this tileset no longer accepts images
+	 * 
+	 * @return
+	 */
+	public boolean isClosed() {
+		return closed;
 	}
 
 	/**
@@ -164,7 +231,55 @@ public class Tileset {
 	}
 
 	/**
-	 * Saves the tileset to an image
+	 * Returns the amount of tiles occupied by images
+	 * 
+	 * @return
+	 */
+	public int getUsedArea() {
+		return usedArea;
+	}
+
+	/**
+	 * Returns the most free areas the {@link PackingStrategy} tracked at
+	 * once while images were added
+	 * 
+	 * @return
+	 */
+	public int getPeakFreeAreaCount() {
+		return peakFreeAreaCount;
+	}
+
+	/**
+	 * Returns the time spent decoding tile images while saving
+	 * 
+	 * @return
+	 */
+	public long getDecodeNanos() {
+		return decodeNanos;
+	}
+
+	/**
+	 * Returns the time spent composing bands while saving, excluding
+	 * decoding and encoding
+	 * 
+	 * @return
+	 */
+	public long getComposeNanos() {
+		return composeNanos;
+	}
+
+	/**
+	 * Returns the time spent passing bands to the encoder and waiting for it
+	 * to finish
+	 * 
+	 * @return
+	 */
+	public long getEncodeNanos() {
+		return encodeNanos;
+	}
+
+	/**
+	 * Saves the tileset to an image, encoding on the calling thread
 	 * 
 	 * @param destinationFile
 	 *            The destination filepath
@@ -173,78 +288,384 @@ public class Tileset {
 	 * @throws IOException
 	 */
 	public void save(String destinationFile, String format) throws IOException {
+		save(destinationFile, format, null);
+	}
+
+	/**
+	 * Saves the tileset to an image
+	 * 
+	 * @param destinationFile
+	 *            The destination filepath
+	 * @param format
+	 *            The file format
+	 * @param encoderExecutorService
+	 *            The threads PNG, DDS and KTX data is encoded on, null to encode
+	 *            on the calling thread
+	 * @throws IOException
+	 */
+	public void save(String destinationFile, String format, ExecutorService encoderExecutorService)
+			throws IOException {
 		if (saved) {
 			return;
 		}
-		BufferedImage canvas = new BufferedImage(Tileset.MAX_WIDTH, Tileset.MAX_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		close();
 
 		final Color backgroundColor;
-		if (BACKGROUND_COLOR != null && !BACKGROUND_COLOR.isEmpty()) {
-			String[] colorComponents = BACKGROUND_COLOR.split(",");
+		final String backgroundColorSetting = context.getBackgroundColor();
+		if (backgroundColorSetting != null && !backgroundColorSetting.isEmpty()) {
+			String[] colorComponents = backgroundColorSetting.split(",");
 			if (colorComponents.length != 3) {
 				throw new TilePackerException("Background color must be in format R,G,B");
 			}
 			backgroundColor = new Color(Integer.parseInt(colorComponents[0]), Integer.parseInt(colorComponents[1]),
 					Integer.parseInt(colorComponents[2]));
-			drawToImage(canvas, 0, 0, canvas.getWidth(), canvas.getHeight(), backgroundColor.getRGB());
 		} else {
 			backgroundColor = null;
 		}
 
+		switch (format.toLowerCase()) {
+		case "png":
+			savePng(destinationFile, backgroundColor, encoderExecutorService);
+			break;
+		case "jpg":
+		case "jpeg":
+			saveJpeg(destinationFile, backgroundColor);
+			break;
+		case "dds":
+			saveDds(destinationFile, backgroundColor, encoderExecutorService);
+			break;
+		case "ktx":
+			saveKtx(destinationFile, backgroundColor, encoderExecutorService);
+			break;
+		default:
+			throw new TilePackerException("ERROR: Unsupported output format " + format);
+		}
+
 		for (int i = 0; i < usedRectangles.size(); i++) {
 			Rectangle rectangle = usedRectangles.get(i);
+			rectangle.dispose();
+		}
+		saved = true;
+	}
+
+	private void savePng(String destinationFile, Color backgroundColor, ExecutorService encoderExecutorService)
+			throws IOException {
+		try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(destinationFile))) {
+			encode(new PngWriter(outputStream, context.getTilesetWidth(), context.getTilesetHeight(),
+					context.getPngCompressionLevel(), context.getPngFilter(), context.isChunkedPngEncoding(),
+					encoderExecutorService), backgroundColor);
+		}
+	}
 
+	private void saveJpeg(String destinationFile, Color backgroundColor) throws IOException {
+		try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(destinationFile))) {
+			encode(new JpegWriter(outputStream, context.getTilesetWidth(), context.getTilesetHeight(),
+					context.getJpegQuality(), context.getJpegChromaSubsampling()), backgroundColor);
+		}
+	}
+
+	private void saveDds(String destinationFile, Color backgroundColor, ExecutorService encoderExecutorService)
+			throws IOException {
+		try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(destinationFile))) {
+			encode(new DdsWriter(outputStream, context.getTilesetWidth(), context.getTilesetHeight(),
+					context.getDdsCompression(), encoderExecutorService), backgroundColor);
+		}
+	}
+
+	private void saveKtx(String destinationFile, Color backgroundColor, ExecutorService encoderExecutorService)
+			throws IOException {
+		try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(destinationFile))) {
+			encode(new KtxWriter(outputStream, context.getTilesetWidth(), context.getTilesetHeight(),
+					context.getKtxCompression(), encoderExecutorService), backgroundColor);
+		}
+	}
+
+	/**
+	 * Composes and encodes the tileset a band of rows at a time so that only
+	 * one band is held in memory
+	 */
+	private void encode(ImageEncoder encoder, Color backgroundColor) throws IOException {
+		final long startTime = System.nanoTime();
+		final int bandHeight = getBandHeight();
+		final BufferedImage band = new BufferedImage(context.getTilesetWidth(), bandHeight, BufferedImage.TYPE_INT_ARGB);
+		final int[] bandPixels = ((DataBufferInt) band.getRaster().getDataBuffer()).getData();
+		// Source images are held until the last band they are drawn in so
+		// that images too large for the cache are still only decoded once
+		final Map<File, BufferedImage> sources = new HashMap<File, BufferedImage>();
+		final Map<File, Integer> sourceEndRows = getSourceEndRows();
+
+		for (int bandY = 0; bandY < context.getTilesetHeight(); bandY += bandHeight) {
+			final int rows = Math.min(bandHeight, context.getTilesetHeight() - bandY);
+			if (backgroundColor != null) {
+				drawToImage(band, 0, 0, band.getWidth(), rows, backgroundColor.getRGB());
+			} else {
+				Arrays.fill(bandPixels, 0);
+			}
+			drawTiles(band, bandY, bandY + rows, backgroundColor, sources);
+			releaseSources(sources, sourceEndRows, bandY + rows);
+			if (context.isPremultiplyAlpha()) {
+				premultiplyAlpha(bandPixels, 0, band.getWidth() * rows);
+			}
+			final long encodeStartTime = System.nanoTime();
+			encoder.writeRows(bandPixels, 0, band.getWidth(), rows);
+			encodeNanos += System.nanoTime() - encodeStartTime;
+		}
+		final long finishStartTime = System.nanoTime();
+		encoder.finish();
+		encodeNanos += System.nanoTime() - finishStartTime;
+		composeNanos = System.nanoTime() - startTime - encodeNanos - decodeNanos;
+	}
+
+	/**
+	 * Returns the amount of rows composed at once. Bands are a whole amount
+	 * of tiles high so that no tile or its padding is split between bands.
+	 */
+	private int getBandHeight() {
+		final int cellHeight = context.getCellHeight();
+		final int tilesPerBand = Math.max(1, BAND_HEIGHT / cellHeight);
+		return Math.max(1, Math.min(context.getTilesetHeight(), tilesPerBand * cellHeight));
+	}
+
+	/**
+	 * Draws the tiles that start between two rows into a band
+	 */
+	/**
+	 * Returns the row after the last pixel row each source image is drawn to
+	 */
+	private Map<File, Integer> getSourceEndRows() {
+		final Map<File, Integer> result = new HashMap<File, Integer>();
+		for (int i = 0; i < usedRectangles.size(); i++) {
+			final Rectangle rectangle = usedRectangles.get(i);
+			final File file = rectangle.getImage().getFile();
+			final int endRow = (rectangle.getMaxY() + 1) * context.getCellHeight();
+			final Integer existingEndRow = result.get(file);
+			if (existingEndRow == null || existingEndRow < endRow) {
+				result.put(file, endRow);
+			}
+		}
+		return result;
+	}
+
+	private static void releaseSources(Map<File, BufferedImage> sources, Map<File, Integer> sourceEndRows,
+			int bandEndY) {
+		final Iterator<File> iterator = sources.keySet().iterator();
+		while (iterator.hasNext()) {
+			if (sourceEndRows.get(iterator.next()) <= bandEndY) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private BufferedImage getSource(TileImage image, Map<File, BufferedImage> sources) {
+		BufferedImage source = sources.get(image.getFile());
+		if (source != null) {
+			context.getImageCache().addHit();
+			return source;
+		}
+		final long decodeStartTime = System.nanoTime();
+		source = image.readImage();
+		decodeNanos += System.nanoTime() - decodeStartTime;
+		sources.put(image.getFile(), source);
+		return source;
+	}
+
+	private void drawTiles(BufferedImage band, int startY, int endY, Color backgroundColor,
+			Map<File, BufferedImage> sources) {
+		final int tileWidth = context.getTileWidth();
+		final int tileHeight = context.getTileHeight();
+		final int tilePadding = context.getTilePadding();
+		final int cellWidth = context.getCellWidth();
+		final int cellHeight = context.getCellHeight();
+
+		for (int i = 0; i < usedRectangles.size(); i++) {
+			Rectangle rectangle = usedRectangles.get(i);
+			if ((rectangle.getMaxY() + 1) * cellHeight <= startY) {
+				continue;
+			}
+			if (rectangle.getY() * cellHeight >= endY) {
+				continue;
+			}
+
+			final TileImage image = rectangle.getImage();
+			BufferedImage source = null;
 			for (int x = 0; x < rectangle.getWidth(); x++) {
 				for (int y = 0; y < rectangle.getHeight(); y++) {
 					int tileX = rectangle.getX() + x;
 					int tileY = rectangle.getY() + y;
+					if (tileY * cellHeight < startY || tileY * cellHeight >= endY) {
+						continue;
+					}
+					if (source == null) {
+						source = getSource(image, sources);
+					}
 
-					Tile tile = rectangle.getTiles()[x][y];
-					TileImage image = tile.getTileImage();
-					image.loadImage();
+					// The area of the source image this tile is cut from
+					final int cutX = (image.getSubImageX() + x) * tileWidth;
+					final int cutY = (image.getSubImageY() + y) * tileHeight;
+					final int cutWidth = Math.min(tileWidth, source.getWidth() - cutX);
+					final int cutHeight = Math.min(tileHeight, source.getHeight() - cutY);
 
-					int renderX = ((tileX * (Tile.WIDTH + (Tile.PADDING * 2))) + Tile.PADDING);
-					int renderY = ((tileY * (Tile.HEIGHT + (Tile.PADDING * 2))) + Tile.PADDING);
+					int renderX = ((tileX * cellWidth) + tilePadding);
+					int renderY = ((tileY * cellHeight) + tilePadding) - startY;
 
-					if (TilePacker.FIX_TEARING) {
+					if (context.isPreventTearing()) {
 						// Left
-						drawToImage(backgroundColor, image.getCutImage(), 0, 0, 1, Tile.HEIGHT, canvas, renderX - 1, renderY);
+						drawTile(backgroundColor, source, cutX, cutY, cutWidth, cutHeight, 0, 0, 1, tileHeight, band,
+								renderX - 1, renderY);
 						// Right
-						drawToImage(backgroundColor, image.getCutImage(), Tile.WIDTH - 1, 0, 1, Tile.HEIGHT, canvas,
-								renderX + Tile.WIDTH, renderY);
+						drawTile(backgroundColor, source, cutX, cutY, cutWidth, cutHeight, tileWidth - 1, 0, 1,
+								tileHeight, band, renderX + tileWidth, renderY);
 						// Top
-						drawToImage(backgroundColor, image.getCutImage(), 0, 0, Tile.WIDTH, 1, canvas, renderX, renderY - 1);
+						drawTile(backgroundColor, source, cutX, cutY, cutWidth, cutHeight, 0, 0, tileWidth, 1, band,
+								renderX, renderY - 1);
 						// Bottom
-						drawToImage(backgroundColor, image.getCutImage(), 0, Tile.HEIGHT - 1, Tile.WIDTH, 1, canvas, renderX,
-								renderY + Tile.HEIGHT);
+						drawTile(backgroundColor, source, cutX, cutY, cutWidth, cutHeight, 0, tileHeight - 1, tileWidth,
+								1, band, renderX, renderY + tileHeight);
 					}
-					drawToImage(backgroundColor, image.getCutImage(), 0, 0, Tile.WIDTH, Tile.HEIGHT, canvas, renderX, renderY);
-					image.dispose();
+					drawTile(backgroundColor, source, cutX, cutY, cutWidth, cutHeight, 0, 0, tileWidth, tileHeight,
+							band, renderX, renderY);
 				}
 			}
 		}
+	}
 
-		switch (format.toLowerCase()) {
-		case "png":
-			if (PREMULTIPLY_ALPHA) {
-				canvas.getColorModel().coerceData(canvas.getRaster(), true);
+	/**
+	 * Premultiplies the color of pixels by their alpha, rounding the same way
+	 * as {@link java.awt.image.ColorModel#coerceData(WritableRaster, boolean)}
+	 */
+	static void premultiplyAlpha(int[] pixels, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			final int argb = pixels[i];
+			final int alpha = argb >>> 24;
+			if (alpha == 0xFF) {
+				continue;
 			}
-			ImageIO.write(canvas, "png", new File(destinationFile));
-			break;
-		case "jpg":
-		case "jpeg":
-			break;
+			if (alpha == 0) {
+				pixels[i] = 0;
+				continue;
+			}
+			final byte[] premultiplied = PREMULTIPLIED[alpha];
+			pixels[i] = (alpha << 24) | ((premultiplied[(argb >> 16) & 0xFF] & 0xFF) << 16)
+					| ((premultiplied[(argb >> 8) & 0xFF] & 0xFF) << 8) | (premultiplied[argb & 0xFF] & 0xFF);
 		}
+	}
 
-		for (int i = 0; i < usedRectangles.size(); i++) {
-			Rectangle rectangle = usedRectangles.get(i);
-			rectangle.dispose();
+	private static byte[][] createPremultipliedTable() {
+		final float alphaScale = 1.0f / 255.0f;
+		final byte[][] result = new byte[256][256];
+		for (int alpha = 0; alpha < 256; alpha++) {
+			final float normAlpha = alpha * alphaScale;
+			for (int color = 0; color < 256; color++) {
+				result[alpha][color] = (byte) (int) ((color * normAlpha) + 0.5f);
+			}
 		}
-		saved = true;
+		return result;
+	}
+
+	/**
+	 * Draws part of a tile that is cut from a larger source image. The
+	 * coordinates are relative to the tile's cut and behave as if
+	 * {@link #drawToImage(Color, BufferedImage, int, int, int, int, BufferedImage, int, int)}
+	 * were called with a sub image of the cut, without allocating one.
+	 */
+	private void drawTile(Color backgroundColor, BufferedImage source, int cutX, int cutY, int cutWidth, int cutHeight,
+			int sourceX, int sourceY, int sourceWidth, int sourceHeight, BufferedImage destination, int destinationX,
+			int destinationY) {
+		drawToImage(backgroundColor, source, cutX + sourceX, cutY + sourceY, cutX + Math.min(sourceWidth, cutWidth),
+				cutY + Math.min(sourceHeight, cutHeight), destination, destinationX, destinationY);
 	}
 
 	private void drawToImage(Color backgroundColor, BufferedImage source, int sourceX, int sourceY, int sourceWidth, int sourceHeight,
 			BufferedImage destination, int destinationX, int destinationY) {
+		if (!isIntArgb(source) || !isIntArgb(destination)) {
+			drawPixelsToImage(backgroundColor, source, sourceX, sourceY, sourceWidth, sourceHeight, destination,
+					destinationX, destinationY);
+			return;
+		}
+		final int startX = Math.max(sourceX, 0);
+		final int endX = Math.min(Math.min(sourceWidth, source.getWidth()),
+				sourceX + destination.getWidth() - destinationX);
+		final int startY = Math.max(sourceY, 0);
+		final int endY = Math.min(Math.min(sourceHeight, source.getHeight()),
+				sourceY + destination.getHeight() - destinationY);
+		if (startX >= endX || startY >= endY) {
+			return;
+		}
+		final int rowLength = endX - startX;
+
+		final WritableRaster sourceRaster = source.getRaster();
+		final int[] sourcePixels = ((DataBufferInt) sourceRaster.getDataBuffer()).getData();
+		final int sourceStride = ((SinglePixelPackedSampleModel) sourceRaster.getSampleModel()).getScanlineStride();
+		final int sourceOffset = getOffset(sourceRaster, startX, startY);
+
+		final WritableRaster destinationRaster = destination.getRaster();
+		final int[] destinationPixels = ((DataBufferInt) destinationRaster.getDataBuffer()).getData();
+		final int destinationStride = ((SinglePixelPackedSampleModel) destinationRaster.getSampleModel())
+				.getScanlineStride();
+		final int destinationOffset = getOffset(destinationRaster, destinationX + (startX - sourceX),
+				destinationY + (startY - sourceY));
+
+		for (int y = 0; y < endY - startY; y++) {
+			final int sourceIndex = sourceOffset + (y * sourceStride);
+			final int destinationIndex = destinationOffset + (y * destinationStride);
+
+			if (backgroundColor == null) {
+				System.arraycopy(sourcePixels, sourceIndex, destinationPixels, destinationIndex, rowLength);
+				continue;
+			}
+			for (int x = 0; x < rowLength; x++) {
+				final int src = sourcePixels[sourceIndex + x];
+				if ((src >>> 24) == 0) {
+					// Transparent pixels leave the background color in place
+					continue;
+				}
+				destinationPixels[destinationIndex + x] = src;
+			}
+		}
+	}
+
+	private void drawToImage(BufferedImage destination, int destinationX, int destinationY, int destinationWidth,
+			int destinationHeight, int rgb) {
+		if (!isIntArgb(destination)) {
+			drawPixelsToImage(destination, destinationX, destinationY, destinationWidth, destinationHeight, rgb);
+			return;
+		}
+		final int startX = Math.max(destinationX, 0);
+		final int endX = Math.min(destinationWidth, destination.getWidth());
+		final int startY = Math.max(destinationY, 0);
+		final int endY = Math.min(destinationHeight, destination.getHeight());
+		if (startX >= endX) {
+			return;
+		}
+
+		final WritableRaster destinationRaster = destination.getRaster();
+		final int[] destinationPixels = ((DataBufferInt) destinationRaster.getDataBuffer()).getData();
+		final int destinationStride = ((SinglePixelPackedSampleModel) destinationRaster.getSampleModel())
+				.getScanlineStride();
+		for (int y = startY; y < endY; y++) {
+			final int destinationIndex = getOffset(destinationRaster, startX, y);
+			Arrays.fill(destinationPixels, destinationIndex, destinationIndex + (endX - startX), rgb);
+		}
+	}
+
+	private static boolean isIntArgb(BufferedImage image) {
+		return image.getType() == BufferedImage.TYPE_INT_ARGB
+				&& image.getRaster().getDataBuffer() instanceof DataBufferInt
+				&& image.getSampleModel() instanceof SinglePixelPackedSampleModel;
+	}
+
+	/**
+	 * Returns the index of a pixel in the backing array of a raster, taking
+	 * into account the offsets of sub-images
+	 */
+	private static int getOffset(WritableRaster raster, int x, int y) {
+		final int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+		return raster.getDataBuffer().getOffset() + ((y - raster.getSampleModelTranslateY()) * stride)
+				+ (x - raster.getSampleModelTranslateX());
+	}
+
+	private void drawPixelsToImage(Color backgroundColor, BufferedImage source, int sourceX, int sourceY, int sourceWidth, int sourceHeight,
+			BufferedImage destination, int destinationX, int destinationY) {
 		for (int x = sourceX; x < sourceWidth; x++) {
 			if (x < 0) {
 				continue;
@@ -284,7 +705,7 @@ public class Tileset {
 		}
 	}
 
-	private void drawToImage(BufferedImage destination, int destinationX, int destinationY, int destinationWidth,
+	private void drawPixelsToImage(BufferedImage destination, int destinationX, int destinationY, int destinationWidth,
 			int destinationHeight, int rgb) {
 		for (int x = destinationX; x < destinationWidth; x++) {
 			if (x < 0) {
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+/**
+ * Implementation of the 64-bit xxHash algorithm over bytes and ARGB pixel
+ * data. Each pixel is hashed as 4 little-endian bytes, so hashing pixels gives
+ * the same result as hashing the equivalent byte array.
+ * 
+ * @author Thomas Cashman
+ */
+public class XXHash64 {
+	private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME64_3 = 0x165667B19E3779F9L;
+	private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+	private XXHash64() {
+	}
+
+	/**
+	 * Hashes a range of pixels
+	 * 
+	 * @param pixels
+	 *            The pixel data
+	 * @param offset
+	 *            The index of the first pixel to hash
+	 * @param length
+	 *            The amount of pixels to hash
+	 * @param seed
+	 *            The hash seed
+	 * @return The hash value
+	 */
+	public static long hash(int[] pixels, int offset, int length, long seed) {
+		final int end = offset + length;
+		int i = offset;
+		long result;
+
+		if (length >= 8) {
+			long v1 = seed + PRIME64_1 + PRIME64_2;
+			long v2 = seed + PRIME64_2;
+			long v3 = seed;
+			long v4 = seed - PRIME64_1;
+
+			final int limit = end - 8;
+			while (i <= limit) {
+				v1 = round(v1, toLong(pixels[i], pixels[i + 1]));
+				v2 = round(v2, toLong(pixels[i + 2], pixels[i + 3]));
+				v3 = round(v3, toLong(pixels[i + 4], pixels[i + 5]));
+				v4 = round(v4, toLong(pixels[i + 6], pixels[i + 7]));
+				i += 8;
+			}
+
+			result = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+					+ Long.rotateLeft(v4, 18);
+			result = mergeRound(result, v1);
+			result = mergeRound(result, v2);
+			result = mergeRound(result, v3);
+			result = mergeRound(result, v4);
+		} else {
+			result = seed + PRIME64_5;
+		}
+		result += length * 4L;
+
+		while (i + 2 <= end) {
+			result ^= round(0, toLong(pixels[i], pixels[i + 1]));
+			result = (Long.rotateLeft(result, 27) * PRIME64_1) + PRIME64_4;
+			i += 2;
+		}
+		if (i < end) {
+			result ^= (pixels[i] & 0xFFFFFFFFL) * PRIME64_1;
+			result = (Long.rotateLeft(result, 23) * PRIME64_2) + PRIME64_3;
+		}
+
+		return avalanche(result);
+	}
+
+	/**
+	 * Hashes a range of bytes
+	 * 
+	 * @param data
+	 *            The data
+	 * @param offset
+	 *            The index of the first byte to hash
+	 * @param length
+	 *            The amount of bytes to hash
+	 * @param seed
+	 *            The hash seed
+	 * @return The hash value
+	 */
+	public static long hash(byte[] data, int offset, int length, long seed) {
+		final int end = offset + length;
+		int i = offset;
+		long result;
+
+		if (length >= 32) {
+			long v1 = seed + PRIME64_1 + PRIME64_2;
+			long v2 = seed + PRIME64_2;
+			long v3 = seed;
+			long v4 = seed - PRIME64_1;
+
+			final int limit = end - 32;
+			while (i <= limit) {
+				v1 = round(v1, readLong(data, i));
+				v2 = round(v2, readLong(data, i + 8));
+				v3 = round(v3, readLong(data, i + 16));
+				v4 = round(v4, readLong(data, i + 24));
+				i += 32;
+			}
+
+			result = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+					+ Long.rotateLeft(v4, 18);
+			result = mergeRound(result, v1);
+			result = mergeRound(result, v2);
+			result = mergeRound(result, v3);
+			result = mergeRound(result, v4);
+		} else {
+			result = seed + PRIME64_5;
+		}
+		result += length;
+
+		while (i + 8 <= end) {
+			result ^= round(0, readLong(data, i));
+			result = (Long.rotateLeft(result, 27) * PRIME64_1) + PRIME64_4;
+			i += 8;
+		}
+		if (i + 4 <= end) {
+			result ^= (readInt(data, i) & 0xFFFFFFFFL) * PRIME64_1;
+			result = (Long.rotateLeft(result, 23) * PRIME64_2) + PRIME64_3;
+			i += 4;
+		}
+		while (i < end) {
+			result ^= (data[i] & 0xFFL) * PRIME64_5;
+			result = Long.rotateLeft(result, 11) * PRIME64_1;
+			i++;
+		}
+		return avalanche(result);
+	}
+
+	private static long readLong(byte[] data, int offset) {
+		return toLong(readInt(data, offset), readInt(data, offset + 4));
+	}
+
+	private static int readInt(byte[] data, int offset) {
+		return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8) | ((data[offset + 2] & 0xFF) << 16)
+				| ((data[offset + 3] & 0xFF) << 24);
+	}
+
+	private static long avalanche(long hash) {
+		hash ^= hash >>> 33;
+		hash *= PRIME64_2;
+		hash ^= hash >>> 29;
+		hash *= PRIME64_3;
+		hash ^= hash >>> 32;
+		return hash;
+	}
+
+	private static long toLong(int low, int high) {
+		return (low & 0xFFFFFFFFL) | ((long) high << 32);
+	}
+
+	private static long round(long accumulator, long input) {
+		accumulator += input * PRIME64_2;
+		accumulator = Long.rotateLeft(accumulator, 31);
+		return accumulator * PRIME64_1;
+	}
+
+	private static long mergeRound(long accumulator, long value) {
+		accumulator ^= round(0, value);
+		return (accumulator * PRIME64_1) + PRIME64_4;
+	}
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link AtlasIndex} and {@link AtlasIndexWriter}
+ * 
+ * @author Thomas Cashman
+ */
+public class AtlasIndexTest {
+	private static final String[] PATHS = { "b/tile.png", "a.png", "\u00e9t\u00e9.png", "\u4e16\u754c.jpg",
+			"\ud83d\ude00.png", "\uff5e.png", "a/b.png", "z.png" };
+
+	@Test
+	public void testFindPath() {
+		AtlasIndex atlasIndex = new AtlasIndex(ByteBuffer.wrap(AtlasIndexWriter.toBytes(createConfig(), createContext())));
+		Assert.assertEquals(PATHS.length, atlasIndex.getTotalPaths());
+		for (String path : PATHS) {
+			final int pathId = atlasIndex.findPath(path);
+			Assert.assertTrue(pathId >= 0);
+			Assert.assertEquals(path, atlasIndex.getPath(pathId));
+		}
+		Assert.assertEquals(-1, atlasIndex.findPath("a"));
+		Assert.assertEquals(-1, atlasIndex.findPath("a.pngx"));
+		Assert.assertEquals(-1, atlasIndex.findPath("c.png"));
+		Assert.assertEquals(-1, atlasIndex.findPath(""));
+		Assert.assertEquals(-1, atlasIndex.findPath("\ud83d\ude01.png"));
+	}
+
+	@Test
+	public void testPlacements() throws Exception {
+		TilePackerConfig config = createConfig();
+		TilesetConfig tilesetConfig = new TilesetConfig();
+		tilesetConfig.setIndex(1);
+		tilesetConfig.setFile("0123456789abcdef.png");
+		config.getTilesets().add(tilesetConfig);
+
+		File file = Files.createTempFile("tilepacker", ".idx").toFile();
+		try {
+			AtlasIndexWriter.write(config, createContext(), file);
+			AtlasIndex atlasIndex = AtlasIndex.open(file);
+
+			Assert.assertEquals(8, atlasIndex.getTileWidth());
+			Assert.assertEquals(16, atlasIndex.getTileHeight());
+			Assert.assertEquals(1, atlasIndex.getTilePadding());
+			Assert.assertEquals(10, atlasIndex.getCellWidth());
+			Assert.assertEquals(18, atlasIndex.getCellHeight());
+			Assert.assertEquals(2, atlasIndex.getTotalTilesets());
+			Assert.assertEquals(PATHS.length * 2, atlasIndex.getTotalPlacements());
+			Assert.assertEquals("0.png", atlasIndex.getTilesetFile(0));
+			Assert.assertEquals("0123456789abcdef.png", atlasIndex.getTilesetFile(1));
+
+			for (int i = 0; i < PATHS.length; i++) {
+				final int pathId = atlasIndex.findPath(PATHS[i]);
+				Assert.assertEquals(2, atlasIndex.getPlacementCount(pathId));
+
+				final int left = atlasIndex.findPlacement(pathId, 0, 1);
+				Assert.assertEquals(pathId, atlasIndex.getPathId(left));
+				Assert.assertEquals(0, atlasIndex.getSubImageX(left));
+				Assert.assertEquals(2, atlasIndex.getSubImageWidth(left));
+				Assert.assertEquals(3, atlasIndex.getSubImageHeight(left));
+				Assert.assertEquals(i % 2, atlasIndex.getTileset(left));
+				Assert.assertEquals(i, atlasIndex.getTilesetX(left));
+				Assert.assertEquals(i + 1, atlasIndex.getTilesetY(left));
+				Assert.assertEquals((i * 10) + 1, atlasIndex.getTilesetPixelX(left));
+				Assert.assertEquals(((i + 1) * 18) + 1, atlasIndex.getTilesetPixelY(left));
+				Assert.assertFalse(atlasIndex.isAlias(left));
+
+				final int right = atlasIndex.findPlacement(pathId, 2, 2);
+				Assert.assertEquals(left + 1, right);
+				Assert.assertEquals(2, atlasIndex.getSubImageX(right));
+				Assert.assertTrue(atlasIndex.isAlias(right));
+
+				Assert.assertEquals(-1, atlasIndex.findPlacement(pathId, 3, 0));
+				Assert.assertEquals(-1, atlasIndex.findPlacement(pathId, 0, 3));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testDdsPlacements() {
+		AtlasIndex atlasIndex = new AtlasIndex(
+				ByteBuffer.wrap(AtlasIndexWriter.toBytes(createConfig(), createContext("DDS"))));
+		Assert.assertEquals(12, atlasIndex.getCellWidth());
+		Assert.assertEquals(20, atlasIndex.getCellHeight());
+		for (int i = 0; i < PATHS.length; i++) {
+			final int left = atlasIndex.findPlacement(atlasIndex.findPath(PATHS[i]), 0, 1);
+			Assert.assertEquals((i * 12) + 1, atlasIndex.getTilesetPixelX(left));
+			Assert.assertEquals(((i + 1) * 20) + 1, atlasIndex.getTilesetPixelY(left));
+		}
+	}
+
+	@Test
+	public void testEmptyPlacements() {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setTiles(new ArrayList<TileConfig>());
+		TileConfig tileConfig = new TileConfig();
+		tileConfig.setPath("a.png");
+		tileConfig.getPlacement().add(createPlacement(0, 2, 0, 1, 1, false));
+		TilePlacement emptyPlacement = createPlacement(2, 1, 0, -1, -1, false);
+		emptyPlacement.setEmpty(true);
+		tileConfig.getPlacement().add(emptyPlacement);
+		config.getTiles().add(tileConfig);
+		TileConfig transparentTileConfig = new TileConfig();
+		transparentTileConfig.setPath("b.png");
+		transparentTileConfig.getPlacement().add(emptyPlacement);
+		config.getTiles().add(transparentTileConfig);
+
+		AtlasIndex atlasIndex = new AtlasIndex(ByteBuffer.wrap(AtlasIndexWriter.toBytes(config, createContext())));
+		Assert.assertEquals(1, atlasIndex.getTotalTilesets());
+		final int pathId = atlasIndex.findPath("a.png");
+		Assert.assertFalse(atlasIndex.isEmpty(atlasIndex.findPlacement(pathId, 1, 0)));
+		final int empty = atlasIndex.findPlacement(pathId, 2, 0);
+		Assert.assertTrue(atlasIndex.isEmpty(empty));
+		Assert.assertFalse(atlasIndex.isAlias(empty));
+		Assert.assertEquals(-1, atlasIndex.getTilesetX(empty));
+		Assert.assertTrue(atlasIndex.isEmpty(atlasIndex.findPlacement(atlasIndex.findPath("b.png"), 2, 2)));
+	}
+
+	@Test
+	public void testRejectsOtherFiles() {
+		try {
+			new AtlasIndex(ByteBuffer.wrap(new byte[32]));
+			Assert.fail();
+		} catch (TilePackerException e) {
+		}
+	}
+
+	private PackingContext createContext() {
+		return createContext("PNG");
+	}
+
+	private PackingContext createContext(String outputFormat) {
+		TilePackerConfig config = TilePackerTestUtils.createConfig(8, 16);
+		config.setTilePadding(1);
+		config.setOutputFormat(outputFormat);
+		return new PackingContext(config, null);
+	}
+
+	private TilePackerConfig createConfig() {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setTiles(new ArrayList<TileConfig>());
+		for (int i = 0; i < PATHS.length; i++) {
+			TileConfig tileConfig = new TileConfig();
+			tileConfig.setPath(PATHS[i]);
+			tileConfig.getPlacement().add(createPlacement(0, 2, i % 2, i, i + 1, false));
+			tileConfig.getPlacement().add(createPlacement(2, 1, 0, 0, 0, true));
+			config.getTiles().add(tileConfig);
+		}
+		return config;
+	}
+
+	private TilePlacement createPlacement(int subImageX, int subImageWidth, int tileset, int tilesetX, int tilesetY,
+			boolean alias) {
+		TilePlacement placement = new TilePlacement();
+		placement.setSubImageX(subImageX);
+		placement.setSubImageY(0);
+		placement.setSubImageWidth(subImageWidth);
+		placement.setSubImageHeight(3);
+		placement.setTileset(tileset);
+		placement.setTilesetX(tilesetX);
+		placement.setTilesetY(tilesetY);
+		placement.setAlias(alias);
+		return placement;
+	}
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link ConfigSerializer}
+ * 
+ * @author Thomas Cashman
+ */
+public class ConfigSerializerTest {
+	private final ConfigSerializer serializer = new ConfigSerializer();
+
+	@Test
+	public void testReadPersisterOutput() throws Exception {
+		String xml = "<tilePackerConfig>\n" + 
+				"   <tileWidth>8</tileWidth>\n" + 
+				"   <tileHeight>16</tileHeight>\n" + 
+				"   <tilesetWidth>512</tilesetWidth>\n" + 
+				"   <tilesetHeight>256</tilesetHeight>\n" + 
+				"   <tilePadding>2</tilePadding>\n" + 
+				"   <groupTilesByDirectory>true</groupTilesByDirectory>\n" + 
+				"   <outputFormat>PNG</outputFormat>\n" + 
+				"   <outputPath>../core/assets/maps</outputPath>\n" + 
+				"   <preventTearing>true</preventTearing>\n" + 
+				"   <premultiplyAlpha>false</premultiplyAlpha>\n" + 
+				"   <backgroundColor>0,0,0</backgroundColor>\n" + 
+				"   <tiles class=\"java.util.ArrayList\">\n" + 
+				"      <tileConfig>\n" + 
+				"         <path>example.png</path>\n" + 
+				"         <placement class=\"java.util.ArrayList\">\n" + 
+				"            <tilePlacement>\n" + 
+				"               <tileset>1</tileset>\n" + 
+				"               <tilesetX>2</tilesetX>\n" + 
+				"               <tilesetY>3</tilesetY>\n" + 
+				"               <subImageX>0</subImageX>\n" + 
+				"               <subImageY>4</subImageY>\n" + 
+				"               <subImageWidth>5</subImageWidth>\n" + 
+				"               <subImageHeight>6</subImageHeight>\n" + 
+				"               <alias>true</alias>\n" + 
+				"            </tilePlacement>\n" + 
+				"         </placement>\n" + 
+				"         <hash>-12345678901</hash>\n" + 
+				"         <lastModified>1700000000000</lastModified>\n" + 
+				"      </tileConfig>\n" + 
+				"      <tileConfig>\n" + 
+				"         <path>subfolder/example.png</path>\n" + 
+				"         <placement class=\"java.util.ArrayList\"/>\n" + 
+				"      </tileConfig>\n" + 
+				"   </tiles>\n" + 
+				"   <tilesets class=\"java.util.ArrayList\">\n" + 
+				"      <tilesetConfig>\n" + 
+				"         <index>1</index>\n" + 
+				"         <signature>42</signature>\n" + 
+				"         <lastModified>7</lastModified>\n" + 
+				"         <file>1.png</file>\n" + 
+				"      </tilesetConfig>\n" + 
+				"   </tilesets>\n" + 
+				"</tilePackerConfig>";
+		TilePackerConfig config = serializer.read(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+
+		Assert.assertEquals(8, config.getTileWidth());
+		Assert.assertEquals(16, config.getTileHeight());
+		Assert.assertEquals(512, config.getTilesetWidth());
+		Assert.assertEquals(256, config.getTilesetHeight());
+		Assert.assertEquals(2, config.getTilePadding());
+		Assert.assertTrue(config.isGroupTilesByDirectory());
+		Assert.assertEquals("PNG", config.getOutputFormat());
+		Assert.assertEquals("../core/assets/maps", config.getOutputPath());
+		Assert.assertTrue(config.isPreventTearing());
+		Assert.assertFalse(config.isPremultiplyAlpha());
+		Assert.assertEquals("0,0,0", config.getBackgroundColor());
+		// Elements that are not present keep their defaults
+		Assert.assertEquals(1, config.getWorkerThreads());
+		Assert.assertFalse(config.isIncremental());
+
+		Assert.assertEquals(2, config.getTiles().size());
+		TileConfig tileConfig = config.getTiles().get(0);
+		Assert.assertEquals("example.png", tileConfig.getPath());
+		Assert.assertEquals(-12345678901L, tileConfig.getHash());
+		Assert.assertEquals(1700000000000L, tileConfig.getLastModified());
+		Assert.assertEquals(1, tileConfig.getPlacement().size());
+		TilePlacement placement = tileConfig.getPlacement().get(0);
+		Assert.assertEquals(1, placement.getTileset());
+		Assert.assertEquals(2, placement.getTilesetX());
+		Assert.assertEquals(3, placement.getTilesetY());
+		Assert.assertEquals(0, placement.getSubImageX());
+		Assert.assertEquals(4, placement.getSubImageY());
+		Assert.assertEquals(5, placement.getSubImageWidth());
+		Assert.assertEquals(6, placement.getSubImageHeight());
+		Assert.assertTrue(placement.isAlias());
+		Assert.assertEquals("subfolder/example.png", config.getTiles().get(1).getPath());
+		Assert.assertTrue(config.getTiles().get(1).getPlacement().isEmpty());
+
+		Assert.assertEquals(1, config.getTilesets().size());
+		Assert.assertEquals(1, config.getTilesets().get(0).getIndex());
+		Assert.assertEquals(42L, config.getTilesets().get(0).getSignature());
+		Assert.assertEquals(7L, config.getTilesets().get(0).getLastModified());
+		Assert.assertEquals("1.png", config.getTilesets().get(0).getFile());
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setTileWidth(12);
+		config.setTileHeight(14);
+		config.setTilesetWidth(1000);
+		config.setTilesetHeight(900);
+		config.setTilePadding(3);
+		config.setGroupTilesByDirectory(true);
+		config.setOutputFormat("DDS");
+		config.setOutputPath("out & <about>");
+		config.setPreventTearing(true);
+		config.setPremultiplyAlpha(true);
+		config.setBackgroundColor("1,2,3");
+		config.setWorkerThreads(4);
+		config.setPackingAlgorithm("maxrects");
+		config.setPackingOrder("best");
+		config.setPackingSearchRounds(12);
+		config.setPackingSearchChains(6);
+		config.setPackingTimeBudgetMillis(30000L);
+		config.setPackingSeed(-5L);
+		config.setImageSplitting("sheet");
+		config.setDeduplicateTiles(true);
+		config.setTrimTransparentTiles(true);
+		config.setIncremental(true);
+		config.setImageCacheMegabytes(64);
+		config.setContentHashNames(true);
+		config.setPngCompressionLevel(9);
+		config.setPngFilter("paeth");
+		config.setEncoderThreads(0);
+		config.setJpegQuality(75);
+		config.setJpegChromaSubsampling("4:4:4");
+		config.setDdsCompression("bc1");
+		config.setKtxCompression("etc2");
+		config.setAtlasIndex(false);
+		config.setMetricsFile("build/metrics.json");
+		config.setTiles(new ArrayList<TileConfig>());
+		for (int i = 0; i < 3; i++) {
+			TileConfig tileConfig = new TileConfig();
+			tileConfig.setPath("dir/\u00e9" + i + ".png");
+			tileConfig.setHash(i * 31L);
+			tileConfig.setLastModified(i * 1000L);
+			for (int j = 0; j < i; j++) {
+				TilePlacement placement = new TilePlacement();
+				placement.setTileset(j);
+				placement.setTilesetX(i);
+				placement.setTilesetY(j + 1);
+				placement.setSubImageX(j);
+				placement.setSubImageY(i);
+				placement.setSubImageWidth(2);
+				placement.setSubImageHeight(3);
+				placement.setAlias(j % 2 == 1);
+				if (placement.isAlias()) {
+					placement.setCanonicalPath("dir/\u00e90.png");
+					placement.setCanonicalHash(-i);
+				}
+				placement.setEmpty(i == 2 && j == 0);
+				tileConfig.getPlacement().add(placement);
+			}
+			config.getTiles().add(tileConfig);
+		}
+		TilesetConfig tilesetConfig = new TilesetConfig();
+		tilesetConfig.setIndex(0);
+		tilesetConfig.setSignature(Long.MIN_VALUE);
+		tilesetConfig.setFile("0.dds");
+		config.getTilesets().add(tilesetConfig);
+
+		byte[] xml = write(config);
+		TilePackerConfig result = serializer.read(new ByteArrayInputStream(xml));
+		Assert.assertTrue(java.util.Arrays.equals(xml, write(result)));
+
+		Assert.assertEquals(12, result.getTileWidth());
+		Assert.assertEquals(14, result.getTileHeight());
+		Assert.assertEquals(1000, result.getTilesetWidth());
+		Assert.assertEquals(900, result.getTilesetHeight());
+		Assert.assertEquals(3, result.getTilePadding());
+		Assert.assertTrue(result.isGroupTilesByDirectory());
+		Assert.assertEquals("DDS", result.getOutputFormat());
+		Assert.assertEquals("out & <about>", result.getOutputPath());
+		Assert.assertTrue(result.isPreventTearing());
+		Assert.assertTrue(result.isPremultiplyAlpha());
+		Assert.assertEquals("1,2,3", result.getBackgroundColor());
+		Assert.assertEquals(4, result.getWorkerThreads());
+		Assert.assertEquals("maxrects", result.getPackingAlgorithm());
+		Assert.assertEquals("best", result.getPackingOrder());
+		Assert.assertEquals(12, result.getPackingSearchRounds());
+		Assert.assertEquals(6, result.getPackingSearchChains());
+		Assert.assertEquals(30000L, result.getPackingTimeBudgetMillis());
+		Assert.assertEquals(-5L, result.getPackingSeed());
+		Assert.assertEquals("sheet", result.getImageSplitting());
+		Assert.assertTrue(result.isDeduplicateTiles());
+		Assert.assertTrue(result.isTrimTransparentTiles());
+		Assert.assertTrue(result.isIncremental());
+		Assert.assertEquals(64, result.getImageCacheMegabytes());
+		Assert.assertTrue(result.isContentHashNames());
+		Assert.assertEquals(9, result.getPngCompressionLevel());
+		Assert.assertEquals("paeth", result.getPngFilter());
+		Assert.assertEquals(0, result.getEncoderThreads());
+		Assert.assertEquals(75, result.getJpegQuality());
+		Assert.assertEquals("4:4:4", result.getJpegChromaSubsampling());
+		Assert.assertEquals("bc1", result.getDdsCompression());
+		Assert.assertEquals("etc2", result.getKtxCompression());
+		Assert.assertFalse(result.isAtlasIndex());
+		Assert.assertEquals("build/metrics.json", result.getMetricsFile());
+
+		Assert.assertEquals(3, result.getTiles().size());
+		for (int i = 0; i < 3; i++) {
+			TileConfig expected = config.getTiles().get(i);
+			TileConfig actual = result.getTiles().get(i);
+			Assert.assertEquals(expected.getPath(), actual.getPath());
+			Assert.assertEquals(expected.getHash(), actual.getHash());
+			Assert.assertEquals(expected.getLastModified(), actual.getLastModified());
+			Assert.assertEquals(expected.getPlacement().size(), actual.getPlacement().size());
+			for (int j = 0; j < expected.getPlacement().size(); j++) {
+				TilePlacement expectedPlacement = expected.getPlacement().get(j);
+				TilePlacement actualPlacement = actual.getPlacement().get(j);
+				Assert.assertEquals(expectedPlacement.getTileset(), actualPlacement.getTileset());
+				Assert.assertEquals(expectedPlacement.getTilesetX(), actualPlacement.getTilesetX());
+				Assert.assertEquals(expectedPlacement.getTilesetY(), actualPlacement.getTilesetY());
+				Assert.assertEquals(expectedPlacement.getSubImageX(), actualPlacement.getSubImageX());
+				Assert.assertEquals(expectedPlacement.getSubImageY(), actualPlacement.getSubImageY());
+				Assert.assertEquals(expectedPlacement.getSubImageWidth(), actualPlacement.getSubImageWidth());
+				Assert.assertEquals(expectedPlacement.getSubImageHeight(), actualPlacement.getSubImageHeight());
+				Assert.assertEquals(expectedPlacement.isAlias(), actualPlacement.isAlias());
+				Assert.assertEquals(expectedPlacement.isEmpty(), actualPlacement.isEmpty());
+				Assert.assertEquals(expectedPlacement.getCanonicalPath(), actualPlacement.getCanonicalPath());
+				Assert.assertEquals(expectedPlacement.getCanonicalHash(), actualPlacement.getCanonicalHash());
+			}
+		}
+		Assert.assertEquals(1, result.getTilesets().size());
+		Assert.assertEquals(Long.MIN_VALUE, result.getTilesets().get(0).getSignature());
+		Assert.assertEquals("0.dds", result.getTilesets().get(0).getFile());
+	}
+
+	@Test
+	public void testUnknownElement() throws Exception {
+		String xml = "<tilePackerConfig><tileWidht>8</tileWidht></tilePackerConfig>";
+		try {
+			serializer.read(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+			Assert.fail();
+		} catch (IOException e) {
+		}
+	}
+
+	private byte[] write(TilePackerConfig config) throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		serializer.write(config, outputStream);
+		return outputStream.toByteArray();
+	}
+}
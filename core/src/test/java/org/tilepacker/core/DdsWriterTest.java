@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link DdsWriter}
+ * 
+ * @author Thomas Cashman
+ */
+public class DdsWriterTest {
+	private static final int HEADER_LENGTH = 128;
+
+	@Test
+	public void testHeader() throws Exception {
+		byte[] dds = write(new int[10 * 7], 10, 7, "bc1", null);
+		Assert.assertEquals(0x20534444, readInt(dds, 0));
+		Assert.assertEquals(124, readInt(dds, 4));
+		Assert.assertEquals(7, readInt(dds, 12));
+		Assert.assertEquals(10, readInt(dds, 16));
+		Assert.assertEquals(3 * 2 * 8, readInt(dds, 20));
+		Assert.assertEquals("DXT1", new String(dds, 84, 4, "US-ASCII"));
+		Assert.assertEquals(HEADER_LENGTH + (3 * 2 * 8), dds.length);
+
+		dds = write(new int[10 * 7], 10, 7, "bc3", null);
+		Assert.assertEquals("DXT5", new String(dds, 84, 4, "US-ASCII"));
+		Assert.assertEquals(HEADER_LENGTH + (3 * 2 * 16), dds.length);
+
+		try {
+			new DdsWriter(new ByteArrayOutputStream(), 4, 4, "bc7", null);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testSolidColorsAreExact() throws Exception {
+		final int width = 9;
+		final int height = 6;
+		final int[] pixels = new int[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				// Colors that are exactly representable in 5:6:5
+				final int color = DdsWriter.fromRgb565(((x / 4) * 0x3000) + ((y / 4) * 0x0400) + 0x21);
+				pixels[(y * width) + x] = (y % 4 == 0 && x % 4 == 1) ? 0 : 0xFF000000 | color;
+			}
+		}
+		Assert.assertTrue(Arrays.equals(pixels, decode(write(pixels, width, height, "bc1", null))));
+
+		// BC3 does not keep the color of fully transparent pixels
+		final int[] bc3 = decode(write(pixels, width, height, "bc3", null));
+		for (int i = 0; i < pixels.length; i++) {
+			if (pixels[i] == 0) {
+				Assert.assertEquals(0, bc3[i] >>> 24);
+			} else {
+				Assert.assertEquals(pixels[i], bc3[i]);
+			}
+		}
+	}
+
+	@Test
+	public void testGradients() throws Exception {
+		final int width = 64;
+		final int height = 64;
+		final int[] pixels = new int[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				// Red and green change in opposite directions along a line
+				pixels[(y * width) + x] = Tileset.createColor(x * 4, 255 - (x * 4), 128, 255 - (y * 2));
+			}
+		}
+		final int[] bc1 = decode(write(pixels, width, height, "bc1", null));
+		final int[] bc3 = decode(write(pixels, width, height, "bc3", null));
+		for (int i = 0; i < pixels.length; i++) {
+			for (int shift = 0; shift < 24; shift += 8) {
+				Assert.assertTrue(Math.abs(((pixels[i] >> shift) & 0xFF) - ((bc1[i] >> shift) & 0xFF)) <= 8);
+				Assert.assertTrue(Math.abs(((pixels[i] >> shift) & 0xFF) - ((bc3[i] >> shift) & 0xFF)) <= 8);
+			}
+			Assert.assertEquals(255, bc1[i] >>> 24);
+			Assert.assertTrue(Math.abs((pixels[i] >>> 24) - (bc3[i] >>> 24)) <= 1);
+		}
+	}
+
+	@Test
+	public void testConcurrentCompression() throws Exception {
+		final int width = 300;
+		final int height = 301;
+		final Random random = new Random(9);
+		final int[] pixels = new int[width * height];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = random.nextInt();
+		}
+		final ExecutorService executorService = Executors.newFixedThreadPool(3);
+		try {
+			for (String compression : new String[] { "bc1", "bc3" }) {
+				Assert.assertTrue(Arrays.equals(write(pixels, width, height, compression, null),
+						write(pixels, width, height, compression, executorService)));
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	private byte[] write(int[] pixels, int width, int height, String compression, ExecutorService executorService)
+			throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		DdsWriter ddsWriter = new DdsWriter(outputStream, width, height, compression, executorService);
+		for (int y = 0; y < height; y += 5) {
+			ddsWriter.writeRows(pixels, y * width, width, Math.min(5, height - y));
+		}
+		ddsWriter.finish();
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Decodes BC1 and BC3 data the way GPUs do
+	 */
+	private int[] decode(byte[] dds) throws Exception {
+		final int height = readInt(dds, 12);
+		final int width = readInt(dds, 16);
+		final boolean bc3 = new String(dds, 84, 4, "US-ASCII").equals("DXT5");
+		final int widthInBlocks = (width + 3) / 4;
+		final int[] result = new int[width * height];
+
+		int offset = HEADER_LENGTH;
+		for (int blockY = 0; blockY < height; blockY += 4) {
+			for (int blockX = 0; blockX < width; blockX += 4) {
+				final int[] alpha = new int[16];
+				Arrays.fill(alpha, 255);
+				if (bc3) {
+					final int alpha0 = dds[offset] & 0xFF;
+					final int alpha1 = dds[offset + 1] & 0xFF;
+					long indices = 0;
+					for (int i = 0; i < 6; i++) {
+						indices |= ((long) (dds[offset + 2 + i] & 0xFF)) << (i * 8);
+					}
+					for (int i = 0; i < 16; i++) {
+						final int index = (int) ((indices >> (i * 3)) & 0x7);
+						alpha[i] = getAlpha(alpha0, alpha1, index);
+					}
+					offset += 8;
+				}
+				final int color0 = (dds[offset] & 0xFF) | ((dds[offset + 1] & 0xFF) << 8);
+				final int color1 = (dds[offset + 2] & 0xFF) | ((dds[offset + 3] & 0xFF) << 8);
+				final int indices = readInt(dds, offset + 4);
+				final int[] palette = new int[4];
+				palette[0] = 0xFF000000 | DdsWriter.fromRgb565(color0);
+				palette[1] = 0xFF000000 | DdsWriter.fromRgb565(color1);
+				if (bc3 || color0 > color1) {
+					palette[2] = mix(palette[0], palette[1], 2, 1);
+					palette[3] = mix(palette[0], palette[1], 1, 2);
+				} else {
+					palette[2] = mix(palette[0], palette[1], 1, 1);
+					palette[3] = 0;
+				}
+				offset += 8;
+
+				for (int i = 0; i < 16; i++) {
+					final int x = blockX + (i % 4);
+					final int y = blockY + (i / 4);
+					if (x >= width || y >= height) {
+						continue;
+					}
+					int pixel = palette[(indices >>> (i * 2)) & 0x3];
+					if (bc3) {
+						pixel = (pixel & 0xFFFFFF) | (alpha[i] << 24);
+					}
+					result[(y * width) + x] = pixel;
+				}
+			}
+		}
+		Assert.assertEquals(dds.length, HEADER_LENGTH + (widthInBlocks * ((height + 3) / 4) * (bc3 ? 16 : 8)));
+		return result;
+	}
+
+	private int getAlpha(int alpha0, int alpha1, int index) {
+		if (index == 0) {
+			return alpha0;
+		}
+		if (index == 1) {
+			return alpha1;
+		}
+		if (alpha0 > alpha1) {
+			return (((8 - index) * alpha0) + ((index - 1) * alpha1)) / 7;
+		}
+		if (index == 6) {
+			return 0;
+		}
+		if (index == 7) {
+			return 255;
+		}
+		return (((6 - index) * alpha0) + ((index - 1) * alpha1)) / 5;
+	}
+
+	private int mix(int color0, int color1, int weight0, int weight1) {
+		int result = 0xFF000000;
+		for (int shift = 0; shift < 24; shift += 8) {
+			final int channel = ((((color0 >> shift) & 0xFF) * weight0) + (((color1 >> shift) & 0xFF) * weight1))
+					/ (weight0 + weight1);
+			result |= channel << shift;
+		}
+		return result;
+	}
+
+	private int readInt(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFF) | ((bytes[offset + 1] & 0xFF) << 8) | ((bytes[offset + 2] & 0xFF) << 16)
+				| ((bytes[offset + 3] & 0xFF) << 24);
+	}
+}
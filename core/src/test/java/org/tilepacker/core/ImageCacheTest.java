@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link ImageCache}
+ * 
+ * @author Thomas Cashman
+ */
+public class ImageCacheTest {
+	private static final int SIZE = 16;
+	private static final long IMAGE_BYTES = SIZE * SIZE * 4;
+
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = File.createTempFile("tilepacker", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void teardown() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testHit() throws Exception {
+		File file = createImage("a.png", 0xFF112233);
+		ImageCache imageCache = new ImageCache(IMAGE_BYTES);
+
+		BufferedImage image = imageCache.get(file);
+		Assert.assertEquals(BufferedImage.TYPE_INT_ARGB, image.getType());
+		Assert.assertEquals(0xFF112233, image.getRGB(3, 5));
+		Assert.assertSame(image, imageCache.get(file));
+		Assert.assertEquals(1, imageCache.getMisses());
+		Assert.assertEquals(1, imageCache.getHits());
+		Assert.assertEquals(IMAGE_BYTES, imageCache.getTotalBytes());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		File a = createImage("a.png", 0xFF000001);
+		File b = createImage("b.png", 0xFF000002);
+		File c = createImage("c.png", 0xFF000003);
+		ImageCache imageCache = new ImageCache(IMAGE_BYTES * 2);
+
+		imageCache.get(a);
+		imageCache.get(b);
+		imageCache.get(a);
+		imageCache.get(c);
+		Assert.assertEquals(1, imageCache.getEvictions());
+		Assert.assertEquals(IMAGE_BYTES * 2, imageCache.getTotalBytes());
+
+		imageCache.get(a);
+		Assert.assertEquals(2, imageCache.getHits());
+		imageCache.get(b);
+		Assert.assertEquals(4, imageCache.getMisses());
+		Assert.assertEquals(2, imageCache.getEvictions());
+	}
+
+	@Test
+	public void testModifiedFileIsReloaded() throws Exception {
+		File file = createImage("a.png", 0xFF000001);
+		file.setLastModified(10000L);
+		ImageCache imageCache = new ImageCache(IMAGE_BYTES * 2);
+		Assert.assertEquals(0xFF000001, imageCache.get(file).getRGB(0, 0));
+
+		createImage("a.png", 0xFF000002);
+		file.setLastModified(20000L);
+		Assert.assertEquals(0xFF000002, imageCache.get(file).getRGB(0, 0));
+		Assert.assertEquals(2, imageCache.getMisses());
+	}
+
+	@Test
+	public void testZeroBudget() throws Exception {
+		File file = createImage("a.png", 0xFF000001);
+		ImageCache imageCache = new ImageCache(0);
+
+		imageCache.get(file);
+		imageCache.get(file);
+		Assert.assertEquals(2, imageCache.getMisses());
+		Assert.assertEquals(2, imageCache.getEvictions());
+		Assert.assertEquals(0, imageCache.getTotalBytes());
+	}
+
+	private File createImage(String filename, int color) throws Exception {
+		BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+		for (int x = 0; x < SIZE; x++) {
+			for (int y = 0; y < SIZE; y++) {
+				image.setRGB(x, y, color);
+			}
+		}
+		File file = new File(directory, filename);
+		ImageIO.write(image, "png", file);
+		return file;
+	}
+}
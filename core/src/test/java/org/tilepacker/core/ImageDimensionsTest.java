@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link ImageDimensions}
+ * 
+ * @author Thomas Cashman
+ */
+public class ImageDimensionsTest {
+
+	@Test
+	public void testReadPng() throws Exception {
+		File file = writeImage(BufferedImage.TYPE_INT_ARGB, 37, 12, "png");
+
+		ImageDimensions dimensions = ImageDimensions.read(file);
+		Assert.assertEquals(37, dimensions.getWidth());
+		Assert.assertEquals(12, dimensions.getHeight());
+		file.delete();
+	}
+
+	@Test
+	public void testReadJpg() throws Exception {
+		File file = writeImage(BufferedImage.TYPE_INT_RGB, 20, 45, "jpg");
+
+		ImageDimensions dimensions = ImageDimensions.read(file);
+		Assert.assertEquals(20, dimensions.getWidth());
+		Assert.assertEquals(45, dimensions.getHeight());
+		file.delete();
+	}
+
+	private File writeImage(int type, int width, int height, String format) throws Exception {
+		File file = File.createTempFile("tilepacker", "." + format);
+		ImageIO.write(new BufferedImage(width, height, type), format, file);
+		return file;
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link JpegWriter}
+ * 
+ * @author Thomas Cashman
+ */
+public class JpegWriterTest {
+	private static final int WIDTH = 64;
+	private static final int HEIGHT = 48;
+
+	@Test
+	public void testWriteRowsInBands() throws Exception {
+		final int[] pixels = createGradient();
+		BufferedImage result = ImageIO.read(new ByteArrayInputStream(write(pixels, 100, "4:4:4")));
+		Assert.assertEquals(WIDTH, result.getWidth());
+		Assert.assertEquals(HEIGHT, result.getHeight());
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				final int expected = pixels[(y * WIDTH) + x];
+				final int actual = result.getRGB(x, y);
+				for (int shift = 0; shift < 24; shift += 8) {
+					Assert.assertTrue(Math.abs(((expected >> shift) & 0xFF) - ((actual >> shift) & 0xFF)) <= 8);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testQualityAndChromaSubsampling() throws Exception {
+		final int[] pixels = createGradient();
+		Assert.assertTrue(write(pixels, 50, "4:2:0").length < write(pixels, 100, "4:2:0").length);
+
+		assertLumaSampling(write(pixels, 90, "4:4:4"), 1, 1);
+		assertLumaSampling(write(pixels, 90, "4:2:2"), 2, 1);
+		assertLumaSampling(write(pixels, 90, "4:2:0"), 2, 2);
+
+		try {
+			new JpegWriter(new ByteArrayOutputStream(), WIDTH, HEIGHT, 90, "4:1:1");
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new JpegWriter(new ByteArrayOutputStream(), WIDTH, HEIGHT, 0, "4:2:0");
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	private void assertLumaSampling(byte[] jpeg, int horizontalSampling, int verticalSampling) throws Exception {
+		ImageReader imageReader = ImageIO.getImageReadersByFormatName("jpeg").next();
+		try (ImageInputStream inputStream = ImageIO.createImageInputStream(new ByteArrayInputStream(jpeg))) {
+			imageReader.setInput(inputStream);
+			Element tree = (Element) imageReader.getImageMetadata(0).getAsTree("javax_imageio_jpeg_image_1.0");
+			NodeList components = tree.getElementsByTagName("componentSpec");
+			Assert.assertEquals(3, components.getLength());
+			Element luma = (Element) components.item(0);
+			Assert.assertEquals(String.valueOf(horizontalSampling), luma.getAttribute("HsamplingFactor"));
+			Assert.assertEquals(String.valueOf(verticalSampling), luma.getAttribute("VsamplingFactor"));
+		} finally {
+			imageReader.dispose();
+		}
+	}
+
+	private byte[] write(int[] pixels, int quality, String chromaSubsampling) throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		JpegWriter jpegWriter = new JpegWriter(outputStream, WIDTH, HEIGHT, quality, chromaSubsampling);
+		jpegWriter.writeRows(pixels, 0, WIDTH, 20);
+		jpegWriter.writeRows(pixels, WIDTH * 20, WIDTH, HEIGHT - 20);
+		jpegWriter.finish();
+		return outputStream.toByteArray();
+	}
+
+	private int[] createGradient() {
+		final int[] pixels = new int[WIDTH * HEIGHT];
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				pixels[(y * WIDTH) + x] = Tileset.createColor(x * 4, y * 5, (x + y) * 2, 255);
+			}
+		}
+		return pixels;
+	}
+}
@@ -0,0 +1,294 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link KtxWriter}
+ * 
+ * @author Thomas Cashman
+ */
+public class KtxWriterTest {
+	private static final int HEADER_LENGTH = 96;
+
+	@Test
+	public void testHeader() throws Exception {
+		byte[] ktx = write(new int[10 * 7], 10, 7, "etc2", null);
+		Assert.assertEquals("KTX 11", new String(ktx, 1, 6, "US-ASCII"));
+		Assert.assertEquals(0x04030201, readInt(ktx, 12));
+		Assert.assertEquals(0x9274, readInt(ktx, 28));
+		Assert.assertEquals(0x1907, readInt(ktx, 32));
+		Assert.assertEquals(10, readInt(ktx, 36));
+		Assert.assertEquals(7, readInt(ktx, 40));
+		Assert.assertEquals(1, readInt(ktx, 52));
+		Assert.assertEquals(1, readInt(ktx, 56));
+		Assert.assertEquals(28, readInt(ktx, 60));
+		Assert.assertEquals("KTXorientation", new String(ktx, 68, 14, "US-ASCII"));
+		Assert.assertEquals("S=r,T=d", new String(ktx, 83, 7, "US-ASCII"));
+		Assert.assertEquals(3 * 2 * 8, readInt(ktx, 92));
+		Assert.assertEquals(HEADER_LENGTH + (3 * 2 * 8), ktx.length);
+
+		ktx = write(new int[10 * 7], 10, 7, "etc2_eac", null);
+		Assert.assertEquals(0x9278, readInt(ktx, 28));
+		Assert.assertEquals(0x1908, readInt(ktx, 32));
+		Assert.assertEquals(3 * 2 * 16, readInt(ktx, 92));
+		Assert.assertEquals(HEADER_LENGTH + (3 * 2 * 16), ktx.length);
+
+		try {
+			new KtxWriter(new ByteArrayOutputStream(), 4, 4, "astc", null);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testSolidColors() throws Exception {
+		final int width = 9;
+		final int height = 6;
+		final int[] pixels = new int[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				// Modifiers clamp to exact black and white
+				pixels[(y * width) + x] = ((x / 4) + (y / 4)) % 2 == 0 ? 0xFF000000 : 0xFFFFFFFF;
+			}
+		}
+		Assert.assertTrue(Arrays.equals(pixels, decode(write(pixels, width, height, "etc2", null))));
+		Assert.assertTrue(Arrays.equals(pixels, decode(write(pixels, width, height, "etc2_eac", null))));
+
+		// Other colors are within the smallest modifier of the base color
+		final int[] saturatedColors = { 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFF00FFFF };
+		for (int color : saturatedColors) {
+			final int[] block = new int[16];
+			Arrays.fill(block, color);
+			for (int decoded : decode(write(block, 4, 4, "etc2", null))) {
+				assertColorWithin(color, decoded, 2);
+			}
+		}
+		final Random random = new Random(3);
+		for (int i = 0; i < 32; i++) {
+			final int color = random.nextInt() | 0xFF000000;
+			final int[] block = new int[16];
+			Arrays.fill(block, color);
+			for (int decoded : decode(write(block, 4, 4, "etc2", null))) {
+				assertColorWithin(color, decoded, 6);
+			}
+		}
+	}
+
+	@Test
+	public void testAlpha() throws Exception {
+		final int width = 16;
+		final int height = 8;
+		final int[] pixels = new int[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				final int alpha;
+				switch (x / 4) {
+				case 0:
+					// Constant alpha is exact
+					alpha = 77;
+					break;
+				case 1:
+					alpha = (x + y) % 2 == 0 ? 0 : 255;
+					break;
+				default:
+					alpha = (x * 16) + (y * 2);
+					break;
+				}
+				pixels[(y * width) + x] = (alpha << 24) | 0x336699;
+			}
+		}
+		final int[] decoded = decode(write(pixels, width, height, "etc2_eac", null));
+		for (int i = 0; i < pixels.length; i++) {
+			final int x = i % width;
+			final int tolerance = x < 8 ? 0 : 4;
+			Assert.assertTrue(Math.abs((pixels[i] >>> 24) - (decoded[i] >>> 24)) <= tolerance);
+			if ((pixels[i] >>> 24) != 0) {
+				assertColorWithin(pixels[i], decoded[i], 6);
+			}
+		}
+
+		// ETC2 without EAC is opaque
+		for (int pixel : decode(write(pixels, width, height, "etc2", null))) {
+			Assert.assertEquals(255, pixel >>> 24);
+		}
+	}
+
+	@Test
+	public void testGradients() throws Exception {
+		final int width = 64;
+		final int height = 64;
+		final int[] pixels = new int[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				pixels[(y * width) + x] = Tileset.createColor(x * 4, x * 4, 128 + y, 255 - (y * 2));
+			}
+		}
+		final int[] etc2 = decode(write(pixels, width, height, "etc2", null));
+		final int[] etc2Eac = decode(write(pixels, width, height, "etc2_eac", null));
+		for (int i = 0; i < pixels.length; i++) {
+			assertColorWithin(pixels[i], etc2[i], 8);
+			assertColorWithin(pixels[i], etc2Eac[i], 8);
+			Assert.assertEquals(255, etc2[i] >>> 24);
+			Assert.assertTrue(Math.abs((pixels[i] >>> 24) - (etc2Eac[i] >>> 24)) <= 1);
+		}
+	}
+
+	@Test
+	public void testConcurrentCompression() throws Exception {
+		final int width = 300;
+		final int height = 301;
+		final Random random = new Random(9);
+		final int[] pixels = new int[width * height];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = random.nextInt();
+		}
+		final ExecutorService executorService = Executors.newFixedThreadPool(3);
+		try {
+			for (String compression : new String[] { "etc2", "etc2_eac" }) {
+				final byte[] ktx = write(pixels, width, height, compression, null);
+				Assert.assertTrue(Arrays.equals(ktx, write(pixels, width, height, compression, executorService)));
+				// Random blocks need the individual mode and must still decode
+				decode(ktx);
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	private void assertColorWithin(int expected, int actual, int tolerance) {
+		for (int shift = 0; shift < 24; shift += 8) {
+			final int difference = Math.abs(((expected >> shift) & 0xFF) - ((actual >> shift) & 0xFF));
+			Assert.assertTrue(difference + " > " + tolerance, difference <= tolerance);
+		}
+	}
+
+	private byte[] write(int[] pixels, int width, int height, String compression, ExecutorService executorService)
+			throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		KtxWriter ktxWriter = new KtxWriter(outputStream, width, height, compression, executorService);
+		for (int y = 0; y < height; y += 5) {
+			ktxWriter.writeRows(pixels, y * width, width, Math.min(5, height - y));
+		}
+		ktxWriter.finish();
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Decodes ETC2 individual and differential mode blocks and EAC alpha
+	 * blocks the way GPUs do. Fails on the ETC2 T, H and planar modes since
+	 * the writer never produces them.
+	 */
+	private int[] decode(byte[] ktx) throws Exception {
+		final boolean eac = readInt(ktx, 28) == 0x9278;
+		final int width = readInt(ktx, 36);
+		final int height = readInt(ktx, 40);
+		final int[] result = new int[width * height];
+
+		int offset = HEADER_LENGTH;
+		for (int blockY = 0; blockY < height; blockY += 4) {
+			for (int blockX = 0; blockX < width; blockX += 4) {
+				final int[] alpha = new int[16];
+				Arrays.fill(alpha, 255);
+				if (eac) {
+					final long bits = readLong(ktx, offset);
+					final int base = (int) (bits >>> 56);
+					final int multiplier = (int) ((bits >>> 52) & 0xF);
+					final int[] modifiers = KtxWriter.ALPHA_MODIFIERS[(int) ((bits >>> 48) & 0xF)];
+					for (int pixel = 0; pixel < 16; pixel++) {
+						final int index = (int) ((bits >>> (45 - (pixel * 3))) & 0x7);
+						alpha[pixel] = Math.max(0, Math.min(255, base + (modifiers[index] * multiplier)));
+					}
+					offset += 8;
+				}
+				final long bits = readLong(ktx, offset);
+				final boolean differential = ((bits >>> 33) & 1) == 1;
+				final boolean flip = ((bits >>> 32) & 1) == 1;
+				final int[][] baseColors = new int[2][3];
+				for (int channel = 0; channel < 3; channel++) {
+					final int shift = 59 - (channel * 8);
+					if (differential) {
+						final int base = (int) ((bits >>> shift) & 0x1F);
+						final int delta = (((int) ((bits >>> (shift - 3)) & 0x7)) << 29) >> 29;
+						// Overflowing the base selects the ETC2 T, H or planar modes
+						Assert.assertTrue(base + delta >= 0 && base + delta <= 31);
+						baseColors[0][channel] = (base << 3) | (base >> 2);
+						baseColors[1][channel] = ((base + delta) << 3) | ((base + delta) >> 2);
+					} else {
+						final int base0 = (int) ((bits >>> (shift + 1)) & 0xF);
+						final int base1 = (int) ((bits >>> (shift - 3)) & 0xF);
+						baseColors[0][channel] = (base0 << 4) | base0;
+						baseColors[1][channel] = (base1 << 4) | base1;
+					}
+				}
+				final int[] tables = { (int) ((bits >>> 37) & 0x7), (int) ((bits >>> 34) & 0x7) };
+				offset += 8;
+
+				for (int x = 0; x < 4; x++) {
+					for (int y = 0; y < 4; y++) {
+						final int pixel = (x * 4) + y;
+						final int subBlock = KtxWriter.getSubBlock(x, y, flip);
+						final int index = (int) ((((bits >>> (16 + pixel)) & 1) << 1) | ((bits >>> pixel) & 1));
+						final int modifier = KtxWriter.COLOR_MODIFIERS[tables[subBlock]][index];
+						int color = alpha[pixel] << 24;
+						for (int channel = 0; channel < 3; channel++) {
+							final int value = Math.max(0, Math.min(255, baseColors[subBlock][channel] + modifier));
+							color |= value << (16 - (channel * 8));
+						}
+						if (blockX + x < width && blockY + y < height) {
+							result[((blockY + y) * width) + blockX + x] = color;
+						}
+					}
+				}
+			}
+		}
+		Assert.assertEquals(ktx.length, offset);
+		return result;
+	}
+
+	private long readLong(byte[] bytes, int offset) {
+		long result = 0;
+		for (int i = 0; i < 8; i++) {
+			result = (result << 8) | (bytes[offset + i] & 0xFF);
+		}
+		return result;
+	}
+
+	private int readInt(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFF) | ((bytes[offset + 1] & 0xFF) << 8) | ((bytes[offset + 2] & 0xFF) << 16)
+				| ((bytes[offset + 3] & 0xFF) << 24);
+	}
+}
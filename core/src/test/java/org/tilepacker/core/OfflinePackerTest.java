@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link OfflinePacker}
+ * 
+ * @author Thomas Cashman
+ */
+public class OfflinePackerTest {
+	private static final int TILESET_SIZE = 8;
+
+	private final PackingContext context = TilePackerTestUtils.createContext(8, TILESET_SIZE, TILESET_SIZE);
+
+	@Test
+	public void testSort() {
+		List<TileImage> images = new ArrayList<TileImage>();
+		images.add(createTileImage(1, 1));
+		images.add(createTileImage(2, 5));
+		images.add(createTileImage(4, 2));
+		images.add(createTileImage(3, 3));
+		images.add(createTileImage(5, 2));
+		OfflinePacker packer = new OfflinePacker(context, images, null);
+
+		Assert.assertTrue(Arrays.equals(new int[] { 0, 1, 2, 3, 4 }, packer.sort(PackingOrder.NONE)));
+		Assert.assertTrue(Arrays.equals(new int[] { 1, 4, 3, 2, 0 }, packer.sort(PackingOrder.AREA)));
+		Assert.assertTrue(Arrays.equals(new int[] { 1, 4, 2, 3, 0 }, packer.sort(PackingOrder.MAX_SIDE)));
+		Assert.assertTrue(Arrays.equals(new int[] { 1, 3, 4, 2, 0 }, packer.sort(PackingOrder.HEIGHT)));
+	}
+
+	@Test
+	public void testSortedPackingUsesFewerTilesets() throws Exception {
+		// Narrow strips packed first leave a gap too small for the wide ones
+		List<TileImage> images = new ArrayList<TileImage>();
+		images.add(createTileImage(3, TILESET_SIZE));
+		images.add(createTileImage(3, TILESET_SIZE));
+		images.add(createTileImage(5, TILESET_SIZE));
+		images.add(createTileImage(5, TILESET_SIZE));
+		OfflinePacker packer = new OfflinePacker(context, images, null);
+		Assert.assertEquals(3, packer.pack(PackingOrder.NONE, null).getTilesetCount());
+		Assert.assertEquals(2, packer.pack(PackingOrder.AREA, null).getTilesetCount());
+	}
+
+	@Test
+	public void testPackingsDoNotOverlap() throws Exception {
+		ExecutorService executorService = Executors.newFixedThreadPool(3);
+		try {
+			for (long seed = 0; seed < 10; seed++) {
+				Random random = new Random(seed);
+				List<TileImage> images = new ArrayList<TileImage>();
+				List<String> groups = new ArrayList<String>();
+				for (int i = 0; i < 60; i++) {
+					images.add(createTileImage(1 + random.nextInt(4), 1 + random.nextInt(4)));
+					groups.add(String.valueOf(random.nextInt(2)));
+				}
+				// Images placed on a previous run keep their position
+				TileImage placed = images.get(7);
+				placed.setTileset(1);
+				placed.setTilesetX(2);
+				placed.setTilesetY(3);
+
+				for (PackingOrder order : PackingOrder.values()) {
+					OfflinePacker.Packing packing = new OfflinePacker(context, images, groups).pack(order,
+							executorService);
+					assertValid(images, groups, packing);
+					resetPlacements(images, placed);
+				}
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testSearchUsesFewerTilesets() throws Exception {
+		List<TileImage> images = new ArrayList<TileImage>();
+		images.add(createTileImage(3, TILESET_SIZE));
+		images.add(createTileImage(3, TILESET_SIZE));
+		images.add(createTileImage(5, TILESET_SIZE));
+		images.add(createTileImage(5, TILESET_SIZE));
+		OfflinePacker packer = new OfflinePacker(context, images, null);
+		OfflinePacker.Packing packing = packer.pack(PackingOrder.NONE, null);
+		Assert.assertEquals(3, packing.getTilesetCount());
+
+		packing = packer.search(packing, 100, 4, 0L, 0L, null);
+		Assert.assertEquals(2, packing.getTilesetCount());
+		Assert.assertTrue(packing.getSearchRounds() > 0);
+		Assert.assertTrue(packing.getSearchRounds() < 100);
+		Assert.assertFalse(packing.isTimeBudgetReached());
+	}
+
+	@Test
+	public void testSearchStopsAtTimeBudget() throws Exception {
+		// Three 5 wide strips always need three tilesets but fill only two
+		List<TileImage> images = new ArrayList<TileImage>();
+		images.add(createTileImage(5, TILESET_SIZE));
+		images.add(createTileImage(5, TILESET_SIZE));
+		images.add(createTileImage(5, TILESET_SIZE));
+		OfflinePacker packer = new OfflinePacker(context, images, null);
+		OfflinePacker.Packing packing = packer.search(packer.pack(PackingOrder.NONE, null), Integer.MAX_VALUE, 4,
+				1L, 0L, null);
+		Assert.assertEquals(3, packing.getTilesetCount());
+		Assert.assertTrue(packing.getSearchRounds() > 0);
+		Assert.assertTrue(packing.isTimeBudgetReached());
+
+		packing = packer.search(packer.pack(PackingOrder.NONE, null), 3, 4, 0L, 0L, null);
+		Assert.assertEquals(3, packing.getSearchRounds());
+		Assert.assertFalse(packing.isTimeBudgetReached());
+	}
+
+	@Test
+	public void testSearchRoundsFromTimeBudget() throws Exception {
+		Random random = new Random(3);
+		List<TileImage> images = new ArrayList<TileImage>();
+		for (int i = 0; i < 40; i++) {
+			images.add(createTileImage(1 + random.nextInt(4), 1 + random.nextInt(4)));
+		}
+		OfflinePacker packer = new OfflinePacker(context, images, null);
+		Assert.assertEquals(0, packer.getSearchRounds(0L));
+		Assert.assertEquals(1, packer.getSearchRounds(1L));
+		final int rounds = packer.getSearchRounds(1000L);
+		Assert.assertTrue(rounds > 1);
+		Assert.assertEquals(rounds, packer.getSearchRounds(1000L));
+		Assert.assertTrue(packer.getSearchRounds(2000L) > rounds);
+
+		images = new ArrayList<TileImage>();
+		images.add(createTileImage(1, 1));
+		Assert.assertEquals(0, new OfflinePacker(context, images, null).getSearchRounds(1000L));
+	}
+
+	@Test
+	public void testSearchRequiresChains() throws Exception {
+		List<TileImage> images = new ArrayList<TileImage>();
+		images.add(createTileImage(1, 1));
+		images.add(createTileImage(1, 1));
+		OfflinePacker packer = new OfflinePacker(context, images, null);
+		try {
+			packer.search(packer.pack(PackingOrder.NONE, null), 1, 0, 0L, 0L, null);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testSearchIsDeterministic() throws Exception {
+		Random random = new Random(7);
+		List<TileImage> images = new ArrayList<TileImage>();
+		List<String> groups = new ArrayList<String>();
+		for (int i = 0; i < 60; i++) {
+			images.add(createTileImage(1 + random.nextInt(4), 1 + random.nextInt(4)));
+			groups.add(String.valueOf(random.nextInt(2)));
+		}
+		TileImage placed = images.get(7);
+		placed.setTileset(1);
+		placed.setTilesetX(2);
+		placed.setTilesetY(3);
+		OfflinePacker packer = new OfflinePacker(context, images, groups);
+		OfflinePacker.Packing initial = packer.pack(PackingOrder.NONE, null);
+
+		int[] expected = getPlacements(images, packer.search(initial, 4, 3, 0L, 11L, null));
+		resetPlacements(images, placed);
+		for (int threads = 1; threads <= 4; threads += 3) {
+			ExecutorService executorService = Executors.newFixedThreadPool(threads);
+			try {
+				OfflinePacker.Packing packing = packer.search(initial, 4, 3, 0L, 11L, executorService);
+				Assert.assertTrue(packing.getTilesetCount() <= initial.getTilesetCount());
+				Assert.assertTrue(Arrays.equals(expected, getPlacements(images, packing)));
+				resetPlacements(images, placed);
+				assertValid(images, groups, packing);
+				resetPlacements(images, placed);
+			} finally {
+				executorService.shutdownNow();
+			}
+		}
+	}
+
+	private int[] getPlacements(List<TileImage> images, OfflinePacker.Packing packing) {
+		packing.apply();
+		int[] result = new int[images.size() * 3];
+		for (int i = 0; i < images.size(); i++) {
+			result[i * 3] = images.get(i).getTileset();
+			result[(i * 3) + 1] = images.get(i).getTilesetX();
+			result[(i * 3) + 2] = images.get(i).getTilesetY();
+		}
+		return result;
+	}
+
+	private void assertValid(List<TileImage> images, List<String> groups, OfflinePacker.Packing packing) {
+		List<TileImage> result = packing.apply();
+		Assert.assertEquals(images.size(), result.size());
+		Assert.assertEquals(1, images.get(7).getTileset());
+		Assert.assertEquals(2, images.get(7).getTilesetX());
+		Assert.assertEquals(3, images.get(7).getTilesetY());
+
+		boolean[] occupied = new boolean[packing.getTilesetCount() * TILESET_SIZE * TILESET_SIZE];
+		String[] tilesetGroups = new String[packing.getTilesetCount()];
+		for (int i = 1; i < result.size(); i++) {
+			Assert.assertTrue(result.get(i - 1).getTileset() <= result.get(i).getTileset());
+		}
+		for (int i = 0; i < images.size(); i++) {
+			TileImage image = images.get(i);
+			Assert.assertTrue(image.isPlaced());
+			Assert.assertTrue(image.getTilesetX() + image.getHorizontalTileCount() <= TILESET_SIZE);
+			Assert.assertTrue(image.getTilesetY() + image.getVerticalTileCount() <= TILESET_SIZE);
+			if (tilesetGroups[image.getTileset()] == null) {
+				tilesetGroups[image.getTileset()] = groups.get(i);
+			}
+			Assert.assertEquals(tilesetGroups[image.getTileset()], groups.get(i));
+			for (int x = 0; x < image.getHorizontalTileCount(); x++) {
+				for (int y = 0; y < image.getVerticalTileCount(); y++) {
+					int index = (image.getTileset() * TILESET_SIZE * TILESET_SIZE)
+							+ ((image.getTilesetY() + y) * TILESET_SIZE) + image.getTilesetX() + x;
+					Assert.assertFalse(occupied[index]);
+					occupied[index] = true;
+				}
+			}
+		}
+	}
+
+	private void resetPlacements(List<TileImage> images, TileImage placed) {
+		for (TileImage image : images) {
+			if (image == placed) {
+				continue;
+			}
+			image.setTileset(0);
+			image.setTilesetX(-1);
+			image.setTilesetY(-1);
+		}
+	}
+
+
+	private TileImage createTileImage(int widthInTiles, int heightInTiles) {
+		TilePlacement placement = new TilePlacement();
+		placement.setSubImageWidth(widthInTiles);
+		placement.setSubImageHeight(heightInTiles);
+		return new TileImage(context, new TileConfig(), null, placement);
+	}
+}
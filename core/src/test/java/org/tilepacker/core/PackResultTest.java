@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link PackResult}
+ * 
+ * @author Thomas Cashman
+ */
+public class PackResultTest {
+
+	@Test
+	public void testOccupancy() {
+		PackResult result = new PackResult();
+		Assert.assertEquals(0.0, result.getOccupancy(), 0.0);
+
+		result.addTileset(new PackResult.TilesetResult(0, "0.png", false, 48, 64, 5, 100));
+		result.addTileset(new PackResult.TilesetResult(1, "1.png", true, 16, 64, 3, 0));
+		Assert.assertEquals(0.5, result.getOccupancy(), 0.0);
+		Assert.assertEquals(16, result.getTilesets().get(0).getWastedTiles());
+		Assert.assertEquals(0.25, result.getTilesets().get(1).getOccupancy(), 0.0);
+	}
+
+	@Test
+	public void testToJson() {
+		PackResult result = new PackResult();
+		result.addPhaseNanos(PackPhase.SCAN, 1500000L);
+		result.addPhaseNanos(PackPhase.SCAN, 500000L);
+		result.addPhaseNanos(PackPhase.CONFIG_WRITE, 250L);
+		result.setTotalNanos(3000000000L);
+		result.addImagePacked();
+		result.addImageSplit();
+		result.addBytesWritten(1234);
+		result.setSearchRounds(7, 3, true);
+		result.setImageCacheStatistics(1, 2, 3);
+		result.addTileset(new PackResult.TilesetResult(0, "a\"b\\c.png", false, 3, 4, 2, 1234));
+
+		Assert.assertEquals(2000000L, result.getPhaseNanos(PackPhase.SCAN));
+		String json = result.toJson();
+		Assert.assertTrue(json.contains("\"totalMillis\": 3000.000,"));
+		Assert.assertTrue(json.contains("\"scan\": 2.000,"));
+		Assert.assertTrue(json.contains("\"configWrite\": 0.000\n"));
+		Assert.assertTrue(json.contains("\"imagesPacked\": 1,"));
+		Assert.assertTrue(json.contains("\"imageSplits\": 1,"));
+		Assert.assertTrue(json.contains("\"searchRounds\": 7,"));
+		Assert.assertTrue(json.contains("\"searchChains\": 3,"));
+		Assert.assertTrue(json.contains("\"searchTimeBudgetReached\": true,"));
+		Assert.assertTrue(json.contains("\"bytesWritten\": 1234,"));
+		Assert.assertTrue(json.contains("\"occupancy\": 0.7500,"));
+		Assert.assertTrue(json.contains("\"hits\": 1, \"misses\": 2, \"evictions\": 3"));
+		Assert.assertTrue(json.contains("{ \"index\": 0, \"file\": \"a\\\"b\\\\c.png\", \"skipped\": false, \"usedTiles\": 3, "
+				+ "\"totalTiles\": 4, \"wastedTiles\": 1, \"occupancy\": 0.7500, \"peakFreeAreas\": 2, \"bytesWritten\": 1234 }"));
+	}
+
+	@Test
+	public void testToJsonWithoutTilesets() {
+		Assert.assertTrue(new PackResult().toJson().contains("\"tilesets\": []\n}"));
+	}
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link PackingContext}
+ * 
+ * @author Thomas Cashman
+ */
+public class PackingContextTest {
+
+	@Test
+	public void testCopiesConfig() {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setTileWidth(16);
+		config.setTileHeight(8);
+		config.setTilePadding(2);
+		config.setTilesetWidth(200);
+		config.setTilesetHeight(100);
+		config.setPackingAlgorithm("skyline");
+		config.setPackingOrder("max_side");
+		config.setPackingSearchRounds(20);
+		config.setPackingSearchChains(3);
+		config.setPackingTimeBudgetMillis(1500L);
+		config.setPackingSeed(3L);
+		config.setImageSplitting("Sheet");
+
+		PackingContext context = new PackingContext(config, null);
+		config.setTileWidth(32);
+		config.setTilesetHeight(500);
+
+		Assert.assertEquals(16, context.getTileWidth());
+		Assert.assertEquals(8, context.getTileHeight());
+		Assert.assertEquals(2, context.getTilePadding());
+		Assert.assertEquals(PackingAlgorithm.SKYLINE, context.getPackingAlgorithm());
+		Assert.assertEquals(PackingOrder.MAX_SIDE, context.getPackingOrder());
+		Assert.assertEquals(20, context.getPackingSearchRounds());
+		Assert.assertEquals(3, context.getPackingSearchChains());
+		Assert.assertEquals(1500L, context.getPackingTimeBudgetMillis());
+		Assert.assertEquals(3L, context.getPackingSeed());
+		Assert.assertEquals(ImageSplitting.SHEET, context.getImageSplitting());
+		Assert.assertEquals(10, context.getTilesetWidthInTiles());
+		Assert.assertEquals(8, context.getTilesetHeightInTiles());
+		Assert.assertTrue(context.isBlockAligned());
+
+		config.setTilePadding(1);
+		Assert.assertFalse(new PackingContext(config, null).isBlockAligned());
+	}
+
+	@Test
+	public void testRenderSettings() {
+		TilePackerConfig config = new TilePackerConfig();
+		String renderSettings = new PackingContext(config, null).getRenderSettings();
+		Assert.assertEquals(renderSettings, new PackingContext(config, null).getRenderSettings());
+
+		config.setBackgroundColor("0,0,0");
+		Assert.assertFalse(renderSettings.equals(new PackingContext(config, null).getRenderSettings()));
+
+		renderSettings = new PackingContext(config, null).getRenderSettings();
+		config.setPngCompressionLevel(9);
+		Assert.assertFalse(renderSettings.equals(new PackingContext(config, null).getRenderSettings()));
+	}
+
+	@Test
+	public void testChunkedPngEncodingIgnoresProcessorCount() {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setEncoderThreads(1);
+		PackingContext context = new PackingContext(config, null);
+		Assert.assertFalse(context.isChunkedPngEncoding());
+		final String serialSettings = context.getRenderSettings();
+
+		config.setEncoderThreads(0);
+		final String allProcessorsSettings = new PackingContext(config, null).getRenderSettings();
+		config.setEncoderThreads(2);
+		context = new PackingContext(config, null);
+		Assert.assertTrue(context.isChunkedPngEncoding());
+		Assert.assertEquals(allProcessorsSettings, context.getRenderSettings());
+		Assert.assertFalse(serialSettings.equals(context.getRenderSettings()));
+	}
+
+	@Test
+	public void testPngSettings() {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setPngFilter("paeth");
+		config.setEncoderThreads(0);
+		PackingContext context = new PackingContext(config, null);
+		Assert.assertEquals(PngFilter.PAETH, context.getPngFilter());
+		Assert.assertEquals(Runtime.getRuntime().availableProcessors(), context.getEncoderThreads());
+		Assert.assertTrue(context.isChunkedPngEncoding());
+
+		config.setPngCompressionLevel(10);
+		try {
+			new PackingContext(config, null);
+			Assert.fail();
+		} catch (TilePackerException e) {
+		}
+	}
+
+	@Test
+	public void testTearingRequiresPadding() {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setPreventTearing(true);
+		config.setTilePadding(0);
+		try {
+			new PackingContext(config, null);
+			Assert.fail();
+		} catch (TilePackerException e) {
+		}
+
+		config.setTilePadding(1);
+		Assert.assertTrue(new PackingContext(config, null).isPreventTearing());
+	}
+
+	@Test
+	public void testNegativePackingSearchRounds() {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setPackingSearchRounds(-1);
+		try {
+			new PackingContext(config, null);
+			Assert.fail();
+		} catch (TilePackerException e) {
+		}
+	}
+
+	@Test
+	public void testNegativePackingTimeBudget() {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setPackingTimeBudgetMillis(-1L);
+		try {
+			new PackingContext(config, null);
+			Assert.fail();
+		} catch (TilePackerException e) {
+		}
+	}
+
+	@Test
+	public void testNegativePackingSearchChains() {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setPackingSearchChains(-1);
+		try {
+			new PackingContext(config, null);
+			Assert.fail();
+		} catch (TilePackerException e) {
+		}
+	}
+
+	@Test
+	public void testDdsCellsAreBlockAligned() {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setTileWidth(15);
+		config.setTileHeight(8);
+		config.setTilePadding(1);
+		config.setTilesetWidth(64);
+		config.setTilesetHeight(64);
+
+		PackingContext context = new PackingContext(config, null);
+		Assert.assertEquals(17, context.getCellWidth());
+		Assert.assertEquals(10, context.getCellHeight());
+		Assert.assertEquals(3, context.getTilesetWidthInTiles());
+		Assert.assertEquals(6, context.getTilesetHeightInTiles());
+		Assert.assertFalse(context.isBlockAligned());
+
+		config.setOutputFormat("DDS");
+		context = new PackingContext(config, null);
+		Assert.assertEquals(20, context.getCellWidth());
+		Assert.assertEquals(12, context.getCellHeight());
+		Assert.assertEquals(3, context.getTilesetWidthInTiles());
+		Assert.assertEquals(5, context.getTilesetHeightInTiles());
+		Assert.assertTrue(context.isBlockAligned());
+
+		config.setOutputFormat("KTX");
+		context = new PackingContext(config, null);
+		Assert.assertEquals(20, context.getCellWidth());
+		Assert.assertEquals(12, context.getCellHeight());
+		Assert.assertTrue(context.isBlockAligned());
+	}
+
+	@Test
+	public void testKtxCompression() {
+		TilePackerConfig config = new TilePackerConfig();
+		Assert.assertEquals(KtxWriter.DEFAULT_COMPRESSION, new PackingContext(config, null).getKtxCompression());
+		String renderSettings = new PackingContext(config, null).getRenderSettings();
+
+		config.setKtxCompression("etc2");
+		Assert.assertFalse(renderSettings.equals(new PackingContext(config, null).getRenderSettings()));
+
+		config.setKtxCompression("astc");
+		try {
+			new PackingContext(config, null);
+			Assert.fail();
+		} catch (TilePackerException e) {
+		}
+	}
+}
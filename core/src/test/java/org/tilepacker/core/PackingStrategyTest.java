@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link PackingStrategy} implementations
+ * 
+ * @author Thomas Cashman
+ */
+public class PackingStrategyTest {
+	private static final int WIDTH = 20;
+	private static final int HEIGHT = 16;
+
+	@Test
+	public void testInsertedAreasDoNotOverlap() {
+		for (PackingAlgorithm algorithm : PackingAlgorithm.values()) {
+			for (long seed = 0; seed < 10; seed++) {
+				final Random random = new Random(seed);
+				final PackingStrategy strategy = algorithm.createStrategy(WIDTH, HEIGHT);
+				final List<Rectangle> used = new ArrayList<Rectangle>();
+
+				for (int i = 0; i < 200; i++) {
+					Rectangle rectangle = strategy.insert(1 + random.nextInt(4), 1 + random.nextInt(4));
+					if (rectangle != null) {
+						assertValidPlacement(algorithm, used, rectangle);
+						used.add(rectangle);
+					}
+				}
+				Assert.assertFalse(algorithm.name(), used.isEmpty());
+			}
+		}
+	}
+
+	@Test
+	public void testOccupiedAreasAreNotReused() {
+		for (PackingAlgorithm algorithm : PackingAlgorithm.values()) {
+			final PackingStrategy strategy = algorithm.createStrategy(WIDTH, HEIGHT);
+			final List<Rectangle> used = new ArrayList<Rectangle>();
+			used.add(new Rectangle(0, 0, 3, 3));
+			used.add(new Rectangle(10, 5, 4, 2));
+			for (Rectangle rectangle : used) {
+				strategy.occupy(rectangle);
+			}
+
+			Rectangle rectangle = null;
+			while ((rectangle = strategy.insert(2, 2)) != null) {
+				assertValidPlacement(algorithm, used, rectangle);
+				used.add(rectangle);
+			}
+			Assert.assertTrue(algorithm.name(), used.size() > 2);
+		}
+	}
+
+	@Test
+	public void testSingleTilesFillArea() {
+		for (PackingAlgorithm algorithm : PackingAlgorithm.values()) {
+			final PackingStrategy strategy = algorithm.createStrategy(WIDTH, HEIGHT);
+			final List<Rectangle> used = new ArrayList<Rectangle>();
+			for (int i = 0; i < WIDTH * HEIGHT; i++) {
+				Assert.assertFalse(algorithm.name(), strategy.isFull());
+				Rectangle rectangle = strategy.insert(1, 1);
+				Assert.assertNotNull(algorithm.name(), rectangle);
+				assertValidPlacement(algorithm, used, rectangle);
+				used.add(rectangle);
+			}
+			Assert.assertTrue(algorithm.name(), strategy.isFull());
+			Assert.assertNull(algorithm.name(), strategy.insert(1, 1));
+		}
+	}
+
+	@Test
+	public void testInsertTooLarge() {
+		for (PackingAlgorithm algorithm : PackingAlgorithm.values()) {
+			final PackingStrategy strategy = algorithm.createStrategy(WIDTH, HEIGHT);
+			Assert.assertNull(algorithm.name(), strategy.insert(WIDTH + 1, 1));
+			Assert.assertNull(algorithm.name(), strategy.insert(1, HEIGHT + 1));
+			Assert.assertNotNull(algorithm.name(), strategy.insert(WIDTH, HEIGHT));
+			Assert.assertTrue(algorithm.name(), strategy.isFull());
+		}
+	}
+
+	@Test
+	public void testFromName() {
+		Assert.assertEquals(PackingAlgorithm.DEFAULT, PackingAlgorithm.fromName(null));
+		Assert.assertEquals(PackingAlgorithm.MAXRECTS, PackingAlgorithm.fromName("maxrects"));
+		Assert.assertEquals(PackingAlgorithm.SKYLINE, PackingAlgorithm.fromName(" SKYLINE "));
+		try {
+			PackingAlgorithm.fromName("shelf");
+			Assert.fail();
+		} catch (TilePackerException e) {
+		}
+	}
+
+	private void assertValidPlacement(PackingAlgorithm algorithm, List<Rectangle> used, Rectangle rectangle) {
+		Assert.assertTrue(algorithm.name(), rectangle.getX() >= 0 && rectangle.getY() >= 0);
+		Assert.assertTrue(algorithm.name(), rectangle.getMaxX() < WIDTH && rectangle.getMaxY() < HEIGHT);
+		for (Rectangle other : used) {
+			Assert.assertFalse(algorithm.name() + " " + rectangle + " overlaps " + other, rectangle.intersects(other));
+		}
+	}
+}
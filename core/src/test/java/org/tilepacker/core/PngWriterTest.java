@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link PngWriter}
+ * 
+ * @author Thomas Cashman
+ */
+public class PngWriterTest {
+
+	@Test
+	public void testWriteRowsInBands() throws Exception {
+		final int width = 37;
+		final int height = 29;
+		final Random random = new Random(7);
+		final int[] pixels = new int[width * height];
+		for (int i = 0; i < pixels.length; i++) {
+			switch (random.nextInt(3)) {
+			case 0:
+				pixels[i] = random.nextInt();
+				break;
+			case 1:
+				pixels[i] = i > 0 ? pixels[i - 1] : 0;
+				break;
+			default:
+				pixels[i] = i >= width ? pixels[i - width] + 1 : 0;
+				break;
+			}
+		}
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		PngWriter pngWriter = new PngWriter(outputStream, width, height);
+		pngWriter.writeRows(pixels, 0, width, 10);
+		pngWriter.writeRows(pixels, width * 10, width, 1);
+		pngWriter.writeRows(pixels, width * 11, width, height - 11);
+		pngWriter.finish();
+
+		BufferedImage result = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+		Assert.assertEquals(width, result.getWidth());
+		Assert.assertEquals(height, result.getHeight());
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				Assert.assertEquals(pixels[(y * width) + x], result.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testOutputIsDeterministic() throws Exception {
+		final int width = 16;
+		final int height = 8;
+		final int[] pixels = new int[width * height];
+		final Random random = new Random(3);
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = random.nextInt();
+		}
+
+		byte[] first = write(pixels, width, height);
+		Assert.assertTrue(Arrays.equals(first, write(pixels, width, height)));
+
+		// Only critical chunks are written
+		DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(first));
+		inputStream.skipBytes(8);
+		List<String> chunkTypes = new ArrayList<String>();
+		while (inputStream.available() > 0) {
+			int length = inputStream.readInt();
+			byte[] chunkType = new byte[4];
+			inputStream.readFully(chunkType);
+			chunkTypes.add(new String(chunkType, "US-ASCII"));
+			inputStream.skipBytes(length + 4);
+		}
+		Assert.assertEquals(Arrays.asList("IHDR", "IDAT", "IEND"), chunkTypes);
+	}
+
+	@Test
+	public void testCompressionLevelsAndFilters() throws Exception {
+		final int width = 23;
+		final int height = 17;
+		final int[] pixels = createPixels(new Random(11), width, height);
+		for (int compressionLevel = 0; compressionLevel <= 9; compressionLevel += 3) {
+			for (PngFilter filter : PngFilter.values()) {
+				assertDecodesTo(pixels, width, height, write(pixels, width, height, compressionLevel, filter, null));
+			}
+		}
+
+		try {
+			new PngWriter(new ByteArrayOutputStream(), 4, 4, 10, PngFilter.ADAPTIVE, null);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testParallelDeflate() throws Exception {
+		final int width = 200;
+		final int rowsPerChunk = PngWriter.PARALLEL_CHUNK_LENGTH / ((width * 4) + 1);
+		final Random random = new Random(5);
+		final ExecutorService singleThread = Executors.newSingleThreadExecutor();
+		final ExecutorService multipleThreads = Executors.newFixedThreadPool(4);
+		try {
+			for (int height : new int[] { 1, rowsPerChunk, (rowsPerChunk * 3) + 7 }) {
+				final int[] pixels = createPixels(random, width, height);
+				for (int compressionLevel : new int[] { 0, 1, 6, 9 }) {
+					byte[] result = write(pixels, width, height, compressionLevel, PngFilter.ADAPTIVE, multipleThreads);
+					assertDecodesTo(pixels, width, height, result);
+					// Chunk boundaries do not depend on the amount of threads
+					Assert.assertTrue(Arrays.equals(result,
+							write(pixels, width, height, compressionLevel, PngFilter.ADAPTIVE, singleThread)));
+				}
+			}
+		} finally {
+			singleThread.shutdownNow();
+			multipleThreads.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testChunkedDeflateWithoutThreads() throws Exception {
+		final int width = 200;
+		final int height = ((PngWriter.PARALLEL_CHUNK_LENGTH / ((width * 4) + 1)) * 2) + 3;
+		final int[] pixels = createPixels(new Random(6), width, height);
+		final ExecutorService multipleThreads = Executors.newFixedThreadPool(4);
+		try {
+			byte[] result = write(pixels, width, height, true, null);
+			assertDecodesTo(pixels, width, height, result);
+			// A single processor machine encodes the same bytes as any other
+			Assert.assertTrue(Arrays.equals(result, write(pixels, width, height, true, multipleThreads)));
+			Assert.assertFalse(Arrays.equals(result, write(pixels, width, height, false, null)));
+		} finally {
+			multipleThreads.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testRowCountIsChecked() throws Exception {
+		PngWriter pngWriter = new PngWriter(new ByteArrayOutputStream(), 4, 4);
+		try {
+			pngWriter.writeRows(new int[20], 0, 4, 5);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+
+		pngWriter.writeRows(new int[16], 0, 4, 3);
+		try {
+			pngWriter.finish();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	private byte[] write(int[] pixels, int width, int height) throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		PngWriter pngWriter = new PngWriter(outputStream, width, height);
+		pngWriter.writeRows(pixels, 0, width, height);
+		pngWriter.finish();
+		return outputStream.toByteArray();
+	}
+
+	private byte[] write(int[] pixels, int width, int height, int compressionLevel, PngFilter filter,
+			ExecutorService executorService) throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		PngWriter pngWriter = new PngWriter(outputStream, width, height, compressionLevel, filter, executorService);
+		for (int y = 0; y < height; y += 50) {
+			pngWriter.writeRows(pixels, y * width, width, Math.min(50, height - y));
+		}
+		pngWriter.finish();
+		return outputStream.toByteArray();
+	}
+
+	private byte[] write(int[] pixels, int width, int height, boolean chunked, ExecutorService executorService)
+			throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		PngWriter pngWriter = new PngWriter(outputStream, width, height, PngWriter.DEFAULT_COMPRESSION_LEVEL,
+				PngFilter.ADAPTIVE, chunked, executorService);
+		pngWriter.writeRows(pixels, 0, width, height);
+		pngWriter.finish();
+		return outputStream.toByteArray();
+	}
+
+	private int[] createPixels(Random random, int width, int height) {
+		final int[] pixels = new int[width * height];
+		for (int i = 0; i < pixels.length; i++) {
+			if (random.nextInt(4) == 0) {
+				pixels[i] = random.nextInt();
+			} else if (i >= width) {
+				pixels[i] = pixels[i - width];
+			}
+		}
+		return pixels;
+	}
+
+	private void assertDecodesTo(int[] pixels, int width, int height, byte[] png) throws Exception {
+		BufferedImage result = ImageIO.read(new ByteArrayInputStream(png));
+		Assert.assertEquals(width, result.getWidth());
+		Assert.assertEquals(height, result.getHeight());
+		int[] decoded = result.getRGB(0, 0, width, height, null, 0, width);
+		Assert.assertTrue(Arrays.equals(pixels, decoded));
+	}
+}
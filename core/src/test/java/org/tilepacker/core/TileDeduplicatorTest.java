@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link TileDeduplicator}
+ * 
+ * @author Thomas Cashman
+ */
+public class TileDeduplicatorTest {
+	private static final int TILE_SIZE = 8;
+	private static final int RED = 0xFFFF0000;
+	private static final int GREEN = 0xFF00FF00;
+	private static final int BLUE = 0xFF0000FF;
+
+	private PackingContext context;
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		context = TilePackerTestUtils.createContext(TILE_SIZE);
+		directory = TilePackerTestUtils.createTempDirectory();
+	}
+
+	@After
+	public void teardown() {
+		TilePackerTestUtils.delete(directory);
+	}
+
+	@Test
+	public void testDeduplicate() throws Exception {
+		TileImage first = createTileImage("first.png", 2, 1, RED, BLUE);
+		TileImage second = createTileImage("second.png", 2, 2, RED, GREEN, BLUE, RED);
+
+		TileDeduplicator tileDeduplicator = new TileDeduplicator(context);
+		List<TileImage> firstResult = tileDeduplicator.deduplicate(first, TileDeduplicator.hashTiles(first), "");
+		Assert.assertEquals(1, firstResult.size());
+		Assert.assertSame(first, firstResult.get(0));
+
+		List<TileImage> secondResult = tileDeduplicator.deduplicate(second, TileDeduplicator.hashTiles(second), "");
+		Assert.assertEquals(1, secondResult.size());
+		Assert.assertEquals(1, secondResult.get(0).getSubImageX());
+		Assert.assertEquals(0, secondResult.get(0).getSubImageY());
+		Assert.assertEquals(1, secondResult.get(0).getHorizontalTileCount());
+		Assert.assertEquals(1, secondResult.get(0).getVerticalTileCount());
+		Assert.assertEquals(3, tileDeduplicator.getTotalDuplicates());
+
+		place(first, 3, 4);
+		place(secondResult.get(0), 0, 0);
+		tileDeduplicator.storeAliasPlacements();
+
+		List<TilePlacement> placements = second.getTileConfig().getPlacement();
+		Assert.assertEquals(4, placements.size());
+		assertAlias(placements.get(1), 0, 0, 3, 4);
+		assertAlias(placements.get(2), 0, 1, 4, 4);
+		assertAlias(placements.get(3), 1, 1, 3, 4);
+	}
+
+	@Test
+	public void testDeduplicateWithinImage() throws Exception {
+		TileImage image = createTileImage("image.png", 3, 1, GREEN, GREEN, BLUE);
+
+		TileDeduplicator tileDeduplicator = new TileDeduplicator(context);
+		List<TileImage> result = tileDeduplicator.deduplicate(image, TileDeduplicator.hashTiles(image), "");
+		Assert.assertEquals(2, result.size());
+		Assert.assertEquals(0, result.get(0).getSubImageX());
+		Assert.assertEquals(2, result.get(1).getSubImageX());
+		Assert.assertEquals(1, tileDeduplicator.getTotalDuplicates());
+	}
+
+	@Test
+	public void testDeduplicateSkipsExcludedTiles() throws Exception {
+		TileImage image = createTileImage("image.png", 3, 2, RED, GREEN, 0, RED, GREEN, 0);
+
+		TileDeduplicator tileDeduplicator = new TileDeduplicator(context);
+		boolean[] excludedTiles = new boolean[] { false, false, true, false, false, true };
+		List<TileImage> result = tileDeduplicator.deduplicate(image, TileDeduplicator.hashTiles(image), "",
+				excludedTiles);
+		Assert.assertEquals(2, result.size());
+		Assert.assertEquals(0, result.get(0).getSubImageX());
+		Assert.assertEquals(1, result.get(1).getSubImageX());
+		Assert.assertEquals(0, result.get(1).getSubImageY());
+		Assert.assertEquals(2, tileDeduplicator.getTotalDuplicates());
+
+		TileImage other = createTileImage("other.png", 3, 1, BLUE, BLUE, 0);
+		tileDeduplicator = new TileDeduplicator(context);
+		result = tileDeduplicator.deduplicate(other, TileDeduplicator.hashTiles(other), "",
+				new boolean[] { false, false, true });
+		Assert.assertEquals(1, result.size());
+		Assert.assertEquals(1, result.get(0).getHorizontalTileCount());
+		Assert.assertEquals(1, tileDeduplicator.getTotalDuplicates());
+
+		TileImage unique = createTileImage("unique.png", 3, 1, RED, GREEN, 0);
+		tileDeduplicator = new TileDeduplicator(context);
+		result = tileDeduplicator.deduplicate(unique, TileDeduplicator.hashTiles(unique), "",
+				new boolean[] { false, false, true });
+		Assert.assertEquals(1, result.size());
+		Assert.assertEquals(2, result.get(0).getHorizontalTileCount());
+		Assert.assertEquals(0, tileDeduplicator.getTotalDuplicates());
+	}
+
+	@Test
+	public void testDeduplicateSeparatesGroups() throws Exception {
+		TileImage first = createTileImage("first.png", 1, 1, RED);
+		TileImage second = createTileImage("second.png", 1, 1, RED);
+
+		TileDeduplicator tileDeduplicator = new TileDeduplicator(context);
+		tileDeduplicator.deduplicate(first, TileDeduplicator.hashTiles(first), "a/");
+		List<TileImage> result = tileDeduplicator.deduplicate(second, TileDeduplicator.hashTiles(second), "b/");
+		Assert.assertEquals(1, result.size());
+		Assert.assertSame(second, result.get(0));
+		Assert.assertEquals(0, tileDeduplicator.getTotalDuplicates());
+	}
+
+	@Test
+	public void testPartialTileMatchesTransparentPadding() throws Exception {
+		BufferedImage partialImage = new BufferedImage(TILE_SIZE / 2, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+		TilePackerTestUtils.fill(partialImage, 0, 0, TILE_SIZE / 2, TILE_SIZE, RED);
+		BufferedImage paddedImage = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+		TilePackerTestUtils.fill(paddedImage, 0, 0, TILE_SIZE / 2, TILE_SIZE, RED);
+
+		TileImage partial = TilePackerTestUtils.createTileImage(context, directory, "partial.png", partialImage);
+		TileImage padded = TilePackerTestUtils.createTileImage(context, directory, "padded.png", paddedImage);
+
+		TileDeduplicator tileDeduplicator = new TileDeduplicator(context);
+		tileDeduplicator.deduplicate(partial, TileDeduplicator.hashTiles(partial), "");
+		Assert.assertTrue(tileDeduplicator.deduplicate(padded, TileDeduplicator.hashTiles(padded), "").isEmpty());
+		Assert.assertEquals(1, tileDeduplicator.getTotalDuplicates());
+	}
+
+	private void place(TileImage image, int tilesetX, int tilesetY) {
+		image.setTileset(0);
+		image.setTilesetX(tilesetX);
+		image.setTilesetY(tilesetY);
+		image.storePlacementConfig();
+	}
+
+	private void assertAlias(TilePlacement placement, int subImageX, int subImageY, int tilesetX, int tilesetY) {
+		Assert.assertTrue(placement.isAlias());
+		Assert.assertEquals(subImageX, placement.getSubImageX());
+		Assert.assertEquals(subImageY, placement.getSubImageY());
+		Assert.assertEquals(0, placement.getTileset());
+		Assert.assertEquals(tilesetX, placement.getTilesetX());
+		Assert.assertEquals(tilesetY, placement.getTilesetY());
+	}
+
+	private TileImage createTileImage(String filename, int horizontalTiles, int verticalTiles, int... tileColors)
+			throws Exception {
+		return TilePackerTestUtils.createTileImage(context, directory, filename,
+				TilePackerTestUtils.createTiles(TILE_SIZE, horizontalTiles, verticalTiles, tileColors));
+	}
+}
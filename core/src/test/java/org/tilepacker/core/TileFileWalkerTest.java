@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link TileFileWalker}
+ * 
+ * @author Thomas Cashman
+ */
+public class TileFileWalkerTest {
+	private File directory;
+	private List<String> expected;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("tilepacker-walker").toFile();
+		expected = new ArrayList<String>();
+		createFile("b.png", true);
+		createFile("a.JPG", true);
+		createFile("config.xml", false);
+		createFile("z/c.jpeg", true);
+		createFile("z/notes.txt", false);
+		for (int i = 0; i < 20; i++) {
+			createFile("d" + i + "/e/f" + i + ".png", true);
+		}
+		new File(directory, "empty").mkdirs();
+		Collections.sort(expected);
+	}
+
+	@After
+	public void teardown() {
+		delete(directory);
+	}
+
+	@Test
+	public void testWalk() throws Exception {
+		Assert.assertEquals(expected, new TileFileWalker(null).walk(directory, ""));
+	}
+
+	@Test
+	public void testWalkWithPrefix() throws Exception {
+		List<String> result = new TileFileWalker(null).walk(new File(directory, "z"), "z/");
+		Assert.assertEquals(1, result.size());
+		Assert.assertEquals("z/c.jpeg", result.get(0));
+	}
+
+	@Test
+	public void testWalkConcurrently() throws Exception {
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		try {
+			Assert.assertEquals(expected, new TileFileWalker(executorService).walk(directory, ""));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testPathsMatchRelativePath() throws Exception {
+		for (String path : new TileFileWalker(null).walk(directory, "")) {
+			Assert.assertEquals(TilePacker.getRelativePath(directory, new File(directory, path)), path);
+		}
+	}
+
+	private void createFile(String path, boolean tile) throws Exception {
+		File file = new File(directory, path);
+		file.getParentFile().mkdirs();
+		file.createNewFile();
+		if (tile) {
+			expected.add(path);
+		}
+	}
+
+	private static void delete(File file) {
+		if (file.isDirectory()) {
+			for (File child : file.listFiles()) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -48,7 +48,8 @@ public class TileImageTest {
 		tilePlacement.setSubImageHeight(3);
 		tileConfig.getPlacement().add(tilePlacement);
 		
-		TileImage parentImage = new TileImage(tileConfig, null, tilePlacement);
+		TileImage parentImage = new TileImage(new PackingContext(new TilePackerConfig(), null), tileConfig, null,
+				tilePlacement);
 		
 		TileImage subImage1  = parentImage.getSubImage(0, 0, 2, 3);
 		Assert.assertEquals(0, subImage1.getSubImageX());
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link TilePackerConfig}
+ * 
+ * @author Thomas Cashman
+ */
+public class TilePackerConfigTest {
+
+	@Test
+	public void testTileLookup() {
+		TilePackerConfig config = new TilePackerConfig();
+		TileConfig first = createTileConfig("a.png");
+		config.getTiles().add(first);
+		config.getTiles().add(createTileConfig("sub/b.png"));
+		config.getTiles().add(createTileConfig("a.png"));
+
+		Assert.assertSame(first, config.getTileConfig("a.png"));
+		Assert.assertTrue(config.containsTileConfig("sub/b.png"));
+		Assert.assertTrue(config.containsTileConfig(new File("/tiles"), new File("/tiles/sub/b.png")));
+		Assert.assertFalse(config.containsTileConfig("b.png"));
+
+		// Appended tiles are found without replacing the list
+		TileConfig appended = createTileConfig("c.png");
+		config.getTiles().add(appended);
+		Assert.assertSame(appended, config.getTileConfig("c.png"));
+
+		config.getTiles().clear();
+		Assert.assertFalse(config.containsTileConfig("a.png"));
+		config.getTiles().add(createTileConfig("d.png"));
+		Assert.assertTrue(config.containsTileConfig("d.png"));
+
+		config.setTiles(new ArrayList<TileConfig>());
+		Assert.assertFalse(config.containsTileConfig("d.png"));
+	}
+
+	private TileConfig createTileConfig(String path) {
+		TileConfig tileConfig = new TileConfig();
+		tileConfig.setPath(path);
+		return tileConfig;
+	}
+}
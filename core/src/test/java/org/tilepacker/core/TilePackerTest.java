@@ -27,9 +27,12 @@
 package org.tilepacker.core;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.Random;
 
 import org.jmock.Expectations;
 import org.jmock.Mockery;
@@ -270,4 +273,246 @@ public class TilePackerTest {
 		Assert.assertEquals(imageHeight, subImage1.getHeightInPixels() + subImage2.getHeightInPixels());
 		Assert.assertEquals(tileCount, subImage1.getVerticalTileCount() + subImage2.getVerticalTileCount());
 	}
+	
+	@Test
+	public void testAddToQueueWithSheetSplitting() throws Exception {
+		final int tilesetWidthInTiles = TILESET_WIDTH / TILE_WIDTH;
+		final int tilesetHeightInTiles = TILESET_HEIGHT / TILE_HEIGHT;
+		
+		configFile.delete();
+		config.setImageSplitting("sheet");
+		configFile = TilePackerTestUtils.createTestConfigFile(config);
+		
+		tilePlacement.setSubImageWidth((tilesetWidthInTiles * 2) + 3);
+		tilePlacement.setSubImageHeight(tilesetHeightInTiles + 2);
+		TileImage image = new TileImage(new PackingContext(config, null), tileConfig, null, tilePlacement);
+		
+		final Queue<TileImage> queue = new LinkedList<TileImage>();
+		
+		TilePacker tilePacker = new TilePacker(configFile.getParent(), false);
+		tilePacker.addToQueue(queue, image);
+		
+		Assert.assertEquals(6, queue.size());
+		int [][] expected = new int[][] {
+			{ 0, 0, tilesetWidthInTiles, tilesetHeightInTiles },
+			{ tilesetWidthInTiles, 0, tilesetWidthInTiles, tilesetHeightInTiles },
+			{ tilesetWidthInTiles * 2, 0, 3, tilesetHeightInTiles },
+			{ 0, tilesetHeightInTiles, tilesetWidthInTiles, 2 },
+			{ tilesetWidthInTiles, tilesetHeightInTiles, tilesetWidthInTiles, 2 },
+			{ tilesetWidthInTiles * 2, tilesetHeightInTiles, 3, 2 }
+		};
+		for(int i = 0; i < expected.length; i++) {
+			TilePlacement placement = queue.poll().getPlacement();
+			Assert.assertEquals(expected[i][0], placement.getSubImageX());
+			Assert.assertEquals(expected[i][1], placement.getSubImageY());
+			Assert.assertEquals(expected[i][2], placement.getSubImageWidth());
+			Assert.assertEquals(expected[i][3], placement.getSubImageHeight());
+		}
+	}
+	
+	@Test
+	public void testConcurrentRunMatchesSequentialRun() throws Exception {
+		assertConcurrentRunMatchesSequentialRun(0);
+	}
+	
+	@Test
+	public void testConcurrentSearchMatchesSequentialSearch() throws Exception {
+		assertConcurrentRunMatchesSequentialRun(3);
+	}
+	
+	@Test
+	public void testConcurrentBudgetSearchMatchesSequentialSearch() throws Exception {
+		assertConcurrentRunMatchesSequentialRun(0, 500L);
+	}
+	
+	private void assertConcurrentRunMatchesSequentialRun(int packingSearchRounds) throws Exception {
+		assertConcurrentRunMatchesSequentialRun(packingSearchRounds, 0L);
+	}
+	
+	private void assertConcurrentRunMatchesSequentialRun(int packingSearchRounds, long packingTimeBudgetMillis)
+			throws Exception {
+		File sequentialDirectory = TilePackerTestUtils.createTempDirectory();
+		File concurrentDirectory = TilePackerTestUtils.createTempDirectory();
+		try {
+			PackResult sequentialResult = packRandomImages(sequentialDirectory, 1, packingSearchRounds,
+					packingTimeBudgetMillis);
+			PackResult concurrentResult = packRandomImages(concurrentDirectory, 4, packingSearchRounds,
+					packingTimeBudgetMillis);
+			Assert.assertEquals(sequentialResult.getSearchRounds(), concurrentResult.getSearchRounds());
+			Assert.assertFalse(sequentialResult.isSearchTimeBudgetReached());
+			Assert.assertFalse(concurrentResult.isSearchTimeBudgetReached());
+			
+			TilePackerConfig sequentialConfig = TilePackerTestUtils.readRunConfig(sequentialDirectory);
+			TilePackerConfig concurrentConfig = TilePackerTestUtils.readRunConfig(concurrentDirectory);
+			Assert.assertEquals(sequentialConfig.getTiles().size(), concurrentConfig.getTiles().size());
+			for(int i = 0; i < sequentialConfig.getTiles().size(); i++) {
+				TileConfig sequentialTile = sequentialConfig.getTiles().get(i);
+				TileConfig concurrentTile = concurrentConfig.getTiles().get(i);
+				Assert.assertEquals(sequentialTile.getPath(), concurrentTile.getPath());
+				Assert.assertEquals(sequentialTile.getPlacement(), concurrentTile.getPlacement());
+			}
+			
+			String [] sequentialFiles = new File(sequentialDirectory, TilePackerTestUtils.OUTPUT_DIRECTORY).list();
+			String [] concurrentFiles = new File(concurrentDirectory, TilePackerTestUtils.OUTPUT_DIRECTORY).list();
+			Arrays.sort(sequentialFiles);
+			Arrays.sort(concurrentFiles);
+			Assert.assertTrue(sequentialFiles.length > 1);
+			Assert.assertTrue(Arrays.equals(sequentialFiles, concurrentFiles));
+			for(String filename : sequentialFiles) {
+				byte [] sequentialBytes = Files.readAllBytes(new File(new File(sequentialDirectory, TilePackerTestUtils.OUTPUT_DIRECTORY), filename).toPath());
+				byte [] concurrentBytes = Files.readAllBytes(new File(new File(concurrentDirectory, TilePackerTestUtils.OUTPUT_DIRECTORY), filename).toPath());
+				Assert.assertTrue(filename, Arrays.equals(sequentialBytes, concurrentBytes));
+			}
+		} finally {
+			TilePackerTestUtils.delete(sequentialDirectory);
+			TilePackerTestUtils.delete(concurrentDirectory);
+		}
+	}
+	
+	@Test
+	public void testRerunInvalidatesStaleAliases() throws Exception {
+		final int red = 0xFFFF0000;
+		final int green = 0xFF00FF00;
+		final int blue = 0xFF0000FF;
+		File directory = TilePackerTestUtils.createTempDirectory();
+		try {
+			TilePackerConfig runConfig = TilePackerTestUtils.createRunConfig(8, 64, 1);
+			runConfig.setDeduplicateTiles(true);
+			TilePackerTestUtils.writeRunConfig(directory, runConfig);
+			File tilesDirectory = new File(directory, TilePackerTestUtils.TILES_DIRECTORY);
+			TilePackerTestUtils.writeTiles(new File(tilesDirectory, "a.png"), 8, new int[][] { { red, green } });
+			TilePackerTestUtils.writeTiles(new File(tilesDirectory, "b.png"), 8, new int[][] { { red } });
+			TilePackerTestUtils.writeTiles(new File(tilesDirectory, "c.png"), 8, new int[][] { { green } });
+			TilePackerTestUtils.run(directory);
+			
+			runConfig = TilePackerTestUtils.readRunConfig(directory);
+			TilePlacement alias = runConfig.getTileConfig("b.png").getPlacement().get(0);
+			Assert.assertTrue(alias.isAlias());
+			Assert.assertEquals("a.png", alias.getCanonicalPath());
+			Assert.assertEquals(runConfig.getTileConfig("a.png").getHash(), alias.getCanonicalHash());
+			Assert.assertTrue(runConfig.getTileConfig("c.png").getPlacement().get(0).isAlias());
+			
+			// The canonical tile changes so b.png must be packed itself
+			TilePackerTestUtils.writeTiles(new File(tilesDirectory, "a.png"), 8, new int[][] { { blue, green } });
+			// The alias itself changes so c.png must be packed itself
+			TilePackerTestUtils.writeTiles(new File(tilesDirectory, "c.png"), 8, new int[][] { { red } });
+			TilePackerTestUtils.run(directory);
+			
+			runConfig = TilePackerTestUtils.readRunConfig(directory);
+			assertPlacedColor(directory, runConfig, "a.png", blue);
+			assertPlacedColor(directory, runConfig, "b.png", red);
+			assertPlacedColor(directory, runConfig, "c.png", red);
+		} finally {
+			TilePackerTestUtils.delete(directory);
+		}
+	}
+	
+	@Test
+	public void testRerunRepacksPaintedEmptyTiles() throws Exception {
+		final int red = 0xFFFF0000;
+		final int green = 0xFF00FF00;
+		File directory = TilePackerTestUtils.createTempDirectory();
+		try {
+			TilePackerConfig runConfig = TilePackerTestUtils.createRunConfig(8, 64, 1);
+			runConfig.setTrimTransparentTiles(true);
+			TilePackerTestUtils.writeRunConfig(directory, runConfig);
+			File imageFile = new File(new File(directory, TilePackerTestUtils.TILES_DIRECTORY), "a.png");
+			TilePackerTestUtils.writeTiles(imageFile, 8, new int[][] { { red, 0 } });
+			TilePackerTestUtils.run(directory);
+			
+			runConfig = TilePackerTestUtils.readRunConfig(directory);
+			Assert.assertEquals(2, runConfig.getTileConfig("a.png").getPlacement().size());
+			int emptyTileX = -1;
+			for(TilePlacement placement : runConfig.getTileConfig("a.png").getPlacement()) {
+				if(placement.isEmpty()) {
+					emptyTileX = placement.getSubImageX();
+				}
+			}
+			Assert.assertEquals(1, emptyTileX);
+			
+			TilePackerTestUtils.writeTiles(imageFile, 8, new int[][] { { red, green } });
+			TilePackerTestUtils.run(directory);
+			
+			runConfig = TilePackerTestUtils.readRunConfig(directory);
+			Assert.assertEquals(1, runConfig.getTileConfig("a.png").getPlacement().size());
+			TilePlacement placement = runConfig.getTileConfig("a.png").getPlacement().get(0);
+			Assert.assertFalse(placement.isEmpty());
+			Assert.assertEquals(2, placement.getSubImageWidth());
+			Assert.assertEquals(red, TilePackerTestUtils.readPlacedColor(directory, runConfig, placement, 0, 0));
+			Assert.assertEquals(green, TilePackerTestUtils.readPlacedColor(directory, runConfig, placement, 1, 0));
+		} finally {
+			TilePackerTestUtils.delete(directory);
+		}
+	}
+	
+	@Test
+	public void testRerunPacksRescannedImagesAroundPlacedImages() throws Exception {
+		final int red = 0xFFFF0000;
+		final int green = 0xFF00FF00;
+		File directory = TilePackerTestUtils.createTempDirectory();
+		try {
+			TilePackerConfig runConfig = TilePackerTestUtils.createRunConfig(8, 64, 1);
+			runConfig.setTrimTransparentTiles(true);
+			TilePackerTestUtils.writeRunConfig(directory, runConfig);
+			File tilesDirectory = new File(directory, TilePackerTestUtils.TILES_DIRECTORY);
+			TilePackerTestUtils.writeTiles(new File(tilesDirectory, "a.png"), 8, new int[][] { { 0 } });
+			TilePackerTestUtils.writeTiles(new File(tilesDirectory, "b.png"), 8, new int[][] { { red } });
+			TilePackerTestUtils.run(directory);
+			
+			// a.png is rescanned without trimming and is read before the
+			// placed b.png, but must not be packed over it
+			runConfig = TilePackerTestUtils.readRunConfig(directory);
+			Assert.assertTrue(runConfig.getTileConfig("a.png").getPlacement().get(0).isEmpty());
+			runConfig.setTrimTransparentTiles(false);
+			TilePackerTestUtils.writeRunConfig(directory, runConfig);
+			TilePackerTestUtils.writeTiles(new File(tilesDirectory, "a.png"), 8, new int[][] { { green } });
+			TilePackerTestUtils.run(directory);
+			
+			runConfig = TilePackerTestUtils.readRunConfig(directory);
+			assertPlacedColor(directory, runConfig, "a.png", green);
+			assertPlacedColor(directory, runConfig, "b.png", red);
+		} finally {
+			TilePackerTestUtils.delete(directory);
+		}
+	}
+	
+	@Test
+	public void testMetricsFileIsWrittenToOutputDirectory() throws Exception {
+		File directory = TilePackerTestUtils.createTempDirectory();
+		try {
+			TilePackerConfig runConfig = TilePackerTestUtils.createRunConfig(8, 64, 1);
+			runConfig.setMetricsFile("metrics.json");
+			TilePackerTestUtils.writeRunConfig(directory, runConfig);
+			TilePackerTestUtils.writeRandomImages(directory, new Random(3), 4, 8);
+			TilePackerTestUtils.run(directory);
+
+			Assert.assertTrue(new File(new File(directory, TilePackerTestUtils.OUTPUT_DIRECTORY), "metrics.json").isFile());
+			Assert.assertFalse(new File(new File(directory, TilePackerTestUtils.TILES_DIRECTORY), "metrics.json").exists());
+		} finally {
+			TilePackerTestUtils.delete(directory);
+		}
+	}
+	
+	private void assertPlacedColor(File directory, TilePackerConfig runConfig, String path, int color)
+			throws Exception {
+		TilePlacement placement = runConfig.getTileConfig(path).getPlacement().get(0);
+		Assert.assertTrue(placement.isPlaced());
+		Assert.assertEquals(0, placement.getSubImageX());
+		Assert.assertEquals(0, placement.getSubImageY());
+		Assert.assertEquals(color, TilePackerTestUtils.readPlacedColor(directory, runConfig, placement));
+	}
+	
+	private PackResult packRandomImages(File directory, int workerThreads, int packingSearchRounds,
+			long packingTimeBudgetMillis) throws Exception {
+		TilePackerConfig runConfig = TilePackerTestUtils.createRunConfig(8, 64, workerThreads);
+		runConfig.setPackingSearchRounds(packingSearchRounds);
+		runConfig.setPackingTimeBudgetMillis(packingTimeBudgetMillis);
+		// Chains are fixed so that the search does not depend on the worker threads
+		runConfig.setPackingSearchChains(4);
+		runConfig.setPackingSeed(5L);
+		runConfig.setAtlasIndex(true);
+		TilePackerTestUtils.writeRunConfig(directory, runConfig);
+		TilePackerTestUtils.writeRandomImages(directory, new Random(7), 40, 8);
+		return TilePackerTestUtils.run(directory);
+	}
 }
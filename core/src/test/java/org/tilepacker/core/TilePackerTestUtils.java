@@ -26,23 +26,193 @@
  */
 package org.tilepacker.core;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Random;
 
-import org.simpleframework.xml.Serializer;
-import org.simpleframework.xml.core.Persister;
+import javax.imageio.ImageIO;
 
 /**
  *
  * @author Thomas Cashman
  */
 public class TilePackerTestUtils {
+	public static final String TILES_DIRECTORY = "tiles";
+	public static final String OUTPUT_DIRECTORY = "out";
 
 	public static File createTestConfigFile(TilePackerConfig tilePackerConfig) throws Exception {
-		File tmpDir = Files.createTempDirectory("tilepacker").toFile();
+		File tmpDir = createTempDirectory();
 		File configFile = new File(tmpDir, "config.xml");
-		Serializer serializer = new Persister();
-		serializer.write(tilePackerConfig, configFile);
+		new ConfigSerializer().write(tilePackerConfig, configFile);
 		return configFile;
 	}
+
+	public static TilePackerConfig createConfig(int tileWidth, int tileHeight) {
+		TilePackerConfig config = new TilePackerConfig();
+		config.setTileWidth(tileWidth);
+		config.setTileHeight(tileHeight);
+		return config;
+	}
+
+	public static PackingContext createContext(int tileSize) {
+		return new PackingContext(createConfig(tileSize, tileSize), null);
+	}
+
+	public static PackingContext createContext(int tileSize, int tilesetWidthInTiles, int tilesetHeightInTiles) {
+		TilePackerConfig config = createConfig(tileSize, tileSize);
+		config.setTilesetWidth(tilesetWidthInTiles * tileSize);
+		config.setTilesetHeight(tilesetHeightInTiles * tileSize);
+		return new PackingContext(config, null);
+	}
+
+	/**
+	 * Writes an image to a directory as a PNG and returns it as a
+	 * {@link TileImage} with a path relative to the directory
+	 */
+	public static TileImage createTileImage(PackingContext context, File directory, String filename,
+			BufferedImage image) throws IOException {
+		File file = new File(directory, filename);
+		writeImage(file, image);
+
+		TileConfig tileConfig = new TileConfig();
+		tileConfig.setPath(filename);
+		return new TileImage(context, tileConfig, file);
+	}
+
+	/**
+	 * Creates an image of solid color tiles in row-major order
+	 */
+	public static BufferedImage createTiles(int tileSize, int horizontalTiles, int verticalTiles, int... tileColors) {
+		BufferedImage image = new BufferedImage(horizontalTiles * tileSize, verticalTiles * tileSize,
+				BufferedImage.TYPE_INT_ARGB);
+		for(int i = 0; i < tileColors.length; i++) {
+			fill(image, (i % horizontalTiles) * tileSize, (i / horizontalTiles) * tileSize, tileSize, tileSize,
+					tileColors[i]);
+		}
+		return image;
+	}
+
+	public static void fill(BufferedImage image, int x, int y, int width, int height, int color) {
+		for(int i = x; i < x + width; i++) {
+			for(int j = y; j < y + height; j++) {
+				image.setRGB(i, j, color);
+			}
+		}
+	}
+
+	public static File createTempDirectory() throws IOException {
+		return Files.createTempDirectory("tilepacker").toFile();
+	}
+
+	public static void delete(File file) {
+		File [] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Creates a config for a test run. Tiles are read from the tiles
+	 * directory and tilesets are written to the sibling output directory so
+	 * that reruns do not pick up tilesets as tiles.
+	 */
+	public static TilePackerConfig createRunConfig(int tileSize, int tilesetSize, int workerThreads) {
+		TilePackerConfig config = createConfig(tileSize, tileSize);
+		config.setTilesetWidth(tilesetSize);
+		config.setTilesetHeight(tilesetSize);
+		config.setWorkerThreads(workerThreads);
+		config.setOutputPath("../" + OUTPUT_DIRECTORY);
+		return config;
+	}
+
+	/**
+	 * Writes a config to the tiles directory of a test run
+	 */
+	public static void writeRunConfig(File directory, TilePackerConfig config) throws IOException {
+		File tilesDirectory = new File(directory, TILES_DIRECTORY);
+		tilesDirectory.mkdirs();
+		new ConfigSerializer().write(config, new File(tilesDirectory, "config.xml"));
+	}
+
+	public static TilePackerConfig readRunConfig(File directory) throws IOException {
+		return new ConfigSerializer().read(new File(new File(directory, TILES_DIRECTORY), "config.xml"));
+	}
+
+	public static PackResult run(File directory) throws IOException {
+		return new TilePacker(new File(directory, TILES_DIRECTORY), false).run(TilePackerTestUtils.class.getClassLoader());
+	}
+
+	/**
+	 * Writes opaque images of random sizes and colors to the tiles directory
+	 * of a test run and a sub-directory of it
+	 */
+	public static void writeRandomImages(File directory, Random random, int count, int tileSize) throws IOException {
+		File tilesDirectory = new File(directory, TILES_DIRECTORY);
+		File subDirectory = new File(tilesDirectory, "sub");
+		subDirectory.mkdirs();
+		for(int i = 0; i < count; i++) {
+			BufferedImage image = new BufferedImage((1 + random.nextInt(4)) * tileSize,
+					(1 + random.nextInt(3)) * tileSize, BufferedImage.TYPE_INT_ARGB);
+			for(int x = 0; x < image.getWidth(); x++) {
+				for(int y = 0; y < image.getHeight(); y++) {
+					image.setRGB(x, y, 0xFF000000 | random.nextInt(0xFFFFFF));
+				}
+			}
+			writeImage(new File(i % 2 == 0 ? tilesDirectory : subDirectory, "image" + i + ".png"), image);
+		}
+	}
+
+	public static void writeImage(File file, BufferedImage image) throws IOException {
+		file.getParentFile().mkdirs();
+		ImageIO.write(image, "png", file);
+	}
+
+	public static BufferedImage readImage(File file) throws IOException {
+		return ImageIO.read(file);
+	}
+
+	/**
+	 * Writes an image of solid color tiles, one row per array
+	 */
+	public static void writeTiles(File file, int tileSize, int[][] colors) throws IOException {
+		int[] tileColors = new int[colors.length * colors[0].length];
+		for(int y = 0; y < colors.length; y++) {
+			System.arraycopy(colors[y], 0, tileColors, y * colors[0].length, colors[0].length);
+		}
+		writeImage(file, createTiles(tileSize, colors[0].length, colors.length, tileColors));
+		// Ensure the change is visible to modification time checks
+		file.setLastModified(file.lastModified() + 2000);
+	}
+
+	/**
+	 * Returns the color of the top-left pixel of a placement in the
+	 * tileset it was written to
+	 */
+	public static int readPlacedColor(File directory, TilePackerConfig config, TilePlacement placement)
+			throws IOException {
+		return readPlacedColor(directory, config, placement, 0, 0);
+	}
+
+	/**
+	 * Returns the color of the top-left pixel of a tile within a placement
+	 * in the tileset it was written to
+	 */
+	public static int readPlacedColor(File directory, TilePackerConfig config, TilePlacement placement, int tileX,
+			int tileY) throws IOException {
+		String fileName = placement.getTileset() + ".png";
+		for(TilesetConfig tilesetConfig : config.getTilesets()) {
+			if(tilesetConfig.getIndex() == placement.getTileset() && tilesetConfig.getFile() != null) {
+				fileName = tilesetConfig.getFile();
+			}
+		}
+		BufferedImage tileset = readImage(new File(new File(directory, OUTPUT_DIRECTORY), fileName));
+		PackingContext context = new PackingContext(config, null);
+		return tileset.getRGB(((placement.getTilesetX() + tileX) * context.getCellWidth()) + context.getTilePadding(),
+				((placement.getTilesetY() + tileY) * context.getCellHeight()) + context.getTilePadding());
+	}
 }
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link TileTrimmer}
+ * 
+ * @author Thomas Cashman
+ */
+public class TileTrimmerTest {
+	private static final int TILE_SIZE = 8;
+	private static final int RED = 0xFFFF0000;
+	private static final int TRANSLUCENT = 0x01000000;
+
+	private PackingContext context;
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		context = TilePackerTestUtils.createContext(TILE_SIZE);
+		directory = TilePackerTestUtils.createTempDirectory();
+	}
+
+	@After
+	public void teardown() {
+		TilePackerTestUtils.delete(directory);
+	}
+
+	@Test
+	public void testFindEmptyTiles() throws Exception {
+		BufferedImage image = new BufferedImage((TILE_SIZE * 3) - 2, TILE_SIZE * 2, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, RED);
+		image.setRGB((TILE_SIZE * 2) - 1, (TILE_SIZE * 2) - 1, TRANSLUCENT);
+		image.setRGB((TILE_SIZE * 3) - 3, TILE_SIZE - 1, RED);
+
+		TileImage tileImage = TilePackerTestUtils.createTileImage(context, directory, "image.png", image);
+		boolean[] emptyTiles = TileTrimmer.findEmptyTiles(tileImage);
+		Assert.assertTrue(Arrays.equals(new boolean[] { false, true, false, true, false, true }, emptyTiles));
+	}
+
+	@Test
+	public void testFindEmptyTilesOfSubImage() throws Exception {
+		BufferedImage image = new BufferedImage(TILE_SIZE * 3, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(TILE_SIZE * 2, 0, RED);
+
+		TileImage tileImage = TilePackerTestUtils.createTileImage(context, directory, "image.png", image);
+		TileImage subImage = tileImage.getSubImage(1, 0, 2, 1);
+		Assert.assertTrue(Arrays.equals(new boolean[] { true, false }, TileTrimmer.findEmptyTiles(subImage)));
+	}
+
+	@Test
+	public void testFindEmptyTilesWithoutAlpha() throws Exception {
+		BufferedImage image = new BufferedImage(TILE_SIZE * 2, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+		File file = new File(directory, "opaque.jpg");
+		ImageIO.write(image, "jpg", file);
+
+		TileConfig tileConfig = new TileConfig();
+		tileConfig.setPath(file.getName());
+		boolean[] emptyTiles = TileTrimmer.findEmptyTiles(new TileImage(context, tileConfig, file));
+		Assert.assertTrue(Arrays.equals(new boolean[] { false, false }, emptyTiles));
+	}
+
+	@Test
+	public void testCover() {
+		boolean[] tiles = new boolean[] {
+				true, true, false, true,
+				true, true, false, true,
+				false, true, true, true,
+				true, true, true, true };
+		List<Rectangle> result = TileTrimmer.cover(tiles, 4, true);
+		Assert.assertEquals(4, result.size());
+		assertRectangle(result.get(0), 0, 0, 2, 2);
+		assertRectangle(result.get(1), 3, 0, 1, 2);
+		assertRectangle(result.get(2), 1, 2, 3, 1);
+		assertRectangle(result.get(3), 0, 3, 4, 1);
+
+		result = TileTrimmer.cover(tiles, 4, false);
+		Assert.assertEquals(2, result.size());
+		assertRectangle(result.get(0), 2, 0, 1, 2);
+		assertRectangle(result.get(1), 0, 2, 1, 1);
+	}
+
+	@Test
+	public void testTrim() throws Exception {
+		BufferedImage image = new BufferedImage(TILE_SIZE * 3, TILE_SIZE * 2, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(TILE_SIZE, 0, RED);
+		image.setRGB(TILE_SIZE * 2, TILE_SIZE, RED);
+		TileImage tileImage = TilePackerTestUtils.createTileImage(context, directory, "image.png", image);
+
+		TileTrimmer tileTrimmer = new TileTrimmer();
+		boolean[] emptyTiles = TileTrimmer.findEmptyTiles(tileImage);
+		tileTrimmer.addEmptyTiles(tileImage, emptyTiles);
+		Assert.assertEquals(4, tileTrimmer.getTotalEmptyTiles());
+
+		List<TilePlacement> placements = tileImage.getTileConfig().getPlacement();
+		Assert.assertEquals(3, placements.size());
+		for (TilePlacement placement : placements) {
+			Assert.assertTrue(placement.isEmpty());
+			Assert.assertFalse(placement.isPlaced());
+		}
+		Assert.assertEquals(0, placements.get(0).getSubImageX());
+		Assert.assertEquals(1, placements.get(0).getSubImageWidth());
+		Assert.assertEquals(2, placements.get(1).getSubImageX());
+		Assert.assertEquals(0, placements.get(1).getSubImageY());
+		Assert.assertEquals(0, placements.get(2).getSubImageX());
+		Assert.assertEquals(1, placements.get(2).getSubImageY());
+		Assert.assertEquals(2, placements.get(2).getSubImageWidth());
+
+		List<TileImage> subImages = TileTrimmer.getSubImages(tileImage, emptyTiles);
+		Assert.assertEquals(2, subImages.size());
+		Assert.assertEquals(1, subImages.get(0).getSubImageX());
+		Assert.assertEquals(0, subImages.get(0).getSubImageY());
+		Assert.assertEquals(2, subImages.get(1).getSubImageX());
+		Assert.assertEquals(1, subImages.get(1).getSubImageY());
+
+		Assert.assertSame(tileImage, TileTrimmer.getSubImages(tileImage, new boolean[6]).get(0));
+	}
+
+	@Test
+	public void testFullyTransparentImageIsPlaced() throws Exception {
+		TileImage tileImage = TilePackerTestUtils.createTileImage(context, directory, "empty.png",
+				new BufferedImage(TILE_SIZE * 2, TILE_SIZE, BufferedImage.TYPE_INT_ARGB));
+		boolean[] emptyTiles = TileTrimmer.findEmptyTiles(tileImage);
+		new TileTrimmer().addEmptyTiles(tileImage, emptyTiles);
+
+		Assert.assertTrue(TileTrimmer.getSubImages(tileImage, emptyTiles).isEmpty());
+		Assert.assertEquals(1, tileImage.getTileConfig().getPlacement().size());
+		Assert.assertTrue(tileImage.getTileConfig().isPlaced());
+	}
+
+	private void assertRectangle(Rectangle rectangle, int x, int y, int width, int height) {
+		Assert.assertEquals(x, rectangle.getX());
+		Assert.assertEquals(y, rectangle.getY());
+		Assert.assertEquals(width, rectangle.getWidth());
+		Assert.assertEquals(height, rectangle.getHeight());
+	}
+}
@@ -0,0 +1,338 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link Tileset}
+ * 
+ * @author Thomas Cashman
+ */
+public class TilesetTest {
+	private static final int TILE_SIZE = 8;
+
+	private PackingContext context;
+
+	@Test
+	public void testAddMatchesReferencePacking() {
+		for (long seed = 0; seed < 20; seed++) {
+			assertMatchesReference(24, 24, 200, 4, seed);
+		}
+		assertMatchesReference(40, 30, 300, 6, 100);
+		assertMatchesReference(16, 16, 300, 1, 101);
+	}
+
+	@Test
+	public void testAddPlacedMatchesReferencePacking() {
+		for (long seed = 0; seed < 10; seed++) {
+			context = TilePackerTestUtils.createContext(TILE_SIZE, 20, 20);
+
+			Random random = new Random(seed);
+			Tileset firstRun = new Tileset(context);
+			List<TileImage> placedImages = new ArrayList<TileImage>();
+			for (int i = 0; i < 30; i++) {
+				TileImage image = createTileImage(random, 4);
+				if (firstRun.add(image)) {
+					placedImages.add(image);
+				}
+			}
+			Collections.shuffle(placedImages, random);
+
+			Tileset tileset = new Tileset(context);
+			ReferenceTileset reference = new ReferenceTileset(20, 20);
+			for (TileImage image : placedImages) {
+				Assert.assertEquals(true, tileset.add(image));
+				reference.addPlaced(image.getTilesetX(), image.getTilesetY(), image.getHorizontalTileCount(),
+						image.getVerticalTileCount());
+			}
+			assertAddsMatch(tileset, reference, random, 100, 4);
+		}
+	}
+
+	@Test
+	public void testAddPlacedRejectsOverlaps() {
+		context = TilePackerTestUtils.createContext(TILE_SIZE, 4, 4);
+		Tileset tileset = new Tileset(context);
+		Assert.assertEquals(true, tileset.add(createPlacedTileImage(0, 0, 2, 2)));
+		Assert.assertEquals(false, tileset.add(createPlacedTileImage(1, 1, 2, 2)));
+		Assert.assertEquals(true, tileset.add(createPlacedTileImage(2, 1, 2, 2)));
+		Assert.assertEquals(false, tileset.add(createPlacedTileImage(3, 3, 2, 1)));
+		Assert.assertEquals(true, tileset.add(createPlacedTileImage(0, 3, 4, 1)));
+		Assert.assertEquals(12, tileset.getUsedArea());
+	}
+
+	@Test
+	public void testSignature() {
+		context = TilePackerTestUtils.createContext(TILE_SIZE, 8, 8);
+
+		TileConfig tileConfig = new TileConfig();
+		tileConfig.setPath("tile.png");
+		tileConfig.setHash(1234L);
+
+		long signature = createPlacedTileset(tileConfig, 2, 3).getSignature(0);
+		Assert.assertEquals(signature, createPlacedTileset(tileConfig, 2, 3).getSignature(0));
+		Assert.assertFalse(signature == createPlacedTileset(tileConfig, 3, 2).getSignature(0));
+		Assert.assertFalse(signature == createPlacedTileset(tileConfig, 2, 3).getSignature(1));
+
+		tileConfig.setHash(4321L);
+		Assert.assertFalse(signature == createPlacedTileset(tileConfig, 2, 3).getSignature(0));
+	}
+
+	@Test
+	public void testUsedArea() {
+		context = TilePackerTestUtils.createContext(TILE_SIZE, 8, 8);
+
+		Tileset tileset = new Tileset(context);
+		Assert.assertEquals(0, tileset.getUsedArea());
+		Assert.assertEquals(true, tileset.add(createTileImage(2, 3)));
+		Assert.assertEquals(true, tileset.add(createTileImage(4, 1)));
+		Assert.assertEquals(10, tileset.getUsedArea());
+		Assert.assertTrue(tileset.getPeakFreeAreaCount() > 0);
+	}
+
+	@Test
+	public void testSaveCutsTilesFromSourceImage() throws Exception {
+		context = TilePackerTestUtils.createContext(TILE_SIZE, 4, 4);
+		File imageFile = File.createTempFile("tilepacker", ".png");
+		File tilesetFile = File.createTempFile("tilepacker", ".png");
+		try {
+			// 3x2 tiles where the last column and row are partial
+			BufferedImage source = new BufferedImage(20, 12, BufferedImage.TYPE_INT_ARGB);
+			Random random = new Random(20);
+			for (int x = 0; x < source.getWidth(); x++) {
+				for (int y = 0; y < source.getHeight(); y++) {
+					source.setRGB(x, y, 0xFF000000 | random.nextInt(0xFFFFFF));
+				}
+			}
+			ImageIO.write(source, "png", imageFile);
+
+			TileImage image = new TileImage(context, new TileConfig(), imageFile, ImageDimensions.read(imageFile));
+			TileImage subImage = TileImage.getSubImage(context, image, 1, 0, 2, 2);
+			Tileset tileset = new Tileset(context);
+			Assert.assertEquals(true, tileset.add(image));
+			Assert.assertEquals(true, tileset.add(subImage));
+			tileset.save(tilesetFile.getAbsolutePath(), "png");
+
+			BufferedImage result = ImageIO.read(tilesetFile);
+			assertTilesMatch(source, image, result);
+			assertTilesMatch(source, subImage, result);
+		} finally {
+			imageFile.delete();
+			tilesetFile.delete();
+		}
+	}
+
+	@Test
+	public void testSaveDecodesImagesLargerThanCacheOnce() throws Exception {
+		TilePackerConfig config = TilePackerTestUtils.createConfig(TILE_SIZE, TILE_SIZE);
+		config.setTilesetWidth(4 * TILE_SIZE);
+		config.setTilesetHeight(80 * TILE_SIZE);
+		config.setImageCacheMegabytes(0);
+		context = new PackingContext(config, null);
+		File directory = TilePackerTestUtils.createTempDirectory();
+		try {
+			// Spans every band of the tileset and is evicted as soon as it is decoded
+			BufferedImage source = TilePackerTestUtils.createTiles(TILE_SIZE, 1, 80);
+			TilePackerTestUtils.fill(source, 0, 0, TILE_SIZE, 80 * TILE_SIZE, 0xFF00FF00);
+			TileImage image = TilePackerTestUtils.createTileImage(context, directory, "tall.png", source);
+			Tileset tileset = new Tileset(context);
+			Assert.assertEquals(true, tileset.add(image));
+			Assert.assertEquals(true, tileset.add(TileImage.getSubImage(context, image, 0, 0, 1, 1)));
+			File tilesetFile = new File(directory, "tileset.png");
+			tileset.save(tilesetFile.getAbsolutePath(), "png");
+
+			final ImageCache imageCache = context.getImageCache();
+			Assert.assertEquals(1, imageCache.getMisses());
+			Assert.assertEquals(1, imageCache.getEvictions());
+			// Every other band and the sub image reuse the held source
+			Assert.assertEquals(3, imageCache.getHits());
+			assertTilesMatch(source, image, ImageIO.read(tilesetFile));
+		} finally {
+			TilePackerTestUtils.delete(directory);
+		}
+	}
+
+	@Test
+	public void testPremultiplyAlphaMatchesColorModel() {
+		BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = new int[256 * 256];
+		for (int alpha = 0; alpha < 256; alpha++) {
+			for (int color = 0; color < 256; color++) {
+				pixels[(alpha * 256) + color] = (alpha << 24) | (color << 16) | ((255 - color) << 8) | (color / 2);
+			}
+		}
+		image.setRGB(0, 0, 256, 256, pixels, 0, 256);
+		image.getColorModel().coerceData(image.getRaster(), true);
+
+		Tileset.premultiplyAlpha(pixels, 0, pixels.length);
+		int[] expected = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		for (int i = 0; i < pixels.length; i++) {
+			Assert.assertEquals(expected[i], pixels[i]);
+		}
+	}
+
+	private Tileset createPlacedTileset(TileConfig tileConfig, int tilesetX, int tilesetY) {
+		TilePlacement placement = new TilePlacement();
+		placement.setSubImageWidth(2);
+		placement.setSubImageHeight(2);
+		placement.setTilesetX(tilesetX);
+		placement.setTilesetY(tilesetY);
+
+		Tileset result = new Tileset(context);
+		Assert.assertEquals(true, result.add(new TileImage(context, tileConfig, null, placement)));
+		return result;
+	}
+
+	private void assertMatchesReference(int widthInTiles, int heightInTiles, int images, int maxTilesPerSide,
+			long seed) {
+		context = TilePackerTestUtils.createContext(TILE_SIZE, widthInTiles, heightInTiles);
+
+		assertAddsMatch(new Tileset(context), new ReferenceTileset(widthInTiles, heightInTiles), new Random(seed), images,
+				maxTilesPerSide);
+	}
+
+	private void assertAddsMatch(Tileset tileset, ReferenceTileset reference, Random random, int images,
+			int maxTilesPerSide) {
+		for (int i = 0; i < images; i++) {
+			TileImage image = createTileImage(random, maxTilesPerSide);
+			Rectangle expected = reference.add(image.getHorizontalTileCount(), image.getVerticalTileCount());
+
+			Assert.assertEquals(expected != null, tileset.add(image));
+			if (expected != null) {
+				Assert.assertEquals(expected.getX(), image.getTilesetX());
+				Assert.assertEquals(expected.getY(), image.getTilesetY());
+			}
+			Assert.assertEquals(reference.isFull(), tileset.isFull());
+		}
+	}
+
+	private TileImage createTileImage(Random random, int maxTilesPerSide) {
+		return createTileImage(1 + random.nextInt(maxTilesPerSide), 1 + random.nextInt(maxTilesPerSide));
+	}
+
+	private TileImage createPlacedTileImage(int x, int y, int widthInTiles, int heightInTiles) {
+		TileImage image = createTileImage(widthInTiles, heightInTiles);
+		image.setTileset(0);
+		image.setTilesetX(x);
+		image.setTilesetY(y);
+		return image;
+	}
+
+	private TileImage createTileImage(int widthInTiles, int heightInTiles) {
+		TilePlacement placement = new TilePlacement();
+		placement.setSubImageWidth(widthInTiles);
+		placement.setSubImageHeight(heightInTiles);
+		return new TileImage(context, new TileConfig(), null, placement);
+	}
+
+	private void assertTilesMatch(BufferedImage source, TileImage image, BufferedImage tileset) {
+		for (int x = 0; x < image.getHorizontalTileCount() * TILE_SIZE; x++) {
+			for (int y = 0; y < image.getVerticalTileCount() * TILE_SIZE; y++) {
+				int sourceX = (image.getSubImageX() * TILE_SIZE) + x;
+				int sourceY = (image.getSubImageY() * TILE_SIZE) + y;
+				int expected = sourceX < source.getWidth() && sourceY < source.getHeight()
+						? source.getRGB(sourceX, sourceY) : 0;
+				Assert.assertEquals(expected, tileset.getRGB((image.getTilesetX() * TILE_SIZE) + x,
+						(image.getTilesetY() * TILE_SIZE) + y));
+			}
+		}
+	}
+
+	/**
+	 * The original list based free rectangle handling
+	 */
+	private static class ReferenceTileset {
+		private final SmallToLargeRectangleComparator rectangleComparator = new SmallToLargeRectangleComparator();
+		private final List<Rectangle> availableRectangles = new ArrayList<Rectangle>();
+		private final List<Rectangle> tmpRemaining = new ArrayList<Rectangle>();
+
+		public ReferenceTileset(int widthInTiles, int heightInTiles) {
+			availableRectangles.add(new Rectangle(0, 0, widthInTiles, heightInTiles));
+		}
+
+		public Rectangle add(int width, int height) {
+			for (int i = 0; i < availableRectangles.size(); i++) {
+				Rectangle rect = availableRectangles.get(i);
+				if (!rect.canContain(width, height)) {
+					continue;
+				}
+				Rectangle copyRect = new Rectangle(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight());
+				availableRectangles.remove(i);
+				Rectangle selectedRectangle = new Rectangle(rect.getX(), rect.getY(), width, height);
+				availableRectangles.add(copyRect);
+				split(selectedRectangle);
+				return selectedRectangle;
+			}
+			return null;
+		}
+
+		public void addPlaced(int x, int y, int width, int height) {
+			split(new Rectangle(x, y, width, height));
+		}
+
+		public boolean isFull() {
+			return availableRectangles.isEmpty();
+		}
+
+		private void split(Rectangle selectedRectangle) {
+			for (int j = 0; j < availableRectangles.size(); j++) {
+				Rectangle otherRect = availableRectangles.get(j);
+				if (!selectedRectangle.intersects(otherRect)) {
+					continue;
+				}
+				Rectangle andRect = Rectangle.and(selectedRectangle, otherRect);
+				Rectangle.subtract(tmpRemaining, otherRect, andRect);
+				availableRectangles.remove(j);
+				j--;
+			}
+			for (int j = tmpRemaining.size() - 1; j >= 0; j--) {
+				for (int k = 0; k < availableRectangles.size(); k++) {
+					if (availableRectangles.get(k).equals(tmpRemaining.get(j))) {
+						tmpRemaining.remove(j);
+						break;
+					}
+				}
+			}
+			availableRectangles.addAll(tmpRemaining);
+			Collections.sort(availableRectangles, rectangleComparator);
+			tmpRemaining.clear();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.core;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Unit tests for {@link XXHash64}
+ * 
+ * @author Thomas Cashman
+ */
+public class XXHash64Test {
+
+	@Test
+	public void testHashMatchesReference() {
+		Assert.assertEquals(0xEF46DB3751D8E999L, XXHash64.hash(new int[0], 0, 0, 0));
+		Assert.assertEquals(0xEB518304FEC02E06L, XXHash64.hash(new int[] { 0x12345678 }, 0, 1, 0));
+		Assert.assertEquals(0xB5148CB100A911FCL, XXHash64.hash(new int[] { 1, 2, 3 }, 0, 3, 0));
+		Assert.assertEquals(0x8597444BAFF40FDFL, XXHash64.hash(sequence(8), 0, 8, 0));
+		Assert.assertEquals(0xD3AA893CA0F5D650L, XXHash64.hash(sequence(100), 0, 100, 7));
+
+		int[] pixels = new int[1024];
+		Arrays.fill(pixels, -1);
+		Assert.assertEquals(0x10AF2CB94282321FL, XXHash64.hash(pixels, 0, pixels.length, 0));
+	}
+
+	@Test
+	public void testHashBytesMatchesReference() throws Exception {
+		Assert.assertEquals(0xEF46DB3751D8E999L, XXHash64.hash(new byte[0], 0, 0, 0));
+		Assert.assertEquals(0xD24EC4F1A98C6E5BL, XXHash64.hash("a".getBytes("UTF-8"), 0, 1, 0));
+		Assert.assertEquals(0x44BC2CF5AD770999L, XXHash64.hash("abc".getBytes("UTF-8"), 0, 3, 0));
+		Assert.assertEquals(0x5B9AC0099A0173C0L, XXHash64.hash("tilepacker".getBytes("UTF-8"), 0, 10, 0));
+
+		byte[] data = new byte[100];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		Assert.assertEquals(0x9C502A83DCB7C69EL, XXHash64.hash(data, 0, data.length, 5));
+	}
+
+	@Test
+	public void testHashPixelsMatchesBytes() {
+		int[] pixels = sequence(37);
+		byte[] data = new byte[pixels.length * 4];
+		for (int i = 0; i < pixels.length; i++) {
+			data[i * 4] = (byte) pixels[i];
+			data[(i * 4) + 1] = (byte) (pixels[i] >> 8);
+			data[(i * 4) + 2] = (byte) (pixels[i] >> 16);
+			data[(i * 4) + 3] = (byte) (pixels[i] >> 24);
+		}
+		Assert.assertEquals(XXHash64.hash(data, 0, data.length, 11), XXHash64.hash(pixels, 0, pixels.length, 11));
+	}
+
+	@Test
+	public void testHashRange() {
+		int[] pixels = sequence(120);
+		int[] range = new int[100];
+		System.arraycopy(pixels, 10, range, 0, range.length);
+		Assert.assertEquals(XXHash64.hash(range, 0, range.length, 3), XXHash64.hash(pixels, 10, 100, 3));
+	}
+
+	private int[] sequence(int length) {
+		int[] result = new int[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = i;
+		}
+		return result;
+	}
+}
@@ -26,31 +26,157 @@
  */
 package org.tilepacker.gradle
 
+import org.gradle.api.GradleException
 import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.FileTree
+import org.gradle.api.file.FileTreeElement
+import org.gradle.api.model.ObjectFactory
 import org.gradle.api.provider.Property
+import org.gradle.api.provider.Provider
+import org.gradle.api.tasks.CacheableTask
 import org.gradle.api.tasks.Input
-import org.gradle.api.tasks.InputDirectory
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.OutputDirectory
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.workers.WorkQueue
+import org.gradle.workers.WorkerExecutor
 
 import java.awt.SystemTray
 import java.awt.TrayIcon
 import java.util.Set;
 
+import javax.inject.Inject
+
 import org.gradle.api.DefaultTask
 import org.gradle.api.tasks.TaskAction
+import org.tilepacker.core.ConfigSerializer
+import org.tilepacker.core.TileConfig
 import org.tilepacker.core.TilePacker
+import org.tilepacker.core.TilePackerConfig
+import org.tilepacker.core.TilesetConfig
 
 /**
- *
+ * Packs a tiles directory in a Gradle worker. Tiles directories with
+ * different settings can be packed in parallel on the same daemon.
+ * 
+ * config.xml is only tracked as an output since the task rewrites it with
+ * placements. Its settings are tracked separately as an input so that
+ * changing a setting still re-runs the task.
  */
+@CacheableTask
 abstract class TilePackerTask extends DefaultTask {
-	@InputDirectory
+	@Internal
 	abstract DirectoryProperty getTilesDirectory();
 	@Input
 	abstract Property<Boolean> getRewrite();
+	/**
+	 * How the packing is isolated from the build: none, classloader or process
+	 */
+	@Internal
+	abstract Property<String> getIsolation();
+	/**
+	 * The maximum heap size of the worker process when using process isolation
+	 */
+	@Internal
+	abstract Property<String> getMaxHeapSize();
+
+	@Inject
+	abstract ObjectFactory getObjects();
+
+	@Inject
+	abstract WorkerExecutor getWorkerExecutor();
+
+	TilePackerTask() {
+		isolation.convention('classloader')
+
+		final Provider<TilePackerWorkerLimit> workerLimit = project.gradle.sharedServices.registerIfAbsent(
+				TilePackerWorkerLimit.NAME, TilePackerWorkerLimit) { spec ->
+			final Object maxParallelWorkers = project.findProperty(TilePackerWorkerLimit.MAX_PARALLEL_WORKERS_PROPERTY)
+			if(maxParallelWorkers != null) {
+				spec.maxParallelUsages.set(maxParallelWorkers.toString().toInteger())
+			}
+		}
+		usesService(workerLimit)
+
+		outputs.cacheIf('tilesets are written outside of the tiles directory') {
+			final String outputPath = getOutputDirectory().canonicalPath + File.separator
+			final String tilesPath = tilesDirectory.get().asFile.canonicalPath + File.separator
+			return !outputPath.startsWith(tilesPath)
+		}
+	}
+
+	/**
+	 * The tile images. Tilesets written inside the tiles directory are
+	 * excluded so that saving them does not invalidate the task.
+	 */
+	@InputFiles
+	@PathSensitive(PathSensitivity.RELATIVE)
+	FileTree getTileFiles() {
+		final File outputDirectory = getOutputDirectory().canonicalFile
+		return objects.fileTree().from(tilesDirectory).matching {
+			include '**/*.png', '**/*.jpg', '**/*.jpeg'
+			exclude { FileTreeElement element ->
+				element.file.canonicalFile.parentFile == outputDirectory && element.name ==~ /(\d+|[0-9a-f]{16})\.\w+/
+			}
+		}
+	}
+
+	/**
+	 * The settings of config.xml without the tile placements and tileset
+	 * state that the task writes back to it
+	 */
+	@Input
+	String getSettings() {
+		final File configFile = getConfigFile()
+		final ConfigSerializer serializer = new ConfigSerializer()
+		final TilePackerConfig config = configFile.exists() ? serializer.read(configFile) : new TilePackerConfig()
+		config.setTiles(new ArrayList<TileConfig>())
+		config.setTilesets(new ArrayList<TilesetConfig>())
+		final ByteArrayOutputStream result = new ByteArrayOutputStream()
+		serializer.write(config, result)
+		return result.toString('UTF-8')
+	}
+
+	@OutputDirectory
+	File getOutputDirectory() {
+		return TilePacker.getOutputDirectory(tilesDirectory.get().asFile)
+	}
+
+	/**
+	 * config.xml is rewritten with the placement of each tile
+	 */
+	@OutputFile
+	File getConfigFile() {
+		return new File(tilesDirectory.get().asFile, 'config.xml')
+	}
 
 	@TaskAction
 	def packTiles() {
-		TilePacker tilePacker = new TilePacker(tilesDirectory.get().asFile, rewrite.get());
-		tilePacker.run(getClass().classLoader);
+		final DirectoryProperty tilesDirectory = getTilesDirectory()
+		final Property<Boolean> rewrite = getRewrite()
+		createWorkQueue().submit(TilePackerWorkAction) { TilePackerWorkParameters parameters ->
+			parameters.tilesDirectory.set(tilesDirectory)
+			parameters.rewrite.set(rewrite)
+		}
+	}
+
+	private WorkQueue createWorkQueue() {
+		switch(isolation.get().toLowerCase()) {
+		case 'none':
+			return workerExecutor.noIsolation()
+		case 'classloader':
+			return workerExecutor.classLoaderIsolation()
+		case 'process':
+			return workerExecutor.processIsolation { spec ->
+				if(maxHeapSize.isPresent()) {
+					spec.forkOptions.maxHeapSize = maxHeapSize.get()
+				}
+			}
+		default:
+			throw new GradleException("Unknown isolation '" + isolation.get() + "', expected none, classloader or process")
+		}
 	}
 }
@@ -24,42 +24,19 @@
  * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
  */
-package org.tilepacker.core;
-
+package org.tilepacker.gradle
 
+import org.gradle.workers.WorkAction
+import org.tilepacker.core.TilePacker
 
 /**
- * Stores a single tile
- * 
- * @author Thomas Cashman
+ * Packs a single tiles directory in a Gradle worker
  */
-public class Tile {
-	public static int WIDTH = 32;
-	public static int HEIGHT = 32;
-	public static int PADDING = 0;
-	
-	private TileImage tileImage;
-	
-	/**
-	 * Constructor
-	 * @param tileImage The tile's backing image
-	 */
-	public Tile(TileImage tileImage) {
-		this.tileImage = tileImage;
-	}
+abstract class TilePackerWorkAction implements WorkAction<TilePackerWorkParameters> {
 
-	/**
-	 * The tile image
-	 * @return
-	 */
-	public TileImage getTileImage() {
-		return tileImage;
-	}
-	
-	/**
-	 * Cleans up used resources
-	 */
-	public void dispose() {
-		tileImage = null;
+	@Override
+	void execute() {
+		TilePacker tilePacker = new TilePacker(parameters.tilesDirectory.get().asFile, parameters.rewrite.get());
+		tilePacker.run(getClass().classLoader);
 	}
 }
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2015, Thomas Cashman
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of the TilePacker nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL tilepacker.org BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */
+package org.tilepacker.gradle;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tilepacker.core.ConfigSerializer;
+import org.tilepacker.core.TilePackerConfig;
+
+import junit.framework.Assert;
+
+/**
+ * Runs {@link TilePackerTask} in a Gradle build to check its inputs and
+ * outputs are declared so that it is up-to-date and cacheable
+ * 
+ * @author Thomas Cashman
+ */
+public class TilePackerTaskTest {
+	private static final String TASK_PATH = ":tilePack";
+	private static final int TILE_SIZE = 16;
+
+	private File projectDirectory;
+	private File tilesDirectory;
+	private File outputDirectory;
+
+	@Before
+	public void setUp() throws Exception {
+		projectDirectory = Files.createTempDirectory("tilepacker").toFile();
+		tilesDirectory = new File(projectDirectory, "tiles");
+		outputDirectory = new File(projectDirectory, "tilesets");
+		tilesDirectory.mkdirs();
+
+		TilePackerConfig config = new TilePackerConfig();
+		config.setTileWidth(TILE_SIZE);
+		config.setTileHeight(TILE_SIZE);
+		config.setTilesetWidth(TILE_SIZE * 4);
+		config.setTilesetHeight(TILE_SIZE * 4);
+		config.setOutputPath("../" + outputDirectory.getName());
+		new ConfigSerializer().write(config, new File(tilesDirectory, "config.xml"));
+
+		writeTile("a.png", 0xFFFF0000);
+		writeTile("b.png", 0xFF00FF00);
+
+		write(new File(projectDirectory, "settings.gradle"), "buildCache {\n"
+				+ "	local {\n"
+				+ "		directory = new File(rootDir, 'build-cache')\n"
+				+ "	}\n"
+				+ "}\n");
+		write(new File(projectDirectory, "build.gradle"), "buildscript {\n"
+				+ "	dependencies {\n"
+				+ "		classpath files(" + getTaskClasspath() + ")\n"
+				+ "	}\n"
+				+ "}\n"
+				+ "\n"
+				+ "task tilePack(type: org.tilepacker.gradle.TilePackerTask) {\n"
+				+ "	tilesDirectory = file('tiles')\n"
+				+ "	rewrite = false\n"
+				+ "}\n");
+	}
+
+	@After
+	public void teardown() {
+		delete(projectDirectory);
+	}
+
+	@Test
+	public void testSecondRunIsUpToDate() {
+		Assert.assertEquals(TaskOutcome.SUCCESS, run().task(TASK_PATH).getOutcome());
+		Assert.assertTrue(new File(outputDirectory, "0.png").exists());
+		Assert.assertEquals(TaskOutcome.UP_TO_DATE, run().task(TASK_PATH).getOutcome());
+	}
+
+	@Test
+	public void testChangedTileRerunsTask() throws Exception {
+		Assert.assertEquals(TaskOutcome.SUCCESS, run().task(TASK_PATH).getOutcome());
+		Assert.assertEquals(TaskOutcome.UP_TO_DATE, run().task(TASK_PATH).getOutcome());
+
+		writeTile("a.png", 0xFF0000FF);
+		Assert.assertEquals(TaskOutcome.SUCCESS, run().task(TASK_PATH).getOutcome());
+		Assert.assertEquals(TaskOutcome.UP_TO_DATE, run().task(TASK_PATH).getOutcome());
+	}
+
+	@Test
+	public void testOutputsAreRestoredFromBuildCache() throws Exception {
+		// Not stored since config.xml was not written by Gradle
+		Assert.assertEquals(TaskOutcome.SUCCESS, run("--build-cache").task(TASK_PATH).getOutcome());
+
+		delete(outputDirectory);
+		Assert.assertEquals(TaskOutcome.SUCCESS, run("--build-cache").task(TASK_PATH).getOutcome());
+		final byte[] tileset = Files.readAllBytes(new File(outputDirectory, "0.png").toPath());
+		final byte[] config = Files.readAllBytes(new File(tilesDirectory, "config.xml").toPath());
+
+		delete(outputDirectory);
+		Assert.assertEquals(TaskOutcome.FROM_CACHE, run("--build-cache").task(TASK_PATH).getOutcome());
+		Assert.assertTrue(Arrays.equals(tileset, Files.readAllBytes(new File(outputDirectory, "0.png").toPath())));
+		Assert.assertTrue(Arrays.equals(config, Files.readAllBytes(new File(tilesDirectory, "config.xml").toPath())));
+		Assert.assertEquals(TaskOutcome.UP_TO_DATE, run("--build-cache").task(TASK_PATH).getOutcome());
+	}
+
+	private BuildResult run(String... arguments) {
+		final String[] allArguments = new String[arguments.length + 2];
+		allArguments[0] = TASK_PATH;
+		allArguments[1] = "--stacktrace";
+		System.arraycopy(arguments, 0, allArguments, 2, arguments.length);
+		return GradleRunner.create().withProjectDir(projectDirectory).withArguments(allArguments).build();
+	}
+
+	/**
+	 * Returns the classpath of the task under test as arguments to the
+	 * Gradle files() method
+	 */
+	private String getTaskClasspath() {
+		final String classpath = System.getProperty("tilepacker.taskClasspath");
+		Assert.assertNotNull("tilepacker.taskClasspath is set by the Gradle test task", classpath);
+
+		final StringBuilder result = new StringBuilder();
+		for (String path : classpath.split(File.pathSeparator)) {
+			if (result.length() > 0) {
+				result.append(", ");
+			}
+			result.append('\'');
+			result.append(path.replace('\\', '/'));
+			result.append('\'');
+		}
+		return result.toString();
+	}
+
+	private void writeTile(String filename, int color) throws IOException {
+		BufferedImage image = new BufferedImage(TILE_SIZE * 2, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+		for (int x = 0; x < image.getWidth(); x++) {
+			for (int y = 0; y < image.getHeight(); y++) {
+				image.setRGB(x, y, color);
+			}
+		}
+		ImageIO.write(image, "png", new File(tilesDirectory, filename));
+	}
+
+	private static void write(File file, String contents) throws IOException {
+		Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}